@@ -3,6 +3,7 @@ package net.common.data.redis;
 import net.common.data.redis.client.BaseShardedJedisPipeline;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -177,6 +178,17 @@ public interface IRedis {
      */
     Long hset(String key, String field, String value);
 
+    /**
+     * Map操作：设置某个map中的指定数据，并设置整个map的失效时间
+     *
+     * @param key
+     * @param field
+     * @param value
+     * @param expireSeconds
+     * @return
+     */
+    Long hset(String key, String field, String value, int expireSeconds);
+
     /**
      * Map操作：设置某个map中的指定数据
      *
@@ -214,7 +226,7 @@ public interface IRedis {
     Long hdel(byte[] key, byte[] field);
 
     /**
-     * 删除一个key值的value
+     * 删除一个key值的value；分块存储的对象同时删除各块
      *
      * @param key
      * @return
@@ -222,7 +234,7 @@ public interface IRedis {
     Long del(String key);
 
     /**
-     * 添加对象
+     * 添加对象；启用分块存储时，编码后超过阈值的对象拆分成多块分散存放，原key上只保存manifest
      *
      * @param key
      * @param value
@@ -231,13 +243,101 @@ public interface IRedis {
     <T extends Serializable> void setObject(String key, T value, int expireSeconds);
 
     /**
-     * 查询对象
+     * 查询对象；分块存储的对象并行读取各块后拼接，续时时同时为各块续时
      *
      * @param key
      * @return
      */
     Object getObject(String key, final int expireSecond);
 
+    /**
+     * 异步添加对象：启用异步写入时放入队列由后台批量写入，同一个key尚未写出时合并为最后一次写入；
+     * 未启用异步写入或队列满并且策略为同步写入时，等同于setObject
+     *
+     * @param key
+     * @param value
+     * @param expireSeconds
+     * @param <T>
+     */
+    <T extends Serializable> void setObjectAsync(String key, T value, int expireSeconds);
+
+    /**
+     * 添加对象，基于byte[]的key(例如{@link KeySpace}生成的key)
+     *
+     * @param key
+     * @param value
+     * @param expireSeconds
+     * @param <T>
+     */
+    <T extends Serializable> void setObject(byte[] key, T value, int expireSeconds);
+
+    /**
+     * 查询对象，基于byte[]的key(例如{@link KeySpace}生成的key)
+     *
+     * @param key
+     * @param expireSecond
+     * @return
+     */
+    Object getObject(byte[] key, int expireSecond);
+
+    /**
+     * 按Hash存储对象：每个属性(同时有getter和setter)一个field，替换整个Hash
+     *
+     * @param key
+     * @param bean
+     * @param expireSeconds
+     * @param <T>
+     */
+    <T> void setObjectAsHash(String key, T bean, int expireSeconds);
+
+    /**
+     * 只更新对象的指定属性：取bean中对应属性的值写入field，值为null的删除该field，不改变过期时间；
+     * 一次原子调用完成，key不存在(未写入或已过期)时不写入
+     *
+     * @param key
+     * @param bean
+     * @param fields : 属性名
+     * @param <T>
+     */
+    <T> void setObjectFields(String key, T bean, String... fields);
+
+    /**
+     * 读取按Hash存储的整个对象，Hash不存在时返回null
+     *
+     * @param key
+     * @param type : 需要有public无参构造函数
+     * @param <T>
+     * @return
+     */
+    <T> T getObjectAsHash(String key, Class<T> type);
+
+    /**
+     * 只读取按Hash存储的对象的指定属性，其它属性保持默认值；所有指定field都不存在时返回null
+     *
+     * @param key
+     * @param type   : 需要有public无参构造函数
+     * @param fields : 属性名
+     * @param <T>
+     * @return
+     */
+    <T> T getObjectAsHash(String key, Class<T> type, String... fields);
+
+    /**
+     * 删除一个byte[] key
+     *
+     * @param key
+     * @return
+     */
+    Long del(byte[] key);
+
+    /**
+     * 判断指定byte[] key是否存在
+     *
+     * @param key
+     * @return
+     */
+    Boolean exists(byte[] key);
+
     /**
      * String操作：将字符串值 value 关联到 key
      *
@@ -401,11 +501,109 @@ public interface IRedis {
     Long zcard(String key);
 
     /**
-     * 使用管道处理多个命令
+     * SortSet操作 ：增加一个成员，已存在时更新分数
      *
-     * @param baseShardedJedisPipeline
+     * @param key
+     * @param score
+     * @param member
+     * @return 新增的成员数
+     */
+    Long zadd(String key, double score, String member);
+
+    /**
+     * SortSet操作 ：一次增加/更新多个成员(一条ZADD命令)
+     *
+     * @param key
+     * @param scoreMembers : 成员 -> 分数
+     * @return 新增的成员数
+     */
+    Long zadd(String key, Map<String, Double> scoreMembers);
+
+    /**
+     * SortSet操作 ：为成员的分数加上增量
+     *
+     * @param key
+     * @param increment
+     * @param member
+     * @return 新的分数
+     */
+    Double zincrby(String key, double increment, String member);
+
+    /**
+     * SortSet操作 ：为多个成员的分数加上各自的增量，通过一次pipeline完成
+     *
+     * @param key
+     * @param increments : 成员 -> 增量
+     * @return 成员 -> 新的分数
+     */
+    Map<String, Double> zincrby(String key, Map<String, Double> increments);
+
+    /**
+     * SortSet操作 ：获取成员的分数
+     *
+     * @param key
+     * @param member
+     * @return 成员不存在时返回null
+     */
+    Double zscore(String key, String member);
+
+    /**
+     * SortSet操作 ：按反排序获取指定名次区间的成员和分数，例如前N名为(0, N - 1)，后N名为(-N, -1)；
+     * 返回的名次总是从0开始的真实名次
+     *
+     * @param key
+     * @param start
+     * @param end
      * @return
      */
+    List<RankedMember> zrevrangeWithScores(String key, long start, long end);
+
+    /**
+     * SortSet操作 ：获取成员前后各radius名的成员和分数(包括成员自己)，一次原子调用
+     *
+     * @param key
+     * @param member
+     * @param radius
+     * @return 成员不存在时返回空列表
+     */
+    List<RankedMember> zrevrankAround(String key, String member, int radius);
+
+    /**
+     * SortSet操作 ：按反排序获取分数在[min, max]之间的成员和分数，返回的名次为在整个SortSet中的名次
+     *
+     * @param key
+     * @param max
+     * @param min
+     * @param offset
+     * @param count
+     * @return
+     */
+    List<RankedMember> zrevrangeByScoreWithScores(String key, double max, double min, int offset, int count);
+
+    /**
+     * SortSet操作 ：从本地快照读取前n名(未启用本地缓存时直接读取redis)；快照异步刷新，读取不会等待刷新
+     *
+     * @param key
+     * @param n
+     * @return n不大于0时返回空列表
+     */
+    List<RankedMember> ztopCached(String key, int n);
+
+    /**
+     * SortSet操作 ：成员的反排序名次，在本地前N名快照中时直接返回，否则读取redis
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    Long zrevrankCached(String key, String member);
+
+    /**
+     * 使用管道处理多个命令：返回前所有应答已读取，各命令的结果也可以通过其返回的PipelineResponse获得
+     *
+     * @param baseShardedJedisPipeline
+     * @return 按调用顺序排列的结果
+     */
     List<Object> pipelined(BaseShardedJedisPipeline baseShardedJedisPipeline);
 
     /**
@@ -425,6 +623,39 @@ public interface IRedis {
      */
     String set(byte[] key, byte[] value);
 
+    /**
+     * 根据byte[] key 存入 ByteBuffer 中剩余的数据，不改变buffer的position，适合大value
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    String set(byte[] key, ByteBuffer value);
+
+    /**
+     * 根据byte[] key 把数据直接读入池化的ByteBuffer，适合大value；
+     * 返回的buffer position为0，limit为数据长度，用完后必须调用{@link #releaseBuffer(ByteBuffer)}归还
+     *
+     * @param key
+     * @return key不存在时返回null
+     */
+    ByteBuffer getBuffer(byte[] key);
+
+    /**
+     * 归还{@link #getBuffer(byte[])}返回的buffer
+     *
+     * @param buffer
+     */
+    void releaseBuffer(ByteBuffer buffer);
+
+    /**
+     * 查询对象：直接从池化buffer中解码，适合大对象
+     *
+     * @param key
+     * @return
+     */
+    Object getObjectPooled(String key);
+
     /**
      * 设置基于 byte[] key 的失效时间
      *
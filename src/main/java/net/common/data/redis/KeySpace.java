@@ -0,0 +1,212 @@
+package net.common.data.redis;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * key命名空间：形如 "svc:entity:" + id + ":field" 的key
+ * <p/>
+ * 前缀和后缀只编码一次，生成key时把数字或字符串id直接写入byte[]，不产生中间String。
+ * group按hash tag分片(redis.key.tag.routing)时，前缀带{tag}的命名空间的所有key都在同一个shard，
+ * 分片只对tag计算hash，不再对整个key计算
+ */
+public final class KeySpace {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 前缀
+     */
+    private final String prefix;
+
+    /**
+     * 后缀
+     */
+    private final String suffix;
+
+    /**
+     * 编码后的前缀
+     */
+    private final byte[] prefixBytes;
+
+    /**
+     * 编码后的后缀
+     */
+    private final byte[] suffixBytes;
+
+    /**
+     * 前缀中的hash tag({tag}中的内容)，没有时为null
+     */
+    private final byte[] hashTag;
+
+    private KeySpace(String prefix, String suffix) {
+        this(Preconditions.checkNotNull(prefix, "prefix"), prefix.getBytes(UTF_8), parseHashTag(prefix),
+                Preconditions.checkNotNull(suffix, "suffix"));
+    }
+
+    private KeySpace(String prefix, byte[] prefixBytes, byte[] hashTag, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.prefixBytes = prefixBytes;
+        this.suffixBytes = suffix.getBytes(UTF_8);
+        this.hashTag = hashTag;
+    }
+
+    /**
+     * 创建命名空间，key = prefix + id
+     *
+     * @param prefix
+     * @return
+     */
+    public static KeySpace of(String prefix) {
+        return new KeySpace(prefix, "");
+    }
+
+    /**
+     * 创建命名空间，key = prefix + id + suffix
+     *
+     * @param prefix
+     * @param suffix
+     * @return
+     */
+    public static KeySpace of(String prefix, String suffix) {
+        return new KeySpace(prefix, suffix);
+    }
+
+    /**
+     * 相同前缀、不同后缀的命名空间，复用已编码的前缀
+     *
+     * @param suffix
+     * @return
+     */
+    public KeySpace withSuffix(String suffix) {
+        return new KeySpace(prefix, prefixBytes, hashTag, Preconditions.checkNotNull(suffix, "suffix"));
+    }
+
+    /**
+     * 生成数字id的key
+     *
+     * @param id
+     * @return
+     */
+    public byte[] key(long id) {
+        if (id == Long.MIN_VALUE) {
+            return key(String.valueOf(id));
+        }
+        int digits = digits(id);
+        byte[] key = new byte[prefixBytes.length + digits + suffixBytes.length];
+        System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+        long v = id < 0 ? -id : id;
+        int pos = prefixBytes.length + digits - 1;
+        do {
+            key[pos--] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        if (id < 0) {
+            key[pos] = '-';
+        }
+        System.arraycopy(suffixBytes, 0, key, prefixBytes.length + digits, suffixBytes.length);
+        return key;
+    }
+
+    /**
+     * 生成字符串id的key，ASCII id直接写入，不经过Charset编码
+     *
+     * @param id
+     * @return
+     */
+    public byte[] key(String id) {
+        int len = id.length();
+        for (int i = 0; i < len; i++) {
+            if (id.charAt(i) >= 0x80) {
+                return concat(id.getBytes(UTF_8));
+            }
+        }
+        byte[] key = new byte[prefixBytes.length + len + suffixBytes.length];
+        System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+        for (int i = 0; i < len; i++) {
+            key[prefixBytes.length + i] = (byte) id.charAt(i);
+        }
+        System.arraycopy(suffixBytes, 0, key, prefixBytes.length + len, suffixBytes.length);
+        return key;
+    }
+
+    /**
+     * 生成key的String形式，用于String类型的接口
+     *
+     * @param id
+     * @return
+     */
+    public String keyString(long id) {
+        return prefix + id + suffix;
+    }
+
+    /**
+     * 前缀中是否带有hash tag：group按hash tag分片时，同一命名空间的key都在同一个shard
+     *
+     * @return
+     */
+    public boolean hasHashTag() {
+        return hashTag != null;
+    }
+
+    /**
+     * 前缀中的hash tag，已在创建时编码；group按hash tag分片时按它计算shard；没有时返回null
+     *
+     * @return
+     */
+    public byte[] getHashTag() {
+        return hashTag == null ? null : Arrays.copyOf(hashTag, hashTag.length);
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    @Override
+    public String toString() {
+        return prefix + "*" + suffix;
+    }
+
+    private byte[] concat(byte[] idBytes) {
+        byte[] key = new byte[prefixBytes.length + idBytes.length + suffixBytes.length];
+        System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+        System.arraycopy(idBytes, 0, key, prefixBytes.length, idBytes.length);
+        System.arraycopy(suffixBytes, 0, key, prefixBytes.length + idBytes.length, suffixBytes.length);
+        return key;
+    }
+
+    /**
+     * 与Sharded.DEFAULT_KEY_TAG_PATTERN一致：第一个{}中非空的内容
+     *
+     * @param prefix
+     * @return
+     */
+    private static byte[] parseHashTag(String prefix) {
+        int start = prefix.indexOf('{');
+        if (start < 0) {
+            return null;
+        }
+        int end = prefix.indexOf('}', start + 2);
+        if (end < 0) {
+            return null;
+        }
+        return prefix.substring(start + 1, end).getBytes(UTF_8);
+    }
+
+    private static int digits(long id) {
+        long v = id < 0 ? -id : id;
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return id < 0 ? n + 1 : n;
+    }
+}
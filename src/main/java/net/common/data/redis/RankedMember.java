@@ -0,0 +1,49 @@
+package net.common.data.redis;
+
+import java.io.Serializable;
+
+/**
+ * SortSet中带分数和名次的成员，名次按反排序(分数最大的名次为0)
+ */
+public final class RankedMember implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 成员
+     */
+    private final String member;
+
+    /**
+     * 分数
+     */
+    private final double score;
+
+    /**
+     * 名次，从0开始
+     */
+    private final long rank;
+
+    public RankedMember(String member, double score, long rank) {
+        this.member = member;
+        this.score = score;
+        this.rank = rank;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public long getRank() {
+        return rank;
+    }
+
+    @Override
+    public String toString() {
+        return rank + ":" + member + "=" + score;
+    }
+}
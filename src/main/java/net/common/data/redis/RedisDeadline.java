@@ -0,0 +1,96 @@
+package net.common.data.redis;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 当前线程上IRedis调用的截止时间
+ * <p/>
+ * 在截止时间内的调用，借用连接最多等待剩余时间，socket读写超时也改为剩余时间(调用结束后恢复为配置的超时)；
+ * 截止时间已过的调用不再访问server，直接抛出JedisConnectionException。
+ * 用try-with-resources限定范围，可以嵌套，嵌套时取较早的截止时间：
+ * <pre>
+ * try (RedisDeadline deadline = RedisDeadline.start(50, TimeUnit.MILLISECONDS)) {
+ *     redis.get(key);
+ *     redis.hgetAll(otherKey);
+ * }
+ * </pre>
+ */
+public final class RedisDeadline implements AutoCloseable {
+
+    private static final ThreadLocal<RedisDeadline> CURRENT = new ThreadLocal<RedisDeadline>();
+
+    private final long deadlineNanos;
+
+    /**
+     * 外层的截止时间，关闭时恢复
+     */
+    private final RedisDeadline previous;
+
+    private RedisDeadline(long deadlineNanos, RedisDeadline previous) {
+        this.deadlineNanos = deadlineNanos;
+        this.previous = previous;
+    }
+
+    /**
+     * 为当前线程设置截止时间
+     *
+     * @param timeout : 从现在起的时间预算
+     * @param unit
+     * @return 需要在finally中关闭，或者用try-with-resources
+     */
+    public static RedisDeadline start(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout > 0, "Deadline timeout must be positive.");
+        Preconditions.checkNotNull(unit, "unit is null");
+        RedisDeadline previous = CURRENT.get();
+        long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        if (previous != null && previous.deadlineNanos - deadlineNanos < 0) {
+            deadlineNanos = previous.deadlineNanos;
+        }
+        RedisDeadline deadline = new RedisDeadline(deadlineNanos, previous);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * 当前线程的截止时间
+     *
+     * @return 没有设置时返回null
+     */
+    public static RedisDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 剩余时间：毫秒，不足1毫秒时向上取整为1，已过期时返回0
+     *
+     * @return
+     */
+    public long remainingMillis() {
+        long nanos = deadlineNanos - System.nanoTime();
+        if (nanos <= 0) {
+            return 0;
+        }
+        return (nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 恢复外层的截止时间
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
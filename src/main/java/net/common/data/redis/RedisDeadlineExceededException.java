@@ -0,0 +1,19 @@
+package net.common.data.redis;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * 当前线程的 {@link RedisDeadline} 已过：调用方的时间预算用完，与shard是否故障无关
+ */
+public class RedisDeadlineExceededException extends JedisConnectionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RedisDeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public RedisDeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
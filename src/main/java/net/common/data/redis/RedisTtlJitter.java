@@ -0,0 +1,95 @@
+package net.common.data.redis;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * 当前线程上写入时过期时间抖动的覆盖设置，覆盖group配置的redis.ttl.jitter.percent和redis.ttl.jitter.seconds
+ * <p/>
+ * 用try-with-resources限定范围，可以嵌套，关闭时恢复外层的设置：
+ * <pre>
+ * try (RedisTtlJitter jitter = RedisTtlJitter.none()) {
+ *     redis.setObject(key, value, 60);
+ * }
+ * </pre>
+ */
+public final class RedisTtlJitter implements AutoCloseable {
+
+    private static final ThreadLocal<RedisTtlJitter> CURRENT = new ThreadLocal<RedisTtlJitter>();
+
+    /**
+     * 最多缩短过期时间的百分比
+     */
+    private final int percent;
+
+    /**
+     * 最多缩短的秒数
+     */
+    private final int seconds;
+
+    /**
+     * 外层的设置，关闭时恢复
+     */
+    private final RedisTtlJitter previous;
+
+    private RedisTtlJitter(int percent, int seconds, RedisTtlJitter previous) {
+        this.percent = percent;
+        this.seconds = seconds;
+        this.previous = previous;
+    }
+
+    /**
+     * 为当前线程设置过期时间抖动，两者都配置时取较大的范围
+     *
+     * @param percent : 最多缩短过期时间的百分比，0到100
+     * @param seconds : 最多缩短的秒数
+     * @return 需要在finally中关闭，或者用try-with-resources
+     */
+    public static RedisTtlJitter override(int percent, int seconds) {
+        Preconditions.checkArgument(percent >= 0 && percent <= 100, "Ttl jitter percent must be in [0, 100].");
+        Preconditions.checkArgument(seconds >= 0, "Ttl jitter seconds can't be negative.");
+        RedisTtlJitter jitter = new RedisTtlJitter(percent, seconds, CURRENT.get());
+        CURRENT.set(jitter);
+        return jitter;
+    }
+
+    /**
+     * 当前线程的写入使用精确的过期时间
+     *
+     * @return
+     */
+    public static RedisTtlJitter none() {
+        return override(0, 0);
+    }
+
+    /**
+     * 当前线程的覆盖设置
+     *
+     * @return 没有设置时返回null
+     */
+    public static RedisTtlJitter current() {
+        return CURRENT.get();
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * 恢复外层的设置
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
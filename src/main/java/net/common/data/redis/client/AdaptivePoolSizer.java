@@ -0,0 +1,261 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.common.data.redis.monitor.LatencyHistogram;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 根据借用连接的等待耗时和连接利用率自动调整连接池大小
+ * <p/>
+ * 每 {@link #SAMPLE_MILLIS} 采样一次活跃连接数和等待线程数，每个调整周期结束时看本周期内借用耗时的p99、
+ * 活跃连接数的峰值和是否出现过等待：
+ * <ul>
+ * <li>p99超过目标等待时间或者有线程等待连接：连续 {@link #GROW_AFTER} 个周期后扩大1/4</li>
+ * <li>p99低于目标的1/4并且峰值利用率低于一半：连续 {@link #SHRINK_AFTER} 个周期后缩小1/8</li>
+ * </ul>
+ * 每次调整后冷却 {@link #COOLDOWN} 个周期。扩容快、缩容慢，加上冷却期，避免连接池大小来回振荡。
+ * ShardedJedis的一个连接同时持有到每个shard的连接，各shard的利用率相同，所以按group整体调整。
+ * 通过JMX手动调整连接池大小时经过 {@link #setMaxTotal(int)}，同时更新自动调整的上下限，不会被自动调整改回去
+ */
+final class AdaptivePoolSizer implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptivePoolSizer.class.getName());
+
+    /**
+     * 采样间隔：毫秒
+     */
+    private static final long SAMPLE_MILLIS = 100;
+
+    /**
+     * 连续多少个周期有压力后扩容
+     */
+    private static final int GROW_AFTER = 2;
+
+    /**
+     * 连续多少个周期空闲后缩容
+     */
+    private static final int SHRINK_AFTER = 6;
+
+    /**
+     * 调整后不再调整的周期数
+     */
+    private static final int COOLDOWN = 3;
+
+    /**
+     * 峰值利用率低于该值才缩容
+     */
+    private static final double SHRINK_UTILISATION = 0.5;
+
+    /**
+     * 所有连接池共用的采样线程
+     */
+    private static final ScheduledExecutorService SCHEDULER;
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("redis-pool-sizer-%d").setDaemon(true).build());
+        executor.setRemoveOnCancelPolicy(true);
+        SCHEDULER = executor;
+    }
+
+    private final InstrumentedShardedJedisPool pool;
+
+    private final String name;
+
+    /**
+     * 为false时暂停自动调整，保持当前大小
+     */
+    private volatile boolean enabled = true;
+
+    // 以下上下限由this保护
+
+    private int minTotal;
+
+    private int maxTotal;
+
+    /**
+     * 配置的最大空闲连接数，缩容时不超过连接池大小
+     */
+    private int maxIdle;
+
+    /**
+     * 借用耗时p99的目标：微秒
+     */
+    private final long targetWaitMicros;
+
+    /**
+     * 每个调整周期的采样次数
+     */
+    private final int samplesPerInterval;
+
+    private final ScheduledFuture<?> future;
+
+    // 以下状态只在采样线程中访问
+
+    private int samples = 0;
+
+    private int peakActive = 0;
+
+    private int peakWaiters = 0;
+
+    // 以下状态由this保护
+
+    private int growStreak = 0;
+
+    private int shrinkStreak = 0;
+
+    private int cooldown = 0;
+
+    /**
+     * @param pool
+     * @param name             : group名，用于日志
+     * @param minTotal         : 连接池大小下限(所有shard合计)
+     * @param maxTotal         : 连接池大小上限(所有shard合计)
+     * @param intervalMillis   : 调整周期：毫秒
+     * @param targetWaitMicros : 借用耗时p99的目标：微秒
+     */
+    AdaptivePoolSizer(InstrumentedShardedJedisPool pool, String name, int minTotal, int maxTotal,
+                      long intervalMillis, long targetWaitMicros) {
+        Preconditions.checkArgument(minTotal > 0 && minTotal <= maxTotal, "Adaptive pool bounds are invalid.");
+        Preconditions.checkArgument(intervalMillis >= SAMPLE_MILLIS, "Adaptive pool interval must be at least %s ms.",
+                SAMPLE_MILLIS);
+        Preconditions.checkArgument(targetWaitMicros > 0, "Adaptive pool target wait must be positive.");
+        this.pool = pool;
+        this.name = name;
+        this.minTotal = minTotal;
+        this.maxTotal = maxTotal;
+        this.maxIdle = pool.getMaxIdle();
+        this.targetWaitMicros = targetWaitMicros;
+        this.samplesPerInterval = (int) (intervalMillis / SAMPLE_MILLIS);
+        int current = pool.getMaxTotal();
+        if (current < minTotal || current > maxTotal) {
+            resize(current, Math.max(minTotal, Math.min(maxTotal, current)));
+        }
+        pool.rotateBorrowWindow();
+        this.future = SCHEDULER.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 暂停或恢复自动调整
+     *
+     * @param enabled
+     */
+    synchronized void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            // 丢弃暂停期间的借用耗时和压力计数
+            pool.rotateBorrowWindow();
+            growStreak = 0;
+            shrinkStreak = 0;
+        }
+        this.enabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    synchronized int getMinTotal() {
+        return minTotal;
+    }
+
+    synchronized int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * 手动调整连接池大小，并作为自动调整的上限；下限大于该值时一并降低
+     *
+     * @param size
+     */
+    synchronized void setMaxTotal(int size) {
+        Preconditions.checkArgument(size > 0, "Pool max total must be positive.");
+        maxTotal = size;
+        minTotal = Math.min(minTotal, size);
+        resize(pool.getMaxTotal(), size);
+    }
+
+    /**
+     * 手动调整最大空闲连接数，自动调整时也使用该值
+     *
+     * @param size
+     */
+    synchronized void setMaxIdle(int size) {
+        maxIdle = size;
+        pool.setMaxIdle(Math.min(size, pool.getMaxTotal()));
+    }
+
+    /**
+     * 停止自动调整，连接池保持当前大小
+     */
+    @Override
+    public void close() {
+        future.cancel(false);
+    }
+
+    private void sample() {
+        if (pool.isClosed()) {
+            future.cancel(false);
+            return;
+        }
+        if (!enabled) {
+            samples = 0;
+            peakActive = 0;
+            peakWaiters = 0;
+            return;
+        }
+        peakActive = Math.max(peakActive, pool.getNumActive());
+        peakWaiters = Math.max(peakWaiters, pool.getNumWaiters());
+        if (++samples >= samplesPerInterval) {
+            adjust();
+            samples = 0;
+            peakActive = 0;
+            peakWaiters = 0;
+        }
+    }
+
+    private synchronized void adjust() {
+        LatencyHistogram window = pool.rotateBorrowWindow();
+        long p99 = window == null ? 0 : window.percentile(0.99);
+        int current = pool.getMaxTotal();
+        if (cooldown > 0) {
+            cooldown--;
+            return;
+        }
+        boolean pressure = p99 >= targetWaitMicros || peakWaiters > 0;
+        boolean idle = p99 < targetWaitMicros / 4 && peakActive < current * SHRINK_UTILISATION;
+        growStreak = pressure ? growStreak + 1 : 0;
+        shrinkStreak = idle ? shrinkStreak + 1 : 0;
+        if (growStreak >= GROW_AFTER && current < maxTotal) {
+            resize(current, Math.min(maxTotal, current + Math.max(1, current / 4)));
+            LOGGER.info("Redis pool " + name + " grown to " + pool.getMaxTotal() + ", borrow p99=" + p99
+                    + "us, peak active=" + peakActive + ", peak waiters=" + peakWaiters);
+        } else if (shrinkStreak >= SHRINK_AFTER && current > minTotal) {
+            resize(current, Math.max(minTotal, current - Math.max(1, current / 8)));
+            LOGGER.info("Redis pool " + name + " shrunk to " + pool.getMaxTotal() + ", borrow p99=" + p99
+                    + "us, peak active=" + peakActive);
+        }
+    }
+
+    private void resize(int current, int size) {
+        if (size == current) {
+            return;
+        }
+        pool.setMaxTotal(size);
+        pool.setMaxIdle(Math.min(maxIdle, size));
+        growStreak = 0;
+        shrinkStreak = 0;
+        cooldown = COOLDOWN;
+    }
+}
@@ -2,14 +2,30 @@ package net.common.data.redis.client;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.common.data.redis.monitor.SlowLog;
+import net.common.utils.codec.HessianCodecUtil;
 import redis.clients.jedis.BinaryShardedJedis;
+import redis.clients.jedis.Builder;
+import redis.clients.jedis.BuilderFactory;
 import redis.clients.jedis.Client;
-import redis.clients.jedis.ShardedJedisPipeline;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.exceptions.JedisException;
 import redis.clients.util.SafeEncoder;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p/>
@@ -17,7 +33,7 @@ import java.util.List;
  * Date: 2015/7/1
  * Time: 10:36
  */
-public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
+public abstract class BaseShardedJedisPipeline {
 
     /**
      * jedis连接
@@ -28,6 +44,36 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      */
     private List<FutureResult> shardedResults = new ArrayList<FutureResult>();
 
+    /**
+     * 是否已经读取了所有应答
+     */
+    private boolean synced = false;
+
+    /**
+     * 多shard时并行读取应答的线程池，为null时按顺序逐个shard读取
+     */
+    private ExecutorService drainExecutor;
+
+    /**
+     * 客户端慢命令日志，为null时不记录
+     */
+    private SlowLog slowLog;
+
+    /**
+     * 借用连接时等待连接池的耗时
+     */
+    private long poolWaitNanos;
+
+    /**
+     * setex、expire和setObject的过期时间抖动，为null时使用精确的过期时间
+     */
+    private TtlJitter ttlJitter;
+
+    /**
+     * 写命令的key的监听，为null时不通知
+     */
+    private WriteListener writeListener;
+
     /**
      * 调用pipeline的方法名字 : 用于性能监控，有默认值
      */
@@ -39,10 +85,48 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
     private static final String PIPELINE_NAME_PREMIX = "RedisPipeline_";
 
     private static final String METHOD_NAME_SET = "set";
+    private static final String METHOD_NAME_SETEX = "setex";
     private static final String METHOD_NAME_GET = "get";
     private static final String METHOD_NAME_DEL = "del";
     private static final String METHOD_NAME_EXPIRE = "expire";
     private static final String METHOD_NAME_INCRBY = "incrBy";
+    private static final String METHOD_NAME_HSET = "hset";
+    private static final String METHOD_NAME_HGET = "hget";
+    private static final String METHOD_NAME_HDEL = "hdel";
+    private static final String METHOD_NAME_HINCRBY = "hincrBy";
+    private static final String METHOD_NAME_HEXISTS = "hexists";
+    private static final String METHOD_NAME_HLEN = "hlen";
+    private static final String METHOD_NAME_HMGET = "hmget";
+    private static final String METHOD_NAME_HGETALL = "hgetAll";
+    private static final String METHOD_NAME_HKEYS = "hkeys";
+    private static final String METHOD_NAME_HVALS = "hvals";
+    private static final String METHOD_NAME_SADD = "sadd";
+    private static final String METHOD_NAME_SREM = "srem";
+    private static final String METHOD_NAME_SCARD = "scard";
+    private static final String METHOD_NAME_SISMEMBER = "sismember";
+    private static final String METHOD_NAME_SMEMBERS = "smembers";
+    private static final String METHOD_NAME_SADD_OBJECT = "saddObject";
+    private static final String METHOD_NAME_SISMEMBER_OBJECT = "sismemberObject";
+    private static final String METHOD_NAME_SMEMBERS_OBJECT = "smembersObject";
+    private static final String METHOD_NAME_LLEN = "llen";
+    private static final String METHOD_NAME_RPUSH = "rpush";
+    private static final String METHOD_NAME_LPUSH = "lpush";
+    private static final String METHOD_NAME_LRANGE = "lrange";
+    private static final String METHOD_NAME_LINDEX = "lindex";
+    private static final String METHOD_NAME_LPOP = "lpop";
+    private static final String METHOD_NAME_RPOP = "rpop";
+    private static final String METHOD_NAME_LTRIM = "ltrim";
+    private static final String METHOD_NAME_LSET = "lset";
+    private static final String METHOD_NAME_LREM = "lrem";
+    private static final String METHOD_NAME_ZREVRANK = "zrevrank";
+    private static final String METHOD_NAME_ZCARD = "zcard";
+    private static final String METHOD_NAME_ZREM = "zrem";
+    private static final String METHOD_NAME_ZADD = "zadd";
+    private static final String METHOD_NAME_ZINCRBY = "zincrby";
+    private static final String METHOD_NAME_ZSCORE = "zscore";
+    private static final String METHOD_NAME_ZREVRANGE_WITHSCORES = "zrevrangeWithScores";
+    private static final String METHOD_NAME_SET_OBJECT = "setObject";
+    private static final String METHOD_NAME_GET_OBJECT = "getObject";
 
     public BaseShardedJedisPipeline(String fromMethodName) {
         Preconditions.checkArgument(!Strings.isNullOrEmpty(fromMethodName), "Pipeline must set from method name.");
@@ -58,29 +142,217 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         return this.fromMethodName;
     }
 
-    @Override
+    /**
+     * 设置执行pipeline的jedis连接
+     *
+     * @param jedis
+     */
     public void setShardedJedis(BinaryShardedJedis jedis) {
-        super.setShardedJedis(jedis);
         this.shardedJedis = jedis;
     }
 
-    @Override
-    public List<Object> getResults() {
-        List<Object> r = super.getResults();
+    /**
+     * 设置并行读取应答的线程池
+     *
+     * @param drainExecutor
+     */
+    void setDrainExecutor(ExecutorService drainExecutor) {
+        this.drainExecutor = drainExecutor;
+    }
+
+    /**
+     * 设置慢命令日志
+     *
+     * @param slowLog
+     * @param poolWaitNanos : 借用连接时等待连接池的耗时
+     */
+    void setSlowLog(SlowLog slowLog, long poolWaitNanos) {
+        this.slowLog = slowLog;
+        this.poolWaitNanos = poolWaitNanos;
+    }
+
+    /**
+     * 设置过期时间抖动
+     *
+     * @param ttlJitter
+     */
+    void setTtlJitter(TtlJitter ttlJitter) {
+        this.ttlJitter = ttlJitter;
+    }
+
+    /**
+     * 设置写命令的key的监听：每个写命令加入pipeline之前通知
+     *
+     * @param writeListener
+     */
+    void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    private void written(byte[] key, boolean overwrite) {
+        if (writeListener != null) {
+            writeListener.onWrite(key, overwrite);
+        }
+    }
+
+    private void written(String key, boolean overwrite) {
+        if (writeListener != null) {
+            writeListener.onWrite(SafeEncoder.encode(key), overwrite);
+        }
+    }
+
+    private int jitter(int seconds) {
+        return ttlJitter == null ? seconds : ttlJitter.apply(seconds);
+    }
+
+    /**
+     * 读取所有命令的应答并填入各自的结果句柄，之后可以通过{@link PipelineResponse#get()}获得结果
+     * <p/>
+     * 设置了线程池并且命令分布在多个shard时，各shard的flush和应答读取并行进行，
+     * 耗时取决于最慢的shard而不是所有shard之和
+     */
+    public void sync() {
+        if (synced) {
+            return;
+        }
+        try {
+            if (drainExecutor == null) {
+                drain(shardedResults);
+            } else {
+                drainParallel();
+            }
+        } finally {
+            if (slowLog != null) {
+                recordSlow();
+            }
+        }
+        synced = true;
+    }
+
+    /**
+     * 按shard连接分组，组内保持发送顺序
+     *
+     * @return
+     */
+    private Map<Client, List<FutureResult>> groupByClient() {
+        Map<Client, List<FutureResult>> byClient = new LinkedHashMap<Client, List<FutureResult>>();
         for (FutureResult fr : shardedResults) {
-            r.add(fr.get());
+            List<FutureResult> l = byClient.get(fr.client);
+            if (l == null) {
+                l = new ArrayList<FutureResult>();
+                byClient.put(fr.client, l);
+            }
+            l.add(fr);
+        }
+        return byClient;
+    }
+
+    /**
+     * 按shard记录慢命令：I/O为该shard上所有应答的读取耗时之和，
+     * 结果在调用方读取时才解码，解码耗时不计入
+     */
+    private void recordSlow() {
+        for (Map.Entry<Client, List<FutureResult>> entry : groupByClient().entrySet()) {
+            long ioNanos = 0;
+            for (FutureResult fr : entry.getValue()) {
+                ioNanos += fr.readNanos;
+            }
+            Client c = entry.getKey();
+            slowLog.record(c.getHost() + ":" + c.getPort(),
+                    "pipeline[" + entry.getValue().size() + "]:" + entry.getValue().get(0).methodName,
+                    null, fromMethodName, poolWaitNanos, ioNanos, 0);
+        }
+    }
+
+    /**
+     * 按顺序读取一组应答
+     *
+     * @param results
+     */
+    private static void drain(List<FutureResult> results) {
+        for (FutureResult fr : results) {
+            fr.read();
+        }
+    }
+
+    /**
+     * 按shard连接分组，每组内按发送顺序读取，组之间并行
+     */
+    private void drainParallel() {
+        Map<Client, List<FutureResult>> byClient = groupByClient();
+        if (byClient.size() <= 1) {
+            drain(shardedResults);
+            return;
+        }
+        Iterator<List<FutureResult>> it = byClient.values().iterator();
+        // 第一个shard由当前线程读取，其余提交到线程池
+        List<FutureResult> local = it.next();
+        List<Future<?>> futures = new ArrayList<Future<?>>(byClient.size() - 1);
+        while (it.hasNext()) {
+            final List<FutureResult> group = it.next();
+            futures.add(drainExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    drain(group);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        try {
+            drain(local);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // 必须等所有shard读取结束，调用方才能归还(或作废)连接
+        for (Future<?> f : futures) {
+            try {
+                Uninterruptibles.getUninterruptibly(f);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new JedisException(e.getCause());
+                }
+            }
         }
-        return r;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 按调用顺序获得所有命令的结果，每个结果在读取时才转换/解码
+     *
+     * @return
+     */
+    public List<Object> getResults() {
+        sync();
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int index) {
+                return shardedResults.get(index).response.get();
+            }
+
+            @Override
+            public int size() {
+                return shardedResults.size();
+            }
+        };
     }
 
+    /**
+     * 在这里调用各个pipeline命令
+     */
+    public abstract void execute();
+
     /**
      * 存放key,value均为byte[]的值
      *
      * @param key
      * @param value
+     * @return
      */
-    protected void set(byte[] key, byte[] value) {
-
+    protected PipelineResponse<String> set(byte[] key, byte[] value) {
+        written(key, true);
         String shardInfo = this.shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
@@ -89,7 +361,38 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         try {
             Client c = this.shardedJedis.getShard(key).getClient();
             c.set(key, value);
-            shardedResults.add(new FutureResult(c, METHOD_NAME_SET));
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * 存放key,value均为byte[]的值并设置过期时间
+     *
+     * @param key
+     * @param seconds
+     * @param value
+     * @return
+     */
+    protected PipelineResponse<String> setex(byte[] key, int seconds, byte[] value) {
+        written(key, true);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SETEX);
+        try {
+            Client c = this.shardedJedis.getShard(key).getClient();
+            c.setex(key, jitter(seconds), value);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SETEX, response));
+            return response;
         } catch (Exception e) {
             success = false;
             throw new JedisException(shardInfo, e);
@@ -102,8 +405,9 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      * 获取key为byte[]的值
      *
      * @param key
+     * @return
      */
-    protected void get(byte[] key) {
+    protected PipelineResponse<byte[]> get(byte[] key) {
 
         String shardInfo = this.shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
@@ -113,7 +417,9 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         try {
             Client c = shardedJedis.getShard(key).getClient();
             c.get(key);
-            shardedResults.add(new FutureResult(c, METHOD_NAME_GET));
+            PipelineResponse<byte[]> response = new PipelineResponse<byte[]>(BuilderFactory.BYTE_ARRAY);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_GET, response));
+            return response;
         } catch (Exception e) {
             success = false;
             throw new JedisException(shardInfo, e);
@@ -127,9 +433,38 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      * 删除
      *
      * @param key
+     * @return
      */
-    protected void del(String key) {
+    protected PipelineResponse<Long> del(String key) {
+        written(key, true);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_DEL);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.del(key);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_DEL, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+
+    }
 
+    /**
+     * 删除
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Long> del(byte[] key) {
+        written(key, true);
         String shardInfo = this.shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
@@ -138,7 +473,9 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         try {
             Client c = shardedJedis.getShard(key).getClient();
             c.del(key);
-            shardedResults.add(new FutureResult(c, METHOD_NAME_DEL));
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_DEL, response));
+            return response;
         } catch (Exception e) {
             success = false;
             throw new JedisException(shardInfo, e);
@@ -153,9 +490,10 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      *
      * @param key
      * @param seconds
+     * @return
      */
-    protected void expire(byte[] key, int seconds) {
-
+    protected PipelineResponse<Long> expire(byte[] key, int seconds) {
+        written(key, false);
         String shardInfo = this.shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
@@ -163,8 +501,10 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_EXPIRE);
         try {
             Client c = shardedJedis.getShard(key).getClient();
-            c.expire(key, seconds);
-            shardedResults.add(new FutureResult(c, METHOD_NAME_EXPIRE));
+            c.expire(key, jitter(seconds));
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_EXPIRE, response));
+            return response;
         } catch (Exception e) {
             success = false;
             throw new JedisException(shardInfo, e);
@@ -179,9 +519,10 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      *
      * @param key
      * @param seconds
+     * @return
      */
-    protected void expire(String key, int seconds) {
-        expire(SafeEncoder.encode(key), seconds);
+    protected PipelineResponse<Long> expire(String key, int seconds) {
+        return expire(SafeEncoder.encode(key), seconds);
     }
 
     /**
@@ -189,8 +530,10 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      *
      * @param key
      * @param integer
+     * @return
      */
-    protected void incrBy(byte[] key, long integer) {
+    protected PipelineResponse<Long> incrBy(byte[] key, long integer) {
+        written(key, false);
         String shardInfo = this.shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
@@ -199,7 +542,9 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
         try {
             Client c = shardedJedis.getShard(key).getClient();
             c.incrBy(key, integer);
-            shardedResults.add(new FutureResult(c, METHOD_NAME_INCRBY));
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_INCRBY, response));
+            return response;
         } catch (Exception e) {
             success = false;
             throw new JedisException(shardInfo, e);
@@ -213,55 +558,1239 @@ public abstract class BaseShardedJedisPipeline extends ShardedJedisPipeline {
      *
      * @param key
      * @param integer
+     * @return
      */
-    protected void incrBy(String key, long integer) {
-        incrBy(SafeEncoder.encode(key), integer);
+    protected PipelineResponse<Long> incrBy(String key, long integer) {
+        return incrBy(SafeEncoder.encode(key), integer);
     }
 
     /**
-     * 这里父类 ShardedJedisPipeline中也有，因为父类中是private的，而且不好改源码，所以冗余定义一下
+     * Map操作：设置某个map中的指定数据
+     *
+     * @param key
+     * @param field
+     * @param value
+     * @return
      */
-    private class FutureResult {
-
-        /**
-         * Rdis client
-         */
-        private Client client;
-
-        /**
-         * 方法名
-         */
-        private String methodName;
+    protected PipelineResponse<Long> hset(String key, String field, String value) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HSET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hset(key, field, value);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HSET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
 
-        public FutureResult(Client client, String methodName) {
-            this.client = client;
-            this.methodName = methodName;
+    /**
+     * Map操作：设置某个map中的指定数据，基于byte[]
+     *
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    protected PipelineResponse<Long> hset(byte[] key, byte[] field, byte[] value) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HSET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hset(key, field, value);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HSET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
         }
+    }
 
-        public Object get() {
-            String hostInfo = client.getHost() + ":" + client.getPort();
-            // 性能监控数据初始化
-            final long st = System.nanoTime();
-            boolean success = true;
-            String itemName = genProbeItemName(hostInfo, PIPELINE_NAME_PREMIX + "FutureResult_" + methodName);
-            try {
-                return client.getOne();
-            } finally {
-//                ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
-            }
+    /**
+     * Map操作：获得某个map中的指定数据
+     *
+     * @param key
+     * @param field
+     * @return
+     */
+    protected PipelineResponse<String> hget(String key, String field) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HGET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hget(key, field);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HGET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
         }
     }
 
     /**
-     * 生成监控的itemName
+     * Map操作：获得某个map中的指定数据，基于byte[]
      *
-     * @param shardInfo  : JedisShardInfo,获取 host+port
-     * @param methodName : 方法名
+     * @param key
+     * @param field
      * @return
      */
-    private static String genProbeItemName(String shardInfo, String methodName) {
-        return shardInfo + ":" + methodName;
+    protected PipelineResponse<byte[]> hget(byte[] key, byte[] field) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HGET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hget(key, field);
+            PipelineResponse<byte[]> response = new PipelineResponse<byte[]>(BuilderFactory.BYTE_ARRAY);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HGET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
     }
 
+    /**
+     * Map操作：删除哈希表key中的指定域
+     *
+     * @param key
+     * @param field
+     * @return
+     */
+    protected PipelineResponse<Long> hdel(String key, String field) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HDEL);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hdel(key, field);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HDEL, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：删除哈希表key中的指定域，基于byte[]
+     *
+     * @param key
+     * @param field
+     * @return
+     */
+    protected PipelineResponse<Long> hdel(byte[] key, byte[] field) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HDEL);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hdel(key, field);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HDEL, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：为map中某个key的值incr
+     *
+     * @param key
+     * @param field
+     * @param value
+     * @return
+     */
+    protected PipelineResponse<Long> hincrBy(String key, String field, long value) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HINCRBY);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hincrBy(key, field, value);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HINCRBY, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：查看哈希表key中，给定域field是否存在
+     *
+     * @param key
+     * @param field
+     * @return
+     */
+    protected PipelineResponse<Boolean> hexists(String key, String field) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HEXISTS);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hexists(key, field);
+            PipelineResponse<Boolean> response = new PipelineResponse<Boolean>(BuilderFactory.BOOLEAN);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HEXISTS, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：返回对应的field的数量
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Long> hlen(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HLEN);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hlen(key);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HLEN, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：获取多个field
+     *
+     * @param key
+     * @param fields
+     * @return
+     */
+    protected PipelineResponse<List<String>> hmget(String key, String... fields) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HMGET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hmget(key, fields);
+            PipelineResponse<List<String>> response = new PipelineResponse<List<String>>(BuilderFactory.STRING_LIST);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HMGET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：获得某个map中所有的数据
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Map<String, String>> hgetAll(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HGETALL);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hgetAll(key);
+            PipelineResponse<Map<String, String>> response = new PipelineResponse<Map<String, String>>(BuilderFactory.STRING_MAP);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HGETALL, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：获得哈希表中key对应的所有field
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Set<String>> hkeys(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HKEYS);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hkeys(key);
+            PipelineResponse<Set<String>> response = new PipelineResponse<Set<String>>(BuilderFactory.STRING_SET);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HKEYS, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Map操作：获得哈希表中key对应的所有values
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<List<String>> hvals(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_HVALS);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.hvals(key);
+            PipelineResponse<List<String>> response = new PipelineResponse<List<String>>(BuilderFactory.STRING_LIST);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_HVALS, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：增加String对象
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Long> sadd(String key, String member) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SADD);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.sadd(key, member);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SADD, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：删除String对象
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Long> srem(String key, String member) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SREM);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.srem(key, member);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SREM, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：获取Set的成员数量
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Long> scard(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SCARD);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.scard(key);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SCARD, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：查询Set中某成员是否存在
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Boolean> sismember(String key, String member) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SISMEMBER);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.sismember(key, member);
+            PipelineResponse<Boolean> response = new PipelineResponse<Boolean>(BuilderFactory.BOOLEAN);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SISMEMBER, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：获取所有Set成员（String类型成员）
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Set<String>> smembers(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SMEMBERS);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.smembers(key);
+            PipelineResponse<Set<String>> response = new PipelineResponse<Set<String>>(BuilderFactory.STRING_SET);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SMEMBERS, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：增加一个对象成员
+     *
+     * @param key
+     * @param value
+     * @param <T>
+     * @return
+     */
+    protected <T extends Serializable> PipelineResponse<Long> saddObject(String key, T value) {
+        written(key, false);
+        final byte[] keyBytes = SafeEncoder.encode(key);
+        String shardInfo = this.shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SADD_OBJECT);
+        try {
+            Client c = shardedJedis.getShard(keyBytes).getClient();
+            c.sadd(keyBytes, HessianCodecUtil.encode(value));
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SADD_OBJECT, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：查询Set中某成员是否存在 (Serializable成员 ：Object类型)
+     *
+     * @param key
+     * @param value
+     * @param <T>
+     * @return
+     */
+    protected <T extends Serializable> PipelineResponse<Boolean> sismemberObject(String key, T value) {
+        final byte[] keyBytes = SafeEncoder.encode(key);
+        String shardInfo = this.shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SISMEMBER_OBJECT);
+        try {
+            Client c = shardedJedis.getShard(keyBytes).getClient();
+            c.sismember(keyBytes, HessianCodecUtil.encode(value));
+            PipelineResponse<Boolean> response = new PipelineResponse<Boolean>(BuilderFactory.BOOLEAN);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SISMEMBER_OBJECT, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * Set操作：获取所有Set成员(Serializable成员 ：Object类型)
+     *
+     * @param key
+     * @return
+     */
+    protected <T extends Serializable> PipelineResponse<Set<T>> smembersObject(String key) {
+        final byte[] keyBytes = SafeEncoder.encode(key);
+        String shardInfo = this.shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SMEMBERS_OBJECT);
+        try {
+            Client c = shardedJedis.getShard(keyBytes).getClient();
+            c.smembers(keyBytes);
+            PipelineResponse<Set<T>> response = new PipelineResponse<Set<T>>(BaseShardedJedisPipeline.<T>hessianObjectSet());
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SMEMBERS_OBJECT, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：返回列表长度
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Long> llen(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LLEN);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.llen(key);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LLEN, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：从列表尾部插入值
+     *
+     * @param key
+     * @param string
+     * @return
+     */
+    protected PipelineResponse<Long> rpush(String key, String string) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_RPUSH);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.rpush(key, string);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_RPUSH, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：从列表首部插入值
+     *
+     * @param key
+     * @param string
+     * @return
+     */
+    protected PipelineResponse<Long> lpush(String key, String string) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LPUSH);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lpush(key, string);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LPUSH, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：取出指定长度的内容，－1表示最后一位，-2表示倒数第二位
+     *
+     * @param key
+     * @param start
+     * @param end
+     * @return
+     */
+    protected PipelineResponse<List<String>> lrange(String key, long start, long end) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LRANGE);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lrange(key, start, end);
+            PipelineResponse<List<String>> response = new PipelineResponse<List<String>>(BuilderFactory.STRING_LIST);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LRANGE, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：获得指定位置的内容
+     *
+     * @param key
+     * @param index
+     * @return
+     */
+    protected PipelineResponse<String> lindex(String key, long index) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LINDEX);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lindex(key, index);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LINDEX, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：从列表首部删除一个元素
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<String> lpop(String key) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LPOP);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lpop(key);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LPOP, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：从列表尾部删除一个元素
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<String> rpop(String key) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_RPOP);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.rpop(key);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_RPOP, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：对一个列表进行修剪(trim)，只保留指定区间内的元素
+     *
+     * @param key
+     * @param start
+     * @param end
+     * @return
+     */
+    protected PipelineResponse<String> ltrim(String key, long start, long end) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LTRIM);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.ltrim(key, start, end);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LTRIM, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：将列表key下标为index的元素的值设置为value
+     *
+     * @param key
+     * @param index
+     * @param value
+     * @return
+     */
+    protected PipelineResponse<String> lset(String key, long index, String value) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LSET);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lset(key, index, value);
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LSET, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * List操作：根据参数count的值，移除列表中与参数value相等的元素
+     *
+     * @param key
+     * @param count
+     * @param value
+     * @return
+     */
+    protected PipelineResponse<Long> lrem(String key, long count, String value) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_LREM);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.lrem(key, count, value);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_LREM, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：获取数据成员的索引，按照反排序（最大的成员索引最小）
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Long> zrevrank(String key, String member) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZREVRANK);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zrevrank(key, member);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZREVRANK, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：获取set中成员总数
+     *
+     * @param key
+     * @return
+     */
+    protected PipelineResponse<Long> zcard(String key) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZCARD);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zcard(key);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZCARD, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：删除一个成员
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Long> zrem(String key, String member) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZREM);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zrem(key, member);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZREM, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：增加一个成员，已存在时更新分数
+     *
+     * @param key
+     * @param score
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Long> zadd(String key, double score, String member) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZADD);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zadd(key, score, member);
+            PipelineResponse<Long> response = new PipelineResponse<Long>(BuilderFactory.LONG);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZADD, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：为成员的分数加上增量
+     *
+     * @param key
+     * @param increment
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Double> zincrby(String key, double increment, String member) {
+        written(key, false);
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZINCRBY);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zincrby(key, increment, member);
+            PipelineResponse<Double> response = new PipelineResponse<Double>(BuilderFactory.DOUBLE);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZINCRBY, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：获取成员的分数
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    protected PipelineResponse<Double> zscore(String key, String member) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZSCORE);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zscore(key, member);
+            PipelineResponse<Double> response = new PipelineResponse<Double>(BuilderFactory.DOUBLE);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZSCORE, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：按反排序获取指定名次区间的成员和分数
+     *
+     * @param key
+     * @param start
+     * @param end
+     * @return
+     */
+    protected PipelineResponse<Set<Tuple>> zrevrangeWithScores(String key, long start, long end) {
+        String shardInfo = this.shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_ZREVRANGE_WITHSCORES);
+        try {
+            Client c = shardedJedis.getShard(key).getClient();
+            c.zrevrangeWithScores(key, start, end);
+            PipelineResponse<Set<Tuple>> response = new PipelineResponse<Set<Tuple>>(BuilderFactory.TUPLE_ZSET);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_ZREVRANGE_WITHSCORES, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * 添加对象，expireSeconds不大于0时不设置过期时间
+     *
+     * @param key
+     * @param value
+     * @param expireSeconds
+     * @param <T>
+     * @return
+     */
+    protected <T extends Serializable> PipelineResponse<String> setObject(String key, T value, int expireSeconds) {
+        written(key, true);
+        final byte[] keyBytes = SafeEncoder.encode(key);
+        final byte[] valueBytes = HessianCodecUtil.encode(value);
+        String shardInfo = this.shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_SET_OBJECT);
+        try {
+            Client c = shardedJedis.getShard(keyBytes).getClient();
+            if (expireSeconds > 0) {
+                c.setex(keyBytes, jitter(expireSeconds), valueBytes);
+            } else {
+                //不设置过期时间
+                c.set(keyBytes, valueBytes);
+            }
+            PipelineResponse<String> response = new PipelineResponse<String>(BuilderFactory.STRING);
+            shardedResults.add(new FutureResult(c, METHOD_NAME_SET_OBJECT, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * 查询对象
+     *
+     * @param key
+     * @return
+     */
+    protected <T extends Serializable> PipelineResponse<T> getObject(String key) {
+        final byte[] keyBytes = SafeEncoder.encode(key);
+        String shardInfo = this.shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        String itemName = this.genProbeItemName(shardInfo, PIPELINE_NAME_PREMIX + METHOD_NAME_GET_OBJECT);
+        try {
+            Client c = shardedJedis.getShard(keyBytes).getClient();
+            c.get(keyBytes);
+            PipelineResponse<T> response = new PipelineResponse<T>(BaseShardedJedisPipeline.<T>hessianObject());
+            shardedResults.add(new FutureResult(c, METHOD_NAME_GET_OBJECT, response));
+            return response;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+    }
+
+    /**
+     * 一个待读取的pipeline结果：结果按命令发送的顺序从对应shard的连接上读取
+     */
+    private class FutureResult {
+
+        /**
+         * Rdis client
+         */
+        private Client client;
+
+        /**
+         * 方法名
+         */
+        private String methodName;
+
+        /**
+         * 结果句柄
+         */
+        private PipelineResponse<?> response;
+
+        /**
+         * 读取应答的耗时
+         */
+        private long readNanos;
+
+        public FutureResult(Client client, String methodName, PipelineResponse<?> response) {
+            this.client = client;
+            this.methodName = methodName;
+            this.response = response;
+        }
+
+        /**
+         * 从连接上读取一个应答并填入结果句柄
+         */
+        public void read() {
+            String hostInfo = client.getHost() + ":" + client.getPort();
+            // 性能监控数据初始化
+            final long st = System.nanoTime();
+            boolean success = true;
+            String itemName = genProbeItemName(hostInfo, PIPELINE_NAME_PREMIX + "FutureResult_" + methodName);
+            try {
+                response.set(client.getOne());
+            } catch (JedisDataException e) {
+                // 命令本身的错误应答已经被完整读取，不影响后续结果
+                response.setException(e);
+            } finally {
+                readNanos = System.nanoTime() - st;
+//                ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            }
+        }
+    }
+
+    /**
+     * Hessian解码单个对象
+     *
+     * @param <T>
+     * @return
+     */
+    private static <T> Builder<T> hessianObject() {
+        return new Builder<T>() {
+            @Override
+            public T build(Object data) {
+                return data == null ? null : (T) HessianCodecUtil.decode((byte[]) data);
+            }
+        };
+    }
+
+    /**
+     * Hessian解码Set成员
+     *
+     * @param <T>
+     * @return
+     */
+    private static <T> Builder<Set<T>> hessianObjectSet() {
+        return new Builder<Set<T>>() {
+            @Override
+            public Set<T> build(Object data) {
+                if (data == null) {
+                    return null;
+                }
+                List<byte[]> l = (List<byte[]>) data;
+                Set<T> result = new HashSet<T>(l.size());
+                for (byte[] b : l) {
+                    result.add((T) HessianCodecUtil.decode(b));
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * 生成监控的itemName
+     *
+     * @param shardInfo  : JedisShardInfo,获取 host+port
+     * @param methodName : 方法名
+     * @return
+     */
+    private static String genProbeItemName(String shardInfo, String methodName) {
+        return shardInfo + ":" + methodName;
+    }
+
+
+
+    /**
+     * 写命令的key的监听
+     */
+    interface WriteListener {
+
+        /**
+         * 写命令加入pipeline之前调用，抛出异常时该命令不加入pipeline
+         *
+         * @param key
+         * @param overwrite : 是否整体覆盖或删除key(set、setex、del、setObject)，否则是部分修改
+         */
+        void onWrite(byte[] key, boolean overwrite);
+    }
 
 }
@@ -0,0 +1,273 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import net.common.utils.codec.HessianCodecUtil;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 对象与Hash之间的映射：每个bean属性(同时有getter和setter)对应一个Hash field
+ * <p/>
+ * String、基本类型及其包装类型、枚举按文本存储(数值field可以直接HINCRBY)，其它类型使用Hessian编码；
+ * 值为null的属性不存储。每个类只内省一次，属性访问器缓存在本类中
+ */
+final class BeanHashMapping {
+
+    private static final ConcurrentMap<Class<?>, BeanHashMapping> MAPPINGS = new ConcurrentHashMap<Class<?>, BeanHashMapping>();
+
+    /**
+     * 映射的类
+     */
+    private final Class<?> type;
+
+    /**
+     * field名 -> 属性
+     */
+    private final Map<String, Property> properties;
+
+    private BeanHashMapping(Class<?> type) {
+        this.type = type;
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(type, Object.class);
+        } catch (IntrospectionException e) {
+            throw new JedisException("Can't introspect " + type.getName(), e);
+        }
+        Map<String, Property> map = new LinkedHashMap<String, Property>();
+        for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+            Method readMethod = descriptor.getReadMethod();
+            Method writeMethod = descriptor.getWriteMethod();
+            if (readMethod == null || writeMethod == null) {
+                continue;
+            }
+            readMethod.setAccessible(true);
+            writeMethod.setAccessible(true);
+            map.put(descriptor.getName(), new Property(descriptor.getName(), descriptor.getPropertyType(), readMethod, writeMethod));
+        }
+        this.properties = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 获得类的映射，第一次使用时内省并缓存
+     *
+     * @param type
+     * @return
+     */
+    static BeanHashMapping of(Class<?> type) {
+        BeanHashMapping mapping = MAPPINGS.get(type);
+        if (mapping == null) {
+            BeanHashMapping created = new BeanHashMapping(type);
+            mapping = MAPPINGS.putIfAbsent(type, created);
+            if (mapping == null) {
+                mapping = created;
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * 获得属性，不存在时抛出IllegalArgumentException
+     *
+     * @param name
+     * @return
+     */
+    Property property(String name) {
+        Property property = properties.get(name);
+        Preconditions.checkArgument(property != null, "%s has no read/write property named %s", type.getName(), name);
+        return property;
+    }
+
+    /**
+     * 编码对象的所有非null属性
+     *
+     * @param bean
+     * @return
+     */
+    Map<byte[], byte[]> encode(Object bean) {
+        Map<byte[], byte[]> hash = new LinkedHashMap<byte[], byte[]>(properties.size() * 2);
+        for (Property property : properties.values()) {
+            byte[] value = property.encode(property.read(bean));
+            if (value != null) {
+                hash.put(property.field, value);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 由HGETALL的结果创建对象，Hash为空时返回null
+     *
+     * @param hash
+     * @return
+     */
+    Object decode(Map<byte[], byte[]> hash) {
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        Object bean = newInstance();
+        for (Map.Entry<byte[], byte[]> entry : hash.entrySet()) {
+            Property property = properties.get(SafeEncoder.encode(entry.getKey()));
+            if (property != null) {
+                // 忽略类中已经不存在的field
+                property.write(bean, property.decode(entry.getValue()));
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * 由HMGET的结果创建对象，只设置读取的属性；所有field都不存在时返回null
+     *
+     * @param fields
+     * @param values
+     * @return
+     */
+    Object decode(List<Property> fields, List<byte[]> values) {
+        Object bean = null;
+        for (int i = 0; i < fields.size(); i++) {
+            byte[] value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            if (bean == null) {
+                bean = newInstance();
+            }
+            Property property = fields.get(i);
+            property.write(bean, property.decode(value));
+        }
+        return bean;
+    }
+
+    private Object newInstance() {
+        try {
+            return type.newInstance();
+        } catch (Exception e) {
+            throw new JedisException(type.getName() + " must have a public no-arg constructor", e);
+        }
+    }
+
+    /**
+     * 一个bean属性及其缓存的访问器
+     */
+    static final class Property {
+
+        /**
+         * 属性名
+         */
+        final String name;
+
+        /**
+         * 编码后的field名
+         */
+        final byte[] field;
+
+        private final Class<?> propertyType;
+
+        private final Method readMethod;
+
+        private final Method writeMethod;
+
+        /**
+         * 是否按文本存储
+         */
+        private final boolean text;
+
+        Property(String name, Class<?> propertyType, Method readMethod, Method writeMethod) {
+            this.name = name;
+            this.field = SafeEncoder.encode(name);
+            this.propertyType = propertyType;
+            this.readMethod = readMethod;
+            this.writeMethod = writeMethod;
+            this.text = isText(propertyType);
+        }
+
+        Object read(Object bean) {
+            try {
+                return readMethod.invoke(bean);
+            } catch (Exception e) {
+                throw new JedisException("Can't read property " + name, e);
+            }
+        }
+
+        void write(Object bean, Object value) {
+            if (value == null && propertyType.isPrimitive()) {
+                return;
+            }
+            try {
+                writeMethod.invoke(bean, value);
+            } catch (Exception e) {
+                throw new JedisException("Can't write property " + name, e);
+            }
+        }
+
+        /**
+         * 编码属性值，null返回null
+         *
+         * @param value
+         * @return
+         */
+        byte[] encode(Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (text) {
+                return SafeEncoder.encode(propertyType.isEnum() ? ((Enum<?>) value).name() : String.valueOf(value));
+            }
+            return HessianCodecUtil.encode(value);
+        }
+
+        /**
+         * 按属性类型解码
+         *
+         * @param bytes
+         * @return
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Object decode(byte[] bytes) {
+            if (!text) {
+                return HessianCodecUtil.decode(bytes);
+            }
+            String str = SafeEncoder.encode(bytes);
+            Class<?> t = propertyType;
+            if (t == String.class) {
+                return str;
+            } else if (t == int.class || t == Integer.class) {
+                return Integer.valueOf(str);
+            } else if (t == long.class || t == Long.class) {
+                return Long.valueOf(str);
+            } else if (t == double.class || t == Double.class) {
+                return Double.valueOf(str);
+            } else if (t == float.class || t == Float.class) {
+                return Float.valueOf(str);
+            } else if (t == boolean.class || t == Boolean.class) {
+                return Boolean.valueOf(str);
+            } else if (t == short.class || t == Short.class) {
+                return Short.valueOf(str);
+            } else if (t == byte.class || t == Byte.class) {
+                return Byte.valueOf(str);
+            } else if (t == char.class || t == Character.class) {
+                return str.isEmpty() ? null : str.charAt(0);
+            } else {
+                return Enum.valueOf((Class<? extends Enum>) t, str);
+            }
+        }
+
+        private static boolean isText(Class<?> t) {
+            return t == String.class || t.isPrimitive() || t.isEnum()
+                    || t == Integer.class || t == Long.class || t == Double.class || t == Float.class
+                    || t == Boolean.class || t == Short.class || t == Byte.class || t == Character.class;
+        }
+    }
+}
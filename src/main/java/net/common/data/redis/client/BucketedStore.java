@@ -0,0 +1,201 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import net.common.data.redis.IRedis;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把大量小key分桶存放到固定数量的Hash中
+ * <p/>
+ * 每个逻辑key按 hash(key) mod 桶数 落到 prefix + 桶号 的Hash里，逻辑key作为field。
+ * 每个桶的field数保持在hash-max-ziplist-entries以下、field和value的长度都不超过hash-max-ziplist-value时，
+ * Redis使用紧凑的ziplist编码，省去了每个key的dict entry、redisObject和过期字典的开销；
+ * 任一条件不满足时整个桶转为普通的hashtable编码，分桶就失去了意义，所以写入时检查长度。
+ * <p/>
+ * 过期时间只能设置在桶上：每次写入把整个桶续期为ttl，桶在ttl内没有任何写入才会整体过期；
+ * 需要单个key精确过期的数据不适合分桶
+ */
+public class BucketedStore {
+
+    /**
+     * 每个桶的默认平均field数：Redis默认的hash-max-ziplist-entries(128)的一半，
+     * key在桶之间的分布有波动，平均值太接近128时会有不少桶超出
+     */
+    public static final int DEFAULT_ENTRIES_PER_BUCKET = 64;
+
+    /**
+     * field和value的默认最大长度：字节，与Redis默认的hash-max-ziplist-value一致
+     */
+    public static final int DEFAULT_MAX_VALUE_BYTES = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final IRedis redis;
+
+    /**
+     * 桶key前缀
+     */
+    private final String prefix;
+
+    /**
+     * 桶数
+     */
+    private final int bucketCount;
+
+    /**
+     * 桶的过期时间：秒，0表示不过期
+     */
+    private final int bucketTtlSeconds;
+
+    /**
+     * field和value的最大长度：字节，0表示不检查
+     */
+    private final int maxValueBytes;
+
+    /**
+     * field和value的最大长度为 {@link #DEFAULT_MAX_VALUE_BYTES}
+     *
+     * @param redis
+     * @param prefix           : 桶key前缀，桶key为 prefix + 桶号
+     * @param bucketCount      : 桶数，数据写入后不能再修改
+     * @param bucketTtlSeconds : 桶的过期时间：秒，0表示不过期
+     */
+    public BucketedStore(IRedis redis, String prefix, int bucketCount, int bucketTtlSeconds) {
+        this(redis, prefix, bucketCount, bucketTtlSeconds, DEFAULT_MAX_VALUE_BYTES);
+    }
+
+    /**
+     * @param redis
+     * @param prefix           : 桶key前缀，桶key为 prefix + 桶号
+     * @param bucketCount      : 桶数，数据写入后不能再修改
+     * @param bucketTtlSeconds : 桶的过期时间：秒，0表示不过期
+     * @param maxValueBytes    : field和value的最大长度：字节，应与server的hash-max-ziplist-value一致，0表示不检查
+     */
+    public BucketedStore(IRedis redis, String prefix, int bucketCount, int bucketTtlSeconds, int maxValueBytes) {
+        Preconditions.checkNotNull(redis, "redis");
+        Preconditions.checkNotNull(prefix, "prefix");
+        Preconditions.checkArgument(bucketCount > 0, "Bucket count must be positive.");
+        Preconditions.checkArgument(bucketTtlSeconds >= 0, "Bucket ttl can't be negative.");
+        Preconditions.checkArgument(maxValueBytes >= 0, "Max value bytes can't be negative.");
+        this.redis = redis;
+        this.prefix = prefix;
+        this.bucketCount = bucketCount;
+        this.bucketTtlSeconds = bucketTtlSeconds;
+        this.maxValueBytes = maxValueBytes;
+    }
+
+    /**
+     * 按预计的key数量创建，每个桶平均 {@link #DEFAULT_ENTRIES_PER_BUCKET} 个field
+     *
+     * @param redis
+     * @param prefix
+     * @param expectedKeys
+     * @param bucketTtlSeconds
+     * @return
+     */
+    public static BucketedStore forExpectedKeys(IRedis redis, String prefix, long expectedKeys, int bucketTtlSeconds) {
+        Preconditions.checkArgument(expectedKeys > 0, "Expected keys must be positive.");
+        long buckets = (expectedKeys + DEFAULT_ENTRIES_PER_BUCKET - 1) / DEFAULT_ENTRIES_PER_BUCKET;
+        Preconditions.checkArgument(buckets <= Integer.MAX_VALUE, "Too many expected keys: %s", expectedKeys);
+        return new BucketedStore(redis, prefix, (int) buckets, bucketTtlSeconds);
+    }
+
+    /**
+     * 读取
+     *
+     * @param key
+     * @return
+     */
+    public String get(String key) {
+        return redis.hget(bucketKey(key), key);
+    }
+
+    /**
+     * 写入，同时把所在的桶续期
+     *
+     * @param key
+     * @param value
+     * @throws IllegalArgumentException key或value超过最大长度
+     */
+    public void set(String key, String value) {
+        checkLength("key", key);
+        checkLength("value", value);
+        redis.hset(bucketKey(key), key, value, bucketTtlSeconds);
+    }
+
+    /**
+     * 删除
+     *
+     * @param key
+     * @return
+     */
+    public Long del(String key) {
+        return redis.hdel(bucketKey(key), key);
+    }
+
+    /**
+     * 批量读取：一次pipeline，结果与keys一一对应，不存在的为null
+     *
+     * @param keys
+     * @return
+     */
+    public List<String> mget(final List<String> keys) {
+        final List<PipelineResponse<String>> responses = new ArrayList<PipelineResponse<String>>(keys.size());
+        redis.pipelined(new BaseShardedJedisPipeline("BucketedStore_mget") {
+            @Override
+            public void execute() {
+                for (String key : keys) {
+                    responses.add(hget(bucketKey(key), key));
+                }
+            }
+        });
+        List<String> values = new ArrayList<String>(keys.size());
+        for (PipelineResponse<String> response : responses) {
+            values.add(response.get());
+        }
+        return values;
+    }
+
+    /**
+     * 逻辑key所在的桶key：hash算法固定，不同进程、不同版本计算结果一致
+     *
+     * @param key
+     * @return
+     */
+    public String bucketKey(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return prefix + ((h & Integer.MAX_VALUE) % bucketCount);
+    }
+
+    /**
+     * 超过最大长度的field或value会使整个桶转为hashtable编码
+     *
+     * @param name
+     * @param s
+     */
+    private void checkLength(String name, String s) {
+        // UTF-8每个字符最多3字节(代理对两个char共4字节)，足够短时不需要编码
+        if (maxValueBytes == 0 || s == null || s.length() * 3 <= maxValueBytes) {
+            return;
+        }
+        int bytes = s.getBytes(UTF_8).length;
+        Preconditions.checkArgument(bytes <= maxValueBytes, "Bucketed %s is %s bytes, longer than %s bytes.", name,
+                bytes, maxValueBytes);
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public int getBucketTtlSeconds() {
+        return bucketTtlSeconds;
+    }
+
+    public int getMaxValueBytes() {
+        return maxValueBytes;
+    }
+}
@@ -0,0 +1,128 @@
+package net.common.data.redis.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可重用的ByteBuffer池：按2的幂分级缓存heap buffer，用于大value的读写，避免每次分配新的byte[]
+ * <p/>
+ * 超过最大分级的buffer不缓存，直接分配并在归还时丢弃
+ */
+public class ByteBufferPool {
+
+    /**
+     * 最小分级：4KB
+     */
+    public static final int DEFAULT_MIN_CAPACITY = 4 * 1024;
+
+    /**
+     * 最大分级：8MB
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 8 * 1024 * 1024;
+
+    /**
+     * 每个分级最多缓存的buffer数
+     */
+    public static final int DEFAULT_MAX_PER_CLASS = 16;
+
+    /**
+     * 最小分级的位数
+     */
+    private final int minShift;
+
+    /**
+     * 最大分级容量
+     */
+    private final int maxCapacity;
+
+    /**
+     * 每个分级最多缓存的buffer数
+     */
+    private final int maxPerClass;
+
+    /**
+     * 各分级的空闲buffer
+     */
+    private final List<Queue<ByteBuffer>> free;
+
+    /**
+     * 各分级的空闲buffer数
+     */
+    private final AtomicInteger[] freeCount;
+
+    public ByteBufferPool() {
+        this(DEFAULT_MIN_CAPACITY, DEFAULT_MAX_CAPACITY, DEFAULT_MAX_PER_CLASS);
+    }
+
+    public ByteBufferPool(int minCapacity, int maxCapacity, int maxPerClass) {
+        this.minShift = 32 - Integer.numberOfLeadingZeros(Math.max(1, minCapacity) - 1);
+        int maxShift = 32 - Integer.numberOfLeadingZeros(Math.max(minCapacity, maxCapacity) - 1);
+        this.maxCapacity = 1 << maxShift;
+        this.maxPerClass = maxPerClass;
+        int classes = maxShift - minShift + 1;
+        this.free = new ArrayList<Queue<ByteBuffer>>(classes);
+        this.freeCount = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            free.add(new ConcurrentLinkedQueue<ByteBuffer>());
+            freeCount[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * 获取一个容量不小于capacity的buffer，position为0，limit为capacity
+     *
+     * @param capacity
+     * @return
+     */
+    public ByteBuffer acquire(int capacity) {
+        if (capacity > maxCapacity) {
+            return ByteBuffer.allocate(capacity);
+        }
+        int index = classIndex(capacity);
+        ByteBuffer buffer = free.get(index).poll();
+        if (buffer == null) {
+            return (ByteBuffer) ByteBuffer.allocate(1 << (index + minShift)).limit(capacity);
+        }
+        freeCount[index].decrementAndGet();
+        buffer.clear();
+        buffer.limit(capacity);
+        return buffer;
+    }
+
+    /**
+     * 归还buffer，归还之后调用方不能再使用
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() || buffer.isReadOnly()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if (capacity > maxCapacity || Integer.bitCount(capacity) != 1 || capacity < (1 << minShift)) {
+            // 不是池中分配的buffer
+            return;
+        }
+        int index = classIndex(capacity);
+        if (freeCount[index].incrementAndGet() > maxPerClass) {
+            freeCount[index].decrementAndGet();
+            return;
+        }
+        free.get(index).offer(buffer);
+    }
+
+    /**
+     * 容量对应的分级
+     *
+     * @param capacity
+     * @return
+     */
+    private int classIndex(int capacity) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1);
+        return Math.max(0, shift - minShift);
+    }
+}
@@ -0,0 +1,137 @@
+package net.common.data.redis.client;
+
+import redis.clients.util.SafeEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 分块存储的大对象的manifest：存放在原key上，记录分块的代次、总长度、块大小和块数
+ * <p/>
+ * 分块存放在 key + ":chunk:" + 代次 + ":" + 序号 上，不同的key会分散到各个shard；
+ * 每次写入使用新的代次，读取旧manifest的并发读方仍然能读到完整的旧分块
+ */
+final class ChunkManifest {
+
+    /**
+     * manifest开头的魔数：单个Hessian编码的对象不会以它开头并且恰好是manifest的长度
+     */
+    static final byte[] MAGIC = new byte[]{0, 'R', 'C', 'M'};
+
+    /**
+     * manifest的长度
+     */
+    static final int LENGTH = MAGIC.length + 8 + 4 + 4 + 4;
+
+    private static final byte[] CHUNK_INFIX = SafeEncoder.encode(":chunk:");
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * 代次
+     */
+    final long generation;
+
+    /**
+     * 对象编码后的总长度
+     */
+    final int totalLength;
+
+    /**
+     * 块大小
+     */
+    final int chunkSize;
+
+    /**
+     * 块数
+     */
+    final int chunkCount;
+
+    private ChunkManifest(long generation, int totalLength, int chunkSize, int chunkCount) {
+        this.generation = generation;
+        this.totalLength = totalLength;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+    }
+
+    /**
+     * 为一次新的写入创建manifest
+     *
+     * @param totalLength
+     * @param chunkSize
+     * @return
+     */
+    static ChunkManifest create(int totalLength, int chunkSize) {
+        long generation = (System.currentTimeMillis() << 20) ^ (RANDOM.nextLong() & 0xFFFFF);
+        return new ChunkManifest(Math.abs(generation), totalLength, chunkSize, (totalLength + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * 是否是manifest
+     *
+     * @param bytes
+     * @return
+     */
+    static boolean isManifest(byte[] bytes) {
+        if (bytes == null || bytes.length != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析manifest
+     *
+     * @param bytes
+     * @return
+     */
+    static ChunkManifest parse(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, MAGIC.length, LENGTH - MAGIC.length);
+        return new ChunkManifest(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    /**
+     * 编码manifest
+     *
+     * @return
+     */
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.put(MAGIC).putLong(generation).putInt(totalLength).putInt(chunkSize).putInt(chunkCount);
+        return buffer.array();
+    }
+
+    /**
+     * 第index块的key
+     *
+     * @param key
+     * @param index
+     * @return
+     */
+    byte[] chunkKey(byte[] key, int index) {
+        byte[] suffix = SafeEncoder.encode(generation + ":" + index);
+        byte[] chunkKey = new byte[key.length + CHUNK_INFIX.length + suffix.length];
+        System.arraycopy(key, 0, chunkKey, 0, key.length);
+        System.arraycopy(CHUNK_INFIX, 0, chunkKey, key.length, CHUNK_INFIX.length);
+        System.arraycopy(suffix, 0, chunkKey, key.length + CHUNK_INFIX.length, suffix.length);
+        return chunkKey;
+    }
+
+    /**
+     * 从完整的value中截取第index块
+     *
+     * @param value
+     * @param index
+     * @return
+     */
+    byte[] chunk(byte[] value, int index) {
+        int from = index * chunkSize;
+        return Arrays.copyOfRange(value, from, Math.min(from + chunkSize, totalLength));
+    }
+}
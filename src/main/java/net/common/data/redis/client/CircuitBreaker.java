@@ -0,0 +1,89 @@
+package net.common.data.redis.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个shard的熔断器
+ * <p/>
+ * 连续失败达到阈值后打开，打开期间的调用直接降级不访问server；
+ * 打开时间结束后半开，只放行一个探测调用：成功则关闭，失败则重新打开
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 打开的截止时间，0表示关闭
+     */
+    private volatile long openUntil = 0;
+
+    /**
+     * 半开时是否已经放行了探测调用
+     */
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+
+    /**
+     * @param failureThreshold : 打开熔断的连续失败次数
+     * @param openMillis       : 打开的时间：毫秒
+     */
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许访问server
+     *
+     * @return
+     */
+    boolean allowRequest() {
+        long until = openUntil;
+        if (until == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < until) {
+            return false;
+        }
+        // 半开 : 只放行一个探测调用
+        return probing.compareAndSet(false, true);
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (openUntil != 0) {
+            openUntil = 0;
+            probing.set(false);
+        }
+    }
+
+    /**
+     * 调用失败但与shard无关(连接池耗尽、截止时间已过)：不改变状态，半开时放行下一个探测调用
+     */
+    void onIgnored() {
+        probing.set(false);
+    }
+
+    void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold || probing.get()) {
+            openUntil = System.currentTimeMillis() + openMillis;
+            probing.set(false);
+        }
+    }
+
+    State getState() {
+        long until = openUntil;
+        if (until == 0) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() < until ? State.OPEN : State.HALF_OPEN;
+    }
+}
@@ -0,0 +1,280 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisDeadline;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Sharded;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 只用作缓存的group的降级IRedis：shard故障时读返回未命中，整体覆盖类的写直接丢弃，不向调用方抛出连接异常；
+ * 删除和部分修改(del、hdel、hset、expire、setObjectFields)以及计数器、出队等调用方依赖返回值的命令
+ * (incr、hincr、lpush、lpop、zadd、zincrby等)不降级，照常抛出：丢弃删除会让server恢复后继续读到被删除的值。
+ * 丢弃的覆盖写同样会在server上留下旧值，shard恢复后直到旧值过期前都可能读到它，
+ * 所以只适合带过期时间、可以容忍短时间旧值的缓存
+ * <p/>
+ * 每个shard一个 {@link CircuitBreaker}：连接错误(连接断开、读写超时)累计到阈值后熔断，
+ * 熔断期间该shard上的调用不再访问server，立即返回；熔断前的调用最多等待借用连接和socket超时。
+ * 读返回的未命中按返回类型：null、false、0、空集合；server返回的错误(WRONGTYPE等)照常抛出。
+ * 每次降级的读和丢弃的写都按shard计数，可以通过JMX查看。
+ * 连接池耗尽和当前线程的 {@link RedisDeadline} 已过同样降级，但不计入熔断：与shard是否故障无关
+ */
+final class DegradedRedis implements InvocationHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(DegradedRedis.class.getName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 读方法：降级时返回未命中
+     */
+    private static final Set<String> READ_METHODS = new HashSet<String>(Arrays.asList(
+            "get", "getObject", "getObjectPooled", "getBuffer", "getObjectAsHash", "exists",
+            "hget", "hgetAll", "hmget", "hkeys", "hvals", "hlen", "hexists",
+            "smembers", "smembersObject", "sismember", "sismemberObject", "scard",
+            "lrange", "llen", "lindex",
+            "zcard", "zscore", "zrevrank", "zrevrangeWithScores", "zrevrankAround", "zrevrangeByScoreWithScores",
+            "ztopCached", "zrevrankCached"));
+
+    /**
+     * 可以丢弃的写：整体覆盖。丢弃后server上保留旧值，直到旧值过期或者下一次写入成功
+     */
+    private static final Set<String> DROPPABLE_WRITE_METHODS = new HashSet<String>(Arrays.asList(
+            "set", "setObject", "setObjectAsync", "setObjectAsHash"));
+
+    /**
+     * 返回Long但未命中时是null的方法(名次)，其它返回Long的方法未命中时为0
+     */
+    private static final Set<String> NULL_LONG_METHODS = new HashSet<String>(Arrays.asList(
+            "zrevrank", "zrevrankCached"));
+
+    private final IRedis target;
+
+    private final Sharded<Jedis, JedisShardInfo> router;
+
+    private final Map<JedisShardInfo, ShardState> shards = new HashMap<JedisShardInfo, ShardState>();
+
+    private DegradedRedis(IRedis target, List<JedisShardInfo> shardInfos, boolean keyTagRouting,
+                          int failureThreshold, long openMillis) {
+        this.target = target;
+        this.router = ShardRouters.of(shardInfos, keyTagRouting);
+        for (JedisShardInfo shardInfo : shardInfos) {
+            shards.put(shardInfo, new ShardState(shardInfo.getHost() + ":" + shardInfo.getPort(),
+                    new CircuitBreaker(failureThreshold, openMillis)));
+        }
+    }
+
+    /**
+     * 创建降级的IRedis
+     *
+     * @param target
+     * @param shardInfos  : 与连接池相同的shard列表
+     * @param redisConfig : 熔断阈值和时间
+     * @return 降级处理器，通过 {@link #proxy()} 获得IRedis
+     */
+    static DegradedRedis create(IRedis target, List<JedisShardInfo> shardInfos,
+                                RedisServiceLoaderImpl.RedisConfig redisConfig) {
+        return new DegradedRedis(target, shardInfos, redisConfig.isKeyTagRouting(),
+                redisConfig.getCircuitFailureThreshold(), redisConfig.getCircuitOpenMillis());
+    }
+
+    /**
+     * 获得代理
+     *
+     * @return
+     */
+    IRedis proxy() {
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        byte[] key = args == null || args.length == 0 ? null : keyBytes(args[0]);
+        if (method.getDeclaringClass() == Object.class || key == null) {
+            return call(target, method, args);
+        }
+        ShardState shard = shards.get(router.getShardInfo(key));
+        boolean degradable = READ_METHODS.contains(method.getName())
+                || DROPPABLE_WRITE_METHODS.contains(method.getName());
+        RedisDeadline deadline = RedisDeadline.current();
+        if (degradable && deadline != null && deadline.isExpired()) {
+            return degrade(shard, method, null);
+        }
+        if (!shard.breaker.allowRequest()) {
+            if (!degradable) {
+                throw new JedisConnectionException("Redis shard " + shard.name + " circuit is open.");
+            }
+            return degrade(shard, method, null);
+        }
+        try {
+            Object result = call(target, method, args);
+            shard.breaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (!RedisErrors.isConnectionError(e)) {
+                // server有应答，shard是好的
+                shard.breaker.onSuccess();
+                throw e;
+            }
+            if (RedisErrors.isPoolExhausted(e) || RedisErrors.isDeadlineExceeded(e)
+                    || (deadline != null && deadline.isExpired())) {
+                // 整个group的连接池或者调用方的时间预算，shard不一定有问题
+                shard.breaker.onIgnored();
+            } else {
+                shard.breaker.onFailure();
+            }
+            if (!degradable) {
+                throw e;
+            }
+            return degrade(shard, method, e);
+        }
+    }
+
+    /**
+     * shard -> 熔断状态
+     *
+     * @return
+     */
+    Map<String, String> circuitStates() {
+        Map<String, String> result = new TreeMap<String, String>();
+        for (ShardState shard : shards.values()) {
+            result.put(shard.name, shard.breaker.getState().name());
+        }
+        return result;
+    }
+
+    /**
+     * shard -> 降级的读次数
+     *
+     * @return
+     */
+    Map<String, Long> degradedReads() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (ShardState shard : shards.values()) {
+            result.put(shard.name, shard.degradedReads.get());
+        }
+        return result;
+    }
+
+    /**
+     * shard -> 丢弃的写次数
+     *
+     * @return
+     */
+    Map<String, Long> droppedWrites() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (ShardState shard : shards.values()) {
+            result.put(shard.name, shard.droppedWrites.get());
+        }
+        return result;
+    }
+
+    /**
+     * 清零降级计数
+     */
+    void resetCounters() {
+        for (ShardState shard : shards.values()) {
+            shard.degradedReads.set(0);
+            shard.droppedWrites.set(0);
+        }
+    }
+
+    /**
+     * 记录一次降级并返回未命中
+     *
+     * @param shard
+     * @param method
+     * @param cause  : 熔断期间为null
+     * @return
+     */
+    private static Object degrade(ShardState shard, Method method, RuntimeException cause) {
+        boolean read = READ_METHODS.contains(method.getName());
+        long count = read ? shard.degradedReads.incrementAndGet() : shard.droppedWrites.incrementAndGet();
+        if (cause != null && count % 1000 == 1) {
+            LOGGER.warning("Redis shard " + shard.name + " degraded, " + count + (read ? " reads" : " writes")
+                    + " so far, last error: " + cause);
+        }
+        return emptyValue(method);
+    }
+
+    /**
+     * 未命中的返回值：null、false、0、空集合
+     *
+     * @param method
+     * @return
+     */
+    private static Object emptyValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (type == Long.class) {
+            return NULL_LONG_METHODS.contains(method.getName()) ? null : 0L;
+        }
+        if (type == Set.class) {
+            return new HashSet<Object>();
+        }
+        if (type == List.class) {
+            return new ArrayList<Object>();
+        }
+        if (type == Map.class) {
+            return new LinkedHashMap<Object, Object>();
+        }
+        return null;
+    }
+
+    private static Object call(IRedis redis, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(redis, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] keyBytes(Object arg) {
+        if (arg instanceof byte[]) {
+            return (byte[]) arg;
+        }
+        if (arg instanceof String) {
+            return ((String) arg).getBytes(UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * 一个shard的熔断器和降级计数
+     */
+    private static final class ShardState {
+
+        private final String name;
+
+        private final CircuitBreaker breaker;
+
+        private final AtomicLong degradedReads = new AtomicLong();
+
+        private final AtomicLong droppedWrites = new AtomicLong();
+
+        ShardState(String name, CircuitBreaker breaker) {
+            this.name = name;
+            this.breaker = breaker;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.common.data.redis.monitor.HotKeyDetector;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 热点key的读副本
+ * <p/>
+ * 被标记为热点的key在其它shard上保存 copies - 1 个副本(key + ":hr:" + 序号，序号选择落在不同shard上的)，
+ * 读取时随机选择一份，把单个key的读压力分散到多个shard；本进程的写入和删除同时作用于所有副本。
+ * <p/>
+ * 标记在后台进行：先删除副本(可能是之前的热点期间留下的旧值)，删除成功后才开始读写副本，
+ * 再把当前值(DUMP/RESTORE)复制到各副本，复制完成前读副本未命中时读原key；
+ * 复制不覆盖已经存在的副本：删除之后创建的副本来自标记之后的写入，至少与DUMP的值一样新。
+ * <p/>
+ * 标记只在本进程内有效，副本却是所有进程共享的：没有标记该key的进程(或者重启后还没有重新标记的进程)
+ * 只写原key，漏掉的删除也会留下副本。所以副本总是带有不超过 replicaTtlSeconds 的过期时间，
+ * 旧值最多被读到这么久；需要立即一致的key不适合建立副本。
+ * <p/>
+ * 热点key可以手工指定，也可以由 {@link HotKeyDetector} 自动发现：一个窗口内的访问次数(原key与各副本之和)
+ * 达到阈值时标记，连续若干个窗口低于阈值时取消标记并删除副本。副本与原key之间没有原子性，写入期间可能短暂读到旧值
+ */
+public class HotKeyReplicator implements HotKeyDetector.Listener {
+
+    private static final Logger LOGGER = Logger.getLogger(HotKeyReplicator.class.getName());
+
+    private static final String REPLICA_INFIX = ":hr:";
+
+    /**
+     * 选择副本序号时最多尝试的次数
+     */
+    private static final int MAX_SUFFIX_TRIES = 64;
+
+    /**
+     * 自动标记的key连续多少个窗口低于阈值后取消标记
+     */
+    private static final int AUTO_EXPIRE_WINDOWS = 3;
+
+    private final ShardedJedisPool pool;
+
+    private final Sharded<Jedis, JedisShardInfo> router;
+
+    /**
+     * 包括原key在内的份数
+     */
+    private final int copies;
+
+    /**
+     * 自动标记的阈值：一个窗口内的访问次数，0表示不自动标记
+     */
+    private final long autoThreshold;
+
+    /**
+     * 副本的最长过期时间：秒
+     */
+    private final int replicaTtlSeconds;
+
+    /**
+     * 热点key -> 副本，旧副本删除之后才放入
+     */
+    private final ConcurrentMap<String, Entry> hotKeys = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * 正在删除旧副本、还没有放入hotKeys的key
+     */
+    private final ConcurrentMap<String, Entry> marking = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * 复制和删除副本的后台线程
+     */
+    private final ExecutorService copier;
+
+    /**
+     * @param pool
+     * @param copies            : 包括原key在内的份数，至少为2
+     * @param autoThreshold     : 自动标记的阈值，0表示只使用手工指定的热点key
+     * @param replicaTtlSeconds : 副本的最长过期时间：秒
+     */
+    public HotKeyReplicator(ShardedJedisPool pool, int copies, long autoThreshold, int replicaTtlSeconds) {
+        Preconditions.checkArgument(copies >= 2, "Hot key copies must be at least 2.");
+        Preconditions.checkArgument(autoThreshold >= 0, "Hot key replica threshold can't be negative.");
+        Preconditions.checkArgument(replicaTtlSeconds > 0, "Hot key replica ttl must be positive.");
+        this.pool = pool;
+        this.router = ShardRouters.of(pool);
+        this.copies = copies;
+        this.autoThreshold = autoThreshold;
+        this.replicaTtlSeconds = replicaTtlSeconds;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("redis-hotkey-replica-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        this.copier = executor;
+    }
+
+    /**
+     * 手工标记热点key，不会被自动取消
+     *
+     * @param key
+     */
+    public void markHot(String key) {
+        mark(key, true);
+    }
+
+    /**
+     * 取消标记并删除副本
+     *
+     * @param key
+     */
+    public void unmarkHot(String key) {
+        // 还在删除旧副本的标记不再生效
+        marking.remove(key);
+        final Entry entry = hotKeys.remove(key);
+        if (entry != null) {
+            copier.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deleteReplicas(entry);
+                }
+            });
+        }
+    }
+
+    /**
+     * 停止后台复制和删除副本，未执行的任务被丢弃，副本随过期时间清除
+     */
+    public void shutdown() {
+        copier.shutdownNow();
+    }
+
+    /**
+     * 当前的热点key
+     *
+     * @return
+     */
+    public Set<String> getHotKeys() {
+        return Collections.unmodifiableSet(hotKeys.keySet());
+    }
+
+    /**
+     * 读取时使用的key：热点key随机返回原key或一个副本，其它key返回原key
+     *
+     * @param key
+     * @return
+     */
+    String readKey(String key) {
+        Entry entry = hotKeys.get(key);
+        if (entry == null || entry.replicaKeys.length == 0) {
+            return key;
+        }
+        int index = ThreadLocalRandom.current().nextInt(entry.replicaKeys.length + 1);
+        return index == 0 ? key : entry.replicaKeys[index - 1];
+    }
+
+    /**
+     * 写入时需要同时写入的副本，不是热点key时返回null
+     *
+     * @param key
+     * @return
+     */
+    String[] replicaKeys(String key) {
+        Entry entry = hotKeys.get(key);
+        return entry == null ? null : entry.replicaKeys;
+    }
+
+    /**
+     * 写入副本时使用的过期时间：不超过副本的最长过期时间
+     *
+     * @param expireSeconds : 原key的过期时间，不大于0表示不过期
+     * @return
+     */
+    int replicaTtl(int expireSeconds) {
+        return expireSeconds > 0 ? Math.min(expireSeconds, replicaTtlSeconds) : replicaTtlSeconds;
+    }
+
+    @Override
+    public void onWindow(HotKeyDetector.Snapshot snapshot) {
+        if (autoThreshold <= 0) {
+            return;
+        }
+        // 副本的访问计入原key
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (List<HotKeyDetector.HotKey> hotKeyList : snapshot.getByShard().values()) {
+            for (HotKeyDetector.HotKey hotKey : hotKeyList) {
+                String key = baseKey(hotKey.getKey());
+                Long count = counts.get(key);
+                counts.put(key, (count == null ? 0 : count) + hotKey.getEstimatedCount());
+            }
+        }
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (entry.getValue() >= autoThreshold) {
+                mark(entry.getKey(), false);
+            }
+        }
+        for (Map.Entry<String, Entry> entry : hotKeys.entrySet()) {
+            Entry hot = entry.getValue();
+            if (hot.designated) {
+                continue;
+            }
+            Long count = counts.get(entry.getKey());
+            if (count != null && count >= autoThreshold) {
+                hot.coldWindows = 0;
+            } else if (++hot.coldWindows >= AUTO_EXPIRE_WINDOWS) {
+                unmarkHot(entry.getKey());
+            }
+        }
+    }
+
+    private void mark(String key, boolean designated) {
+        Entry entry = hotKeys.get(key);
+        if (entry == null) {
+            entry = marking.get(key);
+        }
+        if (entry != null) {
+            if (designated) {
+                entry.designated = true;
+            }
+            return;
+        }
+        final Entry created = new Entry(key, chooseReplicaKeys(key), designated);
+        if (marking.putIfAbsent(key, created) == null) {
+            copier.execute(new Runnable() {
+                @Override
+                public void run() {
+                    publish(created);
+                }
+            });
+        }
+    }
+
+    /**
+     * 删除旧副本后开始使用副本，再复制当前值；删除失败时不标记，自动标记的key在下一个窗口重试
+     *
+     * @param entry
+     */
+    private void publish(Entry entry) {
+        if (!deleteReplicas(entry)) {
+            marking.remove(entry.key, entry);
+            LOGGER.warning("Failed to clear old replicas of hot key " + entry.key + ", not replicating it.");
+            return;
+        }
+        if (!marking.remove(entry.key, entry)) {
+            // 删除期间被取消标记
+            return;
+        }
+        hotKeys.put(entry.key, entry);
+        copyToReplicas(entry);
+    }
+
+    /**
+     * 选择落在不同shard上的副本key；shard数少于份数时副本数相应减少
+     *
+     * @param key
+     * @return
+     */
+    private String[] chooseReplicaKeys(String key) {
+        List<String> replicaKeys = new ArrayList<String>(copies - 1);
+        Set<String> usedShards = new HashSet<String>();
+        usedShards.add(shardId(key));
+        for (int i = 1; i <= MAX_SUFFIX_TRIES && replicaKeys.size() < copies - 1; i++) {
+            String candidate = key + REPLICA_INFIX + i;
+            if (usedShards.add(shardId(candidate))) {
+                replicaKeys.add(candidate);
+            }
+        }
+        return replicaKeys.toArray(new String[replicaKeys.size()]);
+    }
+
+    private String shardId(String key) {
+        JedisShardInfo shardInfo = router.getShardInfo(SafeEncoder.encode(key));
+        return shardInfo.getHost() + ":" + shardInfo.getPort();
+    }
+
+    private String baseKey(String key) {
+        int index = key.lastIndexOf(REPLICA_INFIX);
+        if (index > 0 && hotKeys.containsKey(key.substring(0, index))) {
+            return key.substring(0, index);
+        }
+        return key;
+    }
+
+    private void copyToReplicas(Entry entry) {
+        byte[] key = SafeEncoder.encode(entry.key);
+        ShardedJedis shardedJedis = pool.getResource();
+        try {
+            Jedis source = shardedJedis.getShard(key);
+            long pttl = source.pttl(key);
+            byte[] dump = source.dump(key);
+            if (dump == null) {
+                return;
+            }
+            long maxTtl = TimeUnit.SECONDS.toMillis(replicaTtlSeconds);
+            int ttl = (int) (pttl > 0 ? Math.min(pttl, maxTtl) : maxTtl);
+            for (String replicaKey : entry.replicaKeys) {
+                byte[] replica = SafeEncoder.encode(replicaKey);
+                try {
+                    shardedJedis.getShard(replica).restore(replica, ttl, dump);
+                } catch (JedisDataException e) {
+                    // BUSYKEY : 旧副本已经删除，这是标记之后的写入创建的副本
+                    if (e.getMessage() == null || !e.getMessage().startsWith("BUSYKEY")) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // 复制失败时副本未命中，读取会回到原key
+            pool.returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+        } finally {
+            if (shardedJedis != null) {
+                pool.returnResource(shardedJedis);
+            }
+        }
+    }
+
+    /**
+     * @param entry
+     * @return 是否全部删除
+     */
+    private boolean deleteReplicas(Entry entry) {
+        ShardedJedis shardedJedis = null;
+        try {
+            shardedJedis = pool.getResource();
+            for (String replicaKey : entry.replicaKeys) {
+                byte[] replica = SafeEncoder.encode(replicaKey);
+                shardedJedis.getShard(replica).del(replica);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // 副本都带有过期时间，最多在replicaTtlSeconds之后消失
+            if (shardedJedis != null) {
+                pool.returnBrokenResource(shardedJedis);
+                shardedJedis = null;
+            }
+            return false;
+        } finally {
+            if (shardedJedis != null) {
+                pool.returnResource(shardedJedis);
+            }
+        }
+    }
+
+    /**
+     * 一个热点key
+     */
+    private static final class Entry {
+
+        private final String key;
+
+        private final String[] replicaKeys;
+
+        private volatile boolean designated;
+
+        /**
+         * 连续低于阈值的窗口数
+         */
+        private volatile int coldWindows = 0;
+
+        Entry(String key, String[] replicaKeys, boolean designated) {
+            this.key = key;
+            this.replicaKeys = replicaKeys;
+            this.designated = designated;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.RedisDeadline;
+import net.common.data.redis.RedisDeadlineExceededException;
+import net.common.data.redis.monitor.LatencyHistogram;
+import net.common.data.redis.monitor.PoolStats;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录借用耗时的连接池
+ * <p/>
+ * maxWait为-1时借用连接会一直阻塞，这段时间不在命令的耗时里；这里统计每次借用的耗时，
+ * 并与连接池的活跃、空闲、等待、创建、销毁计数一起通过 {@link #stats()} 提供
+ * <p/>
+ * 当前线程有 {@link RedisDeadline} 时，借用连接最多等待剩余时间，借到的连接的socket超时改为剩余时间，
+ * 归还时恢复为配置的超时
+ * <p/>
+ * 按hash tag分片时连接由 {@link ShardRouters.TagRoutedShardedJedis} 实现，String和byte[]的key都按hash tag分片
+ */
+class InstrumentedShardedJedisPool extends ShardedJedisPool {
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong borrowNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    /**
+     * 当前统计窗口的借用耗时分布，为null时不统计(只有自适应调整连接池大小时需要)
+     */
+    private volatile LatencyHistogram borrowWindow;
+
+    /**
+     * 配置的连接和socket超时：毫秒
+     */
+    private final int timeout;
+
+    /**
+     * 创建连接池的shard列表，计算路由时不需要借用连接
+     */
+    private final List<JedisShardInfo> shards;
+
+    /**
+     * 是否按hash tag分片
+     */
+    private final boolean keyTagRouting;
+
+    /**
+     * 按截止时间修改过超时、还没有归还的连接
+     */
+    private final Set<ShardedJedis> deadlineResources =
+            Collections.newSetFromMap(new ConcurrentHashMap<ShardedJedis, Boolean>());
+
+    InstrumentedShardedJedisPool(GenericObjectPoolConfig poolConfig, List<JedisShardInfo> shards, int timeout,
+                                 boolean keyTagRouting) {
+        super(poolConfig, shards);
+        this.timeout = timeout;
+        this.shards = Collections.unmodifiableList(new ArrayList<JedisShardInfo>(shards));
+        this.keyTagRouting = keyTagRouting;
+        if (keyTagRouting) {
+            // 替换父类按整个key分片的连接工厂，父类创建的连接池还没有连接
+            initPool(poolConfig, new TagRoutedFactory(this.shards));
+        }
+    }
+
+    List<JedisShardInfo> getShards() {
+        return shards;
+    }
+
+    boolean isKeyTagRouting() {
+        return keyTagRouting;
+    }
+
+    @Override
+    public ShardedJedis getResource() {
+        final RedisDeadline deadline = RedisDeadline.current();
+        final long st = System.nanoTime();
+        try {
+            return deadline == null ? super.getResource() : getResource(deadline);
+        } finally {
+            long nanos = System.nanoTime() - st;
+            borrowCount.incrementAndGet();
+            borrowNanos.addAndGet(nanos);
+            long max = maxBorrowNanos.get();
+            while (nanos > max && !maxBorrowNanos.compareAndSet(max, nanos)) {
+                max = maxBorrowNanos.get();
+            }
+            LatencyHistogram window = borrowWindow;
+            if (window != null) {
+                window.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            }
+        }
+    }
+
+    @Override
+    public void returnResource(ShardedJedis resource) {
+        if (resource != null && deadlineResources.remove(resource)) {
+            try {
+                setTimeout(resource, timeout);
+            } catch (Exception e) {
+                // 恢复不了超时的连接不能再给其它调用使用
+                super.returnBrokenResource(resource);
+                return;
+            }
+        }
+        super.returnResource(resource);
+    }
+
+    @Override
+    public void returnBrokenResource(ShardedJedis resource) {
+        if (resource != null) {
+            deadlineResources.remove(resource);
+        }
+        super.returnBrokenResource(resource);
+    }
+
+    /**
+     * 在截止时间内借用连接，并把连接的超时改为剩余时间
+     *
+     * @param deadline
+     * @return
+     */
+    private ShardedJedis getResource(RedisDeadline deadline) {
+        long waitMillis = deadline.remainingMillis();
+        if (waitMillis == 0) {
+            throw new RedisDeadlineExceededException("Redis deadline exceeded before borrowing a connection.");
+        }
+        long maxWait = internalPool.getMaxWaitMillis();
+        if (maxWait >= 0) {
+            waitMillis = Math.min(waitMillis, maxWait);
+        }
+        ShardedJedis resource;
+        try {
+            resource = internalPool.borrowObject(waitMillis);
+        } catch (NoSuchElementException e) {
+            if (deadline.isExpired()) {
+                throw new RedisDeadlineExceededException("Redis deadline exceeded while borrowing a connection.", e);
+            }
+            throw new JedisConnectionException("Could not get a resource from the pool within "
+                    + waitMillis + "ms", e);
+        } catch (Exception e) {
+            throw new JedisConnectionException("Could not get a resource from the pool", e);
+        }
+        resource.setDataSource(this);
+        long remaining = deadline.remainingMillis();
+        try {
+            if (remaining == 0) {
+                throw new RedisDeadlineExceededException("Redis deadline exceeded after borrowing a connection.");
+            }
+            deadlineResources.add(resource);
+            setTimeout(resource, (int) Math.min(remaining, timeout > 0 ? timeout : Integer.MAX_VALUE));
+        } catch (RuntimeException e) {
+            returnResource(resource);
+            throw e;
+        }
+        return resource;
+    }
+
+    /**
+     * 修改所有shard的连接超时和socket超时，尚未连接的shard在连接时使用
+     *
+     * @param resource
+     * @param millis
+     */
+    private static void setTimeout(ShardedJedis resource, int millis) {
+        for (Jedis jedis : resource.getAllShards()) {
+            Client client = jedis.getClient();
+            client.setConnectionTimeout(millis);
+            client.setSoTimeout(millis);
+            if (client.isConnected()) {
+                try {
+                    client.getSocket().setSoTimeout(millis);
+                } catch (SocketException e) {
+                    throw new JedisConnectionException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 开始新的借用耗时统计窗口
+     *
+     * @return 上一个窗口，第一次调用时返回null
+     */
+    LatencyHistogram rotateBorrowWindow() {
+        LatencyHistogram previous = borrowWindow;
+        borrowWindow = new LatencyHistogram();
+        return previous;
+    }
+
+    /**
+     * 清零借用耗时统计
+     */
+    void resetBorrowStats() {
+        borrowCount.set(0);
+        borrowNanos.set(0);
+        maxBorrowNanos.set(0);
+    }
+
+    int getMaxTotal() {
+        return internalPool.getMaxTotal();
+    }
+
+    int getMaxIdle() {
+        return internalPool.getMaxIdle();
+    }
+
+    int getMinIdle() {
+        return internalPool.getMinIdle();
+    }
+
+    /**
+     * 运行时调整最大连接数
+     *
+     * @param maxTotal
+     */
+    void setMaxTotal(int maxTotal) {
+        internalPool.setMaxTotal(maxTotal);
+    }
+
+    void setMaxIdle(int maxIdle) {
+        internalPool.setMaxIdle(maxIdle);
+    }
+
+    void setMinIdle(int minIdle) {
+        internalPool.setMinIdle(minIdle);
+    }
+
+    /**
+     * 当前的连接池状态
+     *
+     * @return
+     */
+    PoolStats stats() {
+        return new PoolStats(System.currentTimeMillis(), internalPool.getMaxTotal(), internalPool.getNumActive(),
+                internalPool.getNumIdle(), internalPool.getNumWaiters(), internalPool.getCreatedCount(),
+                internalPool.getDestroyedCount(), borrowCount.get(), borrowNanos.get(), maxBorrowNanos.get());
+    }
+
+    /**
+     * 创建按hash tag分片的连接，其它与Jedis的ShardedJedisFactory相同
+     */
+    private static final class TagRoutedFactory implements PooledObjectFactory<ShardedJedis> {
+
+        private final List<JedisShardInfo> shards;
+
+        private final ShardRouters.TagCache cache = new ShardRouters.TagCache();
+
+        TagRoutedFactory(List<JedisShardInfo> shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public PooledObject<ShardedJedis> makeObject() throws Exception {
+            return new DefaultPooledObject<ShardedJedis>(new ShardRouters.TagRoutedShardedJedis(shards, cache));
+        }
+
+        @Override
+        public void destroyObject(PooledObject<ShardedJedis> pooledShardedJedis) throws Exception {
+            for (Jedis jedis : pooledShardedJedis.getObject().getAllShards()) {
+                try {
+                    try {
+                        jedis.quit();
+                    } catch (Exception e) {
+                        // 连接可能已经断开
+                    }
+                    jedis.disconnect();
+                } catch (Exception e) {
+                    // 关闭失败的连接直接丢弃
+                }
+            }
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<ShardedJedis> pooledShardedJedis) {
+            try {
+                for (Jedis shard : pooledShardedJedis.getObject().getAllShards()) {
+                    if (!"PONG".equals(shard.ping())) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void activateObject(PooledObject<ShardedJedis> pooledShardedJedis) throws Exception {
+
+        }
+
+        @Override
+        public void passivateObject(PooledObject<ShardedJedis> pooledShardedJedis) throws Exception {
+
+        }
+    }
+
+}
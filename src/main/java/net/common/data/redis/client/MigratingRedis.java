@@ -0,0 +1,422 @@
+package net.common.data.redis.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisTtlJitter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 扩容迁移期间的IRedis：同时持有新旧两个shard环
+ * <p/>
+ * 只有新旧环上归属不同server的key(扩容时约1/N)受影响：
+ * <ul>
+ * <li>读：先读新环，未命中时再读旧环，旧环命中则返回旧值并交给后台线程把该key搬到新环</li>
+ * <li>整体覆盖(set/setObject/del等)：写新环后删除旧环上的key</li>
+ * <li>其它写(hset/incr/sadd等)：先把旧环上的key同步搬到新环，再写新环</li>
+ * </ul>
+ * 搬迁使用DUMP/RESTORE(不覆盖新环上已有的key)并保留剩余过期时间，完成后删除旧环上的key；
+ * 对象(getObject)按值重新写入，分块存储的对象会在新环上重新分块。
+ * 同一个key的搬迁与整体覆盖按key加锁互斥：搬迁读取旧值之后的del或写入不会被旧值恢复或覆盖。
+ * 超过迁移窗口后只访问新环，并关闭旧环的连接池。
+ * <p/>
+ * pipeline直接访问新环，不读旧环：其中整体覆盖或删除的key在命令加入pipeline之前删除旧环上的key(与搬迁按key互斥)，
+ * 之后旧值不会被读到或搬回新环；部分修改需要先同步搬迁，不能在pipeline中进行，迁移窗口内对归属变化的key直接拒绝
+ */
+final class MigratingRedis implements InvocationHandler, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 读方法：新环未命中时读旧环
+     */
+    private static final Set<String> READ_METHODS = new HashSet<String>(Arrays.asList(
+            "get", "getObject", "getObjectPooled", "getBuffer", "getObjectAsHash", "exists",
+            "hget", "hgetAll", "hmget", "hkeys", "hvals", "hlen", "hexists",
+            "smembers", "smembersObject", "sismember", "sismemberObject", "scard",
+            "lrange", "llen", "lindex",
+            "zcard", "zscore", "zrevrank", "zrevrangeWithScores", "zrevrankAround", "zrevrangeByScoreWithScores",
+            "ztopCached", "zrevrankCached"));
+
+    /**
+     * 整体覆盖或删除key的方法：写新环后删除旧环上的key
+     */
+    private static final Set<String> OVERWRITE_METHODS = new HashSet<String>(Arrays.asList(
+            "set", "setObject", "setObjectAsync", "setObjectAsHash", "del"));
+
+    /**
+     * 返回个数的方法：返回0时是未命中，其它返回Long的方法(名次等)0是有效值
+     */
+    private static final Set<String> COUNT_METHODS = new HashSet<String>(Arrays.asList(
+            "scard", "hlen", "llen", "zcard"));
+
+    /**
+     * 按值搬迁的对象读方法
+     */
+    private static final Set<String> OBJECT_READ_METHODS = new HashSet<String>(Arrays.asList(
+            "getObject", "getObjectPooled"));
+
+    /**
+     * 后台搬迁队列的容量，满时丢弃(该key下次读取时会再次提交)
+     */
+    private static final int MOVER_QUEUE_SIZE = 10000;
+
+    /**
+     * key锁的分段数
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private final IRedis target;
+
+    private final ShardedJedisPool targetPool;
+
+    private final Sharded<Jedis, JedisShardInfo> targetRouter;
+
+    private final IRedis source;
+
+    private final ShardedJedisPool sourcePool;
+
+    private final Sharded<Jedis, JedisShardInfo> sourceRouter;
+
+    /**
+     * 迁移窗口的结束时间
+     */
+    private final long deadline;
+
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    /**
+     * 后台搬迁线程
+     */
+    private final ThreadPoolExecutor mover;
+
+    /**
+     * 已提交、尚未搬迁完成的key
+     */
+    private final ConcurrentMap<ByteBuffer, Boolean> moving = new ConcurrentHashMap<ByteBuffer, Boolean>();
+
+    /**
+     * 按key分段的锁：搬迁与整体覆盖互斥
+     */
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private MigratingRedis(IRedis target, ShardedJedisPool targetPool, IRedis source, ShardedJedisPool sourcePool,
+                           long windowMillis) {
+        this.target = target;
+        this.targetPool = targetPool;
+        this.targetRouter = ShardRouters.of(targetPool);
+        this.source = source;
+        this.sourcePool = sourcePool;
+        this.sourceRouter = ShardRouters.of(sourcePool);
+        this.deadline = System.currentTimeMillis() + windowMillis;
+        this.mover = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(MOVER_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("redis-migration-mover-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.DiscardPolicy());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 创建迁移处理器
+     *
+     * @param target       : 新环
+     * @param targetPool   : 新环的连接池
+     * @param source       : 旧环
+     * @param sourcePool   : 旧环的连接池，窗口结束后关闭
+     * @param windowMillis : 迁移窗口
+     * @return 迁移处理器，通过 {@link #proxy()} 获得IRedis
+     */
+    static MigratingRedis create(IRedis target, ShardedJedisPool targetPool, IRedis source,
+                                 ShardedJedisPool sourcePool, long windowMillis) {
+        return new MigratingRedis(target, targetPool, source, sourcePool, windowMillis);
+    }
+
+    /**
+     * 获得代理
+     *
+     * @return
+     */
+    IRedis proxy() {
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class}, this);
+    }
+
+    /**
+     * 停止后台搬迁，未执行的搬迁被丢弃(该key下次读取时在新环上重新读取)；旧环的连接池由创建方关闭
+     */
+    @Override
+    public void close() {
+        finished.set(true);
+        mover.shutdownNow();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("pipelined".equals(name) && args[0] instanceof BaseShardedJedisPipeline && migrating()) {
+            ((BaseShardedJedisPipeline) args[0]).setWriteListener(new BaseShardedJedisPipeline.WriteListener() {
+                @Override
+                public void onWrite(byte[] key, boolean overwrite) {
+                    beforePipelinedWrite(key, overwrite);
+                }
+            });
+            return call(target, method, args);
+        }
+        byte[] key = args == null || args.length == 0 ? null : keyBytes(args[0]);
+        if (method.getDeclaringClass() == Object.class || key == null || !migrating() || !moved(key)) {
+            return call(target, method, args);
+        }
+        if (READ_METHODS.contains(name)) {
+            Object result = call(target, method, args);
+            if (!isMiss(name, result)) {
+                return result;
+            }
+            Object sourceResult = call(source, method, args);
+            if (isMiss(name, sourceResult)) {
+                return result;
+            }
+            scheduleMove(key, OBJECT_READ_METHODS.contains(name) ? sourceResult : null);
+            return sourceResult;
+        }
+        if (OVERWRITE_METHODS.contains(name)) {
+            ReentrantLock lock = lock(key);
+            lock.lock();
+            try {
+                Object result = call(target, method, args);
+                Long deleted = source.del(key);
+                if ("del".equals(name) && deleted != null && deleted > 0) {
+                    // 旧环上还没有搬走的key也算被删除
+                    return result instanceof Long && (Long) result == 0 ? deleted : result;
+                }
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+        // 部分修改：先把整个key搬到新环
+        move(key, null);
+        return call(target, method, args);
+    }
+
+    /**
+     * pipeline中的写命令加入pipeline之前：整体覆盖或删除时删除旧环上的key，部分修改时拒绝
+     *
+     * @param key
+     * @param overwrite
+     */
+    private void beforePipelinedWrite(byte[] key, boolean overwrite) {
+        if (!migrating() || !moved(key)) {
+            return;
+        }
+        if (!overwrite) {
+            throw new IllegalStateException("Key " + SafeEncoder.encode(key)
+                    + " is migrating, partial writes can't be pipelined until the migration window ends.");
+        }
+        ReentrantLock lock = lock(key);
+        lock.lock();
+        try {
+            // 新值在pipeline同步时才写入，这期间的读取在新旧环上都未命中，不会读到旧值
+            source.del(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 是否仍在迁移窗口内；窗口结束后关闭旧环
+     *
+     * @return
+     */
+    private boolean migrating() {
+        if (System.currentTimeMillis() < deadline) {
+            return true;
+        }
+        if (finished.compareAndSet(false, true)) {
+            mover.shutdown();
+            sourcePool.destroy();
+        }
+        return false;
+    }
+
+    /**
+     * key在新旧环上是否归属不同的server
+     *
+     * @param key
+     * @return
+     */
+    private boolean moved(byte[] key) {
+        JedisShardInfo targetShard = targetRouter.getShardInfo(key);
+        JedisShardInfo sourceShard = sourceRouter.getShardInfo(key);
+        return !(targetShard.getHost().equals(sourceShard.getHost()) && targetShard.getPort() == sourceShard.getPort());
+    }
+
+    private void scheduleMove(final byte[] key, final Object value) {
+        final ByteBuffer mapKey = ByteBuffer.wrap(key);
+        if (moving.putIfAbsent(mapKey, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            mover.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        move(key, value);
+                    } catch (RuntimeException e) {
+                        // 搬迁失败不影响读取，下次读到时重试
+                    } finally {
+                        moving.remove(mapKey);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            moving.remove(mapKey);
+        }
+    }
+
+    /**
+     * 把key从旧环搬到新环，新环上已有该key时保留新环上的值；完成后删除旧环上的key
+     *
+     * @param key
+     * @param value : 不为null时按对象重新写入，否则DUMP/RESTORE
+     */
+    private void move(byte[] key, Object value) {
+        ReentrantLock lock = lock(key);
+        lock.lock();
+        try {
+            moveLocked(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveLocked(byte[] key, Object value) {
+        long pttl;
+        byte[] dump = null;
+        ShardedJedis sourceJedis = sourcePool.getResource();
+        try {
+            Jedis jedis = sourceJedis.getShard(key);
+            pttl = jedis.pttl(key);
+            if (value == null) {
+                dump = jedis.dump(key);
+            }
+        } catch (RuntimeException e) {
+            sourcePool.returnBrokenResource(sourceJedis);
+            sourceJedis = null;
+            throw e;
+        } finally {
+            if (sourceJedis != null) {
+                sourcePool.returnResource(sourceJedis);
+            }
+        }
+        if (pttl == -2) {
+            // 旧环上已经没有该key
+            return;
+        }
+        if (value != null) {
+            if (!target.exists(key)) {
+                int expireSeconds = pttl > 0 ? (int) Math.max(1, pttl / 1000) : 0;
+                // 保留旧环上剩余的过期时间，不再抖动
+                try (RedisTtlJitter exact = RedisTtlJitter.none()) {
+                    target.setObject(key, (Serializable) value, expireSeconds);
+                }
+            }
+        } else if (dump != null) {
+            restore(key, dump, pttl);
+        }
+        source.del(key);
+    }
+
+    private void restore(byte[] key, byte[] dump, long pttl) {
+        ShardedJedis targetJedis = targetPool.getResource();
+        try {
+            targetJedis.getShard(key).restore(key, pttl > 0 ? (int) Math.min(pttl, Integer.MAX_VALUE) : 0, dump);
+        } catch (JedisDataException e) {
+            // BUSYKEY : 新环上已经有更新的值
+            if (e.getMessage() == null || !e.getMessage().startsWith("BUSYKEY")) {
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            targetPool.returnBrokenResource(targetJedis);
+            targetJedis = null;
+            throw e;
+        } finally {
+            if (targetJedis != null) {
+                targetPool.returnResource(targetJedis);
+            }
+        }
+    }
+
+    private ReentrantLock lock(byte[] key) {
+        return locks[(Arrays.hashCode(key) & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private static Object call(IRedis redis, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(redis, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 未命中：null、false、空集合、全为null的列表，个数方法返回0
+     *
+     * @param name   : 方法名
+     * @param result
+     * @return
+     */
+    private static boolean isMiss(String name, Object result) {
+        if (result == null || Boolean.FALSE.equals(result)) {
+            return true;
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).isEmpty();
+        }
+        if (result instanceof Collection) {
+            for (Object element : (Collection<?>) result) {
+                if (element != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return result instanceof Long && (Long) result == 0 && COUNT_METHODS.contains(name);
+    }
+
+    private static byte[] keyBytes(Object arg) {
+        if (arg instanceof byte[]) {
+            return (byte[]) arg;
+        }
+        if (arg instanceof String) {
+            return ((String) arg).getBytes(UTF_8);
+        }
+        return null;
+    }
+}
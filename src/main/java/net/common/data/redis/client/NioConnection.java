@@ -0,0 +1,332 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多个线程共用的一条非阻塞连接
+ * <p/>
+ * 调用线程把请求放入待发送队列，只有第一个请求会向I/O线程提交一次flush；
+ * flush时把队列中积累的所有请求写入同一个buffer，一次write发出，并发请求自动合并为pipeline。
+ * Redis在一条连接上按顺序应答，应答按FIFO与在途请求一一对应，等待超时的请求的应答到达后丢弃。
+ * 连接在第一次发送时建立，在I/O错误、协议错误或者应答超时时关闭并让所有在途请求失败，下一次发送时重新连接。
+ * 应答超时：有在途请求，并且最早的在途请求发出后、最近一次读到数据后都已经超过超时时间，
+ * 与阻塞socket的读超时相同；server挂起或者半开的TCP连接不会产生I/O错误，靠它关闭，否则在途请求会无限堆积
+ */
+final class NioConnection {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * buffer清空后超过该大小则缩回初始大小，避免一次大value之后长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final NioEventLoop loop;
+
+    private final InetSocketAddress address;
+
+    /**
+     * 应答超时：纳秒，Long.MAX_VALUE表示不超时
+     */
+    private final long timeoutNanos;
+
+    /**
+     * 待发送的请求，任意线程写入，I/O线程取出
+     */
+    private final Queue<NioRequest> pending = new ConcurrentLinkedQueue<NioRequest>();
+
+    /**
+     * 是否已经提交了尚未执行的flush
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            // 先清标记再取队列：flush过程中新加入的请求要么被本次取走，要么会提交新的flush
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private volatile boolean closed = false;
+
+    // 以下状态只在I/O线程中访问
+
+    private SocketChannel channel;
+
+    private SelectionKey selectionKey;
+
+    private boolean connected = false;
+
+    /**
+     * 最近一次读到数据的时间
+     */
+    private long lastReadNanos = System.nanoTime();
+
+    /**
+     * 已写入buffer、等待应答的请求，按发送顺序
+     */
+    private final ArrayDeque<NioRequest> inFlight = new ArrayDeque<NioRequest>();
+
+    /**
+     * 写模式：position之前是尚未写出的数据
+     */
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /**
+     * 写模式：position之前是尚未解析的应答数据
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /**
+     * 应答解析器，保存跨多次read的解析状态
+     */
+    private final RespDecoder decoder = new RespDecoder();
+
+    /**
+     * @param loop
+     * @param host
+     * @param port
+     * @param timeoutMillis : 应答超时：毫秒，Long.MAX_VALUE表示不超时
+     */
+    NioConnection(NioEventLoop loop, String host, int port, long timeoutMillis) {
+        this.loop = loop;
+        this.address = new InetSocketAddress(host, port);
+        this.timeoutNanos = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE
+                : TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        loop.register(this);
+    }
+
+    /**
+     * 发送请求，不等待应答
+     *
+     * @param request
+     */
+    void send(NioRequest request) {
+        if (closed) {
+            request.fail(new JedisConnectionException("Connection to " + address + " is closed."));
+            return;
+        }
+        pending.offer(request);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(flushTask);
+        }
+    }
+
+    /**
+     * 关闭连接，未完成的请求全部失败
+     */
+    void close() {
+        closed = true;
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeNow();
+            }
+        });
+    }
+
+    /**
+     * 关闭channel，在途和待发送的请求全部失败，由I/O线程调用(包括I/O线程退出前)
+     */
+    void closeNow() {
+        closed = true;
+        JedisConnectionException cause = new JedisConnectionException("Connection to " + address + " is closed.");
+        fail(cause);
+        NioRequest request;
+        while ((request = pending.poll()) != null) {
+            request.fail(cause);
+        }
+    }
+
+    /**
+     * 最早的在途请求应答超时时关闭连接，由I/O线程定期调用
+     *
+     * @param now : System.nanoTime()
+     */
+    void checkTimeout(long now) {
+        NioRequest oldest = inFlight.peek();
+        if (oldest == null || timeoutNanos == Long.MAX_VALUE) {
+            return;
+        }
+        long since = oldest.sentNanos - lastReadNanos > 0 ? oldest.sentNanos : lastReadNanos;
+        if (now - since > timeoutNanos) {
+            fail(new JedisConnectionException("Read timed out after "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms from " + address + ", " + inFlight.size()
+                    + " requests in flight."));
+        }
+    }
+
+    /**
+     * 处理selector事件，由I/O线程调用
+     *
+     * @param key
+     */
+    void onReady(SelectionKey key) {
+        if (key != selectionKey || !key.isValid()) {
+            return;
+        }
+        try {
+            if (key.isConnectable()) {
+                if (!channel.finishConnect()) {
+                    return;
+                }
+                connected = true;
+                write();
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                write();
+            }
+        } catch (Exception e) {
+            fail(e instanceof JedisConnectionException ? (JedisConnectionException) e
+                    : new JedisConnectionException(e));
+        }
+    }
+
+    private void flush() {
+        if (closed) {
+            // 关闭之后才执行的flush不再重新连接
+            closeNow();
+            return;
+        }
+        NioRequest request;
+        long now = System.nanoTime();
+        while ((request = pending.poll()) != null) {
+            ensureWritable(request.payload.length);
+            writeBuffer.put(request.payload);
+            request.sentNanos = now;
+            inFlight.add(request);
+        }
+        try {
+            if (channel == null) {
+                connect();
+            } else if (connected) {
+                write();
+            }
+        } catch (Exception e) {
+            fail(new JedisConnectionException(e));
+        }
+    }
+
+    private void connect() throws IOException {
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setKeepAlive(true);
+        connected = channel.connect(address);
+        selectionKey = channel.register(loop.selector(),
+                connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+        if (connected) {
+            write();
+        }
+    }
+
+    private void write() throws IOException {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining() && channel.write(writeBuffer) > 0) {
+                // 写到socket缓冲区满为止，剩余部分等OP_WRITE
+            }
+        } finally {
+            writeBuffer.compact();
+        }
+        if (writeBuffer.position() > 0) {
+            selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else {
+            selectionKey.interestOps(SelectionKey.OP_READ);
+            if (writeBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                writeBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            throw new JedisConnectionException("Unexpected end of stream from " + address);
+        }
+        if (read > 0) {
+            lastReadNanos = System.nanoTime();
+        }
+        readBuffer.flip();
+        try {
+            Object reply;
+            while ((reply = decoder.decode(readBuffer)) != RespDecoder.INCOMPLETE) {
+                NioRequest request = inFlight.poll();
+                if (request == null) {
+                    throw new JedisConnectionException("Unexpected reply from " + address);
+                }
+                if (!request.isAbandoned()) {
+                    request.complete(reply);
+                }
+            }
+        } finally {
+            readBuffer.compact();
+        }
+        int pendingBulk = decoder.pendingBulkBytes();
+        if (pendingBulk > readBuffer.capacity()) {
+            // 一个bulk比buffer大 : 一次扩大到能放下整个bulk
+            readBuffer = grow(readBuffer, pendingBulk);
+        } else if (!readBuffer.hasRemaining()) {
+            readBuffer = grow(readBuffer, readBuffer.capacity() * 2);
+        } else if (readBuffer.position() == 0 && pendingBulk == 0 && readBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * 关闭channel，在途请求全部失败；之后的发送会重新连接
+     *
+     * @param cause
+     */
+    private void fail(RuntimeException cause) {
+        if (selectionKey != null) {
+            selectionKey.cancel();
+            selectionKey = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+                // 关闭时忽略
+            }
+            channel = null;
+        }
+        connected = false;
+        writeBuffer.clear();
+        readBuffer.clear();
+        decoder.reset();
+        NioRequest request;
+        while ((request = inFlight.poll()) != null) {
+            request.fail(cause);
+        }
+    }
+
+    private void ensureWritable(int length) {
+        if (writeBuffer.remaining() < length) {
+            writeBuffer = grow(writeBuffer, Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + length));
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,165 @@
+package net.common.data.redis.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 一个selector线程：处理所属连接的读写事件，并执行其它线程提交的任务(发送、关闭)；
+ * 每 {@link #TIMEOUT_CHECK_MILLIS} 检查一次各连接的应答是否超时
+ * <p/>
+ * 连接的channel、读写buffer和在途请求队列只在该线程中访问，不需要加锁
+ */
+final class NioEventLoop implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(NioEventLoop.class.getName());
+
+    /**
+     * 检查应答超时的间隔：毫秒
+     */
+    private static final long TIMEOUT_CHECK_MILLIS = 100;
+
+    /**
+     * 关闭时等待I/O线程退出的时间：秒
+     */
+    private static final long CLOSE_WAIT_SECONDS = 5;
+
+    private final Selector selector;
+
+    /**
+     * 使用该线程的连接
+     */
+    private final List<NioConnection> connections = new CopyOnWriteArrayList<NioConnection>();
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+
+    NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build().newThread(this);
+        thread.start();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * 登记使用该线程的连接，用于检查应答超时
+     *
+     * @param connection
+     */
+    void register(NioConnection connection) {
+        connections.add(connection);
+    }
+
+    /**
+     * 提交任务到I/O线程执行
+     *
+     * @param task
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 停止I/O线程并等待其退出：先执行已提交的任务，再关闭所有登记的连接(在途请求失败)和selector
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(CLOSE_WAIT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long lastCheck = System.nanoTime();
+        while (!closed) {
+            try {
+                selector.select(TIMEOUT_CHECK_MILLIS);
+                runTasks();
+                long now = System.nanoTime();
+                if (now - lastCheck >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_CHECK_MILLIS)) {
+                    lastCheck = now;
+                    for (NioConnection connection : connections) {
+                        connection.checkTimeout(now);
+                    }
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    connection.onReady(key);
+                }
+            } catch (Throwable e) {
+                // 单个连接的异常在连接内部处理，这里只兜底，不能让I/O线程退出
+                LOGGER.log(Level.WARNING, "Redis nio event loop error", e);
+            }
+        }
+        shutdown();
+    }
+
+    /**
+     * I/O线程退出前：执行剩余的任务(包括连接的关闭任务)，关闭所有连接和channel，
+     * 不能让调用方一直等到超时，也不能泄漏socket
+     */
+    private void shutdown() {
+        runTasks();
+        for (NioConnection connection : connections) {
+            try {
+                connection.closeNow();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Redis nio connection close error", e);
+            }
+        }
+        // 关闭之后提交的任务
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignore) {
+                // 关闭时忽略
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+            // 关闭时忽略
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Redis nio task error", e);
+            }
+        }
+    }
+}
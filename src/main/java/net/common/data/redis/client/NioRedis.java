@@ -0,0 +1,977 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RankedMember;
+import net.common.data.redis.RedisDeadline;
+import net.common.data.redis.RedisDeadlineExceededException;
+import net.common.data.redis.monitor.BigKeyDetector;
+import net.common.data.redis.monitor.CommandTimings;
+import net.common.data.redis.monitor.HotKeyDetector;
+import net.common.data.redis.monitor.ShardStats;
+import net.common.data.redis.monitor.SlowLog;
+import net.common.utils.codec.HessianCodecUtil;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于NIO的IRedis：每个shard少量长连接，由所有线程共用
+ * <p/>
+ * 调用线程编码命令后放入key所在连接的发送队列并等待应答，一个selector线程负责所有连接的读写，
+ * 同一时刻的并发请求合并为一次write，不需要借用连接。同一个key总是使用同一条连接，保证同一个key上的命令顺序。
+ * 分片与连接池相同(同样的shard列表和hash)，两种方式读写的数据一致。
+ * <p/>
+ * 依赖RedisImpl内部状态的功能仍然走连接池(fallback)：pipeline、ByteBuffer读写、Bean/Hash映射；
+ * 启用了分块存储、异步写入或热点key读副本时的对象读写和删除；启用了SortSet前N名缓存时的SortSet写入。
+ * 慢命令日志、分阶段耗时、shard统计、热点key和大key检测记录到fallback上，与连接池的统计合在一起
+ */
+final class NioRedis implements IRedis, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] CMD_GET = SafeEncoder.encode("GET");
+    private static final byte[] CMD_SET = SafeEncoder.encode("SET");
+    private static final byte[] CMD_SETEX = SafeEncoder.encode("SETEX");
+    private static final byte[] CMD_DEL = SafeEncoder.encode("DEL");
+    private static final byte[] CMD_EXISTS = SafeEncoder.encode("EXISTS");
+    private static final byte[] CMD_EXPIRE = SafeEncoder.encode("EXPIRE");
+    private static final byte[] CMD_INCR = SafeEncoder.encode("INCR");
+    private static final byte[] CMD_DECR = SafeEncoder.encode("DECR");
+    private static final byte[] CMD_SADD = SafeEncoder.encode("SADD");
+    private static final byte[] CMD_SREM = SafeEncoder.encode("SREM");
+    private static final byte[] CMD_SCARD = SafeEncoder.encode("SCARD");
+    private static final byte[] CMD_SISMEMBER = SafeEncoder.encode("SISMEMBER");
+    private static final byte[] CMD_SMEMBERS = SafeEncoder.encode("SMEMBERS");
+    private static final byte[] CMD_HGET = SafeEncoder.encode("HGET");
+    private static final byte[] CMD_HSET = SafeEncoder.encode("HSET");
+    private static final byte[] CMD_HDEL = SafeEncoder.encode("HDEL");
+    private static final byte[] CMD_HLEN = SafeEncoder.encode("HLEN");
+    private static final byte[] CMD_HEXISTS = SafeEncoder.encode("HEXISTS");
+    private static final byte[] CMD_HGETALL = SafeEncoder.encode("HGETALL");
+    private static final byte[] CMD_HMGET = SafeEncoder.encode("HMGET");
+    private static final byte[] CMD_HKEYS = SafeEncoder.encode("HKEYS");
+    private static final byte[] CMD_HVALS = SafeEncoder.encode("HVALS");
+    private static final byte[] CMD_HINCRBY = SafeEncoder.encode("HINCRBY");
+    private static final byte[] CMD_LPUSH = SafeEncoder.encode("LPUSH");
+    private static final byte[] CMD_RPUSH = SafeEncoder.encode("RPUSH");
+    private static final byte[] CMD_LPOP = SafeEncoder.encode("LPOP");
+    private static final byte[] CMD_RPOP = SafeEncoder.encode("RPOP");
+    private static final byte[] CMD_LLEN = SafeEncoder.encode("LLEN");
+    private static final byte[] CMD_LRANGE = SafeEncoder.encode("LRANGE");
+    private static final byte[] CMD_LINDEX = SafeEncoder.encode("LINDEX");
+    private static final byte[] CMD_LSET = SafeEncoder.encode("LSET");
+    private static final byte[] CMD_LREM = SafeEncoder.encode("LREM");
+    private static final byte[] CMD_LTRIM = SafeEncoder.encode("LTRIM");
+    private static final byte[] CMD_ZADD = SafeEncoder.encode("ZADD");
+    private static final byte[] CMD_ZREM = SafeEncoder.encode("ZREM");
+    private static final byte[] CMD_ZCARD = SafeEncoder.encode("ZCARD");
+    private static final byte[] CMD_ZSCORE = SafeEncoder.encode("ZSCORE");
+    private static final byte[] CMD_ZINCRBY = SafeEncoder.encode("ZINCRBY");
+    private static final byte[] CMD_ZREVRANK = SafeEncoder.encode("ZREVRANK");
+    private static final byte[] CMD_ZREVRANGE = SafeEncoder.encode("ZREVRANGE");
+    private static final byte[] CMD_EVAL = SafeEncoder.encode("EVAL");
+    private static final byte[] CMD_EVALSHA = SafeEncoder.encode("EVALSHA");
+    private static final byte[] WITHSCORES = SafeEncoder.encode("WITHSCORES");
+    private static final byte[] ONE = SafeEncoder.encode("1");
+
+    /**
+     * 走连接池的实现，同时持有监控统计
+     */
+    private final RedisImpl fallback;
+
+    private final Sharded<Jedis, JedisShardInfo> router;
+
+    /**
+     * shard -> 该shard的连接
+     */
+    private final Map<JedisShardInfo, NioConnection[]> connections = new HashMap<JedisShardInfo, NioConnection[]>();
+
+    private final NioEventLoop loop;
+
+    /**
+     * 等待应答的超时：毫秒
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 写入时的过期时间抖动，与连接池实现相同
+     */
+    private final TtlJitter ttlJitter;
+
+    /**
+     * 对象读写和删除是否走连接池
+     */
+    private final boolean objectsOnFallback;
+
+    /**
+     * String读写是否走连接池
+     */
+    private final boolean stringsOnFallback;
+
+    /**
+     * SortSet写入和前N名缓存读取是否走连接池
+     */
+    private final boolean zsetWritesOnFallback;
+
+    /**
+     * @param name        : group名，用于I/O线程名
+     * @param shards      : 与连接池相同的shard列表
+     * @param redisConfig
+     * @param fallback    : 同一个group的连接池实现
+     * @throws IOException
+     */
+    NioRedis(String name, List<JedisShardInfo> shards, RedisServiceLoaderImpl.RedisConfig redisConfig,
+             RedisImpl fallback) throws IOException {
+        int connectionsPerShard = redisConfig.getNioConnectionsPerShard();
+        Preconditions.checkArgument(connectionsPerShard > 0, "Nio connections per shard must be positive.");
+        this.fallback = fallback;
+        this.router = ShardRouters.of(shards, redisConfig.isKeyTagRouting());
+        this.ttlJitter = fallback.getTtlJitter();
+        this.timeoutMillis = redisConfig.getTimeout() > 0 ? redisConfig.getTimeout() : Long.MAX_VALUE;
+        this.loop = new NioEventLoop("redis-nio-" + name);
+        for (JedisShardInfo shard : shards) {
+            NioConnection[] shardConnections = new NioConnection[connectionsPerShard];
+            for (int i = 0; i < connectionsPerShard; i++) {
+                shardConnections[i] = new NioConnection(loop, shard.getHost(), shard.getPort(), timeoutMillis);
+            }
+            connections.put(shard, shardConnections);
+        }
+        this.stringsOnFallback = fallback.getHotKeyReplicator() != null;
+        this.objectsOnFallback = stringsOnFallback || redisConfig.getChunkThresholdBytes() > 0
+                || fallback.getWriteBehindQueue() != null;
+        this.zsetWritesOnFallback = redisConfig.getTopNCacheSize() > 0;
+    }
+
+    /**
+     * 关闭所有连接和I/O线程，等待中的请求以连接错误结束
+     */
+    @Override
+    public void close() {
+        for (NioConnection[] shardConnections : connections.values()) {
+            for (NioConnection connection : shardConnections) {
+                connection.close();
+            }
+        }
+        loop.close();
+    }
+
+    @Override
+    public Long scard(String key) {
+        return (Long) call("Redis_scard", key, CMD_SCARD, bytes(key));
+    }
+
+    @Override
+    public Long srem(String key, String member) {
+        return (Long) call("Redis_srem", key, CMD_SREM, bytes(key), bytes(member));
+    }
+
+    @Override
+    public Long sadd(String key, String member) {
+        return (Long) call("Redis_sadd", key, CMD_SADD, bytes(key), bytes(member));
+    }
+
+    @Override
+    public <T extends Serializable> Long saddObject(String key, T value) {
+        return (Long) call("Redis_saddObject", key, CMD_SADD, bytes(key), HessianCodecUtil.encode(value));
+    }
+
+    @Override
+    public boolean sismember(String key, String member) {
+        return toBoolean(call("Redis_sismember", key, CMD_SISMEMBER, bytes(key), bytes(member)));
+    }
+
+    @Override
+    public <T extends Serializable> Boolean sismemberObject(String key, T value) {
+        return toBoolean(call("Redis_sismemberObject", key, CMD_SISMEMBER, bytes(key), HessianCodecUtil.encode(value)));
+    }
+
+    @Override
+    public Set<String> smembers(String key) {
+        Set<String> reply = toStringSet(call("Redis_smembers", key, CMD_SMEMBERS, bytes(key)));
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_smembers", key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public <T extends Serializable> Set<T> smembersObject(String key) {
+        List<byte[]> reply = (List<byte[]>) call("Redis_smembersObject", key, CMD_SMEMBERS, bytes(key));
+        Set<T> result = new HashSet<T>();
+        long bytes = 0;
+        for (byte[] b : reply) {
+            result.add((T) HessianCodecUtil.decode(b));
+            bytes += b.length;
+        }
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_smembersObject", key, reply.size(), bytes);
+        }
+        return result;
+    }
+
+    @Override
+    public Long hincr(String key, String field, long value) {
+        return (Long) call("Redis_hincr", key, CMD_HINCRBY, bytes(key), bytes(field), toBytes(value));
+    }
+
+    @Override
+    public void hincr(String key, String field, long value, int expireSeconds) {
+        if (expireSeconds > 0) {
+            // hincrby + expire 一次原子调用
+            eval("Redis_hincr expire", key, RedisScript.HINCR_EXPIRE, bytes(key),
+                    bytes(field), toBytes(value), toBytes(ttlJitter.apply(expireSeconds)));
+        } else {
+            call("Redis_hincr expire", key, CMD_HINCRBY, bytes(key), bytes(field), toBytes(value));
+        }
+    }
+
+    @Override
+    public String hget(String key, String field) {
+        return toString(call("Redis_hget", key, CMD_HGET, bytes(key), bytes(field)));
+    }
+
+    @Override
+    public byte[] hget(byte[] key, byte[] field) {
+        return (byte[]) call("Redis_hget_byte", key, CMD_HGET, key, field);
+    }
+
+    @Override
+    public boolean hexists(String key, String field) {
+        return toBoolean(call("Redis_hexists", key, CMD_HEXISTS, bytes(key), bytes(field)));
+    }
+
+    @Override
+    public Map<String, String> hgetAll(String key) {
+        List<Object> items = (List<Object>) call("Redis_hgetAll", key, CMD_HGETALL, bytes(key));
+        Map<String, String> reply = new HashMap<String, String>(items.size());
+        for (int i = 0; i + 1 < items.size(); i += 2) {
+            reply.put(toString(items.get(i)), toString(items.get(i + 1)));
+        }
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_hgetAll", key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public List<String> hmget(String key, String... fields) {
+        byte[][] command = new byte[fields.length + 2][];
+        command[0] = CMD_HMGET;
+        command[1] = bytes(key);
+        for (int i = 0; i < fields.length; i++) {
+            command[i + 2] = bytes(fields[i]);
+        }
+        return toStringList(call("Redis_hmget", key, command));
+    }
+
+    @Override
+    public Set<String> hkeys(String key) {
+        Set<String> reply = toStringSet(call("Redis_hkeys", key, CMD_HKEYS, bytes(key)));
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_hkeys", key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public List<String> hvals(String key) {
+        List<String> reply = toStringList(call("Redis_hvals", key, CMD_HVALS, bytes(key)));
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_hvals", key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public Long hset(String key, String field, String value) {
+        return (Long) call("Redis_hset", key, CMD_HSET, bytes(key), bytes(field), bytes(value));
+    }
+
+    @Override
+    public Long hset(String key, String field, String value, int expireSeconds) {
+        if (expireSeconds > 0) {
+            // hset + expire 一次原子调用
+            return (Long) eval("Redis_hset expire", key, RedisScript.HSET_EXPIRE, bytes(key),
+                    bytes(field), bytes(value), toBytes(ttlJitter.apply(expireSeconds)));
+        }
+        return (Long) call("Redis_hset expire", key, CMD_HSET, bytes(key), bytes(field), bytes(value));
+    }
+
+    @Override
+    public Long hset(byte[] key, byte[] field, byte[] value) {
+        return (Long) call("Redis_hset_byte", key, CMD_HSET, key, field, value);
+    }
+
+    @Override
+    public Long hlen(String key) {
+        return (Long) call("Redis_hlen", key, CMD_HLEN, bytes(key));
+    }
+
+    @Override
+    public Long hdel(String key, String field) {
+        return (Long) call("Redis_hdel", key, CMD_HDEL, bytes(key), bytes(field));
+    }
+
+    @Override
+    public Long hdel(byte[] key, byte[] field) {
+        return (Long) call("Redis_hdel_byte", key, CMD_HDEL, key, field);
+    }
+
+    @Override
+    public Long del(String key) {
+        if (objectsOnFallback) {
+            return fallback.del(key);
+        }
+        return (Long) call("Redis_del", key, CMD_DEL, bytes(key));
+    }
+
+    @Override
+    public <T extends Serializable> void setObject(String key, T value, int expireSeconds) {
+        if (objectsOnFallback) {
+            fallback.setObject(key, value, expireSeconds);
+            return;
+        }
+        setObject(bytes(key), value, expireSeconds);
+    }
+
+    @Override
+    public Object getObject(String key, int expireSecond) {
+        if (objectsOnFallback) {
+            return fallback.getObject(key, expireSecond);
+        }
+        return getObject(bytes(key), expireSecond);
+    }
+
+    /**
+     * 只发送不等待应答，写入失败不会通知调用方
+     */
+    @Override
+    public <T extends Serializable> void setObjectAsync(String key, T value, int expireSeconds) {
+        if (objectsOnFallback) {
+            fallback.setObjectAsync(key, value, expireSeconds);
+            return;
+        }
+        byte[] keyBytes = bytes(key);
+        byte[] valueBytes = HessianCodecUtil.encode(value);
+        int ttl = ttlJitter.apply(expireSeconds);
+        byte[][] command = ttl > 0 ? new byte[][]{CMD_SETEX, keyBytes, toBytes(ttl), valueBytes}
+                : new byte[][]{CMD_SET, keyBytes, valueBytes};
+        connection(router.getShardInfo(keyBytes), keyBytes).send(new NioRequest(RespCodec.encode(command)));
+    }
+
+    @Override
+    public <T extends Serializable> void setObject(byte[] key, T value, int expireSeconds) {
+        if (objectsOnFallback) {
+            fallback.setObject(key, value, expireSeconds);
+            return;
+        }
+        byte[] valueBytes = HessianCodecUtil.encode(value);
+        if (expireSeconds > 0) {
+            call("Redis_setObject", key, CMD_SETEX, key, toBytes(ttlJitter.apply(expireSeconds)), valueBytes);
+        } else {
+            //不设置过期时间
+            call("Redis_setObject", key, CMD_SET, key, valueBytes);
+        }
+    }
+
+    @Override
+    public Object getObject(byte[] key, int expireSecond) {
+        if (objectsOnFallback) {
+            return fallback.getObject(key, expireSecond);
+        }
+        byte[] bytes;
+        if (expireSecond > 0) {
+            // 访LRU,如果命中，则续时 : get + expire 一次原子调用
+            bytes = (byte[]) eval("Redis_getObject", key, RedisScript.GET_EXPIRE, key, toBytes(expireSecond));
+        } else {
+            bytes = (byte[]) call("Redis_getObject", key, CMD_GET, key);
+        }
+        return bytes == null ? null : HessianCodecUtil.decode(bytes);
+    }
+
+    @Override
+    public <T> void setObjectAsHash(String key, T bean, int expireSeconds) {
+        fallback.setObjectAsHash(key, bean, expireSeconds);
+    }
+
+    @Override
+    public <T> void setObjectFields(String key, T bean, String... fields) {
+        fallback.setObjectFields(key, bean, fields);
+    }
+
+    @Override
+    public <T> T getObjectAsHash(String key, Class<T> type) {
+        return fallback.getObjectAsHash(key, type);
+    }
+
+    @Override
+    public <T> T getObjectAsHash(String key, Class<T> type, String... fields) {
+        return fallback.getObjectAsHash(key, type, fields);
+    }
+
+    @Override
+    public Long del(byte[] key) {
+        if (objectsOnFallback) {
+            return fallback.del(key);
+        }
+        return (Long) call("Redis_del_byte", key, CMD_DEL, key);
+    }
+
+    @Override
+    public Boolean exists(byte[] key) {
+        return toBoolean(call("Redis_exists_byte", key, CMD_EXISTS, key));
+    }
+
+    @Override
+    public String set(String key, String value, int expireSeconds) {
+        if (stringsOnFallback) {
+            return fallback.set(key, value, expireSeconds);
+        }
+        if (expireSeconds > 0) {
+            return toString(call("Redis_set_expire", key, CMD_SETEX, bytes(key),
+                    toBytes(ttlJitter.apply(expireSeconds)), bytes(value)));
+        }
+        //不设置过期时间
+        return toString(call("Redis_set_expire", key, CMD_SET, bytes(key), bytes(value)));
+    }
+
+    @Override
+    public String get(String key) {
+        if (stringsOnFallback) {
+            return fallback.get(key);
+        }
+        return toString(call("Redis_get", key, CMD_GET, bytes(key)));
+    }
+
+    @Override
+    public Boolean exists(String key) {
+        return toBoolean(call("Redis_exists", key, CMD_EXISTS, bytes(key)));
+    }
+
+    @Override
+    public Long incr(String key) {
+        return (Long) call("Redis_incr", key, CMD_INCR, bytes(key));
+    }
+
+    @Override
+    public Long incr(String key, int seconds) {
+        if (seconds > 0) {
+            // incr + expire 一次原子调用
+            return (Long) eval("Redis_incr_expire", key, RedisScript.INCR_EXPIRE, bytes(key),
+                    toBytes(ttlJitter.apply(seconds)));
+        }
+        return (Long) call("Redis_incr_expire", key, CMD_INCR, bytes(key));
+    }
+
+    @Override
+    public Long llen(String key) {
+        return (Long) call("Redis_llen", key, CMD_LLEN, bytes(key));
+    }
+
+    @Override
+    public Long rpush(String key, String string) {
+        return (Long) call("Redis_rpush", key, CMD_RPUSH, bytes(key), bytes(string));
+    }
+
+    @Override
+    public Long lpush(String key, String string) {
+        return (Long) call("Redis_lpush", key, CMD_LPUSH, bytes(key), bytes(string));
+    }
+
+    @Override
+    public List<String> lrange(String key, long start, long end) {
+        List<String> reply = toStringList(call("Redis_lrange", key, CMD_LRANGE, bytes(key),
+                toBytes(start), toBytes(end)));
+        BigKeyDetector bigKeyDetector = fallback.getBigKeyDetector();
+        if (bigKeyDetector != null) {
+            bigKeyDetector.record(shardInfo(key), "Redis_lrange", key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+        return reply;
+    }
+
+    @Override
+    public String lindex(String key, long index) {
+        return toString(call("Redis_lindex", key, CMD_LINDEX, bytes(key), toBytes(index)));
+    }
+
+    @Override
+    public String lpop(String key) {
+        return toString(call("Redis_lpop", key, CMD_LPOP, bytes(key)));
+    }
+
+    @Override
+    public String rpop(String key) {
+        return toString(call("Redis_rpop", key, CMD_RPOP, bytes(key)));
+    }
+
+    @Override
+    public String ltrim(String key, long start, long end) {
+        return toString(call("Redis_ltrim", key, CMD_LTRIM, bytes(key), toBytes(start), toBytes(end)));
+    }
+
+    @Override
+    public String lset(String key, long index, String value) {
+        return toString(call("Redis_lset", key, CMD_LSET, bytes(key), toBytes(index), bytes(value)));
+    }
+
+    @Override
+    public Long lrem(String key, long count, String value) {
+        return (Long) call("Redis_lrem", key, CMD_LREM, bytes(key), toBytes(count), bytes(value));
+    }
+
+    @Override
+    public Long expire(String key, int seconds) {
+        return (Long) call("Redis_expire", key, CMD_EXPIRE, bytes(key), toBytes(seconds));
+    }
+
+    @Override
+    public Long zrevrank(String key, String member) {
+        return (Long) call("Redis_zrevrank", key, CMD_ZREVRANK, bytes(key), bytes(member));
+    }
+
+    @Override
+    public Long zcard(String key) {
+        return (Long) call("Redis_zcard", key, CMD_ZCARD, bytes(key));
+    }
+
+    @Override
+    public Long zadd(String key, double score, String member) {
+        if (zsetWritesOnFallback) {
+            return fallback.zadd(key, score, member);
+        }
+        return (Long) call("Redis_zadd", key, CMD_ZADD, bytes(key), toBytes(score), bytes(member));
+    }
+
+    @Override
+    public Long zadd(String key, Map<String, Double> scoreMembers) {
+        if (zsetWritesOnFallback) {
+            return fallback.zadd(key, scoreMembers);
+        }
+        byte[][] command = new byte[scoreMembers.size() * 2 + 2][];
+        command[0] = CMD_ZADD;
+        command[1] = bytes(key);
+        int i = 2;
+        for (Map.Entry<String, Double> entry : scoreMembers.entrySet()) {
+            command[i++] = toBytes(entry.getValue());
+            command[i++] = bytes(entry.getKey());
+        }
+        return (Long) call("Redis_zadd_batch", key, command);
+    }
+
+    @Override
+    public Double zincrby(String key, double increment, String member) {
+        if (zsetWritesOnFallback) {
+            return fallback.zincrby(key, increment, member);
+        }
+        return toDouble(call("Redis_zincrby", key, CMD_ZINCRBY, bytes(key), toBytes(increment), bytes(member)));
+    }
+
+    /**
+     * 同一个key的所有ZINCRBY先全部发出，再依次等待应答
+     */
+    @Override
+    public Map<String, Double> zincrby(String key, Map<String, Double> increments) {
+        if (zsetWritesOnFallback) {
+            return fallback.zincrby(key, increments);
+        }
+        final byte[] keyBytes = bytes(key);
+        JedisShardInfo shard = router.getShardInfo(keyBytes);
+        String shardInfo = shard.toString();
+        recordHotKey(shardInfo, "Redis_zincrby_batch", key);
+        NioConnection connection = connection(shard, keyBytes);
+        final long st = System.nanoTime();
+        boolean success = true;
+        try {
+            checkDeadline();
+            Map<String, NioRequest> requests = new LinkedHashMap<String, NioRequest>();
+            for (Map.Entry<String, Double> entry : increments.entrySet()) {
+                NioRequest request = new NioRequest(RespCodec.encode(CMD_ZINCRBY, keyBytes, toBytes(entry.getValue()),
+                        bytes(entry.getKey())));
+                connection.send(request);
+                requests.put(entry.getKey(), request);
+            }
+            Map<String, Double> scores = new LinkedHashMap<String, Double>();
+            for (Map.Entry<String, NioRequest> entry : requests.entrySet()) {
+                scores.put(entry.getKey(), toDouble(await(entry.getValue())));
+            }
+            return scores;
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            recordPhases(shardInfo, "Redis_zincrby_batch", key, System.nanoTime() - st, success);
+        }
+    }
+
+    @Override
+    public Double zscore(String key, String member) {
+        return toDouble(call("Redis_zscore", key, CMD_ZSCORE, bytes(key), bytes(member)));
+    }
+
+    @Override
+    public List<RankedMember> zrevrangeWithScores(String key, long start, long end) {
+        if (start < 0) {
+            // 负的起始名次需要按成员数换算，名次才是从0开始的真实名次
+            List<Object> l = (List<Object>) eval("Redis_zrevrangeWithScores", key, RedisScript.ZREVRANGE_FROM,
+                    bytes(key), toBytes(start), toBytes(end));
+            return toRankedMembers((List<Object>) l.get(1), (Long) l.get(0));
+        }
+        List<Object> items = (List<Object>) call("Redis_zrevrangeWithScores", key, CMD_ZREVRANGE, bytes(key),
+                toBytes(start), toBytes(end), WITHSCORES);
+        return toRankedMembers(items, start);
+    }
+
+    @Override
+    public List<RankedMember> zrevrankAround(String key, String member, int radius) {
+        Object reply = eval("Redis_zrevrankAround", key, RedisScript.ZREVRANK_AROUND, bytes(key),
+                bytes(member), toBytes(radius));
+        if (reply == null) {
+            return new ArrayList<RankedMember>(0);
+        }
+        List<Object> l = (List<Object>) reply;
+        return toRankedMembers((List<Object>) l.get(1), (Long) l.get(0));
+    }
+
+    @Override
+    public List<RankedMember> zrevrangeByScoreWithScores(String key, double max, double min, int offset, int count) {
+        // 名次需要在同一次调用里取第一个成员的名次，不能用offset代替
+        List<Object> l = (List<Object>) eval("Redis_zrevrangeByScoreWithScores", key,
+                RedisScript.ZREVRANGEBYSCORE_RANKED, bytes(key), toBytes(max), toBytes(min), toBytes(offset),
+                toBytes(count));
+        return toRankedMembers((List<Object>) l.get(1), (Long) l.get(0));
+    }
+
+    @Override
+    public List<RankedMember> ztopCached(String key, int n) {
+        if (n <= 0) {
+            return new ArrayList<RankedMember>(0);
+        }
+        if (zsetWritesOnFallback) {
+            return fallback.ztopCached(key, n);
+        }
+        return zrevrangeWithScores(key, 0, n - 1);
+    }
+
+    @Override
+    public Long zrevrankCached(String key, String member) {
+        if (zsetWritesOnFallback) {
+            return fallback.zrevrankCached(key, member);
+        }
+        return zrevrank(key, member);
+    }
+
+    @Override
+    public List<Object> pipelined(BaseShardedJedisPipeline baseShardedJedisPipeline) {
+        return fallback.pipelined(baseShardedJedisPipeline);
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        return (byte[]) call("Redis_get_byte", key, CMD_GET, key);
+    }
+
+    @Override
+    public String set(byte[] key, byte[] value) {
+        return toString(call("Redis_set_byte", key, CMD_SET, key, value));
+    }
+
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        return fallback.set(key, value);
+    }
+
+    @Override
+    public ByteBuffer getBuffer(byte[] key) {
+        return fallback.getBuffer(key);
+    }
+
+    @Override
+    public void releaseBuffer(ByteBuffer buffer) {
+        fallback.releaseBuffer(buffer);
+    }
+
+    @Override
+    public Object getObjectPooled(String key) {
+        return fallback.getObjectPooled(key);
+    }
+
+    @Override
+    public Long expire(byte[] key, int seconds) {
+        return (Long) call("Redis_expire", key, CMD_EXPIRE, key, toBytes(seconds));
+    }
+
+    @Override
+    public Long zrem(String key, String member) {
+        if (zsetWritesOnFallback) {
+            return fallback.zrem(key, member);
+        }
+        return (Long) call("Redis_zrem", key, CMD_ZREM, bytes(key), bytes(member));
+    }
+
+    @Override
+    public Long decr(String key) {
+        return (Long) call("Redis_decr", key, CMD_DECR, bytes(key));
+    }
+
+    /**
+     * 执行一条命令并等待应答，命令的第二个参数是key
+     *
+     * @param methodName : 监控用的方法名
+     * @param key        : String或byte[]，用于热点key和慢命令日志
+     * @param command    : 命令名与参数
+     * @return 原始应答
+     */
+    private Object call(String methodName, Object key, byte[]... command) {
+        return execute(methodName, key, command[1], null, command);
+    }
+
+    /**
+     * 执行只有一个key的脚本并等待应答：先EVALSHA，server上没有该脚本时EVAL
+     *
+     * @param methodName
+     * @param key
+     * @param script
+     * @param keyBytes
+     * @param args       : 脚本参数ARGV
+     * @return 原始应答
+     */
+    private Object eval(String methodName, Object key, RedisScript script, byte[] keyBytes, byte[]... args) {
+        return execute(methodName, key, keyBytes, script, args);
+    }
+
+    private Object execute(String methodName, Object key, byte[] keyBytes, RedisScript script, byte[][] args) {
+        JedisShardInfo shard = router.getShardInfo(keyBytes);
+        String shardInfo = shard.toString();
+        recordHotKey(shardInfo, methodName, key);
+        NioConnection connection = connection(shard, keyBytes);
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        try {
+            if (script == null) {
+                return request(connection, args);
+            }
+            try {
+                return request(connection, scriptCommand(CMD_EVALSHA, script.getSha(), keyBytes, args));
+            } catch (JedisDataException e) {
+                if (!RedisScript.isNoScript(e)) {
+                    throw e;
+                }
+                // EVAL同时把脚本载入server，之后的EVALSHA可以命中
+                return request(connection, scriptCommand(CMD_EVAL, script.getScript(), keyBytes, args));
+            }
+        } catch (Exception e) {
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            recordPhases(shardInfo, methodName, key, System.nanoTime() - st, success);
+        }
+    }
+
+    private Object request(NioConnection connection, byte[][] command) {
+        checkDeadline();
+        NioRequest request = new NioRequest(RespCodec.encode(command));
+        connection.send(request);
+        return await(request);
+    }
+
+    /**
+     * 等待应答：超时只放弃该请求，连接上其它线程的请求不受影响；
+     * 等待时间受截止时间限制时，超时抛出 {@link RedisDeadlineExceededException}
+     *
+     * @param request
+     * @return
+     */
+    private Object await(NioRequest request) {
+        RedisDeadline deadline = RedisDeadline.current();
+        if (deadline == null) {
+            return request.get(timeoutMillis);
+        }
+        long remaining = deadline.remainingMillis();
+        if (remaining >= timeoutMillis) {
+            return request.get(timeoutMillis);
+        }
+        try {
+            return request.get(Math.max(1, remaining));
+        } catch (JedisConnectionException e) {
+            if (request.isAbandoned() && deadline.isExpired()) {
+                throw new RedisDeadlineExceededException("Redis deadline exceeded while waiting for the reply.", e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 当前线程的 {@link RedisDeadline} 已过时不再发送命令
+     */
+    private static void checkDeadline() {
+        RedisDeadline deadline = RedisDeadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new RedisDeadlineExceededException("Redis deadline exceeded before sending the command.");
+        }
+    }
+
+    private static byte[][] scriptCommand(byte[] cmd, byte[] scriptOrSha, byte[] keyBytes, byte[][] args) {
+        byte[][] command = new byte[args.length + 4][];
+        command[0] = cmd;
+        command[1] = scriptOrSha;
+        command[2] = ONE;
+        command[3] = keyBytes;
+        System.arraycopy(args, 0, command, 4, args.length);
+        return command;
+    }
+
+    /**
+     * 选择key使用的连接：同一个key总是同一条连接
+     *
+     * @param shard
+     * @param keyBytes
+     * @return
+     */
+    private NioConnection connection(JedisShardInfo shard, byte[] keyBytes) {
+        NioConnection[] shardConnections = connections.get(shard);
+        return shardConnections[(Arrays.hashCode(keyBytes) & Integer.MAX_VALUE) % shardConnections.length];
+    }
+
+    private String shardInfo(String key) {
+        return router.getShardInfo(key).toString();
+    }
+
+    private void recordHotKey(String shardInfo, String methodName, Object key) {
+        HotKeyDetector hotKeyDetector = fallback.getHotKeyDetector();
+        if (hotKeyDetector == null) {
+            return;
+        }
+        if (key instanceof String) {
+            hotKeyDetector.record(shardInfo, methodName, (String) key);
+        } else {
+            hotKeyDetector.record(shardInfo, methodName, (byte[]) key);
+        }
+    }
+
+    /**
+     * 记录一次调用的耗时，没有借用连接的阶段，编解码耗时计入I/O
+     *
+     * @param shardInfo
+     * @param methodName
+     * @param key
+     * @param ioNanos
+     * @param success
+     */
+    private void recordPhases(String shardInfo, String methodName, Object key, long ioNanos, boolean success) {
+        ShardStats shardStats = fallback.getShardStats();
+        if (shardStats != null) {
+            shardStats.record(shardInfo, ioNanos, success);
+        }
+        CommandTimings commandTimings = fallback.getCommandTimings();
+        if (commandTimings != null) {
+            commandTimings.record(methodName, 0, ioNanos, 0);
+        }
+        SlowLog slowLog = fallback.getSlowLog();
+        if (slowLog != null) {
+            String command = methodName.startsWith("Redis_") ? methodName.substring("Redis_".length()) : methodName;
+            slowLog.record(shardInfo, command, key, methodName, 0, ioNanos, 0);
+        }
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(UTF_8);
+    }
+
+    private static byte[] toBytes(long value) {
+        return SafeEncoder.encode(String.valueOf(value));
+    }
+
+    private static byte[] toBytes(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return SafeEncoder.encode("+inf");
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return SafeEncoder.encode("-inf");
+        }
+        return SafeEncoder.encode(String.valueOf(value));
+    }
+
+    private static String toString(Object reply) {
+        if (reply == null || reply instanceof String) {
+            return (String) reply;
+        }
+        return SafeEncoder.encode((byte[]) reply);
+    }
+
+    private static boolean toBoolean(Object reply) {
+        return (Long) reply == 1L;
+    }
+
+    private static Double toDouble(Object reply) {
+        if (reply == null) {
+            return null;
+        }
+        String s = toString(reply);
+        if ("inf".equals(s) || "+inf".equals(s)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-inf".equals(s)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.valueOf(s);
+    }
+
+    private static List<String> toStringList(Object reply) {
+        List<Object> items = (List<Object>) reply;
+        List<String> result = new ArrayList<String>(items.size());
+        for (Object item : items) {
+            result.add(toString(item));
+        }
+        return result;
+    }
+
+    private static Set<String> toStringSet(Object reply) {
+        List<Object> items = (List<Object>) reply;
+        Set<String> result = new HashSet<String>(items.size());
+        for (Object item : items) {
+            result.add(toString(item));
+        }
+        return result;
+    }
+
+    /**
+     * member/score交替的应答转换为带名次的成员
+     *
+     * @param items
+     * @param startRank : 第一个成员的名次
+     * @return
+     */
+    private static List<RankedMember> toRankedMembers(List<Object> items, long startRank) {
+        List<RankedMember> result = new ArrayList<RankedMember>(items.size() / 2);
+        long rank = startRank;
+        for (int i = 0; i + 1 < items.size(); i += 2) {
+            result.add(new RankedMember(toString(items.get(i)), toDouble(items.get(i + 1)), rank++));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NIO连接上的一次请求：调用线程等待，I/O线程按发送顺序填入应答
+ */
+final class NioRequest {
+
+    /**
+     * 编码后的命令
+     */
+    final byte[] payload;
+
+    /**
+     * 写入发送buffer的时间，只在I/O线程中访问
+     */
+    long sentNanos;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile Object reply;
+
+    private volatile RuntimeException error;
+
+    /**
+     * 调用线程已经不再等待(超时)，应答到达时直接丢弃
+     */
+    private volatile boolean abandoned = false;
+
+    NioRequest(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * 填入应答，由I/O线程调用
+     *
+     * @param reply
+     */
+    void complete(Object reply) {
+        this.reply = reply;
+        done.countDown();
+    }
+
+    /**
+     * 请求失败(连接断开等)，由I/O线程调用
+     *
+     * @param error
+     */
+    void fail(RuntimeException error) {
+        this.error = error;
+        done.countDown();
+    }
+
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * 等待应答，超时时放弃该请求：按FIFO对应的应答到达后丢弃；连接一直没有应答时由I/O线程按超时关闭
+     *
+     * @param timeoutMillis : 超时：毫秒
+     * @return 原始应答
+     * @throws JedisConnectionException : 超时或者连接断开
+     * @throws JedisDataException       : 错误应答
+     */
+    Object get(long timeoutMillis) {
+        try {
+            if (!done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                abandoned = true;
+                throw new JedisConnectionException("Read timed out after " + timeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            abandoned = true;
+            Thread.currentThread().interrupt();
+            throw new JedisConnectionException(e);
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (reply instanceof JedisDataException) {
+            throw (JedisDataException) reply;
+        }
+        return reply;
+    }
+}
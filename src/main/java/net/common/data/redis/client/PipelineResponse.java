@@ -0,0 +1,90 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.Builder;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * pipeline中单个命令的结果句柄
+ * <p/>
+ * pipeline同步({@link BaseShardedJedisPipeline#sync()})时填入原始应答，
+ * 第一次调用{@link #get()}时才转换/解码，没有读取的结果不会被解码
+ *
+ * @param <T> 结果类型
+ */
+public class PipelineResponse<T> {
+
+    /**
+     * 结果转换
+     */
+    private final Builder<T> builder;
+
+    /**
+     * 原始应答
+     */
+    private Object data;
+
+    /**
+     * 命令返回的错误
+     */
+    private JedisDataException exception;
+
+    /**
+     * 是否已经填入应答
+     */
+    private boolean set = false;
+
+    /**
+     * 是否已经转换
+     */
+    private boolean built = false;
+
+    /**
+     * 转换后的结果
+     */
+    private T response;
+
+    PipelineResponse(Builder<T> builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * 填入原始应答
+     *
+     * @param data
+     */
+    void set(Object data) {
+        this.data = data;
+        this.set = true;
+    }
+
+    /**
+     * 填入命令返回的错误，在{@link #get()}时抛出
+     *
+     * @param exception
+     */
+    void setException(JedisDataException exception) {
+        this.exception = exception;
+        this.set = true;
+    }
+
+    /**
+     * 获得结果
+     *
+     * @return
+     * @throws JedisDataException pipeline尚未同步，或者命令本身返回错误
+     */
+    public T get() {
+        if (!set) {
+            throw new JedisDataException("Please sync the pipeline before calling PipelineResponse.get()");
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        if (!built) {
+            response = builder.build(data);
+            data = null;
+            built = true;
+        }
+        return response;
+    }
+}
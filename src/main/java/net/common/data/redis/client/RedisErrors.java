@@ -0,0 +1,73 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.RedisDeadlineExceededException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * 异常分类：RedisImpl把所有异常包装为JedisException，需要沿异常链判断原因
+ */
+final class RedisErrors {
+
+    private RedisErrors() {
+
+    }
+
+    /**
+     * 是否是连接错误：异常链中有连接异常、I/O异常或借用超时(连接断开、读写超时、连接池耗尽、截止时间已过等)；
+     * 其中连接池耗尽和截止时间已过与某个shard是否故障无关，见 {@link #isPoolExhausted} 和 {@link #isDeadlineExceeded}
+     *
+     * @param e
+     * @return
+     */
+    static boolean isConnectionError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof JedisConnectionException || t instanceof IOException
+                    || t instanceof NoSuchElementException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否是调用方的截止时间已过：与某个shard是否故障无关
+     *
+     * @param e
+     * @return
+     */
+    static boolean isDeadlineExceeded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RedisDeadlineExceededException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否是连接池耗尽：与某个shard是否故障无关
+     *
+     * @param e
+     * @return
+     */
+    static boolean isPoolExhausted(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof NoSuchElementException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,145 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.monitor.ShardStats;
+
+import java.util.Map;
+
+/**
+ * 一个Redis group的JMX管理接口，由 {@link RedisServiceLoaderImpl} 在加载group时注册为
+ * net.common.data.redis:type=RedisGroup,name=group名
+ */
+public interface RedisGroupMXBean {
+
+    /**
+     * 连接池最大连接数(所有shard合计)
+     *
+     * @return
+     */
+    int getPoolMaxTotal();
+
+    /**
+     * 调整连接池最大连接数；启用自动调整时同时作为自动调整的上限
+     *
+     * @param maxTotal
+     */
+    void setPoolMaxTotal(int maxTotal);
+
+    int getPoolMaxIdle();
+
+    void setPoolMaxIdle(int maxIdle);
+
+    int getPoolMinIdle();
+
+    void setPoolMinIdle(int minIdle);
+
+    /**
+     * 连接池大小是否正在自动调整；未配置自动调整时为false
+     *
+     * @return
+     */
+    boolean isPoolAdaptiveEnabled();
+
+    /**
+     * 暂停或恢复连接池大小的自动调整，未配置自动调整时抛出IllegalStateException
+     *
+     * @param enabled
+     */
+    void setPoolAdaptiveEnabled(boolean enabled);
+
+    /**
+     * 自动调整的连接池大小下限(所有shard合计)；未配置自动调整时为0
+     *
+     * @return
+     */
+    int getPoolAdaptiveMinTotal();
+
+    /**
+     * 自动调整的连接池大小上限(所有shard合计)；未配置自动调整时为0
+     *
+     * @return
+     */
+    int getPoolAdaptiveMaxTotal();
+
+    int getPoolNumActive();
+
+    int getPoolNumIdle();
+
+    /**
+     * 正在等待连接的线程数
+     *
+     * @return
+     */
+    int getPoolNumWaiters();
+
+    long getPoolCreatedCount();
+
+    long getPoolDestroyedCount();
+
+    /**
+     * 借用连接的平均耗时：微秒
+     *
+     * @return
+     */
+    long getPoolMeanBorrowMicros();
+
+    /**
+     * 借用连接的最大耗时：微秒
+     *
+     * @return
+     */
+    long getPoolMaxBorrowMicros();
+
+    /**
+     * shard -> 吞吐量、错误次数和耗时百分位，自上次清零起统计
+     *
+     * @return
+     */
+    Map<String, ShardStats.Snapshot> getShardStats();
+
+    /**
+     * 所有shard的错误次数之和
+     *
+     * @return
+     */
+    long getErrorCount();
+
+    /**
+     * 命令 -> 借用连接、I/O和编解码的平均耗时；未启用分阶段统计时为空
+     *
+     * @return
+     */
+    Map<String, String> getCommandTimings();
+
+    /**
+     * 客户端慢命令日志，每行一条；未启用时为空
+     *
+     * @return
+     */
+    String getSlowLog();
+
+    /**
+     * shard -> 熔断状态(CLOSED、OPEN、HALF_OPEN)；未启用降级时为空
+     *
+     * @return
+     */
+    Map<String, String> getCircuitStates();
+
+    /**
+     * shard -> 降级返回未命中的读次数；未启用降级时为空
+     *
+     * @return
+     */
+    Map<String, Long> getDegradedReads();
+
+    /**
+     * shard -> 降级丢弃的写次数；未启用降级时为空
+     *
+     * @return
+     */
+    Map<String, Long> getDroppedWrites();
+
+    /**
+     * 清零shard统计、分阶段耗时、慢命令日志和降级计数
+     */
+    void resetCounters();
+}
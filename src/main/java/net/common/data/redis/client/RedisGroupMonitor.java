@@ -0,0 +1,258 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.monitor.CommandTimings;
+import net.common.data.redis.monitor.PoolStats;
+import net.common.data.redis.monitor.ShardStats;
+import net.common.data.redis.monitor.SlowLog;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RedisGroupMXBean} 的实现：读取RedisImpl和连接池上的统计，调整连接池大小
+ */
+class RedisGroupMonitor implements RedisGroupMXBean {
+
+    private static final String DOMAIN = "net.common.data.redis";
+
+    private final RedisImpl redis;
+
+    private final InstrumentedShardedJedisPool pool;
+
+    /**
+     * 未启用连接池自动调整时为null
+     */
+    private final AdaptivePoolSizer sizer;
+
+    /**
+     * 未启用降级时为null
+     */
+    private final DegradedRedis degraded;
+
+    private RedisGroupMonitor(RedisImpl redis, InstrumentedShardedJedisPool pool, AdaptivePoolSizer sizer,
+                              DegradedRedis degraded) {
+        this.redis = redis;
+        this.pool = pool;
+        this.sizer = sizer;
+        this.degraded = degraded;
+    }
+
+    /**
+     * 注册group的MBean，同名的MBean已经存在时(重新加载group)替换掉
+     *
+     * @param group
+     * @param redis
+     * @param pool
+     * @param sizer    : 未启用连接池自动调整时为null
+     * @param degraded : 未启用降级时为null
+     * @throws Exception
+     */
+    static void register(String group, RedisImpl redis, InstrumentedShardedJedisPool pool, AdaptivePoolSizer sizer,
+                         DegradedRedis degraded) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = objectName(group);
+        RedisGroupMonitor monitor = new RedisGroupMonitor(redis, pool, sizer, degraded);
+        try {
+            server.registerMBean(monitor, name);
+        } catch (InstanceAlreadyExistsException e) {
+            try {
+                server.unregisterMBean(name);
+            } catch (InstanceNotFoundException ignore) {
+                // 已经被并发注销
+            }
+            server.registerMBean(monitor, name);
+        }
+    }
+
+    /**
+     * 注销group的MBean，不存在时忽略
+     *
+     * @param group
+     */
+    static void unregister(String group) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(group));
+        } catch (InstanceNotFoundException ignore) {
+            // 没有注册过或者已经注销
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister redis group MBean " + group, e);
+        }
+    }
+
+    private static ObjectName objectName(String group) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":type=RedisGroup,name=" + ObjectName.quote(group));
+    }
+
+    @Override
+    public int getPoolMaxTotal() {
+        return pool.stats().getMaxTotal();
+    }
+
+    @Override
+    public void setPoolMaxTotal(int maxTotal) {
+        if (sizer != null) {
+            sizer.setMaxTotal(maxTotal);
+        } else {
+            pool.setMaxTotal(maxTotal);
+        }
+    }
+
+    @Override
+    public int getPoolMaxIdle() {
+        return pool.getMaxIdle();
+    }
+
+    @Override
+    public void setPoolMaxIdle(int maxIdle) {
+        if (sizer != null) {
+            sizer.setMaxIdle(maxIdle);
+        } else {
+            pool.setMaxIdle(maxIdle);
+        }
+    }
+
+    @Override
+    public int getPoolMinIdle() {
+        return pool.getMinIdle();
+    }
+
+    @Override
+    public void setPoolMinIdle(int minIdle) {
+        pool.setMinIdle(minIdle);
+    }
+
+    @Override
+    public boolean isPoolAdaptiveEnabled() {
+        return sizer != null && sizer.isEnabled();
+    }
+
+    @Override
+    public void setPoolAdaptiveEnabled(boolean enabled) {
+        if (sizer == null) {
+            throw new IllegalStateException("Adaptive pool sizing is not configured for this group.");
+        }
+        sizer.setEnabled(enabled);
+    }
+
+    @Override
+    public int getPoolAdaptiveMinTotal() {
+        return sizer == null ? 0 : sizer.getMinTotal();
+    }
+
+    @Override
+    public int getPoolAdaptiveMaxTotal() {
+        return sizer == null ? 0 : sizer.getMaxTotal();
+    }
+
+    @Override
+    public int getPoolNumActive() {
+        return pool.getNumActive();
+    }
+
+    @Override
+    public int getPoolNumIdle() {
+        return pool.getNumIdle();
+    }
+
+    @Override
+    public int getPoolNumWaiters() {
+        return pool.getNumWaiters();
+    }
+
+    @Override
+    public long getPoolCreatedCount() {
+        return pool.stats().getCreatedCount();
+    }
+
+    @Override
+    public long getPoolDestroyedCount() {
+        return pool.stats().getDestroyedCount();
+    }
+
+    @Override
+    public long getPoolMeanBorrowMicros() {
+        PoolStats stats = pool.stats();
+        return stats.getBorrowCount() == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMicros(stats.getBorrowNanos() / stats.getBorrowCount());
+    }
+
+    @Override
+    public long getPoolMaxBorrowMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(pool.stats().getMaxBorrowNanos());
+    }
+
+    @Override
+    public Map<String, ShardStats.Snapshot> getShardStats() {
+        ShardStats shardStats = redis.getShardStats();
+        return shardStats == null ? Collections.<String, ShardStats.Snapshot>emptyMap() : shardStats.snapshot();
+    }
+
+    @Override
+    public long getErrorCount() {
+        long errors = 0;
+        for (ShardStats.Snapshot snapshot : getShardStats().values()) {
+            errors += snapshot.getErrors();
+        }
+        return errors;
+    }
+
+    @Override
+    public Map<String, String> getCommandTimings() {
+        CommandTimings commandTimings = redis.getCommandTimings();
+        if (commandTimings == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, CommandTimings.Snapshot> entry : commandTimings.snapshot().entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toString());
+        }
+        return result;
+    }
+
+    @Override
+    public String getSlowLog() {
+        SlowLog slowLog = redis.getSlowLog();
+        return slowLog == null ? "" : slowLog.dumpAsString();
+    }
+
+    @Override
+    public Map<String, String> getCircuitStates() {
+        return degraded == null ? Collections.<String, String>emptyMap() : degraded.circuitStates();
+    }
+
+    @Override
+    public Map<String, Long> getDegradedReads() {
+        return degraded == null ? Collections.<String, Long>emptyMap() : degraded.degradedReads();
+    }
+
+    @Override
+    public Map<String, Long> getDroppedWrites() {
+        return degraded == null ? Collections.<String, Long>emptyMap() : degraded.droppedWrites();
+    }
+
+    @Override
+    public void resetCounters() {
+        pool.resetBorrowStats();
+        if (degraded != null) {
+            degraded.resetCounters();
+        }
+        if (redis.getShardStats() != null) {
+            redis.getShardStats().reset();
+        }
+        if (redis.getCommandTimings() != null) {
+            redis.getCommandTimings().reset();
+        }
+        if (redis.getSlowLog() != null) {
+            redis.getSlowLog().clear();
+        }
+    }
+}
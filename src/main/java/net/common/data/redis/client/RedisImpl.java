@@ -1,17 +1,44 @@
 package net.common.data.redis.client;
 
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import net.common.data.redis.IRedis;
+import net.common.data.redis.RankedMember;
+import net.common.data.redis.constant.Constants;
+import net.common.data.redis.monitor.BigKeyDetector;
+import net.common.data.redis.monitor.CommandTimings;
+import net.common.data.redis.monitor.HotKeyDetector;
+import net.common.data.redis.monitor.PoolStats;
+import net.common.data.redis.monitor.ShardStats;
+import net.common.data.redis.monitor.SlowLog;
 import net.common.utils.codec.HessianCodecUtil;
+import redis.clients.jedis.Client;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.jedis.Tuple;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
 
+import java.io.Closeable;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 /**
  * <p/>
@@ -19,15 +46,312 @@ import java.util.Set;
  * Date: 2015/7/1
  * Time: 10:54
  */
-public class RedisImpl implements IRedis {
+public class RedisImpl implements IRedis, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(RedisImpl.class.getName());
 
     /**
      * 基于shard的jedis客户端池
      */
     private ShardedJedisPool pool;
 
+    /**
+     * pipeline并行读取多shard应答的线程池，为null时按顺序读取
+     */
+    private final ExecutorService pipelineDrainExecutor;
+
+    // topNCache、hotKeyDetector、hotKeyReplicator和writeBehindQueue在 #start 中创建：它们持有this或者启动线程
+
+    /**
+     * SortSet前N名本地缓存，为null时不启用
+     */
+    private TopNCache topNCache;
+
+    /**
+     * 大value读写使用的buffer池
+     */
+    private final ByteBufferPool bufferPool = new ByteBufferPool();
+
+    /**
+     * 对象编码后超过该长度时分块存储，0表示不分块
+     */
+    private final int chunkThresholdBytes;
+
+    /**
+     * 分块存储的块大小
+     */
+    private final int chunkSizeBytes;
+
+    /**
+     * 分块存储的对象未指定过期时间时的过期时间：秒
+     */
+    private final int chunkMaxTtlSeconds;
+
+    /**
+     * 并行读写分块的线程池，不分块时为null
+     */
+    private final ExecutorService chunkFetchExecutor;
+
+    /**
+     * 对象异步写入队列，为null时不启用
+     */
+    private WriteBehindQueue writeBehindQueue;
+
+    /**
+     * 热点key检测，为null时不检测
+     */
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 客户端慢命令日志，为null时不启用
+     */
+    private final SlowLog slowLog;
+
+    /**
+     * 按命令统计的分阶段耗时，为null时不启用
+     */
+    private final CommandTimings commandTimings;
+
+    /**
+     * 写入时的过期时间抖动
+     */
+    private final TtlJitter ttlJitter;
+
+    /**
+     * 按shard统计的吞吐量、错误次数和耗时分布，启用JMX时才统计
+     */
+    private final ShardStats shardStats;
+
+    /**
+     * 大key检测，为null时不启用
+     */
+    private final BigKeyDetector bigKeyDetector;
+
+    /**
+     * 热点key读副本，为null时不启用
+     */
+    private HotKeyReplicator hotKeyReplicator;
+
+    /**
+     * 分块比manifest多保留的时间：秒，保证manifest过期之前分块不会先过期
+     */
+    private static final int CHUNK_TTL_GRACE_SECONDS = 60;
+
+    /**
+     * 关闭时等待异步写入队列写出的时间：秒
+     */
+    private static final long CLOSE_FLUSH_SECONDS = 5;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] CMD_SET = SafeEncoder.encode("SET");
+    private static final byte[] CMD_GET = SafeEncoder.encode("GET");
+
+    /**
+     * 使用默认配置，不启用任何后台组件
+     *
+     * @param pool
+     */
     public RedisImpl(ShardedJedisPool pool) {
+        this(pool, new RedisServiceLoaderImpl.RedisConfig());
+    }
+
+    /**
+     * 只创建不需要this、不启动线程的部分，后台组件由 {@link #create} 在构造完成后启动
+     *
+     * @param pool
+     * @param redisConfig
+     */
+    private RedisImpl(ShardedJedisPool pool, RedisServiceLoaderImpl.RedisConfig redisConfig) {
         this.pool = pool;
+        int drainThreads = redisConfig.getPipelineDrainThreads();
+        if (drainThreads > 0) {
+            this.pipelineDrainExecutor = newDrainExecutor(drainThreads, "redis-pipeline-drain-%d");
+        } else {
+            this.pipelineDrainExecutor = null;
+        }
+        this.chunkThresholdBytes = redisConfig.getChunkThresholdBytes();
+        this.chunkSizeBytes = redisConfig.getChunkSizeBytes();
+        this.chunkMaxTtlSeconds = redisConfig.getChunkMaxTtlSeconds();
+        if (chunkThresholdBytes > 0) {
+            Preconditions.checkArgument(chunkSizeBytes > 0, "Chunk size must be positive.");
+            Preconditions.checkArgument(chunkMaxTtlSeconds > 0, "Chunk max ttl must be positive.");
+            this.chunkFetchExecutor = pipelineDrainExecutor != null ? pipelineDrainExecutor
+                    : newDrainExecutor(Constants.DEFAULT_CHUNK_FETCH_THREADS, "redis-chunk-fetch-%d");
+        } else {
+            this.chunkFetchExecutor = null;
+        }
+        this.slowLog = redisConfig.getSlowLogThresholdMillis() > 0
+                ? new SlowLog(redisConfig.getSlowLogThresholdMillis(), redisConfig.getSlowLogCapacity()) : null;
+        this.commandTimings = redisConfig.isCommandTimingsEnabled() ? new CommandTimings() : null;
+        this.ttlJitter = new TtlJitter(redisConfig.getTtlJitterPercent(), redisConfig.getTtlJitterSeconds());
+        this.shardStats = redisConfig.isJmxEnabled() ? new ShardStats() : null;
+        this.bigKeyDetector = redisConfig.isBigKeyEnabled()
+                ? new BigKeyDetector(redisConfig.getBigKeyWarnElements(), redisConfig.getBigKeyWarnBytes()) : null;
+    }
+
+    /**
+     * 创建客户端并启动配置中启用的后台组件：前N名缓存、热点key检测和副本、异步写入队列。
+     * 不再使用时调用 {@link #close()} 停止后台线程
+     *
+     * @param pool
+     * @param redisConfig
+     * @return
+     */
+    public static RedisImpl create(ShardedJedisPool pool, RedisServiceLoaderImpl.RedisConfig redisConfig) {
+        RedisImpl redis = new RedisImpl(pool, redisConfig);
+        try {
+            redis.start(redisConfig);
+        } catch (RuntimeException e) {
+            redis.close();
+            throw e;
+        }
+        return redis;
+    }
+
+    private void start(RedisServiceLoaderImpl.RedisConfig redisConfig) {
+        if (redisConfig.getTopNCacheSize() > 0) {
+            this.topNCache = new TopNCache(this, redisConfig.getTopNCacheSize(),
+                    redisConfig.getTopNCacheRefreshMillis());
+        }
+        if (redisConfig.getHotKeySampleRate() > 0) {
+            this.hotKeyDetector = new HotKeyDetector(redisConfig.getHotKeySampleRate(), redisConfig.getHotKeyTopK(),
+                    redisConfig.getHotKeyWindowMillis(), redisConfig.isHotKeyLogEnabled());
+        }
+        if (redisConfig.getHotKeyReplicaCopies() >= 2) {
+            this.hotKeyReplicator = new HotKeyReplicator(pool, redisConfig.getHotKeyReplicaCopies(),
+                    redisConfig.getHotKeyReplicaThreshold(), redisConfig.getHotKeyReplicaTtlSeconds());
+            if (redisConfig.getHotKeyReplicaKeys() != null) {
+                for (String hotKey : redisConfig.getHotKeyReplicaKeys().split(",")) {
+                    if (!hotKey.trim().isEmpty()) {
+                        hotKeyReplicator.markHot(hotKey.trim());
+                    }
+                }
+            }
+            if (hotKeyDetector != null) {
+                hotKeyDetector.addListener(hotKeyReplicator);
+            }
+        }
+        if (redisConfig.getWriteBehindQueueSize() > 0) {
+            this.writeBehindQueue = new WriteBehindQueue(this, pool, redisConfig.getWriteBehindQueueSize(),
+                    redisConfig.getWriteBehindBatchSize(), redisConfig.getWriteBehindFlushIntervalMillis(),
+                    WriteBehindQueue.FullPolicy.valueOf(redisConfig.getWriteBehindFullPolicy()));
+        }
+    }
+
+    /**
+     * 停止后台组件和线程：异步写入队列先写出剩余的写入(最多等待 {@link #CLOSE_FLUSH_SECONDS} 秒)，
+     * 之后不能再使用该客户端。连接池由创建方关闭
+     */
+    @Override
+    public void close() {
+        if (writeBehindQueue != null) {
+            try {
+                if (!writeBehindQueue.shutdown(CLOSE_FLUSH_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warning("Redis write behind queue not drained on close, depth="
+                            + writeBehindQueue.getQueueDepth());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (hotKeyDetector != null) {
+            hotKeyDetector.shutdown();
+        }
+        if (hotKeyReplicator != null) {
+            hotKeyReplicator.shutdown();
+        }
+        if (topNCache != null) {
+            topNCache.shutdown();
+        }
+        if (chunkFetchExecutor != null) {
+            chunkFetchExecutor.shutdown();
+        }
+        if (pipelineDrainExecutor != null) {
+            pipelineDrainExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 获得热点key检测，用于查看各shard、各命令的热点key；未启用时返回null
+     *
+     * @return
+     */
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * 获得客户端慢命令日志，可以通过 {@link SlowLog#dump()} 查看；未启用时返回null
+     *
+     * @return
+     */
+    public SlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * 写入时的过期时间抖动
+     *
+     * @return
+     */
+    TtlJitter getTtlJitter() {
+        return ttlJitter;
+    }
+
+    /**
+     * 获得按命令统计的借用连接、I/O和编解码耗时；未启用时返回null
+     *
+     * @return
+     */
+    public CommandTimings getCommandTimings() {
+        return commandTimings;
+    }
+
+    /**
+     * 获得按shard统计的吞吐量、错误次数和耗时分布；未启用JMX时返回null
+     *
+     * @return
+     */
+    public ShardStats getShardStats() {
+        return shardStats;
+    }
+
+    /**
+     * 获得连接池状态：借用耗时、活跃/空闲/等待连接数、创建/销毁计数；
+     * 连接池不是由 {@link RedisServiceLoaderImpl} 创建时返回null
+     *
+     * @return
+     */
+    public PoolStats getPoolStats() {
+        return pool instanceof InstrumentedShardedJedisPool ? ((InstrumentedShardedJedisPool) pool).stats() : null;
+    }
+
+    /**
+     * 获得大key检测，用于查看每个shard上数据量最大的key；未启用时返回null
+     *
+     * @return
+     */
+    public BigKeyDetector getBigKeyDetector() {
+        return bigKeyDetector;
+    }
+
+    /**
+     * 获得热点key读副本，用于手工标记热点key；未启用时返回null
+     *
+     * @return
+     */
+    public HotKeyReplicator getHotKeyReplicator() {
+        return hotKeyReplicator;
+    }
+
+    /**
+     * 获得对象异步写入队列，用于查看队列深度和写入耗时等监控数据；未启用时返回null
+     *
+     * @return
+     */
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
     }
 
     /**
@@ -39,11 +363,13 @@ public class RedisImpl implements IRedis {
 
     @Override
     public Long scard(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_scard", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_scard");
         try {
             return shardedJedis.scard(key);
@@ -55,6 +381,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_scard", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -68,11 +395,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public <T extends Serializable> Long saddObject(String key, T value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_saddObject", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_saddObject");
         try {
             final byte[] keyBytes = getStringBytes(key);
@@ -86,6 +415,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_saddObject", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -98,11 +428,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public boolean sismember(final String key, final String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_sismember", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_sismember");
         try {
             return shardedJedis.sismember(key, member);
@@ -114,6 +446,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_sismember", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -127,11 +460,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public <T extends Serializable> Boolean sismemberObject(String key, T value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_sismemberObject", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_sismemberObject");
         try {
             final byte[] keyBytes = getStringBytes(key);
@@ -145,6 +480,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_sismemberObject", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -156,14 +492,18 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public Set<String> smembers(final String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_smembers", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_smembers");
         try {
-            return shardedJedis.smembers(key);
+            Set<String> reply = shardedJedis.smembers(key);
+            recordReply(shardInfo, "Redis_smembers", key, reply);
+            return reply;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -172,6 +512,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_smembers", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -184,20 +525,29 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public <T extends Serializable> Set<T> smembersObject(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_smembersObject", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_smembersObject");
-
+        long decodeNanos = 0;
         try {
             final byte[] keyBytes = getStringBytes(key);
             Set<byte[]> set = shardedJedis.smembers(keyBytes);
+            final long decodeSt = System.nanoTime();
             Set<T> result = new HashSet<T>();
+            long bytes = 0;
             for (byte[] b : set) {
                 T t = (T) HessianCodecUtil.decode(b);
                 result.add(t);
+                bytes += b.length;
+            }
+            decodeNanos = System.nanoTime() - decodeSt;
+            if (bigKeyDetector != null) {
+                bigKeyDetector.record(shardInfo, "Redis_smembersObject", key, set.size(), bytes);
             }
             return result;
         } catch (Exception e) {
@@ -208,17 +558,21 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_smembersObject", key,
+                    st - borrowSt, System.nanoTime() - st - decodeNanos, decodeNanos, success);
         }
 
     }
 
     @Override
     public Long hincr(final String key, final String field, final long value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hincr", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hincr");
         try {
             return shardedJedis.hincrBy(key, field, value);
@@ -230,26 +584,26 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hincr", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public void hincr(final String key, final String field, final long value, final int expireSeconds) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hincr expire", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hincr expire");
         try {
             if (expireSeconds > 0) {
-                shardedJedis.pipelined(new BaseShardedJedisPipeline("RedisImpl_hincr expire") {
-                    @Override
-                    public void execute() {
-                        hincrBy(key, field, (int) value);
-                        expire(key, expireSeconds);
-                    }
-                });
+                // hincrby + expire 一次原子调用
+                RedisScript.HINCR_EXPIRE.eval(shardedJedis.getShard(key), shardInfo,
+                        Collections.singletonList(getStringBytes(key)),
+                        Arrays.asList(getStringBytes(field), toBytes(value), toBytes(ttlJitter.apply(expireSeconds))));
             } else {
                 //不设置过期时间
                 shardedJedis.hincrBy(key, field, value);
@@ -262,16 +616,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hincr expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String hget(String key, String field) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hget", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hget");
         try {
             return shardedJedis.hget(key, field);
@@ -283,16 +640,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hget", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public byte[] hget(byte[] key, byte[] field) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hget_byte", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hget_byte");
         try {
             return shardedJedis.hget(key, field);
@@ -304,16 +664,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hget_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public boolean hexists(String key, String field) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hexists", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hexists");
         try {
             return shardedJedis.hexists(key, field);
@@ -325,19 +688,24 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hexists", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Map<String, String> hgetAll(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hgetAll", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hgetAll");
         try {
-            return shardedJedis.hgetAll(key);
+            Map<String, String> reply = shardedJedis.hgetAll(key);
+            recordReply(shardInfo, "Redis_hgetAll", key, reply);
+            return reply;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -346,16 +714,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hgetAll", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public List<String> hmget(String key, String... fields) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hmget", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hmget");
         try {
             return shardedJedis.hmget(key, fields);
@@ -367,19 +738,24 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hmget", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Set<String> hkeys(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hkeys", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hkeys");
         try {
-            return shardedJedis.hkeys(key);
+            Set<String> reply = shardedJedis.hkeys(key);
+            recordReply(shardInfo, "Redis_hkeys", key, reply);
+            return reply;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -388,19 +764,24 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hkeys", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public List<String> hvals(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hvals", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hvals");
         try {
-            return shardedJedis.hvals(key);
+            List<String> reply = shardedJedis.hvals(key);
+            recordReply(shardInfo, "Redis_hvals", key, reply);
+            return reply;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -409,16 +790,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hvals", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long hset(String key, String field, String value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hset", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hset");
         try {
             return shardedJedis.hset(key, field, value);
@@ -430,16 +814,52 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hset", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public Long hset(String key, String field, String value, int expireSeconds) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_hset expire", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_hset expire");
+        try {
+            if (expireSeconds > 0) {
+                // hset + expire 一次原子调用
+                return (Long) RedisScript.HSET_EXPIRE.eval(shardedJedis.getShard(key), shardInfo,
+                        Collections.singletonList(getStringBytes(key)),
+                        Arrays.asList(getStringBytes(field), getStringBytes(value),
+                                toBytes(ttlJitter.apply(expireSeconds))));
+            } else {
+                //不设置过期时间
+                return shardedJedis.hset(key, field, value);
+            }
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hset expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long hset(byte[] key, byte[] field, byte[] value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hset_byte", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hset_byte");
         try {
             return shardedJedis.hset(key, field, value);
@@ -451,16 +871,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hset_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long hlen(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hlen", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hlen");
         try {
             return shardedJedis.hlen(key);
@@ -472,16 +895,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hlen", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long hdel(String key, String field) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hdel", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hdel");
         try {
             return shardedJedis.hdel(key, field);
@@ -493,16 +919,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hdel", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long hdel(byte[] key, byte[] field) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_hdel_byte", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_hdel_byte");
         try {
             return shardedJedis.hdel(key, field);
@@ -514,16 +943,27 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_hdel_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long del(String key) {
+        if (chunkThresholdBytes > 0) {
+            // 可能是分块存储的对象，需要同时删除分块
+            return del(getStringBytes(key));
+        }
+        deleteReplicas(key);
+        if (writeBehindQueue != null) {
+            writeBehindQueue.cancel(getStringBytes(key));
+        }
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_del", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_del");
         try {
             return shardedJedis.del(key);
@@ -535,16 +975,83 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_del", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public Long del(byte[] key) {
+        if (hotKeyReplicator != null) {
+            deleteReplicas(SafeEncoder.encode(key));
+        }
+        if (writeBehindQueue != null) {
+            writeBehindQueue.cancel(key);
+        }
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_del_byte", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_del_byte");
+        Long deleted;
+        byte[] previous = null;
+        try {
+            if (chunkThresholdBytes > 0) {
+                // 删除的同时取回分块存储的manifest : 一次原子调用
+                List<Object> reply = (List<Object>) RedisScript.DEL_RETURN_MANIFEST.eval(shardedJedis.getShard(key), shardInfo,
+                        Collections.singletonList(key),
+                        Arrays.asList(ChunkManifest.MAGIC, toBytes(ChunkManifest.LENGTH)));
+                deleted = (Long) reply.get(0);
+                if (reply.size() > 1) {
+                    previous = (byte[]) reply.get(1);
+                }
+            } else {
+                deleted = shardedJedis.del(key);
+            }
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_del_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+        if (previous != null) {
+            deleteChunks(key, ChunkManifest.parse(previous));
+        }
+        return deleted;
+    }
+
+    /**
+     * 删除热点key的读副本，不是热点key时什么也不做
+     *
+     * @param key
+     */
+    private void deleteReplicas(String key) {
+        if (hotKeyReplicator == null) {
+            return;
+        }
+        String[] replicaKeys = hotKeyReplicator.replicaKeys(key);
+        if (replicaKeys != null) {
+            for (String replicaKey : replicaKeys) {
+                del(replicaKey);
+            }
         }
     }
 
     @Override
     public Long rpush(String key, String string) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_rpush", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_rpush");
         try {
             return shardedJedis.rpush(key, string);
@@ -556,16 +1063,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_rpush", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long lpush(String key, String string) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lpush", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lpush");
         try {
             return shardedJedis.lpush(key, string);
@@ -578,16 +1088,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lpush", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long llen(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_llen", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_llen");
         try {
             return shardedJedis.llen(key);
@@ -600,20 +1113,24 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_llen", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public List<String> lrange(String key, long start, long end) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lrange", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lrange");
         try {
-            return shardedJedis.lrange(key, start, end);
-
+            List<String> reply = shardedJedis.lrange(key, start, end);
+            recordReply(shardInfo, "Redis_lrange", key, reply);
+            return reply;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -622,16 +1139,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lrange", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String ltrim(String key, long start, long end) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_ltrim", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_ltrim");
         try {
             return shardedJedis.ltrim(key, start, end);
@@ -644,16 +1164,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_ltrim", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String lindex(String key, long index) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lindex", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lindex");
         try {
             return shardedJedis.lindex(key, index);
@@ -666,16 +1189,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lindex", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String lset(String key, long index, String value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lset", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lset");
         try {
             return shardedJedis.lset(key, index, value);
@@ -688,16 +1214,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lset", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long lrem(String key, long count, String value) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lrem", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lrem");
         try {
             return shardedJedis.lrem(key, count, value);
@@ -710,16 +1239,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lrem", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String lpop(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_lpop", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_lpop");
         try {
             return shardedJedis.lpop(key);
@@ -732,16 +1264,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_lpop", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String rpop(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_rpop", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_rpop");
         try {
             return shardedJedis.rpop(key);
@@ -754,17 +1289,20 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_rpop", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
 
     @Override
     public Long incr(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_incr", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_incr");
         try {
             return shardedJedis.incr(key);
@@ -777,16 +1315,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_incr", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Boolean exists(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_exists", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_exists");
         try {
             return shardedJedis.exists(key);
@@ -799,28 +1340,51 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_exists", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public Boolean exists(byte[] key) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_exists_byte", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_exists_byte");
+        try {
+            return shardedJedis.exists(key);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_exists_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long incr(final String key, final int expireSec) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_incr_expire", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_incr_expire");
         try {
             Long value;
             if (expireSec > 0) {
-                List<Object> results = shardedJedis.pipelined(new BaseShardedJedisPipeline("RedisImpl_incr_expire") {
-                    @Override
-                    public void execute() {
-                        incr(key);
-                        expire(key, expireSec);
-                    }
-                });
-                value = (Long) results.get(0);
+                // incr + expire 一次原子调用
+                value = (Long) RedisScript.INCR_EXPIRE.eval(shardedJedis.getShard(key), shardInfo,
+                        Collections.singletonList(getStringBytes(key)),
+                        Collections.singletonList(toBytes(ttlJitter.apply(expireSec))));
             } else {
                 //不设置过期时间
                 value = shardedJedis.incr(key);
@@ -834,17 +1398,20 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_incr_expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
 
     @Override
     public Long expire(String key, int seconds) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_expire", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_expire");
         try {
             return shardedJedis.expire(key, seconds);
@@ -857,6 +1424,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -869,11 +1437,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public Long zrevrank(String key, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_zrevrank", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_zrevrank");
         try {
             return shardedJedis.zrevrank(key, member);
@@ -885,6 +1455,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zrevrank", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -896,11 +1467,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public Long zcard(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_zcard", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_zcard");
         try {
             return shardedJedis.zcard(key);
@@ -912,26 +1485,27 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zcard", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     /**
-     * 根据byte[] key 获得 byte[] 类型数据
-     *
-     * @param key
-     * @return
+     * SortSet操作 ：增加一个成员，已存在时更新分数
      */
     @Override
-    public byte[] get(byte[] key) {
+    public Long zadd(String key, double score, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
-        String itemName = this.genProbeItemName(shardInfo, "Redis_get_byte");
+        recordHotKey(shardInfo, "Redis_zadd", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zadd");
         try {
-            return shardedJedis.get(key);
-
+            Long added = shardedJedis.zadd(key, score, member);
+            markTopNDirty(key);
+            return added;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -940,27 +1514,27 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zadd", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     /**
-     * 根据byte[] key 存入 byte[] 类型数据
-     *
-     * @param key
-     * @param value
-     * @return
+     * SortSet操作 ：一次增加/更新多个成员(一条ZADD命令)
      */
     @Override
-    public String set(byte[] key, byte[] value) {
+    public Long zadd(String key, Map<String, Double> scoreMembers) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
-        String itemName = this.genProbeItemName(shardInfo, "Redis_set_byte");
+        recordHotKey(shardInfo, "Redis_zadd_batch", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zadd_batch");
         try {
-            return shardedJedis.set(key, value);
-
+            Long added = shardedJedis.zadd(key, scoreMembers);
+            markTopNDirty(key);
+            return added;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -969,26 +1543,27 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zadd_batch", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     /**
-     * 设置基于 byte[] key 的失效时间
-     *
-     * @param key
-     * @param seconds
-     * @return
+     * SortSet操作 ：为成员的分数加上增量
      */
     @Override
-    public Long expire(byte[] key, int seconds) {
+    public Double zincrby(String key, double increment, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
-        String itemName = this.genProbeItemName(shardInfo, "Redis_expire");
+        recordHotKey(shardInfo, "Redis_zincrby", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zincrby");
         try {
-            return shardedJedis.expire(key, seconds);
+            Double score = shardedJedis.zincrby(key, increment, member);
+            markTopNDirty(key);
+            return score;
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -997,26 +1572,385 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zincrby", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     /**
-     * SortSet ： 删除一个成员
-     *
-     * @param key
+     * SortSet操作 ：为多个成员的分数加上各自的增量，同一个key在同一个shard上，通过一次pipeline完成
+     */
+    @Override
+    public Map<String, Double> zincrby(final String key, final Map<String, Double> increments) {
+        final Map<String, PipelineResponse<Double>> responses = new LinkedHashMap<String, PipelineResponse<Double>>();
+        pipelined(new BaseShardedJedisPipeline("RedisImpl_zincrby_batch") {
+            @Override
+            public void execute() {
+                for (Map.Entry<String, Double> entry : increments.entrySet()) {
+                    responses.put(entry.getKey(), zincrby(key, entry.getValue(), entry.getKey()));
+                }
+            }
+        });
+        markTopNDirty(key);
+        Map<String, Double> scores = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, PipelineResponse<Double>> entry : responses.entrySet()) {
+            scores.put(entry.getKey(), entry.getValue().get());
+        }
+        return scores;
+    }
+
+    /**
+     * SortSet操作 ：获取成员的分数
+     */
+    @Override
+    public Double zscore(String key, String member) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_zscore", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zscore");
+        try {
+            return shardedJedis.zscore(key, member);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zscore", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：按反排序获取指定名次区间的成员和分数
+     */
+    @Override
+    public List<RankedMember> zrevrangeWithScores(String key, long start, long end) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_zrevrangeWithScores", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zrevrangeWithScores");
+        try {
+            if (start < 0) {
+                // 负的起始名次需要按成员数换算，名次才是从0开始的真实名次
+                Object reply = RedisScript.ZREVRANGE_FROM.eval(shardedJedis.getShard(key), shardInfo,
+                        Collections.singletonList(getStringBytes(key)), Arrays.asList(toBytes(start), toBytes(end)));
+                return toRankedMembers((List<Object>) reply);
+            }
+            return toRankedMembers(shardedJedis.zrevrangeWithScores(key, start, end), start);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zrevrangeWithScores", key,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：获取成员前后各radius名的成员和分数(包括成员自己)，一次原子调用
+     */
+    @Override
+    public List<RankedMember> zrevrankAround(String key, String member, int radius) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_zrevrankAround", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zrevrankAround");
+        try {
+            Object reply = RedisScript.ZREVRANK_AROUND.eval(shardedJedis.getShard(key), shardInfo,
+                    Collections.singletonList(getStringBytes(key)),
+                    Arrays.asList(getStringBytes(member), toBytes(radius)));
+            if (reply == null) {
+                return new ArrayList<RankedMember>(0);
+            }
+            return toRankedMembers((List<Object>) reply);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zrevrankAround", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * SortSet操作 ：按反排序获取分数在[min, max]之间的成员和分数
+     */
+    @Override
+    public List<RankedMember> zrevrangeByScoreWithScores(String key, double max, double min, int offset, int count) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_zrevrangeByScoreWithScores", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_zrevrangeByScoreWithScores");
+        try {
+            // 名次需要在同一次调用里取第一个成员的名次，不能用offset代替
+            Object reply = RedisScript.ZREVRANGEBYSCORE_RANKED.eval(shardedJedis.getShard(key), shardInfo,
+                    Collections.singletonList(getStringBytes(key)),
+                    Arrays.asList(toBytes(max), toBytes(min), toBytes(offset), toBytes(count)));
+            return toRankedMembers((List<Object>) reply);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zrevrangeByScoreWithScores", key,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public List<RankedMember> ztopCached(String key, int n) {
+        if (n <= 0) {
+            return new ArrayList<RankedMember>(0);
+        }
+        if (topNCache == null) {
+            return zrevrangeWithScores(key, 0, n - 1);
+        }
+        return topNCache.top(key, n);
+    }
+
+    @Override
+    public Long zrevrankCached(String key, String member) {
+        if (topNCache == null) {
+            return zrevrank(key, member);
+        }
+        return topNCache.rank(key, member);
+    }
+
+    /**
+     * 根据byte[] key 获得 byte[] 类型数据
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public byte[] get(byte[] key) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_get_byte", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_get_byte");
+        try {
+            return shardedJedis.get(key);
+
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_get_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * 根据byte[] key 存入 byte[] 类型数据
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    @Override
+    public String set(byte[] key, byte[] value) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_set_byte", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_set_byte");
+        try {
+            return shardedJedis.set(key, value);
+
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_set_byte", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * 根据byte[] key 存入 ByteBuffer 中剩余的数据，直接写socket，不复制value
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    @Override
+    public String set(byte[] key, ByteBuffer value) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_set_buffer", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_set_buffer");
+        try {
+            Socket socket = connectedClient(shardedJedis, key).getSocket();
+            OutputStream out = RespStreams.bufferedOutput(socket);
+            RespStreams.writeCommand(out, value.remaining(), CMD_SET, key);
+            RespStreams.writeBulkBody(out, value);
+            return RespStreams.readStatus(RespStreams.bufferedInput(socket));
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_set_buffer", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * 根据byte[] key 把数据直接从socket读入池化的ByteBuffer
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public ByteBuffer getBuffer(byte[] key) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_get_buffer", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_get_buffer");
+        try {
+            Socket socket = connectedClient(shardedJedis, key).getSocket();
+            OutputStream out = RespStreams.bufferedOutput(socket);
+            RespStreams.writeCommand(out, -1, CMD_GET, key);
+            out.flush();
+            return RespStreams.readBulk(RespStreams.bufferedInput(socket), bufferPool);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_get_buffer", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * 查询对象：Hessian只读取一个对象，池化buffer尾部多余的字节不影响解码
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public Object getObjectPooled(String key) {
+        ByteBuffer buffer = getBuffer(getStringBytes(key));
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            return HessianCodecUtil.decode(buffer.array());
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 设置基于 byte[] key 的失效时间
+     *
+     * @param key
+     * @param seconds
+     * @return
+     */
+    @Override
+    public Long expire(byte[] key, int seconds) {
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_expire", key);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_expire");
+        try {
+            return shardedJedis.expire(key, seconds);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    /**
+     * SortSet ： 删除一个成员
+     *
+     * @param key
      * @param member
      * @return
      */
     @Override
     public Long zrem(String key, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_zrem", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_zrem");
         try {
-            return shardedJedis.zrem(key, member);
+            Long removed = shardedJedis.zrem(key, member);
+            markTopNDirty(key);
+            return removed;
 
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
@@ -1026,6 +1960,7 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_zrem", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
@@ -1037,11 +1972,13 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public Long decr(String key) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_decr", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_decr");
         try {
             return shardedJedis.decr(key);
@@ -1054,20 +1991,31 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_decr", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public String set(String key, String value, int expireSecond) {
+        if (hotKeyReplicator != null) {
+            String[] replicaKeys = hotKeyReplicator.replicaKeys(key);
+            if (replicaKeys != null) {
+                for (String replicaKey : replicaKeys) {
+                    set(replicaKey, value, hotKeyReplicator.replicaTtl(expireSecond));
+                }
+            }
+        }
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_set_expire", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_set_expire");
         try {
             if (expireSecond > 0) {
-                return shardedJedis.setex(key, expireSecond, value);
+                return shardedJedis.setex(key, ttlJitter.apply(expireSecond), value);
             } else {
                 //不设置过期时间
                 return shardedJedis.set(key, value);
@@ -1080,17 +2028,30 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_set_expire", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
 
     }
 
     @Override
     public String get(String key) {
+        if (hotKeyReplicator != null) {
+            String readKey = hotKeyReplicator.readKey(key);
+            if (!readKey.equals(key)) {
+                // 读副本，副本尚未建立时读原key
+                String value = get(readKey);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_get", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_get");
         try {
             return shardedJedis.get(key);
@@ -1103,16 +2064,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_get", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long srem(String key, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_srem", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_srem");
         try {
             return shardedJedis.srem(key, member);
@@ -1124,16 +2088,19 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_srem", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public Long sadd(String key, String member) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         String shardInfo = shardedJedis.getShardInfo(key).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_sadd", key);
         String itemName = this.genProbeItemName(shardInfo, "Redis_sadd");
         try {
             return shardedJedis.sadd(key, member);
@@ -1145,21 +2112,89 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_sadd", key, st - borrowSt, System.nanoTime() - st, 0, success);
         }
     }
 
     @Override
     public <T extends Serializable> void setObject(final String key, final T value, final int expireSecond) {
+        if (hotKeyReplicator != null) {
+            String[] replicaKeys = hotKeyReplicator.replicaKeys(key);
+            if (replicaKeys != null) {
+                for (String replicaKey : replicaKeys) {
+                    setObject(getStringBytes(replicaKey), value, hotKeyReplicator.replicaTtl(expireSecond));
+                }
+            }
+        }
+        setObject(getStringBytes(key), value, expireSecond);
+    }
+
+    @Override
+    public <T extends Serializable> void setObject(final byte[] keyBytes, final T value, final int expireSecond) {
+        final long encodeSt = System.nanoTime();
+        byte[] valueBytes = HessianCodecUtil.encode(value);
+        setObjectBytes(keyBytes, valueBytes, ttlJitter.apply(expireSecond), System.nanoTime() - encodeSt);
+    }
+
+    @Override
+    public <T extends Serializable> void setObjectAsync(String key, T value, int expireSeconds) {
+        if (hotKeyReplicator != null && hotKeyReplicator.replicaKeys(key) != null) {
+            // 热点key同步写入，同时写副本
+            setObject(key, value, expireSeconds);
+            return;
+        }
+        final byte[] keyBytes = getStringBytes(key);
+        final byte[] valueBytes = HessianCodecUtil.encode(value);
+        // 入队前加抖动：写出在后台线程，那里没有调用方的RedisTtlJitter
+        final int ttl = ttlJitter.apply(expireSeconds);
+        if (writeBehindQueue != null && (chunkThresholdBytes <= 0 || valueBytes.length <= chunkThresholdBytes)
+                && writeBehindQueue.offer(keyBytes, valueBytes, ttl)) {
+            return;
+        }
+        // 未启用、需要分块存储或者队列满：同步写入
+        setObjectBytes(keyBytes, valueBytes, ttl, 0);
+    }
+
+    /**
+     * 写入已编码的对象
+     *
+     * @param keyBytes
+     * @param valueBytes
+     * @param expireSecond
+     * @param encodeNanos  : 编码耗时，计入codec阶段
+     */
+    private void setObjectBytes(final byte[] keyBytes, byte[] valueBytes, int expireSecond, long encodeNanos) {
+        if (writeBehindQueue != null) {
+            // 同步写入覆盖队列中尚未写出的值
+            writeBehindQueue.cancel(keyBytes);
+        }
+        final boolean chunked = chunkThresholdBytes > 0 && valueBytes.length > chunkThresholdBytes;
+        if (chunked) {
+            if (expireSecond <= 0) {
+                // 分块总有过期时间 : manifest被淘汰或被覆盖时分块不会永久残留
+                expireSecond = chunkMaxTtlSeconds;
+            }
+            // 大对象先写分块，再写manifest : 读到新manifest时分块已经齐全
+            ChunkManifest manifest = ChunkManifest.create(valueBytes.length, chunkSizeBytes);
+            writeChunks(keyBytes, valueBytes, manifest, expireSecond);
+            valueBytes = manifest.toBytes();
+        }
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
-        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_setObject", keyBytes);
         String itemName = this.genProbeItemName(shardInfo, "Redis_setObject");
-        final byte[] keyBytes = getStringBytes(key);
+        byte[] previous = null;
         try {
-            final byte[] valueBytes = HessianCodecUtil.encode(value);
-            if (expireSecond > 0) {
+            if (chunked) {
+                // 写入的同时取回被覆盖的manifest : 一次原子调用。小对象直接写入，被覆盖的旧分块按过期时间自行过期
+                previous = (byte[]) RedisScript.SET_RETURN_MANIFEST.eval(shardedJedis.getShard(keyBytes), shardInfo,
+                        Collections.singletonList(keyBytes),
+                        Arrays.asList(valueBytes, toBytes(expireSecond), ChunkManifest.MAGIC, toBytes(ChunkManifest.LENGTH)));
+            } else if (expireSecond > 0) {
                 shardedJedis.setex(keyBytes, expireSecond, valueBytes);
             } else {
                 //不设置过期时间
@@ -1173,36 +2208,148 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_setObject", keyBytes,
+                    st - borrowSt, System.nanoTime() - st, encodeNanos, success);
+        }
+        if (previous != null) {
+            // 旧分块已经不可见，清理掉
+            deleteChunks(keyBytes, ChunkManifest.parse(previous));
         }
     }
 
     @Override
     public Object getObject(String key, final int expireSecond) {
+        if (hotKeyReplicator != null) {
+            String readKey = hotKeyReplicator.readKey(key);
+            if (!readKey.equals(key)) {
+                // 读副本，副本尚未建立时读原key
+                Object value = getObject(getStringBytes(readKey), expireSecond);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return getObject(getStringBytes(key), expireSecond);
+    }
+
+    @Override
+    public Object getObject(final byte[] keyBytes, final int expireSecond) {
+        if (writeBehindQueue != null) {
+            // 读到自己尚未写出的写入
+            byte[] pending = writeBehindQueue.peek(keyBytes);
+            if (pending != null) {
+                return HessianCodecUtil.decode(pending);
+            }
+        }
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
-        String shardInfo = shardedJedis.getShardInfo(key).toString();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
+        recordHotKey(shardInfo, "Redis_getObject", keyBytes);
         String itemName = this.genProbeItemName(shardInfo, "Redis_getObject");
-        final byte[] keyBytes = getStringBytes(key);
+        byte[] bytes;
         try {
-            byte[] bytes;
             if (expireSecond > 0) {
-                // 访LRU,如果命中，则续时，需要指定续时时间
-                List<Object> results = shardedJedis.pipelined(new BaseShardedJedisPipeline("RedisImpl_getObject") {
-                    @Override
-                    public void execute() {
-                        get(keyBytes);
-                        expire(keyBytes, expireSecond);
-                    }
-                });
-                bytes = (byte[]) results.get(0);
+                // 访LRU,如果命中，则续时，需要指定续时时间 : get + expire 一次原子调用
+                bytes = (byte[]) RedisScript.GET_EXPIRE.eval(shardedJedis.getShard(keyBytes), shardInfo,
+                        Collections.singletonList(keyBytes),
+                        Collections.singletonList(toBytes(expireSecond)));
             } else {
                 bytes = shardedJedis.get(keyBytes);
             }
-            if (bytes != null) {
-                return HessianCodecUtil.decode(bytes);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            recordPhases(shardInfo, "Redis_getObject", keyBytes, st - borrowSt, System.nanoTime() - st, 0, false);
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+        }
+        if (bytes != null && chunkThresholdBytes > 0 && ChunkManifest.isManifest(bytes)) {
+            bytes = readChunks(keyBytes, ChunkManifest.parse(bytes), expireSecond);
+        }
+        final long decodeSt = System.nanoTime();
+        Object value = bytes == null ? null : HessianCodecUtil.decode(bytes);
+        recordPhases(shardInfo, "Redis_getObject", keyBytes, st - borrowSt, decodeSt - st,
+                System.nanoTime() - decodeSt, true);
+        return value;
+    }
+
+    @Override
+    public <T> void setObjectAsHash(String key, T bean, int expireSeconds) {
+        Preconditions.checkNotNull(bean, "bean");
+        final byte[] keyBytes = getStringBytes(key);
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_setObjectAsHash", keyBytes);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_setObjectAsHash");
+        try {
+            Map<byte[], byte[]> hash = BeanHashMapping.of(bean.getClass()).encode(bean);
+            List<byte[]> args = new ArrayList<byte[]>(hash.size() * 2 + 1);
+            args.add(toBytes(ttlJitter.apply(expireSeconds)));
+            for (Map.Entry<byte[], byte[]> entry : hash.entrySet()) {
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            // del + hmset + expire 一次原子调用
+            RedisScript.HASH_REPLACE.eval(shardedJedis.getShard(keyBytes), shardInfo,
+                    Collections.singletonList(keyBytes), args);
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_setObjectAsHash", keyBytes,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public <T> void setObjectFields(String key, T bean, String... fields) {
+        Preconditions.checkNotNull(bean, "bean");
+        BeanHashMapping mapping = BeanHashMapping.of(bean.getClass());
+        Map<byte[], byte[]> values = new LinkedHashMap<byte[], byte[]>(fields.length * 2);
+        List<byte[]> removed = new ArrayList<byte[]>();
+        for (String field : fields) {
+            BeanHashMapping.Property property = mapping.property(field);
+            byte[] value = property.encode(property.read(bean));
+            if (value != null) {
+                values.put(property.field, value);
+            } else {
+                removed.add(property.field);
             }
+        }
+        final byte[] keyBytes = getStringBytes(key);
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_setObjectFields", keyBytes);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_setObjectFields");
+        try {
+            List<byte[]> args = new ArrayList<byte[]>(values.size() * 2 + removed.size() + 1);
+            args.add(toBytes(values.size()));
+            for (Map.Entry<byte[], byte[]> entry : values.entrySet()) {
+                args.add(entry.getKey());
+                args.add(entry.getValue());
+            }
+            args.addAll(removed);
+            // exists + hmset + hdel 一次原子调用
+            RedisScript.HASH_UPDATE.eval(shardedJedis.getShard(keyBytes), shardInfo,
+                    Collections.singletonList(keyBytes), args);
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -1211,8 +2358,72 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_setObjectFields", keyBytes,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public <T> T getObjectAsHash(String key, Class<T> type) {
+        final byte[] keyBytes = getStringBytes(key);
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_getObjectAsHash", keyBytes);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_getObjectAsHash");
+        try {
+            return type.cast(BeanHashMapping.of(type).decode(shardedJedis.hgetAll(keyBytes)));
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_getObjectAsHash", keyBytes,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
+        }
+    }
+
+    @Override
+    public <T> T getObjectAsHash(String key, Class<T> type, String... fields) {
+        if (fields.length == 0) {
+            return getObjectAsHash(key, type);
+        }
+        BeanHashMapping mapping = BeanHashMapping.of(type);
+        List<BeanHashMapping.Property> properties = new ArrayList<BeanHashMapping.Property>(fields.length);
+        byte[][] fieldBytes = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            BeanHashMapping.Property property = mapping.property(fields[i]);
+            properties.add(property);
+            fieldBytes[i] = property.field;
+        }
+        final byte[] keyBytes = getStringBytes(key);
+        final long borrowSt = System.nanoTime();
+        ShardedJedis shardedJedis = pool.getResource();
+        String shardInfo = shardedJedis.getShardInfo(keyBytes).toString();
+        // 性能监控数据初始化
+        final long st = System.nanoTime();
+        boolean success = true;
+        recordHotKey(shardInfo, "Redis_getObjectAsHash_fields", keyBytes);
+        String itemName = this.genProbeItemName(shardInfo, "Redis_getObjectAsHash_fields");
+        try {
+            return type.cast(mapping.decode(properties, shardedJedis.hmget(keyBytes, fieldBytes)));
+        } catch (Exception e) {
+            returnBrokenResource(shardedJedis);
+            shardedJedis = null;
+            success = false;
+            throw new JedisException(shardInfo, e);
+        } finally {
+            returnResource(shardedJedis);
+//            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            recordPhases(shardInfo, "Redis_getObjectAsHash_fields", keyBytes,
+                    st - borrowSt, System.nanoTime() - st, 0, success);
         }
-        return null;
     }
 
     /**
@@ -1223,13 +2434,32 @@ public class RedisImpl implements IRedis {
      */
     @Override
     public List<Object> pipelined(BaseShardedJedisPipeline baseShardedJedisPipeline) {
+        baseShardedJedisPipeline.setTtlJitter(ttlJitter);
+        return pipelined(baseShardedJedisPipeline, pipelineDrainExecutor);
+    }
+
+    /**
+     * 使用管道处理多个命令，多shard时使用指定的线程池并行读取应答
+     *
+     * @param baseShardedJedisPipeline
+     * @param drainExecutor
+     * @return
+     */
+    private List<Object> pipelined(BaseShardedJedisPipeline baseShardedJedisPipeline, ExecutorService drainExecutor) {
+        final long borrowSt = System.nanoTime();
         ShardedJedis shardedJedis = pool.getResource();
         // 性能监控数据初始化
         final long st = System.nanoTime();
         boolean success = true;
         String itemName = baseShardedJedisPipeline.getFromMethodName();
         try {
-            return shardedJedis.pipelined(baseShardedJedisPipeline);
+            baseShardedJedisPipeline.setShardedJedis(shardedJedis);
+            baseShardedJedisPipeline.setDrainExecutor(drainExecutor);
+            baseShardedJedisPipeline.setSlowLog(slowLog, st - borrowSt);
+            baseShardedJedisPipeline.execute();
+            // 归还连接之前读取所有应答
+            baseShardedJedisPipeline.sync();
+            return baseShardedJedisPipeline.getResults();
         } catch (Exception e) {
             returnBrokenResource(shardedJedis);
             shardedJedis = null;
@@ -1238,9 +2468,111 @@ public class RedisImpl implements IRedis {
         } finally {
             returnResource(shardedJedis);
 //            ProbeService.time(DefaultProbes.CACHE, itemName, System.nanoTime() - st, success);
+            if (commandTimings != null) {
+                // 应答在调用方读取时才解码，不计入codec阶段
+                commandTimings.record(itemName, st - borrowSt, System.nanoTime() - st, 0);
+            }
         }
     }
 
+    /**
+     * 写入对象的所有分块，分块分散在各个shard上，按shard并行写入
+     *
+     * @param keyBytes
+     * @param valueBytes
+     * @param manifest
+     * @param expireSecond
+     */
+    private void writeChunks(final byte[] keyBytes, final byte[] valueBytes, final ChunkManifest manifest, int expireSecond) {
+        final int chunkExpire = expireSecond > 0 ? expireSecond + CHUNK_TTL_GRACE_SECONDS : 0;
+        try {
+            List<Object> results = pipelined(new BaseShardedJedisPipeline("RedisImpl_writeChunks") {
+                @Override
+                public void execute() {
+                    for (int i = 0; i < manifest.chunkCount; i++) {
+                        if (chunkExpire > 0) {
+                            setex(manifest.chunkKey(keyBytes, i), chunkExpire, manifest.chunk(valueBytes, i));
+                        } else {
+                            set(manifest.chunkKey(keyBytes, i), manifest.chunk(valueBytes, i));
+                        }
+                    }
+                }
+            }, chunkFetchExecutor);
+            // 任何一块写入失败都抛出异常
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i);
+            }
+        } catch (RuntimeException e) {
+            deleteChunks(keyBytes, manifest);
+            throw e;
+        }
+    }
+
+    /**
+     * 读取并拼接对象的所有分块，按shard并行读取；有分块缺失(已过期或已被覆盖清理)时按未命中返回null
+     *
+     * @param keyBytes
+     * @param manifest
+     * @param expireSecond : 大于0时同时为分块续时
+     * @return
+     */
+    private byte[] readChunks(final byte[] keyBytes, final ChunkManifest manifest, int expireSecond) {
+        final int chunkExpire = expireSecond > 0 ? expireSecond + CHUNK_TTL_GRACE_SECONDS : 0;
+        final List<PipelineResponse<byte[]>> chunks = new ArrayList<PipelineResponse<byte[]>>(manifest.chunkCount);
+        pipelined(new BaseShardedJedisPipeline("RedisImpl_readChunks") {
+            @Override
+            public void execute() {
+                for (int i = 0; i < manifest.chunkCount; i++) {
+                    byte[] chunkKey = manifest.chunkKey(keyBytes, i);
+                    chunks.add(get(chunkKey));
+                    if (chunkExpire > 0) {
+                        expire(chunkKey, chunkExpire);
+                    }
+                }
+            }
+        }, chunkFetchExecutor);
+        byte[] value = new byte[manifest.totalLength];
+        int pos = 0;
+        for (PipelineResponse<byte[]> chunk : chunks) {
+            byte[] bytes = chunk.get();
+            if (bytes == null || pos + bytes.length > value.length) {
+                return null;
+            }
+            System.arraycopy(bytes, 0, value, pos, bytes.length);
+            pos += bytes.length;
+        }
+        return pos == value.length ? value : null;
+    }
+
+    /**
+     * 删除对象的所有分块；清理失败不影响本次操作，带过期时间的分块会自行过期
+     *
+     * @param keyBytes
+     * @param manifest
+     */
+    private void deleteChunks(final byte[] keyBytes, final ChunkManifest manifest) {
+        try {
+            pipelined(new BaseShardedJedisPipeline("RedisImpl_deleteChunks") {
+                @Override
+                public void execute() {
+                    for (int i = 0; i < manifest.chunkCount; i++) {
+                        del(manifest.chunkKey(keyBytes, i));
+                    }
+                }
+            }, chunkFetchExecutor);
+        } catch (RuntimeException e) {
+            // 忽略
+        }
+    }
+
+    private static ExecutorService newDrainExecutor(int threads, String nameFormat) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * @param str
      * @return
@@ -1248,10 +2580,93 @@ public class RedisImpl implements IRedis {
      */
     private byte[] getStringBytes(String str) {
         try {
-            return str.getBytes(Charset.forName("UTF-8"));
+            return str.getBytes(UTF_8);
         } catch (Exception e) {
-            throw new RuntimeException("Can't get bytes for [" + str + "] with charset [" + Charset.forName("UTF-8") + "]", e);
+            throw new RuntimeException("Can't get bytes for [" + str + "] with charset [" + UTF_8 + "]", e);
+        }
+    }
+
+    /**
+     * SortSet被本客户端修改，触发本地前N名快照异步刷新
+     *
+     * @param key
+     */
+    private void markTopNDirty(String key) {
+        if (topNCache != null) {
+            topNCache.markDirty(key);
+        }
+    }
+
+    /**
+     * 脚本返回的 {起始名次, [成员, 分数, ...]} 转换为带名次的成员
+     *
+     * @param reply
+     * @return
+     */
+    private static List<RankedMember> toRankedMembers(List<Object> reply) {
+        long rank = (Long) reply.get(0);
+        List<byte[]> items = (List<byte[]>) reply.get(1);
+        List<RankedMember> result = new ArrayList<RankedMember>(items.size() / 2);
+        for (int i = 0; i + 1 < items.size(); i += 2) {
+            result.add(new RankedMember(SafeEncoder.encode(items.get(i)),
+                    Double.parseDouble(SafeEncoder.encode(items.get(i + 1))), rank++));
         }
+        return result;
+    }
+
+    /**
+     * 有序的Tuple转换为带名次的成员
+     *
+     * @param tuples
+     * @param startRank : 第一个成员的名次
+     * @return
+     */
+    private static List<RankedMember> toRankedMembers(Set<Tuple> tuples, long startRank) {
+        List<RankedMember> result = new ArrayList<RankedMember>(tuples.size());
+        long rank = startRank;
+        for (Tuple tuple : tuples) {
+            result.add(new RankedMember(tuple.getElement(), tuple.getScore(), rank++));
+        }
+        return result;
+    }
+
+    /**
+     * 获得key所在shard的连接，确保已经建立socket
+     *
+     * @param shardedJedis
+     * @param key
+     * @return
+     */
+    private static Client connectedClient(ShardedJedis shardedJedis, byte[] key) {
+        Client client = shardedJedis.getShard(key).getClient();
+        client.connect();
+        return client;
+    }
+
+    /**
+     * 数值参数转换为脚本参数
+     *
+     * @param value
+     * @return
+     */
+    private static byte[] toBytes(long value) {
+        return SafeEncoder.encode(String.valueOf(value));
+    }
+
+    /**
+     * 分数参数转换为脚本参数，无穷大转换为Redis的+inf/-inf
+     *
+     * @param value
+     * @return
+     */
+    private static byte[] toBytes(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return SafeEncoder.encode("+inf");
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return SafeEncoder.encode("-inf");
+        }
+        return SafeEncoder.encode(String.valueOf(value));
     }
 
     /**
@@ -1287,4 +2702,68 @@ public class RedisImpl implements IRedis {
         return shardInfo + ":" + methodName;
     }
 
+    /**
+     * 记录一次调用的分阶段耗时，用于shard统计、分阶段耗时统计和慢命令日志
+     *
+     * @param shardInfo
+     * @param methodName
+     * @param key
+     * @param borrowNanos : 借用连接的耗时
+     * @param ioNanos     : 发送命令到读完应答的耗时
+     * @param codecNanos  : 编解码耗时
+     * @param success     : 是否成功
+     */
+    private void recordPhases(String shardInfo, String methodName, Object key, long borrowNanos, long ioNanos,
+                              long codecNanos, boolean success) {
+        if (shardStats != null) {
+            shardStats.record(shardInfo, borrowNanos + ioNanos + codecNanos, success);
+        }
+        if (commandTimings != null) {
+            commandTimings.record(methodName, borrowNanos, ioNanos, codecNanos);
+        }
+        if (slowLog != null) {
+            String command = methodName.startsWith("Redis_") ? methodName.substring("Redis_".length()) : methodName;
+            slowLog.record(shardInfo, command, key, methodName, borrowNanos, ioNanos, codecNanos);
+        }
+    }
+
+    /**
+     * 记录集合类读取的元素数和数据量
+     *
+     * @param shardInfo
+     * @param methodName
+     * @param key
+     * @param reply
+     */
+    private void recordReply(String shardInfo, String methodName, String key, Collection<String> reply) {
+        if (bigKeyDetector != null && reply != null) {
+            bigKeyDetector.record(shardInfo, methodName, key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+    }
+
+    private void recordReply(String shardInfo, String methodName, String key, Map<String, String> reply) {
+        if (bigKeyDetector != null && reply != null) {
+            bigKeyDetector.record(shardInfo, methodName, key, reply.size(), BigKeyDetector.charCount(reply));
+        }
+    }
+
+    /**
+     * 热点key采样：启用热点key检测时记录一次访问
+     *
+     * @param shardInfo
+     * @param methodName
+     * @param key
+     */
+    private void recordHotKey(String shardInfo, String methodName, String key) {
+        if (hotKeyDetector != null) {
+            hotKeyDetector.record(shardInfo, methodName, key);
+        }
+    }
+
+    private void recordHotKey(String shardInfo, String methodName, byte[] key) {
+        if (hotKeyDetector != null) {
+            hotKeyDetector.record(shardInfo, methodName, key);
+        }
+    }
+
 }
@@ -0,0 +1,239 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 服务端Lua脚本：把多个命令合并为一次原子调用
+ * <p/>
+ * 每个shard上只SCRIPT LOAD一次并缓存SHA，之后使用EVALSHA调用；
+ * 如果server重启或执行过SCRIPT FLUSH导致NOSCRIPT，则退回EVAL（同时会把脚本重新载入server）
+ */
+public final class RedisScript {
+
+    /**
+     * INCR并设置过期时间，返回INCR之后的值
+     */
+    public static final RedisScript INCR_EXPIRE = new RedisScript("incr_expire",
+            "local v = redis.call('incr', KEYS[1]) " +
+                    "redis.call('expire', KEYS[1], ARGV[1]) " +
+                    "return v");
+
+    /**
+     * HINCRBY并设置过期时间，返回HINCRBY之后的值
+     */
+    public static final RedisScript HINCR_EXPIRE = new RedisScript("hincr_expire",
+            "local v = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('expire', KEYS[1], ARGV[3]) " +
+                    "return v");
+
+    /**
+     * HSET并设置过期时间，返回HSET的结果
+     */
+    public static final RedisScript HSET_EXPIRE = new RedisScript("hset_expire",
+            "local v = redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('expire', KEYS[1], ARGV[3]) " +
+                    "return v");
+
+    /**
+     * GET并在命中时续期，未命中返回nil
+     */
+    public static final RedisScript GET_EXPIRE = new RedisScript("get_expire",
+            "local v = redis.call('get', KEYS[1]) " +
+                    "if v then redis.call('expire', KEYS[1], ARGV[1]) end " +
+                    "return v");
+
+    /**
+     * 获取成员前后各ARGV[2]名的成员和分数，返回 {起始名次, {member, score, ...}}，成员不存在返回nil
+     */
+    public static final RedisScript ZREVRANK_AROUND = new RedisScript("zrevrank_around",
+            "local r = redis.call('zrevrank', KEYS[1], ARGV[1]) " +
+                    "if not r then return false end " +
+                    "local s = r - tonumber(ARGV[2]) " +
+                    "if s < 0 then s = 0 end " +
+                    "return {s, redis.call('zrevrange', KEYS[1], s, r + tonumber(ARGV[2]), 'WITHSCORES')}");
+
+    /**
+     * 按反排序获取名次区间[ARGV[1], ARGV[2]]的成员和分数，负的起始名次按ZCARD换算为正的名次，
+     * 返回 {起始名次, [成员, 分数, ...]}
+     */
+    public static final RedisScript ZREVRANGE_FROM = new RedisScript("zrevrange_from",
+            "local s = tonumber(ARGV[1]) " +
+                    "if s < 0 then s = redis.call('zcard', KEYS[1]) + s end " +
+                    "if s < 0 then s = 0 end " +
+                    "return {s, redis.call('zrevrange', KEYS[1], s, ARGV[2], 'WITHSCORES')}");
+
+    /**
+     * 按反排序获取分数在[ARGV[2], ARGV[1]]之间、从ARGV[3]开始的ARGV[4]个成员和分数，
+     * 返回 {第一个成员的名次, [成员, 分数, ...]}，名次是整个SortSet中的名次
+     */
+    public static final RedisScript ZREVRANGEBYSCORE_RANKED = new RedisScript("zrevrangebyscore_ranked",
+            "local items = redis.call('zrevrangebyscore', KEYS[1], ARGV[1], ARGV[2], 'WITHSCORES', " +
+                    "'LIMIT', ARGV[3], ARGV[4]) " +
+                    "local s = 0 " +
+                    "if #items > 0 then s = redis.call('zrevrank', KEYS[1], items[1]) end " +
+                    "return {s, items}");
+
+    /**
+     * 写入ARGV[1]，ARGV[2]大于0时同时设置过期时间；
+     * 被覆盖的旧值是分块manifest(以ARGV[3]开头、长度为ARGV[4])时返回旧manifest，否则返回nil
+     */
+    public static final RedisScript SET_RETURN_MANIFEST = new RedisScript("set_return_manifest",
+            "local old = false " +
+                    "if redis.call('type', KEYS[1]).ok == 'string' and redis.call('strlen', KEYS[1]) == tonumber(ARGV[4]) then " +
+                    "old = redis.call('get', KEYS[1]) " +
+                    "if string.sub(old, 1, string.len(ARGV[3])) ~= ARGV[3] then old = false end " +
+                    "end " +
+                    "if tonumber(ARGV[2]) > 0 then redis.call('setex', KEYS[1], ARGV[2], ARGV[1]) " +
+                    "else redis.call('set', KEYS[1], ARGV[1]) end " +
+                    "return old");
+
+    /**
+     * 删除key，返回 {删除数}；被删除的是分块manifest(以ARGV[1]开头、长度为ARGV[2])时返回 {删除数, 旧manifest}
+     */
+    public static final RedisScript DEL_RETURN_MANIFEST = new RedisScript("del_return_manifest",
+            "local old = false " +
+                    "if redis.call('type', KEYS[1]).ok == 'string' and redis.call('strlen', KEYS[1]) == tonumber(ARGV[2]) then " +
+                    "old = redis.call('get', KEYS[1]) " +
+                    "if string.sub(old, 1, string.len(ARGV[1])) ~= ARGV[1] then old = false end " +
+                    "end " +
+                    "local n = redis.call('del', KEYS[1]) " +
+                    "if old then return {n, old} end " +
+                    "return {n}");
+
+    /**
+     * 用ARGV[2..]中的field/value替换整个Hash，ARGV[1]大于0时同时设置过期时间，返回field数
+     */
+    public static final RedisScript HASH_REPLACE = new RedisScript("hash_replace",
+            "redis.call('del', KEYS[1]) " +
+                    "if #ARGV > 1 then " +
+                    "redis.call('hmset', KEYS[1], unpack(ARGV, 2)) " +
+                    "if tonumber(ARGV[1]) > 0 then redis.call('expire', KEYS[1], ARGV[1]) end " +
+                    "end " +
+                    "return (#ARGV - 1) / 2");
+
+    /**
+     * key存在时更新Hash的部分field，不改变过期时间：ARGV[1]为写入的field数n，ARGV[2..2n+1]为field/value，
+     * 之后是要删除的field；key不存在(已过期)时不写入，避免留下没有过期时间的残缺Hash。返回是否写入
+     */
+    public static final RedisScript HASH_UPDATE = new RedisScript("hash_update",
+            "if redis.call('exists', KEYS[1]) == 0 then return 0 end " +
+                    "local n = tonumber(ARGV[1]) " +
+                    "if n > 0 then redis.call('hmset', KEYS[1], unpack(ARGV, 2, 1 + n * 2)) end " +
+                    "if #ARGV > 1 + n * 2 then redis.call('hdel', KEYS[1], unpack(ARGV, 2 + n * 2)) end " +
+                    "return 1");
+
+    /**
+     * NOSCRIPT错误前缀
+     */
+    private static final String NOSCRIPT = "NOSCRIPT";
+
+    /**
+     * 脚本名：用于监控
+     */
+    private final String name;
+
+    /**
+     * 脚本内容
+     */
+    private final byte[] script;
+
+    /**
+     * 已加载该脚本的shard -> SHA
+     */
+    private final ConcurrentMap<String, byte[]> shaByShard = new ConcurrentHashMap<String, byte[]>();
+
+    /**
+     * 本地计算的SHA：与SCRIPT LOAD返回的相同，用于不经过SCRIPT LOAD直接EVALSHA
+     */
+    private final byte[] sha;
+
+    private RedisScript(String name, String script) {
+        this.name = name;
+        this.script = SafeEncoder.encode(script);
+        this.sha = sha1Hex(this.script);
+    }
+
+    /**
+     * 获得脚本名
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获得脚本内容
+     *
+     * @return
+     */
+    byte[] getScript() {
+        return script;
+    }
+
+    /**
+     * 获得脚本的SHA(40位小写十六进制)
+     *
+     * @return
+     */
+    byte[] getSha() {
+        return sha;
+    }
+
+    /**
+     * 在指定shard上执行脚本
+     *
+     * @param jedis     : 目标shard的连接
+     * @param shardInfo : shard标识，用于缓存SHA
+     * @param keys
+     * @param args
+     * @return
+     */
+    Object eval(Jedis jedis, String shardInfo, List<byte[]> keys, List<byte[]> args) {
+        byte[] sha = shaByShard.get(shardInfo);
+        if (sha == null) {
+            sha = jedis.scriptLoad(script);
+            shaByShard.put(shardInfo, sha);
+        }
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            // SHA由脚本内容决定，EVAL之后server端重新缓存，本地SHA依然有效
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * 是否是server上没有该脚本的错误
+     *
+     * @param e
+     * @return
+     */
+    static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(NOSCRIPT);
+    }
+
+    private static byte[] sha1Hex(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return SafeEncoder.encode(hex.toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
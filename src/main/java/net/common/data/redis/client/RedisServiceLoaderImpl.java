@@ -18,21 +18,61 @@ import redis.clients.jedis.ShardedJedisPool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Redis的服务加载器
  */
 public class RedisServiceLoaderImpl extends ServiceLoader<IRedis> {
 
+    private static final Logger LOGGER = Logger.getLogger(RedisServiceLoaderImpl.class.getName());
+
+    /**
+     * 使用NIO传输的transport配置值
+     */
+    private static final String TRANSPORT_NIO = "NIO";
+
     private final Servers servers;
 
     private final ServiceGroup serviceGroup;
 
     private final RedisConfig redisConfig;
 
+    /**
+     * 扩容前的配置，为null时不迁移
+     */
+    private final ServiceGroup previousServiceGroup;
+
+    /**
+     * group名 -> 当前加载的客户端持有的连接池、线程等资源，按创建顺序入栈，关闭时后创建的先关闭
+     */
+    private final ConcurrentMap<String, Deque<Closeable>> groupResources =
+            new ConcurrentHashMap<String, Deque<Closeable>>();
+
     public RedisServiceLoaderImpl(@Nonnull RedisConfig redisConfig, @Nonnull Servers servers, @Nonnull ServiceGroup serviceGroup) {
+        this(redisConfig, servers, serviceGroup, null);
+    }
+
+    /**
+     * 扩容时使用：serviceGroup为扩容后的配置，previousServiceGroup为扩容前的配置。
+     * redisConfig中配置了迁移窗口时，server列表发生变化的group在窗口内同时使用新旧两个shard环
+     *
+     * @param redisConfig
+     * @param servers              : 需要包含新旧配置中的所有server
+     * @param serviceGroup         : 扩容后的配置
+     * @param previousServiceGroup : 扩容前的配置，为null时不迁移
+     */
+    public RedisServiceLoaderImpl(@Nonnull RedisConfig redisConfig, @Nonnull Servers servers, @Nonnull ServiceGroup serviceGroup,
+                                  @Nullable ServiceGroup previousServiceGroup) {
         //server
         Preconditions.checkNotNull(servers, "servers");
         Preconditions.checkNotNull(servers.getServers(), "servers.getServers");
@@ -43,12 +83,139 @@ public class RedisServiceLoaderImpl extends ServiceLoader<IRedis> {
 
         Preconditions.checkArgument(redisConfig != null, "Redis Config can't be null!");
         this.redisConfig = redisConfig;
+
+        this.previousServiceGroup = previousServiceGroup;
     }
 
     @Override
     public IRedis load(final String key) throws Exception {
         Group group = serviceGroup.getGroups().get(key);
         Preconditions.checkNotNull(group, "group is null");
+        List<JedisShardInfo> shards = createShards(key, group);
+        Deque<Closeable> resources = new ArrayDeque<Closeable>();
+        try {
+            IRedis client = load(key, group, shards, resources);
+            // 重新加载group：新客户端替换旧客户端，旧客户端的连接池、连接和线程不再使用
+            closeResources(key, groupResources.put(key, resources));
+            return client;
+        } catch (Exception e) {
+            closeResources(key, resources);
+            throw e;
+        }
+    }
+
+    /**
+     * 关闭group的客户端：连接池、NIO连接和后台线程，之后不能再使用该客户端
+     *
+     * @param key : group名
+     */
+    public void close(String key) {
+        closeResources(key, groupResources.remove(key));
+        if (redisConfig.isJmxEnabled()) {
+            RedisGroupMonitor.unregister(key);
+        }
+    }
+
+    /**
+     * 关闭所有已加载group的客户端
+     */
+    public void close() {
+        for (String key : groupResources.keySet()) {
+            close(key);
+        }
+    }
+
+    /**
+     * 创建group的客户端，创建的资源放入resources
+     *
+     * @param key
+     * @param group
+     * @param shards
+     * @param resources
+     * @return
+     * @throws Exception
+     */
+    private IRedis load(String key, Group group, List<JedisShardInfo> shards, Deque<Closeable> resources)
+            throws Exception {
+        InstrumentedShardedJedisPool pool = createPool(shards);
+        resources.push(pool);
+        RedisImpl redis = RedisImpl.create(pool, redisConfig);
+        resources.push(redis);
+        AdaptivePoolSizer sizer = null;
+        if (redisConfig.isPoolAdaptiveEnabled()) {
+            int shardCount = group.getServerList().getServerElements().size();
+            sizer = new AdaptivePoolSizer(pool, key, redisConfig.getPoolAdaptiveMinActive() * shardCount,
+                    redisConfig.getPoolAdaptiveMaxActive() * shardCount, redisConfig.getPoolAdaptiveIntervalMillis(),
+                    redisConfig.getPoolAdaptiveTargetWaitMicros());
+            resources.push(sizer);
+        }
+        IRedis client = redis;
+        if (TRANSPORT_NIO.equalsIgnoreCase(redisConfig.getTransport())) {
+            // 连接池只保留给NIO不支持的调用
+            NioRedis nio = new NioRedis(key, shards, redisConfig, redis);
+            resources.push(nio);
+            client = nio;
+        }
+        Group previousGroup = previousServiceGroup == null ? null : previousServiceGroup.getGroups().get(key);
+        if (redisConfig.getMigrationWindowMillis() > 0 && previousGroup != null && !sameServers(group, previousGroup)) {
+            // 扩容迁移：旧环只用于读取和搬迁
+            ShardedJedisPool previousPool = createPool(createShards(key, previousGroup));
+            resources.push(previousPool);
+            RedisConfig previousConfig = new RedisConfig();
+            previousConfig.setChunkThresholdBytes(redisConfig.getChunkThresholdBytes());
+            previousConfig.setChunkSizeBytes(redisConfig.getChunkSizeBytes());
+            previousConfig.setChunkMaxTtlSeconds(redisConfig.getChunkMaxTtlSeconds());
+            RedisImpl previousRedis = RedisImpl.create(previousPool, previousConfig);
+            resources.push(previousRedis);
+            MigratingRedis migrating = MigratingRedis.create(client, pool, previousRedis, previousPool,
+                    redisConfig.getMigrationWindowMillis());
+            resources.push(migrating);
+            client = migrating.proxy();
+        }
+        if (redisConfig.getRetryCount() > 0) {
+            // 在最外层重试：迁移期间重试时重新判断新旧环
+            client = RetryingRedis.create(client, redisConfig);
+        }
+        DegradedRedis degraded = null;
+        if (redisConfig.isDegradedReadsEnabled()) {
+            // 在重试之外 : 重试用完之后才降级，熔断期间也不再重试
+            degraded = DegradedRedis.create(client, shards, redisConfig);
+            client = degraded.proxy();
+        }
+        if (redisConfig.isJmxEnabled()) {
+            RedisGroupMonitor.register(key, redis, pool, sizer, degraded);
+        }
+        return client;
+    }
+
+    /**
+     * 依次关闭资源，关闭失败只记录日志
+     *
+     * @param key
+     * @param resources : 为null时忽略
+     */
+    private static void closeResources(String key, Deque<Closeable> resources) {
+        if (resources == null) {
+            return;
+        }
+        while (!resources.isEmpty()) {
+            Closeable resource = resources.pop();
+            try {
+                resource.close();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to close redis group " + key + " resource " + resource, e);
+            }
+        }
+    }
+
+    /**
+     * 按group的server列表创建shard列表
+     *
+     * @param key
+     * @param group
+     * @return
+     */
+    private List<JedisShardInfo> createShards(final String key, Group group) {
         List<ServerElement> serverList = group.getServerList().getServerElements();
         Preconditions.checkNotNull(serverList, "serverList is null");
         Preconditions.checkArgument(serverList.size() > 0, "serverList is empty");
@@ -66,14 +233,38 @@ public class RedisServiceLoaderImpl extends ServiceLoader<IRedis> {
                 return jedisShardInfo;
             }
         });
+        return shards;
+    }
+
+    /**
+     * 按shard列表创建连接池
+     *
+     * @param shards
+     * @return
+     */
+    private InstrumentedShardedJedisPool createPool(List<JedisShardInfo> shards) {
         JedisPoolConfig config = new JedisPoolConfig();
-        config.maxActive = redisConfig.getPoolMaxActive() * serverList.size();
-        config.maxWait = redisConfig.getPoolMaxWait();
-        config.maxIdle = redisConfig.getPoolMaxIdel();
-        config.minIdle = redisConfig.getPoolMinIdel();
-        // config.whenExhaustedAction = GenericObjectPool.WHEN_EXHAUSTED_FAIL;
-        ShardedJedisPool pool = new ShardedJedisPool(config, shards);
-        return new RedisImpl(pool);
+        config.setMaxTotal(redisConfig.getPoolMaxActive() * shards.size());
+        config.setMaxWaitMillis(redisConfig.getPoolMaxWait());
+        config.setMaxIdle(redisConfig.getPoolMaxIdel());
+        config.setMinIdle(redisConfig.getPoolMinIdel());
+        // config.setBlockWhenExhausted(false);
+        return new InstrumentedShardedJedisPool(config, shards, redisConfig.getTimeout(),
+                redisConfig.isKeyTagRouting());
+    }
+
+    private static boolean sameServers(Group group, Group previousGroup) {
+        List<ServerElement> servers = group.getServerList().getServerElements();
+        List<ServerElement> previousServers = previousGroup.getServerList().getServerElements();
+        if (servers.size() != previousServers.size()) {
+            return false;
+        }
+        for (int i = 0; i < servers.size(); i++) {
+            if (!servers.get(i).getName().equals(previousServers.get(i).getName())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -101,6 +292,182 @@ public class RedisServiceLoaderImpl extends ServiceLoader<IRedis> {
          * 链接池最长等待
          */
         private long poolMaxWait = Constants.DEFAULT_MAX_WAIT;
+        /**
+         * pipeline并行读取多shard应答的线程数，0表示按顺序读取
+         */
+        private int pipelineDrainThreads = Constants.DEFAULT_PIPELINE_DRAIN_THREADS;
+        /**
+         * SortSet前N名本地缓存的名次数，0表示不启用
+         */
+        private int topNCacheSize = Constants.DEFAULT_TOPN_CACHE_SIZE;
+        /**
+         * SortSet前N名本地缓存的刷新间隔：毫秒
+         */
+        private long topNCacheRefreshMillis = Constants.DEFAULT_TOPN_CACHE_REFRESH_MILLIS;
+        /**
+         * 对象编码后超过该长度时分块存储：字节，0表示不分块
+         */
+        private int chunkThresholdBytes = Constants.DEFAULT_CHUNK_THRESHOLD_BYTES;
+        /**
+         * 分块存储的块大小：字节
+         */
+        private int chunkSizeBytes = Constants.DEFAULT_CHUNK_SIZE_BYTES;
+        /**
+         * 异步写入每个shard队列的容量，0表示不启用异步写入
+         */
+        private int writeBehindQueueSize = Constants.DEFAULT_WRITE_BEHIND_QUEUE_SIZE;
+        /**
+         * 异步写入每批最多写入的数量
+         */
+        private int writeBehindBatchSize = Constants.DEFAULT_WRITE_BEHIND_BATCH_SIZE;
+        /**
+         * 异步写入未攒满一批时最多等待的时间：毫秒
+         */
+        private long writeBehindFlushIntervalMillis = Constants.DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS;
+        /**
+         * 异步写入队列满时的处理策略：BLOCK、DROP_OLDEST、CALLER_RUNS
+         */
+        private String writeBehindFullPolicy = Constants.DEFAULT_WRITE_BEHIND_FULL_POLICY;
+        /**
+         * 扩容迁移窗口：毫秒，0表示不启用迁移模式
+         */
+        private long migrationWindowMillis = Constants.DEFAULT_MIGRATION_WINDOW_MILLIS;
+        /**
+         * 热点key检测的采样率：每N次访问采样一次，0表示不检测
+         */
+        private int hotKeySampleRate = Constants.DEFAULT_HOTKEY_SAMPLE_RATE;
+        /**
+         * 每个shard、每个命令保留的热点key数
+         */
+        private int hotKeyTopK = Constants.DEFAULT_HOTKEY_TOP_K;
+        /**
+         * 热点key统计窗口：毫秒
+         */
+        private long hotKeyWindowMillis = Constants.DEFAULT_HOTKEY_WINDOW_MILLIS;
+        /**
+         * 每个统计窗口结束时是否输出热点key日志
+         */
+        private boolean hotKeyLogEnabled = Constants.DEFAULT_HOTKEY_LOG_ENABLED;
+        /**
+         * 热点key读副本的份数(包括原key)，小于2表示不启用
+         */
+        private int hotKeyReplicaCopies = Constants.DEFAULT_HOTKEY_REPLICA_COPIES;
+        /**
+         * 自动建立读副本的阈值：一个热点统计窗口内的访问次数，0表示只为手工指定的key建立副本
+         */
+        private long hotKeyReplicaThreshold = Constants.DEFAULT_HOTKEY_REPLICA_THRESHOLD;
+        /**
+         * 手工指定建立读副本的key，逗号分隔
+         */
+        private String hotKeyReplicaKeys = Constants.DEFAULT_HOTKEY_REPLICA_KEYS;
+        /**
+         * 是否记录集合类读取的元素数和数据量
+         */
+        private boolean bigKeyEnabled = Constants.DEFAULT_BIGKEY_ENABLED;
+        /**
+         * 大key警告阈值：一次读取返回的元素数，0表示不按元素数警告
+         */
+        private int bigKeyWarnElements = Constants.DEFAULT_BIGKEY_WARN_ELEMENTS;
+        /**
+         * 大key警告阈值：一次读取返回的数据量(字节)，0表示不按数据量警告
+         */
+        private long bigKeyWarnBytes = Constants.DEFAULT_BIGKEY_WARN_BYTES;
+        /**
+         * 客户端慢命令阈值：毫秒，0表示不记录慢命令
+         */
+        private long slowLogThresholdMillis = Constants.DEFAULT_SLOWLOG_THRESHOLD_MILLIS;
+        /**
+         * 每个shard保留的慢命令条数
+         */
+        private int slowLogCapacity = Constants.DEFAULT_SLOWLOG_CAPACITY;
+        /**
+         * 是否按命令统计借用连接、I/O和编解码的耗时
+         */
+        private boolean commandTimingsEnabled = Constants.DEFAULT_COMMAND_TIMINGS_ENABLED;
+        /**
+         * 是否为每个group注册JMX MBean，并按shard统计吞吐量、错误次数和耗时分布
+         */
+        private boolean jmxEnabled = Constants.DEFAULT_JMX_ENABLED;
+        /**
+         * 是否根据借用连接的等待耗时和连接利用率自动调整连接池大小
+         */
+        private boolean poolAdaptiveEnabled = Constants.DEFAULT_POOL_ADAPTIVE_ENABLED;
+        /**
+         * 自动调整时每个shard的最小连接数
+         */
+        private int poolAdaptiveMinActive = Constants.DEFAULT_POOL_ADAPTIVE_MIN_ACTIVE;
+        /**
+         * 自动调整时每个shard的最大连接数
+         */
+        private int poolAdaptiveMaxActive = Constants.DEFAULT_POOL_ADAPTIVE_MAX_ACTIVE;
+        /**
+         * 自动调整的周期：毫秒
+         */
+        private long poolAdaptiveIntervalMillis = Constants.DEFAULT_POOL_ADAPTIVE_INTERVAL_MILLIS;
+        /**
+         * 借用连接耗时p99的目标：微秒，超过时扩容
+         */
+        private long poolAdaptiveTargetWaitMicros = Constants.DEFAULT_POOL_ADAPTIVE_TARGET_WAIT_MICROS;
+        /**
+         * 客户端传输方式：POOLED(连接池)、NIO(每个shard少量多路复用的非阻塞连接)
+         */
+        private String transport = Constants.DEFAULT_TRANSPORT;
+        /**
+         * NIO传输时每个shard的连接数
+         */
+        private int nioConnectionsPerShard = Constants.DEFAULT_NIO_CONNECTIONS_PER_SHARD;
+        /**
+         * 幂等命令遇到连接错误时最多重试的次数，0表示不重试
+         */
+        private int retryCount = Constants.DEFAULT_RETRY_COUNT;
+        /**
+         * 重试退避的基础时间：毫秒，每次重试翻倍
+         */
+        private long retryBaseBackoffMillis = Constants.DEFAULT_RETRY_BASE_BACKOFF_MILLIS;
+        /**
+         * 重试退避的最长时间：毫秒
+         */
+        private long retryMaxBackoffMillis = Constants.DEFAULT_RETRY_MAX_BACKOFF_MILLIS;
+        /**
+         * 重试预算：重试次数最多占调用次数的比例
+         */
+        private double retryBudgetRatio = Constants.DEFAULT_RETRY_BUDGET_RATIO;
+        /**
+         * 重试预算：每秒至少允许的重试次数
+         */
+        private int retryBudgetMinPerSecond = Constants.DEFAULT_RETRY_BUDGET_MIN_PER_SECOND;
+        /**
+         * 是否启用降级：shard故障时读返回未命中、写直接丢弃，只用于缓存数据
+         */
+        private boolean degradedReadsEnabled = Constants.DEFAULT_DEGRADED_READS_ENABLED;
+        /**
+         * 降级时一个shard熔断的连续连接错误次数
+         */
+        private int circuitFailureThreshold = Constants.DEFAULT_CIRCUIT_FAILURE_THRESHOLD;
+        /**
+         * 熔断时间：毫秒，之后放行一个探测调用
+         */
+        private long circuitOpenMillis = Constants.DEFAULT_CIRCUIT_OPEN_MILLIS;
+        /**
+         * 过期时间抖动：最多缩短过期时间的百分比，0表示不按比例抖动
+         */
+        private int ttlJitterPercent = Constants.DEFAULT_TTL_JITTER_PERCENT;
+        /**
+         * 过期时间抖动：最多缩短的秒数，与百分比同时配置时取较大的范围，0表示不按秒数抖动
+         */
+        private int ttlJitterSeconds = Constants.DEFAULT_TTL_JITTER_SECONDS;
+        /**
+         * 分块存储的对象未指定过期时间时使用的过期时间：秒，分块总有过期时间，manifest丢失时不会永久残留
+         */
+        private int chunkMaxTtlSeconds = Constants.DEFAULT_CHUNK_MAX_TTL_SECONDS;
+        /**
+         * 热点key读副本的最长过期时间：秒，未标记该key的进程写入原key或漏掉的删除最多在这段时间内读到旧值
+         */
+        private int hotKeyReplicaTtlSeconds = Constants.DEFAULT_HOTKEY_REPLICA_TTL_SECONDS;
+        /**
+         * 是否按key中的hash tag({}中的内容)分片：打开后同一个tag的key在同一个shard，已有带{}的key会换shard，只能在新group或者迁移时打开
+         */
+        private boolean keyTagRouting = Constants.DEFAULT_KEY_TAG_ROUTING;
 
         public int getTimeout() {
             return timeout;
@@ -141,6 +508,358 @@ public class RedisServiceLoaderImpl extends ServiceLoader<IRedis> {
         public void setPoolMaxWait(long poolMaxWait) {
             this.poolMaxWait = poolMaxWait;
         }
+
+        public int getPipelineDrainThreads() {
+            return pipelineDrainThreads;
+        }
+
+        public void setPipelineDrainThreads(int pipelineDrainThreads) {
+            this.pipelineDrainThreads = pipelineDrainThreads;
+        }
+
+        public int getTopNCacheSize() {
+            return topNCacheSize;
+        }
+
+        public void setTopNCacheSize(int topNCacheSize) {
+            this.topNCacheSize = topNCacheSize;
+        }
+
+        public long getTopNCacheRefreshMillis() {
+            return topNCacheRefreshMillis;
+        }
+
+        public void setTopNCacheRefreshMillis(long topNCacheRefreshMillis) {
+            this.topNCacheRefreshMillis = topNCacheRefreshMillis;
+        }
+
+        public int getChunkThresholdBytes() {
+            return chunkThresholdBytes;
+        }
+
+        public void setChunkThresholdBytes(int chunkThresholdBytes) {
+            this.chunkThresholdBytes = chunkThresholdBytes;
+        }
+
+        public int getChunkSizeBytes() {
+            return chunkSizeBytes;
+        }
+
+        public void setChunkSizeBytes(int chunkSizeBytes) {
+            this.chunkSizeBytes = chunkSizeBytes;
+        }
+
+        public int getWriteBehindQueueSize() {
+            return writeBehindQueueSize;
+        }
+
+        public void setWriteBehindQueueSize(int writeBehindQueueSize) {
+            this.writeBehindQueueSize = writeBehindQueueSize;
+        }
+
+        public int getWriteBehindBatchSize() {
+            return writeBehindBatchSize;
+        }
+
+        public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+            this.writeBehindBatchSize = writeBehindBatchSize;
+        }
+
+        public long getWriteBehindFlushIntervalMillis() {
+            return writeBehindFlushIntervalMillis;
+        }
+
+        public void setWriteBehindFlushIntervalMillis(long writeBehindFlushIntervalMillis) {
+            this.writeBehindFlushIntervalMillis = writeBehindFlushIntervalMillis;
+        }
+
+        public String getWriteBehindFullPolicy() {
+            return writeBehindFullPolicy;
+        }
+
+        public void setWriteBehindFullPolicy(String writeBehindFullPolicy) {
+            this.writeBehindFullPolicy = writeBehindFullPolicy;
+        }
+
+        public long getMigrationWindowMillis() {
+            return migrationWindowMillis;
+        }
+
+        public void setMigrationWindowMillis(long migrationWindowMillis) {
+            this.migrationWindowMillis = migrationWindowMillis;
+        }
+
+        public int getHotKeySampleRate() {
+            return hotKeySampleRate;
+        }
+
+        public void setHotKeySampleRate(int hotKeySampleRate) {
+            this.hotKeySampleRate = hotKeySampleRate;
+        }
+
+        public int getHotKeyTopK() {
+            return hotKeyTopK;
+        }
+
+        public void setHotKeyTopK(int hotKeyTopK) {
+            this.hotKeyTopK = hotKeyTopK;
+        }
+
+        public long getHotKeyWindowMillis() {
+            return hotKeyWindowMillis;
+        }
+
+        public void setHotKeyWindowMillis(long hotKeyWindowMillis) {
+            this.hotKeyWindowMillis = hotKeyWindowMillis;
+        }
+
+        public boolean isHotKeyLogEnabled() {
+            return hotKeyLogEnabled;
+        }
+
+        public void setHotKeyLogEnabled(boolean hotKeyLogEnabled) {
+            this.hotKeyLogEnabled = hotKeyLogEnabled;
+        }
+
+        public int getHotKeyReplicaCopies() {
+            return hotKeyReplicaCopies;
+        }
+
+        public void setHotKeyReplicaCopies(int hotKeyReplicaCopies) {
+            this.hotKeyReplicaCopies = hotKeyReplicaCopies;
+        }
+
+        public long getHotKeyReplicaThreshold() {
+            return hotKeyReplicaThreshold;
+        }
+
+        public void setHotKeyReplicaThreshold(long hotKeyReplicaThreshold) {
+            this.hotKeyReplicaThreshold = hotKeyReplicaThreshold;
+        }
+
+        public String getHotKeyReplicaKeys() {
+            return hotKeyReplicaKeys;
+        }
+
+        public void setHotKeyReplicaKeys(String hotKeyReplicaKeys) {
+            this.hotKeyReplicaKeys = hotKeyReplicaKeys;
+        }
+
+        public boolean isBigKeyEnabled() {
+            return bigKeyEnabled;
+        }
+
+        public void setBigKeyEnabled(boolean bigKeyEnabled) {
+            this.bigKeyEnabled = bigKeyEnabled;
+        }
+
+        public int getBigKeyWarnElements() {
+            return bigKeyWarnElements;
+        }
+
+        public void setBigKeyWarnElements(int bigKeyWarnElements) {
+            this.bigKeyWarnElements = bigKeyWarnElements;
+        }
+
+        public long getBigKeyWarnBytes() {
+            return bigKeyWarnBytes;
+        }
+
+        public void setBigKeyWarnBytes(long bigKeyWarnBytes) {
+            this.bigKeyWarnBytes = bigKeyWarnBytes;
+        }
+
+        public long getSlowLogThresholdMillis() {
+            return slowLogThresholdMillis;
+        }
+
+        public void setSlowLogThresholdMillis(long slowLogThresholdMillis) {
+            this.slowLogThresholdMillis = slowLogThresholdMillis;
+        }
+
+        public int getSlowLogCapacity() {
+            return slowLogCapacity;
+        }
+
+        public void setSlowLogCapacity(int slowLogCapacity) {
+            this.slowLogCapacity = slowLogCapacity;
+        }
+
+        public boolean isCommandTimingsEnabled() {
+            return commandTimingsEnabled;
+        }
+
+        public void setCommandTimingsEnabled(boolean commandTimingsEnabled) {
+            this.commandTimingsEnabled = commandTimingsEnabled;
+        }
+
+        public boolean isJmxEnabled() {
+            return jmxEnabled;
+        }
+
+        public void setJmxEnabled(boolean jmxEnabled) {
+            this.jmxEnabled = jmxEnabled;
+        }
+
+        public boolean isPoolAdaptiveEnabled() {
+            return poolAdaptiveEnabled;
+        }
+
+        public void setPoolAdaptiveEnabled(boolean poolAdaptiveEnabled) {
+            this.poolAdaptiveEnabled = poolAdaptiveEnabled;
+        }
+
+        public int getPoolAdaptiveMinActive() {
+            return poolAdaptiveMinActive;
+        }
+
+        public void setPoolAdaptiveMinActive(int poolAdaptiveMinActive) {
+            this.poolAdaptiveMinActive = poolAdaptiveMinActive;
+        }
+
+        public int getPoolAdaptiveMaxActive() {
+            return poolAdaptiveMaxActive;
+        }
+
+        public void setPoolAdaptiveMaxActive(int poolAdaptiveMaxActive) {
+            this.poolAdaptiveMaxActive = poolAdaptiveMaxActive;
+        }
+
+        public long getPoolAdaptiveIntervalMillis() {
+            return poolAdaptiveIntervalMillis;
+        }
+
+        public void setPoolAdaptiveIntervalMillis(long poolAdaptiveIntervalMillis) {
+            this.poolAdaptiveIntervalMillis = poolAdaptiveIntervalMillis;
+        }
+
+        public long getPoolAdaptiveTargetWaitMicros() {
+            return poolAdaptiveTargetWaitMicros;
+        }
+
+        public void setPoolAdaptiveTargetWaitMicros(long poolAdaptiveTargetWaitMicros) {
+            this.poolAdaptiveTargetWaitMicros = poolAdaptiveTargetWaitMicros;
+        }
+
+        public String getTransport() {
+            return transport;
+        }
+
+        public void setTransport(String transport) {
+            this.transport = transport;
+        }
+
+        public int getNioConnectionsPerShard() {
+            return nioConnectionsPerShard;
+        }
+
+        public void setNioConnectionsPerShard(int nioConnectionsPerShard) {
+            this.nioConnectionsPerShard = nioConnectionsPerShard;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        public void setRetryCount(int retryCount) {
+            this.retryCount = retryCount;
+        }
+
+        public long getRetryBaseBackoffMillis() {
+            return retryBaseBackoffMillis;
+        }
+
+        public void setRetryBaseBackoffMillis(long retryBaseBackoffMillis) {
+            this.retryBaseBackoffMillis = retryBaseBackoffMillis;
+        }
+
+        public long getRetryMaxBackoffMillis() {
+            return retryMaxBackoffMillis;
+        }
+
+        public void setRetryMaxBackoffMillis(long retryMaxBackoffMillis) {
+            this.retryMaxBackoffMillis = retryMaxBackoffMillis;
+        }
+
+        public double getRetryBudgetRatio() {
+            return retryBudgetRatio;
+        }
+
+        public void setRetryBudgetRatio(double retryBudgetRatio) {
+            this.retryBudgetRatio = retryBudgetRatio;
+        }
+
+        public int getRetryBudgetMinPerSecond() {
+            return retryBudgetMinPerSecond;
+        }
+
+        public void setRetryBudgetMinPerSecond(int retryBudgetMinPerSecond) {
+            this.retryBudgetMinPerSecond = retryBudgetMinPerSecond;
+        }
+
+        public boolean isDegradedReadsEnabled() {
+            return degradedReadsEnabled;
+        }
+
+        public void setDegradedReadsEnabled(boolean degradedReadsEnabled) {
+            this.degradedReadsEnabled = degradedReadsEnabled;
+        }
+
+        public int getCircuitFailureThreshold() {
+            return circuitFailureThreshold;
+        }
+
+        public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+            this.circuitFailureThreshold = circuitFailureThreshold;
+        }
+
+        public long getCircuitOpenMillis() {
+            return circuitOpenMillis;
+        }
+
+        public void setCircuitOpenMillis(long circuitOpenMillis) {
+            this.circuitOpenMillis = circuitOpenMillis;
+        }
+
+        public int getTtlJitterPercent() {
+            return ttlJitterPercent;
+        }
+
+        public void setTtlJitterPercent(int ttlJitterPercent) {
+            this.ttlJitterPercent = ttlJitterPercent;
+        }
+
+        public int getTtlJitterSeconds() {
+            return ttlJitterSeconds;
+        }
+
+        public void setTtlJitterSeconds(int ttlJitterSeconds) {
+            this.ttlJitterSeconds = ttlJitterSeconds;
+        }
+
+        public int getChunkMaxTtlSeconds() {
+            return chunkMaxTtlSeconds;
+        }
+
+        public void setChunkMaxTtlSeconds(int chunkMaxTtlSeconds) {
+            this.chunkMaxTtlSeconds = chunkMaxTtlSeconds;
+        }
+
+        public int getHotKeyReplicaTtlSeconds() {
+            return hotKeyReplicaTtlSeconds;
+        }
+
+        public void setHotKeyReplicaTtlSeconds(int hotKeyReplicaTtlSeconds) {
+            this.hotKeyReplicaTtlSeconds = hotKeyReplicaTtlSeconds;
+        }
+
+        public boolean isKeyTagRouting() {
+            return keyTagRouting;
+        }
+
+        public void setKeyTagRouting(boolean keyTagRouting) {
+            this.keyTagRouting = keyTagRouting;
+        }
     }
 
 }
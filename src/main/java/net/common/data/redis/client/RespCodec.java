@@ -0,0 +1,50 @@
+package net.common.data.redis.client;
+
+import redis.clients.util.SafeEncoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * NIO连接使用的RESP命令编码
+ * <p/>
+ * 命令在调用线程上编码为完整的字节数组，I/O线程只负责拷贝；应答的解析见 {@link RespDecoder}
+ */
+final class RespCodec {
+
+    private static final byte[] CRLF = new byte[]{'\r', '\n'};
+
+    private RespCodec() {
+
+    }
+
+    /**
+     * 编码一条命令
+     *
+     * @param args : 命令名与参数
+     * @return
+     */
+    static byte[] encode(byte[]... args) {
+        int size = 1 + digits(args.length) + 2;
+        for (byte[] arg : args) {
+            size += 1 + digits(arg.length) + 2 + arg.length + 2;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        writeLine(out, '*', args.length);
+        for (byte[] arg : args) {
+            writeLine(out, '$', arg.length);
+            out.put(arg);
+            out.put(CRLF);
+        }
+        return out.array();
+    }
+
+    private static void writeLine(ByteBuffer out, char type, int value) {
+        out.put((byte) type);
+        out.put(SafeEncoder.encode(String.valueOf(value)));
+        out.put(CRLF);
+    }
+
+    private static int digits(int value) {
+        return String.valueOf(value).length();
+    }
+}
@@ -0,0 +1,171 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一条NIO连接的RESP应答增量解析器，只在I/O线程中使用
+ * <p/>
+ * 解析过的数据立即从buffer中取走，未完成的数组(已解析的元素和还差的个数)和已读到头部的bulk长度保存在解析器中，
+ * 读到更多数据后从断点继续，每个字节只解析一次：大数组应答分多次到达时总耗时仍是线性的。
+ * 应答类型与Jedis的原始应答一致：状态为String、整数为Long、bulk为byte[]、数组为List，
+ * 错误应答作为 {@link JedisDataException} 返回而不是抛出，由对应的请求抛出
+ */
+final class RespDecoder {
+
+    /**
+     * 数据不足一个完整应答
+     */
+    static final Object INCOMPLETE = new Object();
+
+    /**
+     * 数组的初始容量上限，元素个数来自server，不预先分配过大的数组
+     */
+    private static final int MAX_INITIAL_ARRAY_CAPACITY = 1024;
+
+    /**
+     * 未完成的数组，栈顶是最内层
+     */
+    private final ArrayDeque<PartialArray> arrays = new ArrayDeque<PartialArray>();
+
+    /**
+     * 已读到头部、等待内容的bulk长度，-1表示没有
+     */
+    private int bulkLength = -1;
+
+    /**
+     * 从buffer的position开始解析，解析过的数据会被取走
+     *
+     * @param in : 读模式的buffer
+     * @return 一个完整的应答，数据不足时返回 {@link #INCOMPLETE}
+     */
+    Object decode(ByteBuffer in) {
+        while (true) {
+            Object value;
+            if (bulkLength >= 0) {
+                if (in.remaining() < bulkLength + 2) {
+                    return INCOMPLETE;
+                }
+                byte[] bulk = new byte[bulkLength];
+                in.get(bulk);
+                in.position(in.position() + 2);
+                bulkLength = -1;
+                value = bulk;
+            } else {
+                int lineEnd = lineEnd(in);
+                if (lineEnd < 0) {
+                    return INCOMPLETE;
+                }
+                byte type = in.get();
+                byte[] line = new byte[lineEnd - in.position()];
+                in.get(line);
+                in.position(lineEnd + 2);
+                switch (type) {
+                    case '+':
+                        value = SafeEncoder.encode(line);
+                        break;
+                    case '-':
+                        value = new JedisDataException(SafeEncoder.encode(line));
+                        break;
+                    case ':':
+                        value = parseLong(line);
+                        break;
+                    case '$': {
+                        int length = (int) parseLong(line);
+                        if (length >= 0) {
+                            bulkLength = length;
+                            continue;
+                        }
+                        value = null;
+                        break;
+                    }
+                    case '*': {
+                        int count = (int) parseLong(line);
+                        if (count > 0) {
+                            arrays.push(new PartialArray(count));
+                            continue;
+                        }
+                        value = count == 0 ? new ArrayList<Object>(0) : null;
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Unknown reply type: " + (char) type);
+                }
+            }
+            // 填入外层数组，数组满了再作为元素填入更外层
+            while (true) {
+                PartialArray array = arrays.peek();
+                if (array == null) {
+                    return value;
+                }
+                array.items.add(value);
+                if (array.items.size() < array.count) {
+                    break;
+                }
+                arrays.pop();
+                value = array.items;
+            }
+        }
+    }
+
+    /**
+     * 已读到头部的bulk还需要的字节数(包括CRLF)，用于一次把读buffer扩大到足够大
+     *
+     * @return 没有等待中的bulk时返回0
+     */
+    int pendingBulkBytes() {
+        return bulkLength < 0 ? 0 : bulkLength + 2;
+    }
+
+    /**
+     * 丢弃未完成的状态，连接重建时调用
+     */
+    void reset() {
+        arrays.clear();
+        bulkLength = -1;
+    }
+
+    /**
+     * 当前行CR的位置，没有完整的一行时返回-1
+     *
+     * @param in
+     * @return
+     */
+    private static int lineEnd(ByteBuffer in) {
+        for (int i = in.position() + 1; i + 1 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseLong(byte[] line) {
+        long value = 0;
+        boolean negative = line.length > 0 && line[0] == '-';
+        for (int i = negative ? 1 : 0; i < line.length; i++) {
+            value = value * 10 + (line[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * 未完成的数组
+     */
+    private static final class PartialArray {
+
+        private final int count;
+
+        private final List<Object> items;
+
+        PartialArray(int count) {
+            this.count = count;
+            this.items = new ArrayList<Object>(Math.min(count, MAX_INITIAL_ARRAY_CAPACITY));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接在连接的socket流上读写RESP协议，用于ByteBuffer读写大value
+ * <p/>
+ * 只能在连接空闲（没有未读应答）时使用，并且必须完整读取应答。
+ * 读写通过 {@link #bufferedOutput}、{@link #bufferedInput} 包装的流：命令头与小value合并为一次write，
+ * 应答头从缓冲中解析；连接空闲时server不会发来应答之外的数据，缓冲读不会读到下一条命令的应答。
+ * 比缓冲大的value直接从socket读入目标buffer、直接写出，不经过缓冲。
+ * 包装流和缓冲每个线程一份，每次调用重新绑定到本次的socket，不再每次分配
+ */
+final class RespStreams {
+
+    private static final byte[] CRLF = new byte[]{'\r', '\n'};
+
+    /**
+     * 不走池化buffer时写value的分段大小
+     */
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    /**
+     * 读写缓冲大小
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * 当前线程的输出流
+     */
+    private static final ThreadLocal<ReusableOutputStream> OUTPUT = new ThreadLocal<ReusableOutputStream>() {
+        @Override
+        protected ReusableOutputStream initialValue() {
+            return new ReusableOutputStream();
+        }
+    };
+
+    /**
+     * 当前线程的输入流
+     */
+    private static final ThreadLocal<ReusableInputStream> INPUT = new ThreadLocal<ReusableInputStream>() {
+        @Override
+        protected ReusableInputStream initialValue() {
+            return new ReusableInputStream();
+        }
+    };
+
+    private RespStreams() {
+
+    }
+
+    /**
+     * 本次调用使用的带缓冲的输出流，不能关闭(会关闭socket)；当前线程下一次调用本方法之前有效
+     *
+     * @param socket
+     * @return
+     * @throws IOException
+     */
+    static OutputStream bufferedOutput(Socket socket) throws IOException {
+        ReusableOutputStream out = OUTPUT.get();
+        out.bind(socket.getOutputStream());
+        return out;
+    }
+
+    /**
+     * 本次调用使用的带缓冲的输入流，不能关闭(会关闭socket)；当前线程下一次调用本方法之前有效
+     *
+     * @param socket
+     * @return
+     * @throws IOException
+     */
+    static InputStream bufferedInput(Socket socket) throws IOException {
+        ReusableInputStream in = INPUT.get();
+        in.bind(socket.getInputStream());
+        return in;
+    }
+
+    /**
+     * 写命令头以及除最后一个参数外的所有参数，最后一个参数只写长度前缀，由调用方随后写入内容
+     *
+     * @param out
+     * @param lastArgLength : 最后一个参数的长度，小于0时表示没有额外参数
+     * @param args          : 命令名与参数
+     * @throws IOException
+     */
+    static void writeCommand(OutputStream out, int lastArgLength, byte[]... args) throws IOException {
+        int count = args.length + (lastArgLength >= 0 ? 1 : 0);
+        writeLine(out, '*', count);
+        for (byte[] arg : args) {
+            writeLine(out, '$', arg.length);
+            out.write(arg);
+            out.write(CRLF);
+        }
+        if (lastArgLength >= 0) {
+            writeLine(out, '$', lastArgLength);
+        }
+    }
+
+    /**
+     * 写最后一个参数的内容，不改变value的position
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    static void writeBulkBody(OutputStream out, ByteBuffer value) throws IOException {
+        if (value.hasArray()) {
+            out.write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+        } else {
+            ByteBuffer src = value.duplicate();
+            byte[] chunk = new byte[Math.min(COPY_CHUNK, src.remaining())];
+            while (src.hasRemaining()) {
+                int n = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+        out.write(CRLF);
+        out.flush();
+    }
+
+    /**
+     * 读取状态应答(+OK)
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    static String readStatus(InputStream in) throws IOException {
+        int type = readByte(in);
+        String line = readLine(in);
+        checkError(type, line);
+        if (type != '+') {
+            throw new JedisConnectionException("Unexpected reply type: " + (char) type);
+        }
+        return line;
+    }
+
+    /**
+     * 读取bulk应答到池化buffer中，返回的buffer position为0，limit为value长度；不存在时返回null
+     *
+     * @param in
+     * @param bufferPool
+     * @return
+     * @throws IOException
+     */
+    static ByteBuffer readBulk(InputStream in, ByteBufferPool bufferPool) throws IOException {
+        int type = readByte(in);
+        String line = readLine(in);
+        checkError(type, line);
+        if (type != '$') {
+            throw new JedisConnectionException("Unexpected reply type: " + (char) type);
+        }
+        int len = Integer.parseInt(line);
+        if (len < 0) {
+            return null;
+        }
+        ByteBuffer buffer = bufferPool.acquire(len);
+        try {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            int read = 0;
+            while (read < len) {
+                int n = in.read(array, offset + read, len - read);
+                if (n < 0) {
+                    throw new JedisConnectionException("Unexpected end of stream.");
+                }
+                read += n;
+            }
+            // 结尾的CRLF
+            readByte(in);
+            readByte(in);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw e;
+        } catch (RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        return buffer;
+    }
+
+    private static void writeLine(OutputStream out, char prefix, int value) throws IOException {
+        out.write(prefix);
+        out.write(SafeEncoder.encode(String.valueOf(value)));
+        out.write(CRLF);
+    }
+
+    private static void checkError(int type, String line) {
+        if (type == '-') {
+            throw new JedisDataException(line);
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new JedisConnectionException("Unexpected end of stream.");
+        }
+        return b;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = readByte(in)) != '\r') {
+            sb.append((char) b);
+        }
+        readByte(in);
+        return sb.toString();
+    }
+
+    /**
+     * 可以重新绑定底层流的缓冲输出流，绑定时丢弃上一次未写出的内容
+     */
+    private static final class ReusableOutputStream extends BufferedOutputStream {
+
+        ReusableOutputStream() {
+            super(null, BUFFER_SIZE);
+        }
+
+        void bind(OutputStream target) {
+            out = target;
+            count = 0;
+        }
+    }
+
+    /**
+     * 可以重新绑定底层流的缓冲输入流，绑定时丢弃上一次未读取的内容
+     */
+    private static final class ReusableInputStream extends BufferedInputStream {
+
+        ReusableInputStream() {
+            super(null, BUFFER_SIZE);
+        }
+
+        void bind(InputStream target) {
+            in = target;
+            count = 0;
+            pos = 0;
+            markpos = -1;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算：限制重试占调用的比例，避免故障期间重试放大对server的压力
+ * <p/>
+ * 令牌桶：每次调用存入ratio个令牌，每秒另外存入minPerSecond个令牌(调用量很小时也能重试)，每次重试取出1个；
+ * 令牌最多积累 {@link #BURST_SECONDS} 秒的最低配额(至少1个)，故障开始时的突发重试也有上限；ratio和minPerSecond都为0时不重试。
+ * 令牌按 {@link #SCALE} 放大为整数，存取只有CAS，不需要加锁
+ */
+final class RetryBudget {
+
+    /**
+     * 一个令牌对应的整数值
+     */
+    private static final long SCALE = 1000;
+
+    /**
+     * 令牌上限对应的秒数
+     */
+    private static final long BURST_SECONDS = 10;
+
+    private final long depositPerCall;
+
+    private final long depositPerSecond;
+
+    private final long maxBalance;
+
+    private final AtomicLong balance;
+
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param ratio        : 重试次数最多占调用次数的比例，例如0.1
+     * @param minPerSecond : 每秒至少允许的重试次数
+     */
+    RetryBudget(double ratio, int minPerSecond) {
+        Preconditions.checkArgument(ratio >= 0, "Retry budget ratio can't be negative.");
+        Preconditions.checkArgument(minPerSecond >= 0, "Retry budget min per second can't be negative.");
+        this.depositPerCall = (long) (ratio * SCALE);
+        this.depositPerSecond = minPerSecond * SCALE;
+        // 至少能积累一个令牌，否则比例很小的预算永远不能重试；两者都为0时不允许重试
+        this.maxBalance = depositPerCall == 0 && depositPerSecond == 0 ? 0
+                : Math.max(SCALE, depositPerSecond * BURST_SECONDS);
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * 记录一次调用(不包括重试)
+     */
+    void deposit() {
+        add(depositPerCall);
+    }
+
+    /**
+     * 尝试取出一次重试的令牌
+     *
+     * @return 预算不足时返回false
+     */
+    boolean tryWithdraw() {
+        refill();
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - last);
+        if (elapsedMillis > 0 && lastRefillNanos.compareAndSet(last, now)) {
+            add(depositPerSecond * elapsedMillis / 1000);
+        }
+    }
+
+    private void add(long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        while (true) {
+            long current = balance.get();
+            long next = Math.min(maxBalance, current + amount);
+            if (next == current || balance.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
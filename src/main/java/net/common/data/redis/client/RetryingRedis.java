@@ -0,0 +1,166 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisDeadline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 对幂等命令的连接错误自动重试的IRedis
+ * <p/>
+ * 只有 {@link #IDEMPOTENT_METHODS} 中的方法才会重试：读命令，以及重复执行后结果相同的写命令(set、hset、del、sadd等，
+ * 重试时返回值可能不同，例如第一次其实已经写入时sadd返回0)。incr、lpush、lpop、zincrby这类重复执行会改变结果的命令不重试。
+ * <p/>
+ * 只重试连接错误(连接断开、读写超时)：RedisImpl出错时会销毁该连接，重试时从连接池借用另一个连接；
+ * server返回的错误(WRONGTYPE等)和连接池耗尽不重试。重试前按指数退避并加随机抖动(full jitter)等待，
+ * 每次重试需要从全局的 {@link RetryBudget} 取得令牌，预算用完时直接抛出，重试不会放大故障。
+ * 当前线程有 {@link RedisDeadline} 时，退避不超过剩余时间，截止时间已过不再重试
+ */
+final class RetryingRedis implements InvocationHandler {
+
+    private static final Logger LOGGER = Logger.getLogger(RetryingRedis.class.getName());
+
+    /**
+     * 可以安全重试的方法
+     */
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<String>(Arrays.asList(
+            // 读
+            "get", "getObject", "getObjectPooled", "getBuffer", "getObjectAsHash", "exists",
+            "hget", "hgetAll", "hmget", "hkeys", "hvals", "hlen", "hexists",
+            "smembers", "smembersObject", "sismember", "sismemberObject", "scard",
+            "lrange", "llen", "lindex",
+            "zcard", "zscore", "zrevrank", "zrevrangeWithScores", "zrevrankAround", "zrevrangeByScoreWithScores",
+            "ztopCached", "zrevrankCached",
+            // 重复执行结果相同的写
+            "set", "setObject", "setObjectAsHash", "setObjectFields", "del", "expire",
+            "hset", "hdel", "sadd", "saddObject", "srem", "zadd", "zrem", "lset", "ltrim"));
+
+    private final IRedis target;
+
+    /**
+     * 每次调用最多重试的次数
+     */
+    private final int maxRetries;
+
+    private final long baseBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final RetryBudget budget;
+
+    /**
+     * 因预算不足放弃的重试次数，用于日志
+     */
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    private RetryingRedis(IRedis target, int maxRetries, long baseBackoffMillis, long maxBackoffMillis,
+                          RetryBudget budget) {
+        this.target = target;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.budget = budget;
+    }
+
+    /**
+     * 创建带重试的IRedis
+     *
+     * @param target
+     * @param redisConfig : 重试次数、退避时间和重试预算
+     * @return
+     */
+    static IRedis create(IRedis target, RedisServiceLoaderImpl.RedisConfig redisConfig) {
+        Preconditions.checkArgument(redisConfig.getRetryCount() > 0, "Retry count must be positive.");
+        Preconditions.checkArgument(redisConfig.getRetryBaseBackoffMillis() > 0
+                        && redisConfig.getRetryBaseBackoffMillis() <= redisConfig.getRetryMaxBackoffMillis(),
+                "Retry backoff is invalid.");
+        RetryBudget budget = new RetryBudget(redisConfig.getRetryBudgetRatio(),
+                redisConfig.getRetryBudgetMinPerSecond());
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                new RetryingRedis(target, redisConfig.getRetryCount(), redisConfig.getRetryBaseBackoffMillis(),
+                        redisConfig.getRetryMaxBackoffMillis(), budget));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class || !IDEMPOTENT_METHODS.contains(method.getName())) {
+            return call(target, method, args);
+        }
+        budget.deposit();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return call(target, method, args);
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries || !isTransient(e) || isDeadlineExpired()) {
+                    throw e;
+                }
+                if (!budget.tryWithdraw()) {
+                    if (budgetExhausted.incrementAndGet() % 1000 == 1) {
+                        LOGGER.warning("Redis retry budget exhausted, " + budgetExhausted.get()
+                                + " retries skipped so far, last error: " + e);
+                    }
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 指数退避加full jitter：在 [0, min(max, base * 2^attempt)] 中随机等待
+     *
+     * @param attempt : 第几次重试，从0开始
+     */
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 30));
+        long millis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        RedisDeadline deadline = RedisDeadline.current();
+        if (deadline != null) {
+            millis = Math.min(millis, deadline.remainingMillis());
+        }
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JedisConnectionException("Interrupted while backing off before retry.", e);
+        }
+    }
+
+    /**
+     * 是否是可以重试的连接错误：连接池耗尽时重试只会更拥挤，截止时间已过时重试也来不及
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isTransient(Throwable e) {
+        return RedisErrors.isConnectionError(e) && !RedisErrors.isPoolExhausted(e)
+                && !RedisErrors.isDeadlineExceeded(e);
+    }
+
+    private static boolean isDeadlineExpired() {
+        RedisDeadline deadline = RedisDeadline.current();
+        return deadline != null && deadline.isExpired();
+    }
+
+    private static Object call(IRedis redis, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(redis, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
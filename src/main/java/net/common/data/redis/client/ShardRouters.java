@@ -0,0 +1,164 @@
+package net.common.data.redis.client;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.util.Sharded;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 不借用连接计算key所在shard的路由：与连接池使用相同的shard列表，分片结果一致
+ * <p/>
+ * 按hash tag分片时只对key中第一个{}中非空的内容计算hash，String和byte[]的key结果一致；
+ * Jedis自带的key tag pattern只对String的key生效，所以这里覆盖byte[]的分片。
+ * 同一个tag的key(例如同一个 {@link net.common.data.redis.KeySpace} 的key)分片结果相同，按tag缓存
+ */
+final class ShardRouters {
+
+    /**
+     * 每个路由最多缓存的tag数，超过后不再缓存新的tag
+     */
+    private static final int MAX_CACHED_TAGS = 4096;
+
+    private ShardRouters() {
+
+    }
+
+    /**
+     * 按连接池的shard列表创建路由；{@link InstrumentedShardedJedisPool} 直接使用其shard列表和分片方式，
+     * 其他连接池借用一次连接读取shard列表
+     *
+     * @param pool
+     * @return
+     */
+    static Sharded<Jedis, JedisShardInfo> of(ShardedJedisPool pool) {
+        if (pool instanceof InstrumentedShardedJedisPool) {
+            InstrumentedShardedJedisPool instrumented = (InstrumentedShardedJedisPool) pool;
+            return of(instrumented.getShards(), instrumented.isKeyTagRouting());
+        }
+        List<JedisShardInfo> shards;
+        ShardedJedis shardedJedis = pool.getResource();
+        try {
+            shards = new ArrayList<JedisShardInfo>(shardedJedis.getAllShardInfo());
+        } finally {
+            pool.returnResource(shardedJedis);
+        }
+        return of(shards, shardedJedis instanceof TagRoutedShardedJedis);
+    }
+
+    /**
+     * 按shard列表创建路由
+     *
+     * @param shards
+     * @param keyTagRouting : 是否按hash tag分片，与连接池一致
+     * @return
+     */
+    static Sharded<Jedis, JedisShardInfo> of(List<JedisShardInfo> shards, boolean keyTagRouting) {
+        return keyTagRouting ? new TagRoutedSharded(shards, new TagCache())
+                : new Sharded<Jedis, JedisShardInfo>(shards);
+    }
+
+    /**
+     * key中参与分片的部分：与Sharded.DEFAULT_KEY_TAG_PATTERN一致，第一个{}中非空的内容，没有时是整个key
+     *
+     * @param key
+     * @return
+     */
+    static byte[] keyTag(byte[] key) {
+        for (int start = 0; start < key.length; start++) {
+            if (key[start] != '{') {
+                continue;
+            }
+            for (int end = start + 2; end < key.length; end++) {
+                if (key[end] == '}') {
+                    return Arrays.copyOfRange(key, start + 1, end);
+                }
+            }
+            return key;
+        }
+        return key;
+    }
+
+    /**
+     * tag -> shard：同一个shard列表的路由和连接可以共用
+     */
+    static final class TagCache {
+
+        private final ConcurrentMap<ByteBuffer, JedisShardInfo> shards =
+                new ConcurrentHashMap<ByteBuffer, JedisShardInfo>();
+
+        JedisShardInfo get(ByteBuffer tag) {
+            return shards.get(tag);
+        }
+
+        void put(ByteBuffer tag, JedisShardInfo shardInfo) {
+            if (shards.size() < MAX_CACHED_TAGS) {
+                shards.putIfAbsent(tag, shardInfo);
+            }
+        }
+    }
+
+    /**
+     * 按hash tag分片的路由
+     */
+    private static final class TagRoutedSharded extends Sharded<Jedis, JedisShardInfo> {
+
+        private final TagCache cache;
+
+        TagRoutedSharded(List<JedisShardInfo> shards, TagCache cache) {
+            super(shards);
+            this.cache = cache;
+        }
+
+        @Override
+        public JedisShardInfo getShardInfo(byte[] key) {
+            byte[] tag = keyTag(key);
+            if (tag == key) {
+                return super.getShardInfo(key);
+            }
+            ByteBuffer cacheKey = ByteBuffer.wrap(tag);
+            JedisShardInfo shardInfo = cache.get(cacheKey);
+            if (shardInfo == null) {
+                shardInfo = super.getShardInfo(tag);
+                cache.put(cacheKey, shardInfo);
+            }
+            return shardInfo;
+        }
+    }
+
+    /**
+     * 按hash tag分片的连接，由 {@link InstrumentedShardedJedisPool} 在按hash tag分片时创建，同一个连接池的连接共用tag缓存；
+     * String的key编码后同样经过这里，所以不需要设置key tag pattern
+     */
+    static final class TagRoutedShardedJedis extends ShardedJedis {
+
+        private final TagCache cache;
+
+        TagRoutedShardedJedis(List<JedisShardInfo> shards, TagCache cache) {
+            super(shards);
+            this.cache = cache;
+        }
+
+        @Override
+        public JedisShardInfo getShardInfo(byte[] key) {
+            byte[] tag = keyTag(key);
+            if (tag == key) {
+                return super.getShardInfo(key);
+            }
+            ByteBuffer cacheKey = ByteBuffer.wrap(tag);
+            JedisShardInfo shardInfo = cache.get(cacheKey);
+            if (shardInfo == null) {
+                shardInfo = super.getShardInfo(tag);
+                cache.put(cacheKey, shardInfo);
+            }
+            return shardInfo;
+        }
+    }
+}
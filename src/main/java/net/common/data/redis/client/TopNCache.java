@@ -0,0 +1,221 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RankedMember;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SortSet前N名的本地快照缓存
+ * <p/>
+ * 每个被读取过的key保存一份前N名快照，后台按固定间隔刷新，本客户端写入该key时立即触发一次异步刷新；
+ * 读取方只读当前快照，不等待刷新。key第一次被读取时同步加载一次
+ */
+public class TopNCache {
+
+    /**
+     * 快照中保存的名次数
+     */
+    private final int size;
+
+    /**
+     * 刷新间隔：毫秒
+     */
+    private final long refreshMillis;
+
+    /**
+     * 超过该时间没有被读取的key不再刷新：毫秒
+     */
+    private final long idleMillis;
+
+    /**
+     * 数据来源
+     */
+    private final IRedis redis;
+
+    /**
+     * key -> 快照
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * 刷新线程
+     */
+    private final ScheduledExecutorService refresher;
+
+    public TopNCache(IRedis redis, int size, long refreshMillis) {
+        Preconditions.checkArgument(size > 0, "Top N cache size must be positive.");
+        Preconditions.checkArgument(refreshMillis > 0, "Top N cache refresh interval must be positive.");
+        this.redis = redis;
+        this.size = size;
+        this.refreshMillis = refreshMillis;
+        this.idleMillis = Math.max(refreshMillis * 60, TimeUnit.MINUTES.toMillis(1));
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("redis-topn-refresh-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshAll();
+            }
+        }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        this.refresher = executor;
+    }
+
+    /**
+     * 前n名，n超过快照大小时直接读取redis
+     *
+     * @param key
+     * @param n
+     * @return
+     */
+    public List<RankedMember> top(String key, int n) {
+        if (n > size) {
+            return redis.zrevrangeWithScores(key, 0, n - 1);
+        }
+        List<RankedMember> top = entry(key).snapshot.top;
+        return n >= top.size() ? top : top.subList(0, n);
+    }
+
+    /**
+     * 成员的名次：在快照中时直接返回，不在前N名时读取redis
+     *
+     * @param key
+     * @param member
+     * @return
+     */
+    public Long rank(String key, String member) {
+        Snapshot snapshot = entry(key).snapshot;
+        RankedMember rankedMember = snapshot.byMember.get(member);
+        if (rankedMember != null) {
+            return rankedMember.getRank();
+        }
+        if (snapshot.top.size() < size) {
+            // 快照已经包含整个SortSet
+            return null;
+        }
+        return redis.zrevrank(key, member);
+    }
+
+    /**
+     * 本客户端写入了key，触发一次异步刷新
+     *
+     * @param key
+     */
+    public void markDirty(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            scheduleRefresh(entry);
+        }
+    }
+
+    /**
+     * 停止后台刷新
+     */
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private Entry entry(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            // 第一次读取：同步加载
+            Entry loaded = new Entry(key, load(key));
+            entry = entries.putIfAbsent(key, loaded);
+            if (entry == null) {
+                entry = loaded;
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    private void refreshAll() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries.values()) {
+            if (now - entry.lastAccess > idleMillis) {
+                entries.remove(entry.key, entry);
+            } else if (now - entry.snapshot.loadedAt >= refreshMillis) {
+                refresh(entry);
+            }
+        }
+    }
+
+    private void scheduleRefresh(final Entry entry) {
+        if (entry.refreshPending.compareAndSet(false, true)) {
+            try {
+                refresher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        entry.refreshPending.set(false);
+                        refresh(entry);
+                    }
+                });
+            } catch (RuntimeException e) {
+                entry.refreshPending.set(false);
+            }
+        }
+    }
+
+    private void refresh(Entry entry) {
+        try {
+            entry.snapshot = load(entry.key);
+        } catch (RuntimeException e) {
+            // 刷新失败时继续使用旧快照，下个周期重试
+        }
+    }
+
+    private Snapshot load(String key) {
+        return new Snapshot(redis.zrevrangeWithScores(key, 0, size - 1));
+    }
+
+    /**
+     * 一个key的缓存项
+     */
+    private static class Entry {
+
+        private final String key;
+
+        private volatile Snapshot snapshot;
+
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+        Entry(String key, Snapshot snapshot) {
+            this.key = key;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * 不可变的前N名快照
+     */
+    private static class Snapshot {
+
+        private final List<RankedMember> top;
+
+        private final Map<String, RankedMember> byMember;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        Snapshot(List<RankedMember> top) {
+            this.top = Collections.unmodifiableList(top);
+            Map<String, RankedMember> map = new HashMap<String, RankedMember>(top.size() * 2);
+            for (RankedMember rankedMember : top) {
+                map.put(rankedMember.getMember(), rankedMember);
+            }
+            this.byMember = map;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import net.common.data.redis.RedisTtlJitter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 写入时的过期时间抖动：同一时间批量写入的key不会在同一时刻集中过期
+ * <p/>
+ * 过期时间在 [expireSeconds - spread, expireSeconds] 中随机，spread取百分比和秒数中较大的范围，
+ * 只缩短不延长，配置的过期时间仍是数据最长的存活时间；过期时间至少保留1秒。
+ * 当前线程有 {@link RedisTtlJitter} 时使用其设置
+ */
+final class TtlJitter {
+
+    private final int percent;
+
+    private final int seconds;
+
+    /**
+     * @param percent : 最多缩短过期时间的百分比，0到100
+     * @param seconds : 最多缩短的秒数
+     */
+    TtlJitter(int percent, int seconds) {
+        Preconditions.checkArgument(percent >= 0 && percent <= 100, "Ttl jitter percent must be in [0, 100].");
+        Preconditions.checkArgument(seconds >= 0, "Ttl jitter seconds can't be negative.");
+        this.percent = percent;
+        this.seconds = seconds;
+    }
+
+    /**
+     * 加上抖动后的过期时间
+     *
+     * @param expireSeconds : 不大于0表示不过期，原样返回
+     * @return
+     */
+    int apply(int expireSeconds) {
+        if (expireSeconds <= 1) {
+            return expireSeconds;
+        }
+        RedisTtlJitter override = RedisTtlJitter.current();
+        int maxPercent = override == null ? percent : override.getPercent();
+        int maxSeconds = override == null ? seconds : override.getSeconds();
+        long spread = Math.max((long) expireSeconds * maxPercent / 100, maxSeconds);
+        if (spread <= 0) {
+            return expireSeconds;
+        }
+        spread = Math.min(spread, expireSeconds - 1);
+        return expireSeconds - (int) ThreadLocalRandom.current().nextLong(spread + 1);
+    }
+}
@@ -0,0 +1,536 @@
+package net.common.data.redis.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisTtlJitter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedisPool;
+import redis.clients.util.Sharded;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对象的异步写入(write-behind)队列
+ * <p/>
+ * 每个shard一个有界队列和一个刷新线程，刷新线程把队列中的写入按批次用pipeline写入redis。
+ * 同一个key在队列中尚未写出时，后来的写入直接覆盖队列中的值(合并写入)，位置不变。
+ * 队列满时按 {@link FullPolicy} 处理。批次写入失败时重新入队重试，超过重试次数后丢弃并计数
+ * <p/>
+ * 注意：已经取出正在写入的批次不能被取消，与之并发的同步写入可能被它覆盖；
+ * 但写入期间被 {@link #cancel} 的key会被标记，该批次失败时不再重新入队，重试不会恢复已经删除或覆盖的值
+ */
+public class WriteBehindQueue {
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum FullPolicy {
+        /**
+         * 调用方等待队列有空位
+         */
+        BLOCK,
+        /**
+         * 丢弃队列中最早的写入
+         */
+        DROP_OLDEST,
+        /**
+         * 调用方同步写入
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * 每个写入最多尝试的次数
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 批次写入失败后的等待时间：毫秒
+     */
+    private static final long RETRY_BACKOFF_MILLIS = 100L;
+
+    private final IRedis redis;
+
+    /**
+     * 计算key所在的shard，与ShardedJedisPool的分片算法一致
+     */
+    private final Sharded<Jedis, JedisShardInfo> router;
+
+    /**
+     * shard -> 队列
+     */
+    private final Map<String, ShardQueue> queues;
+
+    /**
+     * 每个shard队列的容量
+     */
+    private final int capacity;
+
+    /**
+     * 每批最多写入的数量
+     */
+    private final int batchSize;
+
+    /**
+     * 未攒满一批时最多等待的时间：纳秒
+     */
+    private final long flushIntervalNanos;
+
+    private final FullPolicy fullPolicy;
+
+    /**
+     * 刷新线程
+     */
+    private final ExecutorService flushers;
+
+    private volatile boolean shutdown = false;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * @param redis               : 写入使用的客户端
+     * @param pool                : 用于获得分片信息
+     * @param capacity            : 每个shard队列的容量
+     * @param batchSize           : 每批最多写入的数量
+     * @param flushIntervalMillis : 未攒满一批时最多等待的时间
+     * @param fullPolicy          : 队列满时的处理策略
+     */
+    public WriteBehindQueue(IRedis redis, ShardedJedisPool pool, int capacity, int batchSize,
+                            long flushIntervalMillis, FullPolicy fullPolicy) {
+        Preconditions.checkArgument(capacity > 0, "Write behind queue capacity must be positive.");
+        Preconditions.checkArgument(batchSize > 0, "Write behind batch size must be positive.");
+        Preconditions.checkArgument(flushIntervalMillis >= 0, "Write behind flush interval can't be negative.");
+        Preconditions.checkNotNull(fullPolicy, "fullPolicy");
+        this.redis = redis;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.fullPolicy = fullPolicy;
+        this.router = ShardRouters.of(pool);
+        Map<String, ShardQueue> map = new LinkedHashMap<String, ShardQueue>();
+        for (JedisShardInfo shard : router.getAllShardInfo()) {
+            map.put(shard.toString(), new ShardQueue());
+        }
+        this.queues = Collections.unmodifiableMap(map);
+        this.flushers = Executors.newFixedThreadPool(map.size(),
+                new ThreadFactoryBuilder().setNameFormat("redis-write-behind-%d").setDaemon(true).build());
+        for (ShardQueue queue : map.values()) {
+            flushers.execute(queue);
+        }
+    }
+
+    /**
+     * 加入队列
+     *
+     * @param key
+     * @param value         : 已编码的值
+     * @param expireSeconds : 0表示不过期
+     * @return false : 没有入队，调用方需要同步写入
+     */
+    public boolean offer(byte[] key, byte[] value, int expireSeconds) {
+        if (shutdown) {
+            return false;
+        }
+        return queue(key).offer(new PendingWrite(key, value, expireSeconds));
+    }
+
+    /**
+     * 队列中尚未写出的值，没有时返回null
+     *
+     * @param key
+     * @return
+     */
+    public byte[] peek(byte[] key) {
+        return queue(key).peek(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * 取消队列中尚未写出的写入：key被同步写入或删除时调用
+     *
+     * @param key
+     */
+    public void cancel(byte[] key) {
+        queue(key).cancel(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * 停止接收新的写入，写出队列中剩余的写入
+     *
+     * @param timeout
+     * @param unit
+     * @return 是否在超时前全部写出
+     * @throws InterruptedException
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        for (ShardQueue queue : queues.values()) {
+            queue.wakeUp();
+        }
+        flushers.shutdown();
+        return flushers.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 所有shard队列中的写入数
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ShardQueue queue : queues.values()) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * 每个shard队列中的写入数
+     *
+     * @return
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, ShardQueue> entry : queues.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().size());
+        }
+        return depths;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * 每批写入的平均耗时：毫秒
+     *
+     * @return
+     */
+    public double getAverageFlushMillis() {
+        long count = flushCount.get();
+        return count == 0 ? 0 : flushNanos.get() / 1000000.0 / count;
+    }
+
+    /**
+     * 每批写入的最大耗时：毫秒
+     *
+     * @return
+     */
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1000000.0;
+    }
+
+    private ShardQueue queue(byte[] key) {
+        return queues.get(router.getShardInfo(key).toString());
+    }
+
+    /**
+     * 写出一批，失败时重新入队
+     *
+     * @param queue
+     * @param batch
+     */
+    private void flush(ShardQueue queue, final List<PendingWrite> batch) {
+        final long st = System.nanoTime();
+        try {
+            List<Object> results;
+            // 入队时已经加过过期时间抖动
+            try (RedisTtlJitter exact = RedisTtlJitter.none()) {
+                results = redis.pipelined(new BaseShardedJedisPipeline("WriteBehindQueue_flush") {
+                    @Override
+                    public void execute() {
+                        for (PendingWrite write : batch) {
+                            if (write.expireSeconds > 0) {
+                                setex(write.key, write.expireSeconds, write.value);
+                            } else {
+                                set(write.key, write.value);
+                            }
+                        }
+                    }
+                });
+            }
+            // 任何一个写入失败都整批重试
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i);
+            }
+            writtenCount.addAndGet(batch.size());
+            queue.completed();
+        } catch (RuntimeException e) {
+            queue.requeue(batch);
+            Uninterruptibles.sleepUninterruptibly(RETRY_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            long cost = System.nanoTime() - st;
+            flushCount.incrementAndGet();
+            flushNanos.addAndGet(cost);
+            long max = maxFlushNanos.get();
+            while (cost > max && !maxFlushNanos.compareAndSet(max, cost)) {
+                max = maxFlushNanos.get();
+            }
+        }
+    }
+
+    /**
+     * 一个待写入的值
+     */
+    private static final class PendingWrite {
+
+        private final byte[] key;
+
+        private final ByteBuffer mapKey;
+
+        private final byte[] value;
+
+        private final int expireSeconds;
+
+        private int attempts = 0;
+
+        /**
+         * 写入期间被取消：失败时不再重新入队。只在队列锁内访问
+         */
+        private boolean cancelled = false;
+
+        PendingWrite(byte[] key, byte[] value, int expireSeconds) {
+            this.key = key;
+            this.mapKey = ByteBuffer.wrap(key);
+            this.value = value;
+            this.expireSeconds = expireSeconds;
+        }
+    }
+
+    /**
+     * 一个shard的队列，本身也是该shard的刷新任务
+     */
+    private final class ShardQueue implements Runnable {
+
+        /**
+         * key -> 写入，按入队顺序
+         */
+        private final LinkedHashMap<ByteBuffer, PendingWrite> pending = new LinkedHashMap<ByteBuffer, PendingWrite>();
+
+        /**
+         * key -> 已经取出正在写入的写入，每个shard只有一个刷新线程，最多一批
+         */
+        private final Map<ByteBuffer, PendingWrite> inFlight = new HashMap<ByteBuffer, PendingWrite>();
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notEmpty = lock.newCondition();
+
+        private final Condition notFull = lock.newCondition();
+
+        boolean offer(PendingWrite write) {
+            lock.lock();
+            try {
+                if (pending.containsKey(write.mapKey)) {
+                    // 合并写入：替换值，保持原来的位置
+                    pending.put(write.mapKey, write);
+                    coalescedCount.incrementAndGet();
+                    return true;
+                }
+                while (pending.size() >= capacity) {
+                    if (fullPolicy == FullPolicy.DROP_OLDEST) {
+                        Iterator<PendingWrite> it = pending.values().iterator();
+                        it.next();
+                        it.remove();
+                        droppedCount.incrementAndGet();
+                    } else if (fullPolicy == FullPolicy.BLOCK && !shutdown) {
+                        try {
+                            notFull.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            callerRunsCount.incrementAndGet();
+                            return false;
+                        }
+                    } else {
+                        callerRunsCount.incrementAndGet();
+                        return false;
+                    }
+                }
+                pending.put(write.mapKey, write);
+                enqueuedCount.incrementAndGet();
+                notEmpty.signal();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        byte[] peek(ByteBuffer key) {
+            lock.lock();
+            try {
+                PendingWrite write = pending.get(key);
+                return write == null ? null : write.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cancel(ByteBuffer key) {
+            lock.lock();
+            try {
+                if (pending.remove(key) != null) {
+                    notFull.signal();
+                }
+                PendingWrite write = inFlight.get(key);
+                if (write != null) {
+                    write.cancelled = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return pending.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wakeUp() {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 批次写入成功
+         */
+        void completed() {
+            lock.lock();
+            try {
+                inFlight.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 写入失败的批次重新入队：写入期间被取消的、已经有更新的写入或者超过重试次数的丢弃
+         *
+         * @param batch
+         */
+        void requeue(List<PendingWrite> batch) {
+            lock.lock();
+            try {
+                inFlight.clear();
+                for (PendingWrite write : batch) {
+                    if (write.cancelled) {
+                        // key已经被同步写入或删除，重新写入会恢复旧值
+                        continue;
+                    }
+                    if (++write.attempts < MAX_ATTEMPTS && !pending.containsKey(write.mapKey) && pending.size() < capacity) {
+                        pending.put(write.mapKey, write);
+                    } else if (!pending.containsKey(write.mapKey)) {
+                        failedCount.incrementAndGet();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 取出一批：队列为空时等待；不满一批时最多再等待一个刷新间隔。停止并且队列为空时返回null
+         *
+         * @return
+         * @throws InterruptedException
+         */
+        private List<PendingWrite> take() throws InterruptedException {
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    if (shutdown) {
+                        return null;
+                    }
+                    notEmpty.await();
+                }
+                long nanos = flushIntervalNanos;
+                while (pending.size() < batchSize && nanos > 0 && !shutdown) {
+                    nanos = notEmpty.awaitNanos(nanos);
+                }
+                List<PendingWrite> batch = new ArrayList<PendingWrite>(Math.min(pending.size(), batchSize));
+                Iterator<PendingWrite> it = pending.values().iterator();
+                while (it.hasNext() && batch.size() < batchSize) {
+                    PendingWrite write = it.next();
+                    it.remove();
+                    batch.add(write);
+                    inFlight.put(write.mapKey, write);
+                }
+                notFull.signalAll();
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                List<PendingWrite> batch;
+                try {
+                    batch = take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == null) {
+                    return;
+                }
+                flush(this, batch);
+            }
+        }
+    }
+}
@@ -50,6 +50,407 @@ public final class Constants {
      */
     public static final String CONF_KEY_MAX_WAIT = "redis.pool.max.wait";
 
+    /**
+     * pipeline并行读取多shard应答的线程数，0表示按顺序读取
+     */
+    public static final int DEFAULT_PIPELINE_DRAIN_THREADS = 0;
+    /**
+     * pipeline并行读取线程数 配置key
+     */
+    public static final String CONF_KEY_PIPELINE_DRAIN_THREADS = "redis.pipeline.drain.threads";
+
+    /**
+     * SortSet前N名本地缓存的名次数，0表示不启用
+     */
+    public static final int DEFAULT_TOPN_CACHE_SIZE = 0;
+    /**
+     * SortSet前N名本地缓存的名次数 配置key
+     */
+    public static final String CONF_KEY_TOPN_CACHE_SIZE = "redis.topn.cache.size";
+
+    /**
+     * SortSet前N名本地缓存的刷新间隔：毫秒
+     */
+    public static final long DEFAULT_TOPN_CACHE_REFRESH_MILLIS = 1000L;
+    /**
+     * SortSet前N名本地缓存的刷新间隔 配置key
+     */
+    public static final String CONF_KEY_TOPN_CACHE_REFRESH_MILLIS = "redis.topn.cache.refresh.millis";
+
+    /**
+     * 对象编码后超过该长度时分块存储：字节，0表示不分块
+     */
+    public static final int DEFAULT_CHUNK_THRESHOLD_BYTES = 0;
+    /**
+     * 分块存储阈值 配置key
+     */
+    public static final String CONF_KEY_CHUNK_THRESHOLD_BYTES = "redis.chunk.threshold.bytes";
+
+    /**
+     * 分块存储的块大小：字节
+     */
+    public static final int DEFAULT_CHUNK_SIZE_BYTES = 512 * 1024;
+    /**
+     * 分块存储的块大小 配置key
+     */
+    public static final String CONF_KEY_CHUNK_SIZE_BYTES = "redis.chunk.size.bytes";
+
+    /**
+     * 未配置pipeline并行读取线程时，分块并行读取使用的线程数
+     */
+    public static final int DEFAULT_CHUNK_FETCH_THREADS = 4;
+
+    /**
+     * 异步写入每个shard队列的容量，0表示不启用异步写入
+     */
+    public static final int DEFAULT_WRITE_BEHIND_QUEUE_SIZE = 0;
+    /**
+     * 异步写入队列容量 配置key
+     */
+    public static final String CONF_KEY_WRITE_BEHIND_QUEUE_SIZE = "redis.write.behind.queue.size";
+
+    /**
+     * 异步写入每批最多写入的数量
+     */
+    public static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 100;
+    /**
+     * 异步写入每批数量 配置key
+     */
+    public static final String CONF_KEY_WRITE_BEHIND_BATCH_SIZE = "redis.write.behind.batch.size";
+
+    /**
+     * 异步写入未攒满一批时最多等待的时间：毫秒
+     */
+    public static final long DEFAULT_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = 5L;
+    /**
+     * 异步写入等待时间 配置key
+     */
+    public static final String CONF_KEY_WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = "redis.write.behind.flush.interval.millis";
+
+    /**
+     * 异步写入队列满时的处理策略：BLOCK、DROP_OLDEST、CALLER_RUNS
+     */
+    public static final String DEFAULT_WRITE_BEHIND_FULL_POLICY = "CALLER_RUNS";
+    /**
+     * 异步写入队列满时的处理策略 配置key
+     */
+    public static final String CONF_KEY_WRITE_BEHIND_FULL_POLICY = "redis.write.behind.full.policy";
+
+    /**
+     * 扩容迁移窗口：毫秒，0表示不启用迁移模式
+     */
+    public static final long DEFAULT_MIGRATION_WINDOW_MILLIS = 0L;
+    /**
+     * 扩容迁移窗口 配置key
+     */
+    public static final String CONF_KEY_MIGRATION_WINDOW_MILLIS = "redis.migration.window.millis";
+
+    /**
+     * 热点key检测的采样率：每N次访问采样一次，0表示不检测
+     */
+    public static final int DEFAULT_HOTKEY_SAMPLE_RATE = 0;
+    /**
+     * 热点key检测采样率 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_SAMPLE_RATE = "redis.hotkey.sample.rate";
+
+    /**
+     * 每个shard、每个命令保留的热点key数
+     */
+    public static final int DEFAULT_HOTKEY_TOP_K = 20;
+    /**
+     * 热点key数 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_TOP_K = "redis.hotkey.top.k";
+
+    /**
+     * 热点key统计窗口：毫秒
+     */
+    public static final long DEFAULT_HOTKEY_WINDOW_MILLIS = 60000L;
+    /**
+     * 热点key统计窗口 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_WINDOW_MILLIS = "redis.hotkey.window.millis";
+
+    /**
+     * 每个统计窗口结束时是否输出热点key日志
+     */
+    public static final boolean DEFAULT_HOTKEY_LOG_ENABLED = false;
+    /**
+     * 热点key日志 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_LOG_ENABLED = "redis.hotkey.log.enabled";
+
+    /**
+     * 热点key读副本的份数(包括原key)，小于2表示不启用
+     */
+    public static final int DEFAULT_HOTKEY_REPLICA_COPIES = 0;
+    /**
+     * 热点key读副本份数 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_REPLICA_COPIES = "redis.hotkey.replica.copies";
+
+    /**
+     * 自动建立读副本的阈值：一个热点统计窗口内的访问次数，0表示只为手工指定的key建立副本
+     */
+    public static final long DEFAULT_HOTKEY_REPLICA_THRESHOLD = 0L;
+    /**
+     * 自动建立读副本的阈值 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_REPLICA_THRESHOLD = "redis.hotkey.replica.threshold";
+
+    /**
+     * 手工指定建立读副本的key，逗号分隔
+     */
+    public static final String DEFAULT_HOTKEY_REPLICA_KEYS = "";
+    /**
+     * 手工指定建立读副本的key 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_REPLICA_KEYS = "redis.hotkey.replica.keys";
+
+    /**
+     * 是否记录集合类读取的元素数和数据量
+     */
+    public static final boolean DEFAULT_BIGKEY_ENABLED = false;
+    /**
+     * 大key检测开关 配置key
+     */
+    public static final String CONF_KEY_BIGKEY_ENABLED = "redis.bigkey.enabled";
+
+    /**
+     * 大key警告阈值：一次读取返回的元素数，0表示不按元素数警告
+     */
+    public static final int DEFAULT_BIGKEY_WARN_ELEMENTS = 5000;
+    /**
+     * 大key元素数警告阈值 配置key
+     */
+    public static final String CONF_KEY_BIGKEY_WARN_ELEMENTS = "redis.bigkey.warn.elements";
+
+    /**
+     * 大key警告阈值：一次读取返回的数据量(字节)，0表示不按数据量警告
+     */
+    public static final long DEFAULT_BIGKEY_WARN_BYTES = 1024 * 1024L;
+    /**
+     * 大key数据量警告阈值 配置key
+     */
+    public static final String CONF_KEY_BIGKEY_WARN_BYTES = "redis.bigkey.warn.bytes";
+
+    /**
+     * 客户端慢命令阈值：毫秒，0表示不记录慢命令
+     */
+    public static final long DEFAULT_SLOWLOG_THRESHOLD_MILLIS = 0L;
+    /**
+     * 客户端慢命令阈值 配置key
+     */
+    public static final String CONF_KEY_SLOWLOG_THRESHOLD_MILLIS = "redis.slowlog.threshold.millis";
+
+    /**
+     * 每个shard保留的慢命令条数
+     */
+    public static final int DEFAULT_SLOWLOG_CAPACITY = 128;
+    /**
+     * 慢命令条数 配置key
+     */
+    public static final String CONF_KEY_SLOWLOG_CAPACITY = "redis.slowlog.capacity";
+
+    /**
+     * 是否按命令统计借用连接、I/O和编解码的耗时
+     */
+    public static final boolean DEFAULT_COMMAND_TIMINGS_ENABLED = false;
+    /**
+     * 分阶段耗时统计开关 配置key
+     */
+    public static final String CONF_KEY_COMMAND_TIMINGS_ENABLED = "redis.command.timings.enabled";
+
+    /**
+     * 是否为每个group注册JMX MBean，并按shard统计吞吐量、错误次数和耗时分布
+     */
+    public static final boolean DEFAULT_JMX_ENABLED = false;
+    /**
+     * JMX开关 配置key
+     */
+    public static final String CONF_KEY_JMX_ENABLED = "redis.jmx.enabled";
+
+    /**
+     * 是否根据借用连接的等待耗时和连接利用率自动调整连接池大小
+     */
+    public static final boolean DEFAULT_POOL_ADAPTIVE_ENABLED = false;
+    /**
+     * 连接池自动调整开关 配置key
+     */
+    public static final String CONF_KEY_POOL_ADAPTIVE_ENABLED = "redis.pool.adaptive.enabled";
+
+    /**
+     * 自动调整时每个shard的最小连接数
+     */
+    public static final int DEFAULT_POOL_ADAPTIVE_MIN_ACTIVE = 2;
+    /**
+     * 自动调整最小连接数 配置key
+     */
+    public static final String CONF_KEY_POOL_ADAPTIVE_MIN_ACTIVE = "redis.pool.adaptive.min.active";
+
+    /**
+     * 自动调整时每个shard的最大连接数
+     */
+    public static final int DEFAULT_POOL_ADAPTIVE_MAX_ACTIVE = 64;
+    /**
+     * 自动调整最大连接数 配置key
+     */
+    public static final String CONF_KEY_POOL_ADAPTIVE_MAX_ACTIVE = "redis.pool.adaptive.max.active";
+
+    /**
+     * 自动调整的周期：毫秒
+     */
+    public static final long DEFAULT_POOL_ADAPTIVE_INTERVAL_MILLIS = 10000L;
+    /**
+     * 自动调整周期 配置key
+     */
+    public static final String CONF_KEY_POOL_ADAPTIVE_INTERVAL_MILLIS = "redis.pool.adaptive.interval.millis";
+
+    /**
+     * 借用连接耗时p99的目标：微秒，超过时扩容
+     */
+    public static final long DEFAULT_POOL_ADAPTIVE_TARGET_WAIT_MICROS = 1000L;
+    /**
+     * 借用连接耗时目标 配置key
+     */
+    public static final String CONF_KEY_POOL_ADAPTIVE_TARGET_WAIT_MICROS = "redis.pool.adaptive.target.wait.micros";
+
+    /**
+     * 客户端传输方式：POOLED(连接池)、NIO(每个shard少量多路复用的非阻塞连接)
+     */
+    public static final String DEFAULT_TRANSPORT = "POOLED";
+    /**
+     * 客户端传输方式 配置key
+     */
+    public static final String CONF_KEY_TRANSPORT = "redis.transport";
+
+    /**
+     * NIO传输时每个shard的连接数
+     */
+    public static final int DEFAULT_NIO_CONNECTIONS_PER_SHARD = 2;
+    /**
+     * NIO传输时每个shard的连接数 配置key
+     */
+    public static final String CONF_KEY_NIO_CONNECTIONS_PER_SHARD = "redis.nio.connections.per.shard";
+
+    /**
+     * 幂等命令遇到连接错误时最多重试的次数，0表示不重试
+     */
+    public static final int DEFAULT_RETRY_COUNT = 0;
+    /**
+     * 幂等命令最多重试次数 配置key
+     */
+    public static final String CONF_KEY_RETRY_COUNT = "redis.retry.count";
+
+    /**
+     * 重试退避的基础时间：毫秒，每次重试翻倍
+     */
+    public static final long DEFAULT_RETRY_BASE_BACKOFF_MILLIS = 10L;
+    /**
+     * 重试退避的基础时间 配置key
+     */
+    public static final String CONF_KEY_RETRY_BASE_BACKOFF_MILLIS = "redis.retry.base.backoff.millis";
+
+    /**
+     * 重试退避的最长时间：毫秒
+     */
+    public static final long DEFAULT_RETRY_MAX_BACKOFF_MILLIS = 200L;
+    /**
+     * 重试退避的最长时间 配置key
+     */
+    public static final String CONF_KEY_RETRY_MAX_BACKOFF_MILLIS = "redis.retry.max.backoff.millis";
+
+    /**
+     * 重试预算：重试次数最多占调用次数的比例
+     */
+    public static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+    /**
+     * 重试预算比例 配置key
+     */
+    public static final String CONF_KEY_RETRY_BUDGET_RATIO = "redis.retry.budget.ratio";
+
+    /**
+     * 重试预算：每秒至少允许的重试次数
+     */
+    public static final int DEFAULT_RETRY_BUDGET_MIN_PER_SECOND = 10;
+    /**
+     * 重试预算每秒最低重试次数 配置key
+     */
+    public static final String CONF_KEY_RETRY_BUDGET_MIN_PER_SECOND = "redis.retry.budget.min.per.second";
+
+    /**
+     * 是否启用降级：shard故障时读返回未命中、整体覆盖的写直接丢弃(删除和部分修改照常抛出)，只用于缓存数据
+     */
+    public static final boolean DEFAULT_DEGRADED_READS_ENABLED = false;
+    /**
+     * 是否启用降级 配置key
+     */
+    public static final String CONF_KEY_DEGRADED_READS_ENABLED = "redis.degraded.reads.enabled";
+
+    /**
+     * 降级时一个shard熔断的连续连接错误次数
+     */
+    public static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+    /**
+     * 熔断的连续连接错误次数 配置key
+     */
+    public static final String CONF_KEY_CIRCUIT_FAILURE_THRESHOLD = "redis.circuit.failure.threshold";
+
+    /**
+     * 熔断时间：毫秒，之后放行一个探测调用
+     */
+    public static final long DEFAULT_CIRCUIT_OPEN_MILLIS = 5000L;
+    /**
+     * 熔断时间 配置key
+     */
+    public static final String CONF_KEY_CIRCUIT_OPEN_MILLIS = "redis.circuit.open.millis";
+
+    /**
+     * 过期时间抖动：最多缩短过期时间的百分比，0表示不按比例抖动
+     */
+    public static final int DEFAULT_TTL_JITTER_PERCENT = 0;
+    /**
+     * 过期时间抖动百分比 配置key
+     */
+    public static final String CONF_KEY_TTL_JITTER_PERCENT = "redis.ttl.jitter.percent";
+
+    /**
+     * 过期时间抖动：最多缩短的秒数，与百分比同时配置时取较大的范围，0表示不按秒数抖动
+     */
+    public static final int DEFAULT_TTL_JITTER_SECONDS = 0;
+    /**
+     * 过期时间抖动秒数 配置key
+     */
+    public static final String CONF_KEY_TTL_JITTER_SECONDS = "redis.ttl.jitter.seconds";
+
+    /**
+     * 分块存储的对象未指定过期时间时使用的过期时间：秒，分块总有过期时间，manifest丢失时不会永久残留
+     */
+    public static final int DEFAULT_CHUNK_MAX_TTL_SECONDS = 7 * 24 * 3600;
+    /**
+     * 分块对象的默认过期时间 配置key
+     */
+    public static final String CONF_KEY_CHUNK_MAX_TTL_SECONDS = "redis.chunk.max.ttl.seconds";
+
+    /**
+     * 热点key读副本的最长过期时间：秒，未标记该key的进程写入原key或漏掉的删除最多在这段时间内读到旧值
+     */
+    public static final int DEFAULT_HOTKEY_REPLICA_TTL_SECONDS = 60;
+    /**
+     * 热点key读副本的最长过期时间 配置key
+     */
+    public static final String CONF_KEY_HOTKEY_REPLICA_TTL_SECONDS = "redis.hotkey.replica.ttl.seconds";
+
+    /**
+     * 是否按key中的hash tag({}中的内容)分片：打开后同一个tag的key在同一个shard，已有带{}的key会换shard，只能在新group或者迁移时打开
+     */
+    public static final boolean DEFAULT_KEY_TAG_ROUTING = false;
+    /**
+     * 是否按hash tag分片 配置key
+     */
+    public static final String CONF_KEY_KEY_TAG_ROUTING = "redis.key.tag.routing";
+
 
     private Constants() {
 
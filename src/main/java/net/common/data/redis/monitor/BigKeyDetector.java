@@ -0,0 +1,261 @@
+package net.common.data.redis.monitor;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * 大key检测
+ * <p/>
+ * 记录集合类读取(smembers、hgetAll、lrange等)返回的元素数和数据量，
+ * 每个shard上按key前缀(去掉最后一个':'之后的部分，通常是id)保留数据量最大的一次读取，
+ * 元素数或数据量超过阈值时输出警告日志；同一前缀只在出现更大的值时再次警告
+ */
+public class BigKeyDetector {
+
+    private static final Logger LOGGER = Logger.getLogger(BigKeyDetector.class.getName());
+
+    /**
+     * 每个shard最多保留的前缀数，超过时替换数据量最小的前缀
+     */
+    private static final int MAX_PREFIXES_PER_SHARD = 1024;
+
+    /**
+     * 元素数的警告阈值，0表示不按元素数警告
+     */
+    private final int warnElements;
+
+    /**
+     * 数据量的警告阈值：字节，0表示不按数据量警告
+     */
+    private final long warnBytes;
+
+    /**
+     * shard -> 前缀 -> 最大的一次读取
+     */
+    private final ConcurrentMap<String, ShardRecords> byShard = new ConcurrentHashMap<String, ShardRecords>();
+
+    public BigKeyDetector(int warnElements, long warnBytes) {
+        Preconditions.checkArgument(warnElements >= 0, "Big key element threshold can't be negative.");
+        Preconditions.checkArgument(warnBytes >= 0, "Big key byte threshold can't be negative.");
+        this.warnElements = warnElements;
+        this.warnBytes = warnBytes;
+    }
+
+    /**
+     * 记录一次集合类读取
+     *
+     * @param shardInfo
+     * @param command
+     * @param key
+     * @param elements  : 返回的元素数
+     * @param bytes     : 返回的数据量
+     */
+    public void record(String shardInfo, String command, String key, int elements, long bytes) {
+        if (key == null) {
+            return;
+        }
+        BigKey bigKey = shard(shardInfo).offer(command, key, elements, bytes);
+        if (bigKey != null && exceeds(bigKey)) {
+            LOGGER.warning("Redis big key on " + shardInfo + ": " + bigKey);
+        }
+    }
+
+    /**
+     * 每个shard上数据量最大的若干个key，按数据量从大到小排列
+     *
+     * @param limit : 每个shard返回的个数
+     * @return
+     */
+    public Map<String, List<BigKey>> worstKeys(int limit) {
+        Map<String, List<BigKey>> result = new LinkedHashMap<String, List<BigKey>>();
+        for (Map.Entry<String, ShardRecords> entry : byShard.entrySet()) {
+            List<BigKey> bigKeys = entry.getValue().sorted();
+            result.put(entry.getKey(), Collections.unmodifiableList(
+                    new ArrayList<BigKey>(bigKeys.subList(0, Math.min(limit, bigKeys.size())))));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 清空已记录的数据
+     */
+    public void reset() {
+        byShard.clear();
+    }
+
+    /**
+     * String集合的数据量，按字符数估算
+     *
+     * @param values
+     * @return
+     */
+    public static long charCount(Collection<String> values) {
+        long count = 0;
+        for (String value : values) {
+            if (value != null) {
+                count += value.length();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * String Map的数据量(field与value)，按字符数估算
+     *
+     * @param values
+     * @return
+     */
+    public static long charCount(Map<String, String> values) {
+        long count = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            count += entry.getKey().length();
+            if (entry.getValue() != null) {
+                count += entry.getValue().length();
+            }
+        }
+        return count;
+    }
+
+    private boolean exceeds(BigKey bigKey) {
+        return (warnElements > 0 && bigKey.elements >= warnElements) || (warnBytes > 0 && bigKey.bytes >= warnBytes);
+    }
+
+    private ShardRecords shard(String shardInfo) {
+        ShardRecords records = byShard.get(shardInfo);
+        if (records == null) {
+            ShardRecords created = new ShardRecords();
+            records = byShard.putIfAbsent(shardInfo, created);
+            if (records == null) {
+                records = created;
+            }
+        }
+        return records;
+    }
+
+    private static String prefix(String key) {
+        int index = key.lastIndexOf(':');
+        return index > 0 ? key.substring(0, index) : key;
+    }
+
+    /**
+     * 一个shard上每个前缀最大的一次读取
+     */
+    private static final class ShardRecords {
+
+        private final Map<String, BigKey> byPrefix = new LinkedHashMap<String, BigKey>();
+
+        /**
+         * 比该前缀已有的记录大时保存
+         *
+         * @return 新的记录，没有变化时返回null
+         */
+        synchronized BigKey offer(String command, String key, int elements, long bytes) {
+            String prefix = prefix(key);
+            BigKey old = byPrefix.get(prefix);
+            if (old != null && old.bytes >= bytes && old.elements >= elements) {
+                return null;
+            }
+            if (old == null && byPrefix.size() >= MAX_PREFIXES_PER_SHARD) {
+                String minPrefix = null;
+                long min = Long.MAX_VALUE;
+                for (Map.Entry<String, BigKey> entry : byPrefix.entrySet()) {
+                    if (entry.getValue().bytes < min) {
+                        min = entry.getValue().bytes;
+                        minPrefix = entry.getKey();
+                    }
+                }
+                if (bytes <= min) {
+                    return null;
+                }
+                byPrefix.remove(minPrefix);
+            }
+            BigKey bigKey = new BigKey(prefix, key, command,
+                    old == null ? elements : Math.max(elements, old.elements),
+                    old == null ? bytes : Math.max(bytes, old.bytes), System.currentTimeMillis());
+            byPrefix.put(prefix, bigKey);
+            return bigKey;
+        }
+
+        synchronized List<BigKey> sorted() {
+            List<BigKey> bigKeys = new ArrayList<BigKey>(byPrefix.values());
+            Collections.sort(bigKeys, new Comparator<BigKey>() {
+                @Override
+                public int compare(BigKey o1, BigKey o2) {
+                    return o1.bytes < o2.bytes ? 1 : (o1.bytes == o2.bytes ? 0 : -1);
+                }
+            });
+            return bigKeys;
+        }
+    }
+
+    /**
+     * 一个key前缀上记录到的最大读取：元素数和数据量分别取最大值
+     */
+    public static final class BigKey {
+
+        private final String prefix;
+
+        private final String key;
+
+        private final String command;
+
+        private final int elements;
+
+        private final long bytes;
+
+        private final long timeMillis;
+
+        public BigKey(String prefix, String key, String command, int elements, long bytes, long timeMillis) {
+            this.prefix = prefix;
+            this.key = key;
+            this.command = command;
+            this.elements = elements;
+            this.bytes = bytes;
+            this.timeMillis = timeMillis;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * 最近一次刷新记录的key
+         *
+         * @return
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public int getElements() {
+            return elements;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return key + "(" + command + ", elements=" + elements + ", bytes=" + bytes + ")";
+        }
+    }
+}
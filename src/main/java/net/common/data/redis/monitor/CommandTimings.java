@@ -0,0 +1,151 @@
+package net.common.data.redis.monitor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按命令统计的分阶段耗时
+ * <p/>
+ * 每次调用的耗时拆分为三段：借用连接(等待连接池)、I/O(发送命令到读完应答)和编解码，
+ * 分别累加，用于区分慢在连接池、网络还是序列化
+ */
+public class CommandTimings {
+
+    private final ConcurrentMap<String, Phases> byCommand = new ConcurrentHashMap<String, Phases>();
+
+    /**
+     * 记录一次调用
+     *
+     * @param command
+     * @param borrowNanos : 借用连接的耗时
+     * @param ioNanos     : I/O耗时
+     * @param codecNanos  : 编解码耗时
+     */
+    public void record(String command, long borrowNanos, long ioNanos, long codecNanos) {
+        Phases phases = byCommand.get(command);
+        if (phases == null) {
+            Phases created = new Phases();
+            phases = byCommand.putIfAbsent(command, created);
+            if (phases == null) {
+                phases = created;
+            }
+        }
+        phases.add(borrowNanos, ioNanos, codecNanos);
+    }
+
+    /**
+     * 命令 -> 累计耗时，按命令名排序
+     *
+     * @return
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> result = new TreeMap<String, Snapshot>();
+        for (Map.Entry<String, Phases> entry : byCommand.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        byCommand.clear();
+    }
+
+    /**
+     * 一个命令的累计耗时
+     */
+    private static final class Phases {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong borrowNanos = new AtomicLong();
+
+        private final AtomicLong ioNanos = new AtomicLong();
+
+        private final AtomicLong codecNanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void add(long borrow, long io, long codec) {
+            count.incrementAndGet();
+            borrowNanos.addAndGet(borrow);
+            ioNanos.addAndGet(io);
+            codecNanos.addAndGet(codec);
+            long total = borrow + io + codec;
+            long max = maxNanos.get();
+            while (total > max && !maxNanos.compareAndSet(max, total)) {
+                max = maxNanos.get();
+            }
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(count.get(), borrowNanos.get(), ioNanos.get(), codecNanos.get(), maxNanos.get());
+        }
+    }
+
+    /**
+     * 一个命令的累计耗时快照
+     */
+    public static final class Snapshot {
+
+        private final long count;
+
+        private final long borrowNanos;
+
+        private final long ioNanos;
+
+        private final long codecNanos;
+
+        private final long maxNanos;
+
+        public Snapshot(long count, long borrowNanos, long ioNanos, long codecNanos, long maxNanos) {
+            this.count = count;
+            this.borrowNanos = borrowNanos;
+            this.ioNanos = ioNanos;
+            this.codecNanos = codecNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBorrowNanos() {
+            return borrowNanos;
+        }
+
+        public long getIoNanos() {
+            return ioNanos;
+        }
+
+        public long getCodecNanos() {
+            return codecNanos;
+        }
+
+        /**
+         * 单次调用的最大总耗时
+         *
+         * @return
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", avgBorrow=" + avgMicros(borrowNanos) + "us, avgIo=" + avgMicros(ioNanos)
+                    + "us, avgCodec=" + avgMicros(codecNanos) + "us, max=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us";
+        }
+
+        private long avgMicros(long nanos) {
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos / count);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package net.common.data.redis.monitor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 热点key检测
+ * <p/>
+ * 每次访问按1/sampleRate的概率采样，采样到的key计入count-min sketch，
+ * 再用sketch的估计值维护每个shard、每个命令的前K个热点key。未采样的访问只有一次随机数的开销。
+ * 统计按窗口进行：每个窗口结束时保存快照、可选地输出一行日志，然后清零重新统计
+ */
+public class HotKeyDetector {
+
+    private static final Logger LOGGER = Logger.getLogger(HotKeyDetector.class.getName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * sketch的行数
+     */
+    private static final int SKETCH_DEPTH = 4;
+
+    /**
+     * sketch每行的计数器数，2的幂
+     */
+    private static final int SKETCH_WIDTH = 4096;
+
+    /**
+     * 每行hash使用的种子
+     */
+    private static final int[] SEEDS = new int[]{0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    /**
+     * 采样率：每sampleRate次访问采样一次
+     */
+    private final int sampleRate;
+
+    /**
+     * 每个shard、每个命令保留的热点key数
+     */
+    private final int topK;
+
+    /**
+     * 统计窗口：毫秒
+     */
+    private final long windowMillis;
+
+    /**
+     * 每个窗口结束时是否输出日志
+     */
+    private final boolean logEnabled;
+
+    private volatile Window current = new Window();
+
+    private volatile Snapshot lastSnapshot;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 窗口结束时的通知对象
+     */
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    public HotKeyDetector(int sampleRate, int topK, long windowMillis, boolean logEnabled) {
+        Preconditions.checkArgument(sampleRate > 0, "Hot key sample rate must be positive.");
+        Preconditions.checkArgument(topK > 0, "Hot key top K must be positive.");
+        Preconditions.checkArgument(windowMillis > 0, "Hot key window must be positive.");
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+        this.windowMillis = windowMillis;
+        this.logEnabled = logEnabled;
+        this.lastSnapshot = current.snapshot();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("redis-hotkey-window-%d").setDaemon(true).build());
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                rotate();
+            }
+        }, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        this.scheduler = executor;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param shardInfo
+     * @param command
+     * @param key
+     */
+    public void record(String shardInfo, String command, String key) {
+        if (sampled() && key != null) {
+            current.add(shardInfo, command, key);
+        }
+    }
+
+    /**
+     * 记录一次访问，只有采样到时才把key解码为String
+     *
+     * @param shardInfo
+     * @param command
+     * @param key
+     */
+    public void record(String shardInfo, String command, byte[] key) {
+        if (sampled() && key != null) {
+            current.add(shardInfo, command, new String(key, UTF_8));
+        }
+    }
+
+    /**
+     * 当前窗口(尚未结束)的热点key
+     *
+     * @return
+     */
+    public Snapshot snapshot() {
+        return current.snapshot();
+    }
+
+    /**
+     * 上一个完整窗口的热点key
+     *
+     * @return
+     */
+    public Snapshot lastSnapshot() {
+        return lastSnapshot;
+    }
+
+    /**
+     * 注册窗口结束时的通知对象
+     *
+     * @param listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 停止窗口切换
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean sampled() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    private void rotate() {
+        Window finished = current;
+        current = new Window();
+        Snapshot snapshot = finished.snapshot();
+        lastSnapshot = snapshot;
+        if (logEnabled && !snapshot.getByShard().isEmpty()) {
+            LOGGER.info("Redis hot keys in last " + windowMillis + "ms: " + snapshot);
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onWindow(snapshot);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Hot key listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * 一个统计窗口
+     */
+    private final class Window {
+
+        private final long startMillis = System.currentTimeMillis();
+
+        private final AtomicLongArray sketch = new AtomicLongArray(SKETCH_DEPTH * SKETCH_WIDTH);
+
+        private final ConcurrentMap<String, TopK> byShard = new ConcurrentHashMap<String, TopK>();
+
+        private final ConcurrentMap<String, TopK> byCommand = new ConcurrentHashMap<String, TopK>();
+
+        void add(String shardInfo, String command, String key) {
+            int h = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+            for (int i = 0; i < SKETCH_DEPTH; i++) {
+                int index = i * SKETCH_WIDTH + (mix(h ^ SEEDS[i]) & (SKETCH_WIDTH - 1));
+                estimate = Math.min(estimate, sketch.incrementAndGet(index));
+            }
+            topK(byShard, shardInfo).offer(key, estimate);
+            topK(byCommand, command).offer(key, estimate);
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(startMillis, toHotKeys(byShard), toHotKeys(byCommand));
+        }
+
+        private TopK topK(ConcurrentMap<String, TopK> map, String name) {
+            TopK topK = map.get(name);
+            if (topK == null) {
+                TopK created = new TopK();
+                topK = map.putIfAbsent(name, created);
+                if (topK == null) {
+                    topK = created;
+                }
+            }
+            return topK;
+        }
+
+        private Map<String, List<HotKey>> toHotKeys(Map<String, TopK> map) {
+            Map<String, List<HotKey>> result = new LinkedHashMap<String, List<HotKey>>();
+            for (Map.Entry<String, TopK> entry : map.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().toHotKeys());
+            }
+            return Collections.unmodifiableMap(result);
+        }
+    }
+
+    /**
+     * 前K个热点key
+     */
+    private final class TopK {
+
+        /**
+         * key -> 采样计数的估计值
+         */
+        private final Map<String, Long> counts = new HashMap<String, Long>();
+
+        synchronized void offer(String key, long estimate) {
+            if (counts.containsKey(key) || counts.size() < topK) {
+                counts.put(key, estimate);
+                return;
+            }
+            String minKey = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                if (entry.getValue() < min) {
+                    min = entry.getValue();
+                    minKey = entry.getKey();
+                }
+            }
+            if (estimate > min) {
+                counts.remove(minKey);
+                counts.put(key, estimate);
+            }
+        }
+
+        synchronized List<HotKey> toHotKeys() {
+            List<HotKey> hotKeys = new ArrayList<HotKey>(counts.size());
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                hotKeys.add(new HotKey(entry.getKey(), entry.getValue() * sampleRate));
+            }
+            Collections.sort(hotKeys, new Comparator<HotKey>() {
+                @Override
+                public int compare(HotKey o1, HotKey o2) {
+                    return o1.estimatedCount < o2.estimatedCount ? 1 : (o1.estimatedCount == o2.estimatedCount ? 0 : -1);
+                }
+            });
+            return Collections.unmodifiableList(hotKeys);
+        }
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 窗口结束时的通知
+     */
+    public interface Listener {
+
+        /**
+         * 一个窗口结束，在窗口切换线程中调用
+         *
+         * @param snapshot : 该窗口的热点key
+         */
+        void onWindow(Snapshot snapshot);
+    }
+
+    /**
+     * 热点key及其访问次数的估计值(已按采样率放大)
+     */
+    public static final class HotKey {
+
+        private final String key;
+
+        private final long estimatedCount;
+
+        public HotKey(String key, long estimatedCount) {
+            this.key = key;
+            this.estimatedCount = estimatedCount;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getEstimatedCount() {
+            return estimatedCount;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + estimatedCount;
+        }
+    }
+
+    /**
+     * 一个窗口内每个shard、每个命令的热点key，按估计次数从大到小排列
+     */
+    public static final class Snapshot {
+
+        private final long startMillis;
+
+        private final Map<String, List<HotKey>> byShard;
+
+        private final Map<String, List<HotKey>> byCommand;
+
+        Snapshot(long startMillis, Map<String, List<HotKey>> byShard, Map<String, List<HotKey>> byCommand) {
+            this.startMillis = startMillis;
+            this.byShard = byShard;
+            this.byCommand = byCommand;
+        }
+
+        /**
+         * 窗口开始时间
+         *
+         * @return
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * shard -> 热点key
+         *
+         * @return
+         */
+        public Map<String, List<HotKey>> getByShard() {
+            return byShard;
+        }
+
+        /**
+         * 命令 -> 热点key
+         *
+         * @return
+         */
+        public Map<String, List<HotKey>> getByCommand() {
+            return byCommand;
+        }
+
+        @Override
+        public String toString() {
+            return "byShard=" + byShard + ", byCommand=" + byCommand;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.common.data.redis.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图
+ * <p/>
+ * 耗时(微秒)按对数分桶：每个2的幂区间再均分为4个桶，百分位的误差不超过25%，
+ * 记录只有几次原子加法，不需要加锁
+ */
+public class LatencyHistogram {
+
+    /**
+     * 每个2的幂区间的子桶数(2的SUB_BITS次方)
+     */
+    private static final int SUB_BITS = 2;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * 桶数：覆盖到2^40微秒
+     */
+    private static final int BUCKETS = SUB_COUNT + (40 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros
+     */
+    public void record(long micros) {
+        buckets.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    /**
+     * 百分位：返回所在桶的上界，没有记录时返回0
+     *
+     * @param quantile : 0到1之间，例如0.99
+     * @return
+     */
+    public long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static int bucket(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return Math.min(BUCKETS - 1, SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub);
+    }
+
+    /**
+     * 桶的上界(包含)
+     *
+     * @param bucket
+     * @return
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,144 @@
+package net.common.data.redis.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接池在某一时刻的状态
+ * <p/>
+ * 计数类的值(创建、销毁、借用)从连接池创建起累计，两个快照相减得到区间内的速率
+ */
+public class PoolStats {
+
+    private final long timeMillis;
+
+    private final int maxTotal;
+
+    private final int numActive;
+
+    private final int numIdle;
+
+    private final int numWaiters;
+
+    private final long createdCount;
+
+    private final long destroyedCount;
+
+    private final long borrowCount;
+
+    private final long borrowNanos;
+
+    private final long maxBorrowNanos;
+
+    public PoolStats(long timeMillis, int maxTotal, int numActive, int numIdle, int numWaiters,
+                     long createdCount, long destroyedCount, long borrowCount, long borrowNanos, long maxBorrowNanos) {
+        this.timeMillis = timeMillis;
+        this.maxTotal = maxTotal;
+        this.numActive = numActive;
+        this.numIdle = numIdle;
+        this.numWaiters = numWaiters;
+        this.createdCount = createdCount;
+        this.destroyedCount = destroyedCount;
+        this.borrowCount = borrowCount;
+        this.borrowNanos = borrowNanos;
+        this.maxBorrowNanos = maxBorrowNanos;
+    }
+
+    /**
+     * 每秒创建的连接数
+     *
+     * @param earlier : 较早的快照
+     * @return
+     */
+    public double creationRate(PoolStats earlier) {
+        return rate(createdCount - earlier.createdCount, earlier);
+    }
+
+    /**
+     * 每秒销毁的连接数
+     *
+     * @param earlier : 较早的快照
+     * @return
+     */
+    public double destroyRate(PoolStats earlier) {
+        return rate(destroyedCount - earlier.destroyedCount, earlier);
+    }
+
+    /**
+     * 区间内借用连接的平均耗时：微秒
+     *
+     * @param earlier : 较早的快照
+     * @return
+     */
+    public long meanBorrowMicros(PoolStats earlier) {
+        long count = borrowCount - earlier.borrowCount;
+        return count <= 0 ? 0 : TimeUnit.NANOSECONDS.toMicros((borrowNanos - earlier.borrowNanos) / count);
+    }
+
+    private double rate(long delta, PoolStats earlier) {
+        long millis = timeMillis - earlier.timeMillis;
+        return millis <= 0 ? 0 : delta * 1000.0 / millis;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getNumActive() {
+        return numActive;
+    }
+
+    public int getNumIdle() {
+        return numIdle;
+    }
+
+    /**
+     * 正在等待连接的线程数
+     *
+     * @return
+     */
+    public int getNumWaiters() {
+        return numWaiters;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * 借用连接的累计耗时
+     *
+     * @return
+     */
+    public long getBorrowNanos() {
+        return borrowNanos;
+    }
+
+    /**
+     * 单次借用连接的最大耗时
+     *
+     * @return
+     */
+    public long getMaxBorrowNanos() {
+        return maxBorrowNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "maxTotal=" + maxTotal + ", active=" + numActive + ", idle=" + numIdle + ", waiters=" + numWaiters
+                + ", created=" + createdCount + ", destroyed=" + destroyedCount + ", borrows=" + borrowCount
+                + ", avgBorrow=" + (borrowCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(borrowNanos / borrowCount))
+                + "us, maxBorrow=" + TimeUnit.NANOSECONDS.toMicros(maxBorrowNanos) + "us";
+    }
+}
@@ -0,0 +1,164 @@
+package net.common.data.redis.monitor;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按shard统计的调用次数、错误次数和耗时分布，耗时分布见 {@link LatencyHistogram}
+ */
+public class ShardStats {
+
+    private final ConcurrentMap<String, Histogram> byShard = new ConcurrentHashMap<String, Histogram>();
+
+    private volatile long startMillis = System.currentTimeMillis();
+
+    /**
+     * 记录一次调用
+     *
+     * @param shardInfo
+     * @param nanos     : 总耗时
+     * @param success   : 是否成功
+     */
+    public void record(String shardInfo, long nanos, boolean success) {
+        String shard = SlowLog.shardName(shardInfo);
+        Histogram histogram = byShard.get(shard);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = byShard.putIfAbsent(shard, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.add(TimeUnit.NANOSECONDS.toMicros(nanos), success);
+    }
+
+    /**
+     * shard -> 统计，吞吐量按上次清零以来的平均值计算
+     *
+     * @return
+     */
+    public Map<String, Snapshot> snapshot() {
+        long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startMillis));
+        Map<String, Snapshot> result = new TreeMap<String, Snapshot>();
+        for (Map.Entry<String, Histogram> entry : byShard.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot(seconds));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 清零
+     */
+    public void reset() {
+        byShard.clear();
+        startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 一个shard的耗时直方图和错误次数
+     */
+    private static final class Histogram {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        void add(long micros, boolean success) {
+            latency.record(micros);
+            if (!success) {
+                errors.incrementAndGet();
+            }
+        }
+
+        Snapshot snapshot(long seconds) {
+            long c = latency.getCount();
+            return new Snapshot(c, errors.get(), (double) c / seconds, c == 0 ? 0 : latency.getTotalMicros() / c,
+                    latency.percentile(0.5), latency.percentile(0.9), latency.percentile(0.99), latency.percentile(0.999));
+        }
+    }
+
+    /**
+     * 一个shard的统计快照，耗时单位为微秒
+     */
+    public static final class Snapshot {
+
+        private final long count;
+
+        private final long errors;
+
+        private final double throughput;
+
+        private final long meanMicros;
+
+        private final long p50Micros;
+
+        private final long p90Micros;
+
+        private final long p99Micros;
+
+        private final long p999Micros;
+
+        @ConstructorProperties({"count", "errors", "throughput", "meanMicros",
+                "p50Micros", "p90Micros", "p99Micros", "p999Micros"})
+        public Snapshot(long count, long errors, double throughput, long meanMicros,
+                        long p50Micros, long p90Micros, long p99Micros, long p999Micros) {
+            this.count = count;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * 每秒调用次数
+         *
+         * @return
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public long getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP90Micros() {
+            return p90Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getP999Micros() {
+            return p999Micros;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", errors=" + errors + ", throughput=" + throughput + "/s, mean=" + meanMicros
+                    + "us, p50=" + p50Micros + "us, p90=" + p90Micros + "us, p99=" + p99Micros + "us, p999=" + p999Micros + "us";
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package net.common.data.redis.monitor;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 客户端慢命令日志
+ * <p/>
+ * Redis的SLOWLOG只记录服务端的执行时间，客户端的耗时还包括等待连接池、网络往返和编解码。
+ * 这里把总耗时超过阈值的调用按shard(host:port)记录到固定大小的环形缓冲区中，
+ * 分别记录等待连接池、I/O(发送命令到读完应答)和编解码的耗时。写入不加锁，缓冲区满时覆盖最旧的记录
+ */
+public class SlowLog {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 记录的key的最大长度，超过时截断
+     */
+    private static final int MAX_KEY_LENGTH = 128;
+
+    /**
+     * 慢命令阈值：纳秒
+     */
+    private final long thresholdNanos;
+
+    /**
+     * 每个shard的缓冲区大小，2的幂
+     */
+    private final int capacity;
+
+    private final ConcurrentMap<String, Ring> byShard = new ConcurrentHashMap<String, Ring>();
+
+    /**
+     * @param thresholdMillis : 慢命令阈值：毫秒
+     * @param capacity        : 每个shard保留的记录数，向上取整为2的幂
+     */
+    public SlowLog(long thresholdMillis, int capacity) {
+        Preconditions.checkArgument(thresholdMillis > 0, "Slow log threshold must be positive.");
+        Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 20), "Slow log capacity must be in (0, 2^20].");
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+    }
+
+    /**
+     * 总耗时是否超过阈值
+     *
+     * @param totalNanos
+     * @return
+     */
+    public boolean isSlow(long totalNanos) {
+        return totalNanos >= thresholdNanos;
+    }
+
+    /**
+     * 记录一次调用，总耗时未超过阈值时忽略
+     *
+     * @param shardInfo      : shard，JedisShardInfo的"host:port*weight"或者"host:port"
+     * @param command        : 命令
+     * @param key            : String或byte[]，可以为null
+     * @param fromMethodName : 调用来源
+     * @param poolWaitNanos  : 等待连接池的耗时
+     * @param ioNanos        : 发送命令到读完应答的耗时
+     * @param codecNanos     : 编解码的耗时
+     */
+    public void record(String shardInfo, String command, Object key, String fromMethodName,
+                       long poolWaitNanos, long ioNanos, long codecNanos) {
+        if (!isSlow(poolWaitNanos + ioNanos + codecNanos)) {
+            return;
+        }
+        String shard = shardName(shardInfo);
+        ring(shard).add(new Entry(System.currentTimeMillis(), shard, command, keyString(key), fromMethodName,
+                poolWaitNanos, ioNanos, codecNanos));
+    }
+
+    /**
+     * 每个shard上的慢命令，按时间从新到旧排列
+     *
+     * @return
+     */
+    public Map<String, List<Entry>> dump() {
+        Map<String, List<Entry>> result = new LinkedHashMap<String, List<Entry>>();
+        for (Map.Entry<String, Ring> entry : byShard.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().entries());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 以文本形式输出所有慢命令，每行一条
+     *
+     * @return
+     */
+    public String dumpAsString() {
+        StringBuilder sb = new StringBuilder();
+        for (List<Entry> entries : dump().values()) {
+            for (Entry entry : entries) {
+                sb.append(entry).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void clear() {
+        byShard.clear();
+    }
+
+    private Ring ring(String shard) {
+        Ring ring = byShard.get(shard);
+        if (ring == null) {
+            Ring created = new Ring(capacity);
+            ring = byShard.putIfAbsent(shard, created);
+            if (ring == null) {
+                ring = created;
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * 去掉JedisShardInfo.toString()中的权重，与pipeline中按连接得到的host:port一致
+     *
+     * @param shardInfo
+     * @return
+     */
+    static String shardName(String shardInfo) {
+        int index = shardInfo.indexOf('*');
+        return index > 0 ? shardInfo.substring(0, index) : shardInfo;
+    }
+
+    private static String keyString(Object key) {
+        String str;
+        if (key == null) {
+            return null;
+        } else if (key instanceof byte[]) {
+            byte[] bytes = (byte[]) key;
+            str = new String(bytes, 0, Math.min(bytes.length, MAX_KEY_LENGTH), UTF_8);
+        } else {
+            str = key.toString();
+        }
+        return str.length() > MAX_KEY_LENGTH ? str.substring(0, MAX_KEY_LENGTH) + "..." : str;
+    }
+
+    /**
+     * 一个shard的环形缓冲区
+     */
+    private static final class Ring {
+
+        private final AtomicReferenceArray<Entry> entries;
+
+        private final AtomicLong cursor = new AtomicLong();
+
+        Ring(int capacity) {
+            this.entries = new AtomicReferenceArray<Entry>(capacity);
+        }
+
+        void add(Entry entry) {
+            entries.set((int) (cursor.getAndIncrement() & (entries.length() - 1)), entry);
+        }
+
+        List<Entry> entries() {
+            long end = cursor.get();
+            int size = (int) Math.min(end, entries.length());
+            List<Entry> result = new ArrayList<Entry>(size);
+            for (long i = end - 1; i >= end - size; i--) {
+                Entry entry = entries.get((int) (i & (entries.length() - 1)));
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 一条慢命令记录
+     */
+    public static final class Entry {
+
+        private final long timeMillis;
+
+        private final String shard;
+
+        private final String command;
+
+        private final String key;
+
+        private final String fromMethodName;
+
+        private final long poolWaitNanos;
+
+        private final long ioNanos;
+
+        private final long codecNanos;
+
+        public Entry(long timeMillis, String shard, String command, String key, String fromMethodName,
+                     long poolWaitNanos, long ioNanos, long codecNanos) {
+            this.timeMillis = timeMillis;
+            this.shard = shard;
+            this.command = command;
+            this.key = key;
+            this.fromMethodName = fromMethodName;
+            this.poolWaitNanos = poolWaitNanos;
+            this.ioNanos = ioNanos;
+            this.codecNanos = codecNanos;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public String getShard() {
+            return shard;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * 可能被截断的key，pipeline记录为null
+         *
+         * @return
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String getFromMethodName() {
+            return fromMethodName;
+        }
+
+        public long getPoolWaitNanos() {
+            return poolWaitNanos;
+        }
+
+        public long getIoNanos() {
+            return ioNanos;
+        }
+
+        public long getCodecNanos() {
+            return codecNanos;
+        }
+
+        public long getTotalNanos() {
+            return poolWaitNanos + ioNanos + codecNanos;
+        }
+
+        @Override
+        public String toString() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timeMillis))
+                    + " " + shard + " " + command + " " + (key == null ? "-" : key) + " from=" + fromMethodName
+                    + " total=" + micros(getTotalNanos()) + "us poolWait=" + micros(poolWaitNanos)
+                    + "us io=" + micros(ioNanos) + "us codec=" + micros(codecNanos) + "us";
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package net.common.data.redis;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 生成的key与String拼接后UTF-8编码的结果一致
+ */
+public class KeySpaceTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void numericIds() {
+        KeySpace space = KeySpace.of("svc:user:", ":name");
+        long[] ids = {0, 7, 10, 12345, -1, -10, -98765, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long id : ids) {
+            assertKey("svc:user:" + id + ":name", space.key(id));
+            assertEquals("svc:user:" + id + ":name", space.keyString(id));
+        }
+    }
+
+    @Test
+    public void stringIds() {
+        KeySpace space = KeySpace.of("svc:user:", ":name");
+        assertKey("svc:user:abc:name", space.key("abc"));
+        assertKey("svc:user::name", space.key(""));
+        assertKey("svc:user:用户:name", space.key("用户"));
+        assertKey("svc:user:éÿ:name", space.key("éÿ"));
+    }
+
+    @Test
+    public void nonAsciiPrefixAndSuffix() {
+        KeySpace space = KeySpace.of("服务:", ":名字");
+        assertKey("服务:42:名字", space.key(42));
+        assertKey("服务:x:名字", space.key("x"));
+    }
+
+    @Test
+    public void withSuffixKeepsPrefixAndHashTag() {
+        KeySpace space = KeySpace.of("svc:{user}:", ":name");
+        KeySpace other = space.withSuffix(":age");
+        assertEquals("svc:{user}:", other.getPrefix());
+        assertEquals(":age", other.getSuffix());
+        assertKey("svc:{user}:-5:age", other.key(-5));
+        assertTrue(Arrays.equals("user".getBytes(UTF_8), other.getHashTag()));
+    }
+
+    @Test
+    public void hashTag() {
+        assertFalse(KeySpace.of("svc:user:").hasHashTag());
+        assertNull(KeySpace.of("svc:user:").getHashTag());
+        // 空的{}不是tag
+        assertFalse(KeySpace.of("svc:{}:").hasHashTag());
+        assertTrue(Arrays.equals("}x".getBytes(UTF_8), KeySpace.of("svc:{}x}:").getHashTag()));
+        assertTrue(Arrays.equals("a".getBytes(UTF_8), KeySpace.of("{a}:{b}:").getHashTag()));
+    }
+
+    private static void assertKey(String expected, byte[] actual) {
+        assertEquals(expected, new String(actual, UTF_8));
+        assertTrue(Arrays.equals(expected.getBytes(UTF_8), actual));
+    }
+}
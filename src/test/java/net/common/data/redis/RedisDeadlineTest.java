@@ -0,0 +1,85 @@
+package net.common.data.redis;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 截止时间的嵌套、恢复和过期
+ */
+public class RedisDeadlineTest {
+
+    @Test
+    public void closeRestoresOuterDeadline() {
+        assertNull(RedisDeadline.current());
+        RedisDeadline outer = RedisDeadline.start(1, TimeUnit.MINUTES);
+        try {
+            RedisDeadline inner = RedisDeadline.start(10, TimeUnit.SECONDS);
+            assertSame(inner, RedisDeadline.current());
+            inner.close();
+            assertSame(outer, RedisDeadline.current());
+        } finally {
+            outer.close();
+        }
+        assertNull(RedisDeadline.current());
+    }
+
+    @Test
+    public void nestedDeadlineNeverExtendsOuter() {
+        RedisDeadline outer = RedisDeadline.start(1, TimeUnit.SECONDS);
+        try {
+            RedisDeadline inner = RedisDeadline.start(1, TimeUnit.MINUTES);
+            try {
+                assertTrue(inner.remainingMillis() <= 1000);
+            } finally {
+                inner.close();
+            }
+        } finally {
+            outer.close();
+        }
+    }
+
+    @Test
+    public void closingOuterScopeTwiceOrOutOfOrderIsIgnored() {
+        RedisDeadline outer = RedisDeadline.start(1, TimeUnit.MINUTES);
+        RedisDeadline inner = RedisDeadline.start(1, TimeUnit.MINUTES);
+        // 外层先关闭时不能清掉内层
+        outer.close();
+        assertSame(inner, RedisDeadline.current());
+        inner.close();
+        assertSame(outer, RedisDeadline.current());
+        outer.close();
+        assertNull(RedisDeadline.current());
+    }
+
+    @Test
+    public void expiresAfterTimeout() throws InterruptedException {
+        RedisDeadline deadline = RedisDeadline.start(20, TimeUnit.MILLISECONDS);
+        try {
+            assertFalse(deadline.isExpired());
+            assertTrue(deadline.remainingMillis() > 0 && deadline.remainingMillis() <= 20);
+            Thread.sleep(40);
+            assertTrue(deadline.isExpired());
+            assertEquals(0L, deadline.remainingMillis());
+        } finally {
+            deadline.close();
+        }
+    }
+
+    @Test
+    public void remainingBelowOneMillisecondRoundsUp() {
+        RedisDeadline deadline = RedisDeadline.start(500, TimeUnit.MICROSECONDS);
+        try {
+            long remaining = deadline.remainingMillis();
+            assertTrue(remaining == 1 || deadline.isExpired());
+        } finally {
+            deadline.close();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * pipeline结果按调用顺序返回，单个命令的错误只影响自己的结果，多shard的应答可以并行读取
+ */
+public class BaseShardedJedisPipelineTest {
+
+    private static final JedisShardInfo SHARD_A = new JedisShardInfo("10.0.0.1", 6379);
+
+    private static final JedisShardInfo SHARD_B = new JedisShardInfo("10.0.0.2", 6379);
+
+    @Test
+    public void resultsFollowCallOrderAcrossShards() {
+        FakeShardedJedis jedis = new FakeShardedJedis(new FakeClient(), new FakeClient());
+        BaseShardedJedisPipeline pipeline = new BaseShardedJedisPipeline("resultsFollowCallOrderAcrossShards") {
+            @Override
+            public void execute() {
+                get(bytes("a1"));
+                get(bytes("b1"));
+                get(bytes("a2"));
+                get(bytes("b2"));
+            }
+        };
+        pipeline.setShardedJedis(jedis);
+        pipeline.execute();
+        List<Object> results = pipeline.getResults();
+        assertEquals(4, results.size());
+        assertEquals("v:a1", SafeEncoder.encode((byte[]) results.get(0)));
+        assertEquals("v:b1", SafeEncoder.encode((byte[]) results.get(1)));
+        assertEquals("v:a2", SafeEncoder.encode((byte[]) results.get(2)));
+        assertEquals("v:b2", SafeEncoder.encode((byte[]) results.get(3)));
+    }
+
+    @Test
+    public void errorReplyOnlyFailsItsOwnResult() {
+        FakeShardedJedis jedis = new FakeShardedJedis(new FakeClient(), new FakeClient());
+        final PipelineResponse<?>[] responses = new PipelineResponse<?>[3];
+        BaseShardedJedisPipeline pipeline = new BaseShardedJedisPipeline("errorReplyOnlyFailsItsOwnResult") {
+            @Override
+            public void execute() {
+                responses[0] = get(bytes("a1"));
+                responses[1] = get(bytes("a-err"));
+                responses[2] = get(bytes("a2"));
+            }
+        };
+        pipeline.setShardedJedis(jedis);
+        pipeline.execute();
+        try {
+            responses[0].get();
+            fail("response must not be available before sync");
+        } catch (JedisDataException expected) {
+            // 尚未同步
+        }
+        pipeline.sync();
+        assertEquals("v:a1", SafeEncoder.encode((byte[]) responses[0].get()));
+        try {
+            responses[1].get();
+            fail("error reply must be thrown from its own response");
+        } catch (JedisDataException expected) {
+            assertEquals("ERR a-err", expected.getMessage());
+        }
+        assertEquals("v:a2", SafeEncoder.encode((byte[]) responses[2].get()));
+    }
+
+    @Test
+    public void shardsAreDrainedInParallel() throws InterruptedException {
+        // shard A的应答要等shard B开始读取后才返回，顺序读取时等待超时
+        final CountDownLatch bReading = new CountDownLatch(1);
+        FakeClient clientA = new FakeClient() {
+            @Override
+            public Object getOne() {
+                try {
+                    if (!bReading.await(5, TimeUnit.SECONDS)) {
+                        throw new JedisDataException("ERR shard B was not drained in parallel");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getOne();
+            }
+        };
+        FakeClient clientB = new FakeClient() {
+            @Override
+            public Object getOne() {
+                bReading.countDown();
+                return super.getOne();
+            }
+        };
+        BaseShardedJedisPipeline pipeline = new BaseShardedJedisPipeline("shardsAreDrainedInParallel") {
+            @Override
+            public void execute() {
+                get(bytes("a1"));
+                get(bytes("b1"));
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            pipeline.setShardedJedis(new FakeShardedJedis(clientA, clientB));
+            pipeline.setDrainExecutor(executor);
+            pipeline.execute();
+            List<Object> results = pipeline.getResults();
+            assertEquals("v:a1", SafeEncoder.encode((byte[]) results.get(0)));
+            assertEquals("v:b1", SafeEncoder.encode((byte[]) results.get(1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelDrainRethrowsConnectionFailureAfterAllShards() {
+        final CountDownLatch aDrained = new CountDownLatch(1);
+        FakeClient clientA = new FakeClient() {
+            @Override
+            public Object getOne() {
+                aDrained.countDown();
+                return super.getOne();
+            }
+        };
+        FakeClient clientB = new FakeClient() {
+            @Override
+            public Object getOne() {
+                throw new JedisConnectionException("Connection reset");
+            }
+        };
+        BaseShardedJedisPipeline pipeline = new BaseShardedJedisPipeline("parallelDrainRethrows") {
+            @Override
+            public void execute() {
+                get(bytes("a1"));
+                get(bytes("b1"));
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            pipeline.setShardedJedis(new FakeShardedJedis(clientA, clientB));
+            pipeline.setDrainExecutor(executor);
+            pipeline.execute();
+            pipeline.sync();
+            fail("connection failure on shard B must be rethrown");
+        } catch (JedisConnectionException expected) {
+            assertEquals(0L, aDrained.getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] bytes(String str) {
+        return SafeEncoder.encode(str);
+    }
+
+    /**
+     * 按发送顺序返回应答的连接：get返回"v:"+key，key包含"err"时返回错误
+     */
+    static class FakeClient extends Client {
+
+        private final Queue<Object> replies = new ArrayDeque<Object>();
+
+        FakeClient() {
+            super("127.0.0.1", 6379);
+        }
+
+        @Override
+        public void get(byte[] key) {
+            String str = SafeEncoder.encode(key);
+            synchronized (replies) {
+                replies.add(str.contains("err") ? new JedisDataException("ERR " + str) : bytes("v:" + str));
+            }
+        }
+
+        @Override
+        public Object getOne() {
+            Object reply;
+            synchronized (replies) {
+                reply = replies.remove();
+            }
+            if (reply instanceof JedisDataException) {
+                throw (JedisDataException) reply;
+            }
+            return reply;
+        }
+    }
+
+    /**
+     * key以"a"开头的命令发往shard A，其余发往shard B
+     */
+    static class FakeShardedJedis extends ShardedJedis {
+
+        private final Jedis jedisA;
+
+        private final Jedis jedisB;
+
+        FakeShardedJedis(Client clientA, Client clientB) {
+            super(Arrays.asList(SHARD_A, SHARD_B));
+            this.jedisA = new FakeJedis(clientA);
+            this.jedisB = new FakeJedis(clientB);
+        }
+
+        @Override
+        public JedisShardInfo getShardInfo(byte[] key) {
+            return key[0] == 'a' ? SHARD_A : SHARD_B;
+        }
+
+        @Override
+        public Jedis getShard(byte[] key) {
+            return key[0] == 'a' ? jedisA : jedisB;
+        }
+    }
+
+    private static final class FakeJedis extends Jedis {
+
+        private final Client client;
+
+        FakeJedis(Client client) {
+            super("127.0.0.1", 6379);
+            this.client = client;
+        }
+
+        @Override
+        public Client getClient() {
+            return client;
+        }
+    }
+}
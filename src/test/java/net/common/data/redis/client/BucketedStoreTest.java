@@ -0,0 +1,118 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 分桶算法固定、写入时续期所在的桶、超长的field或value拒绝写入
+ */
+public class BucketedStoreTest {
+
+    @Test
+    public void bucketKeyIsStableAndInRange() {
+        BucketedStore store = new BucketedStore(new RecordingRedis().proxy(), "b:", 16, 0);
+        // 算法固定，改变会导致已经写入的数据读不到
+        assertEquals("b:9", store.bucketKey("user:1"));
+        assertEquals("b:8", store.bucketKey("user:2"));
+        assertEquals("b:3", store.bucketKey("中文"));
+        int[] counts = new int[16];
+        for (int i = 0; i < 1600; i++) {
+            String bucket = store.bucketKey("user:" + i);
+            counts[Integer.parseInt(bucket.substring(2))]++;
+        }
+        for (int count : counts) {
+            assertTrue("uneven bucket: " + Arrays.toString(counts), count > 50 && count < 150);
+        }
+    }
+
+    @Test
+    public void forExpectedKeysRoundsUpBucketCount() {
+        IRedis redis = new RecordingRedis().proxy();
+        assertEquals(1, BucketedStore.forExpectedKeys(redis, "b:", 1, 0).getBucketCount());
+        assertEquals(1, BucketedStore.forExpectedKeys(redis, "b:", 64, 0).getBucketCount());
+        assertEquals(2, BucketedStore.forExpectedKeys(redis, "b:", 65, 0).getBucketCount());
+        assertEquals(15625, BucketedStore.forExpectedKeys(redis, "b:", 1000000, 0).getBucketCount());
+    }
+
+    @Test
+    public void setWritesFieldIntoBucketAndRenewsBucketTtl() {
+        RecordingRedis redis = new RecordingRedis();
+        BucketedStore store = new BucketedStore(redis.proxy(), "b:", 16, 3600);
+        store.set("user:1", "v");
+        store.get("user:1");
+        store.del("user:1");
+        assertEquals(Arrays.asList("hset:[b:9, user:1, v, 3600]", "hget:[b:9, user:1]", "hdel:[b:9, user:1]"),
+                redis.calls);
+    }
+
+    @Test
+    public void lengthIsCheckedInUtf8Bytes() {
+        RecordingRedis redis = new RecordingRedis();
+        BucketedStore store = new BucketedStore(redis.proxy(), "b:", 16, 0, 64);
+        store.set(repeat("k", 64), repeat("v", 64));
+        // 21个汉字为63字节
+        store.set("k", repeat("中", 21));
+        assertEquals(2, redis.calls.size());
+        assertRejected(store, repeat("k", 65), "v");
+        assertRejected(store, "k", repeat("v", 65));
+        // 22个汉字只有22个char，但UTF-8编码后为66字节
+        assertRejected(store, "k", repeat("中", 22));
+        assertEquals(2, redis.calls.size());
+    }
+
+    @Test
+    public void zeroMaxValueBytesDisablesLengthCheck() {
+        RecordingRedis redis = new RecordingRedis();
+        BucketedStore store = new BucketedStore(redis.proxy(), "b:", 16, 0, 0);
+        store.set("k", repeat("v", 1000));
+        assertEquals(1, redis.calls.size());
+    }
+
+    private static void assertRejected(BucketedStore store, String key, String value) {
+        try {
+            store.set(key, value);
+            fail("oversized field or value must be rejected");
+        } catch (IllegalArgumentException expected) {
+            // 超长时整个桶会转为hashtable编码
+        }
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 记录调用的方法名和参数
+     */
+    private static final class RecordingRedis implements InvocationHandler {
+
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        IRedis proxy() {
+            return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            calls.add(method.getName() + ":" + Arrays.toString(args));
+            return method.getReturnType() == Long.class ? 1L : null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.util.SafeEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分块manifest的编码、解析和分块切分
+ */
+public class ChunkManifestTest {
+
+    @Test
+    public void roundTripsThroughBytes() {
+        ChunkManifest manifest = ChunkManifest.create(10000, 4096);
+        assertEquals(3, manifest.chunkCount);
+        assertTrue(manifest.generation >= 0);
+
+        byte[] bytes = manifest.toBytes();
+        assertEquals(ChunkManifest.LENGTH, bytes.length);
+        assertTrue(ChunkManifest.isManifest(bytes));
+
+        ChunkManifest parsed = ChunkManifest.parse(bytes);
+        assertEquals(manifest.generation, parsed.generation);
+        assertEquals(10000, parsed.totalLength);
+        assertEquals(4096, parsed.chunkSize);
+        assertEquals(3, parsed.chunkCount);
+    }
+
+    @Test
+    public void chunksReassembleToValue() {
+        byte[] value = new byte[10000];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) i;
+        }
+        ChunkManifest manifest = ChunkManifest.create(value.length, 4096);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < manifest.chunkCount; i++) {
+            byte[] chunk = manifest.chunk(value, i);
+            assertEquals(i < manifest.chunkCount - 1 ? 4096 : 10000 - 2 * 4096, chunk.length);
+            out.write(chunk, 0, chunk.length);
+        }
+        assertTrue(Arrays.equals(value, out.toByteArray()));
+    }
+
+    @Test
+    public void exactMultipleHasNoEmptyChunk() {
+        assertEquals(2, ChunkManifest.create(8192, 4096).chunkCount);
+        assertEquals(1, ChunkManifest.create(1, 4096).chunkCount);
+    }
+
+    @Test
+    public void chunkKeysCarryGeneration() {
+        ChunkManifest manifest = ChunkManifest.create(10000, 4096);
+        String chunkKey = SafeEncoder.encode(manifest.chunkKey(SafeEncoder.encode("user:1"), 2));
+        assertEquals("user:1:chunk:" + manifest.generation + ":2", chunkKey);
+    }
+
+    @Test
+    public void everyWriteUsesNewGeneration() {
+        // 读到旧manifest的并发读方依赖旧分块的key不被新的写入覆盖
+        ChunkManifest first = ChunkManifest.create(10000, 4096);
+        ChunkManifest second = ChunkManifest.create(10000, 4096);
+        assertTrue(first.generation != second.generation);
+        byte[] key = SafeEncoder.encode("user:1");
+        assertFalse(Arrays.equals(first.chunkKey(key, 0), second.chunkKey(key, 0)));
+    }
+
+    @Test
+    public void chunkKeyKeepsBinaryKeyBytes() {
+        byte[] key = new byte[]{(byte) 0xff, 0, 'k'};
+        ChunkManifest manifest = ChunkManifest.create(10, 4);
+        byte[] chunkKey = manifest.chunkKey(key, 1);
+        assertTrue(Arrays.equals(key, Arrays.copyOf(chunkKey, key.length)));
+        assertEquals(":chunk:" + manifest.generation + ":1",
+                SafeEncoder.encode(Arrays.copyOfRange(chunkKey, key.length, chunkKey.length)));
+    }
+
+    @Test
+    public void rejectsNonManifests() {
+        assertFalse(ChunkManifest.isManifest(null));
+        assertFalse(ChunkManifest.isManifest(new byte[0]));
+        byte[] bytes = ChunkManifest.create(10000, 4096).toBytes();
+        assertFalse(ChunkManifest.isManifest(Arrays.copyOf(bytes, bytes.length + 1)));
+        bytes[1] = 'X';
+        assertFalse(ChunkManifest.isManifest(bytes));
+    }
+}
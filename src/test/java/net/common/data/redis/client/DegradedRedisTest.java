@@ -0,0 +1,128 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisDeadline;
+import net.common.data.redis.RedisDeadlineExceededException;
+import org.junit.Test;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 降级的范围：读返回未命中、整体覆盖的写丢弃，删除和部分修改照常抛出
+ */
+public class DegradedRedisTest {
+
+    @Test
+    public void readsAndOverwritesDegradeOnConnectionError() {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = degraded(failingRedis(calls), 100);
+        assertNull(redis.get("k"));
+        assertNull(redis.set("k", "v", 60));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void deletesAndPartialUpdatesAreNotDropped() {
+        IRedis redis = degraded(failingRedis(new AtomicInteger()), 100);
+        try {
+            redis.del("k");
+            fail("del must not be dropped");
+        } catch (JedisConnectionException expected) {
+            // 丢弃的删除会在shard恢复后读到旧值
+        }
+        try {
+            redis.hset("k", "f", "v");
+            fail("hset must not be dropped");
+        } catch (JedisConnectionException expected) {
+            // 部分修改同样不能丢弃
+        }
+    }
+
+    @Test
+    public void openCircuitSkipsTargetForReadsAndRejectsDeletes() {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = degraded(failingRedis(calls), 1);
+        assertNull(redis.get("k"));
+        assertEquals(1, calls.get());
+        assertNull(redis.get("k"));
+        assertEquals(1, calls.get());
+        try {
+            redis.del("k");
+            fail("del must be rejected while the circuit is open");
+        } catch (JedisConnectionException expected) {
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void expiredDeadlineDegradesReadsWithoutTrippingCircuit() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = degraded(deadlineExceededRedis(calls), 1);
+        // 截止时间内的调用用完了时间预算，不计入熔断
+        assertNull(redis.get("k"));
+        assertNull(redis.get("k"));
+        assertEquals(2, calls.get());
+        RedisDeadline deadline = RedisDeadline.start(1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(10);
+            // 截止时间已过的读直接返回未命中，不访问server
+            assertNull(redis.get("k"));
+            assertEquals(2, calls.get());
+        } finally {
+            deadline.close();
+        }
+    }
+
+    private static IRedis degraded(IRedis target, int failureThreshold) {
+        RedisServiceLoaderImpl.RedisConfig config = new RedisServiceLoaderImpl.RedisConfig();
+        config.setCircuitFailureThreshold(failureThreshold);
+        config.setCircuitOpenMillis(60000);
+        return DegradedRedis.create(target, Collections.singletonList(new JedisShardInfo("127.0.0.1", 6379)),
+                config).proxy();
+    }
+
+    /**
+     * 每次调用都抛出连接异常的IRedis
+     *
+     * @param calls : 调用次数
+     * @return
+     */
+    private static IRedis failingRedis(final AtomicInteger calls) {
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.incrementAndGet();
+                        throw new JedisConnectionException("Connection refused");
+                    }
+                });
+    }
+
+    /**
+     * 每次调用都抛出截止时间已过的IRedis
+     *
+     * @param calls : 调用次数
+     * @return
+     */
+    private static IRedis deadlineExceededRedis(final AtomicInteger calls) {
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.incrementAndGet();
+                        throw new RedisDeadlineExceededException("Redis deadline exceeded");
+                    }
+                });
+    }
+}
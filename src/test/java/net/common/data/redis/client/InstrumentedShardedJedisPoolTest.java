@@ -0,0 +1,35 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.RedisDeadline;
+import net.common.data.redis.RedisDeadlineExceededException;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Test;
+import redis.clients.jedis.JedisShardInfo;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+/**
+ * 截止时间已过时不再借用连接
+ */
+public class InstrumentedShardedJedisPoolTest {
+
+    @Test
+    public void expiredDeadlineFailsBeforeBorrowing() throws InterruptedException {
+        InstrumentedShardedJedisPool pool = new InstrumentedShardedJedisPool(new GenericObjectPoolConfig(),
+                Collections.singletonList(new JedisShardInfo("127.0.0.1", 6379)), 1000, false);
+        RedisDeadline deadline = RedisDeadline.start(1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(10);
+            pool.getResource();
+            fail("expired deadline must not borrow a connection");
+        } catch (RedisDeadlineExceededException expected) {
+            // 没有访问连接池
+        } finally {
+            deadline.close();
+            pool.destroy();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 迁移窗口内pipeline中的写：整体覆盖删除旧环上的key，部分修改拒绝
+ */
+public class MigratingRedisTest {
+
+    private static final long WINDOW_MILLIS = 60000;
+
+    /**
+     * 没有server监听的端口：命令加入pipeline时连接立即失败
+     */
+    private final List<JedisShardInfo> targetShards = Arrays.asList(new JedisShardInfo("127.0.0.1", 1),
+            new JedisShardInfo("127.0.0.1", 2), new JedisShardInfo("127.0.0.1", 3));
+
+    private final List<JedisShardInfo> sourceShards = Collections.singletonList(new JedisShardInfo("127.0.0.1", 1));
+
+    @Test
+    public void pipelinedOverwriteDeletesOldCopyFirst() {
+        String key = key(true);
+        RecordingRedis source = new RecordingRedis();
+        MigratingRedis migrating = migrating(source);
+        try {
+            migrating.proxy().pipelined(pipeline("del", key));
+        } finally {
+            migrating.close();
+        }
+        assertEquals(Collections.singletonList("del:" + key), source.calls);
+    }
+
+    @Test
+    public void pipelinedWriteToUnmovedKeyLeavesOldRing() {
+        RecordingRedis source = new RecordingRedis();
+        MigratingRedis migrating = migrating(source);
+        try {
+            migrating.proxy().pipelined(pipeline("del", key(false)));
+            migrating.proxy().pipelined(pipeline("hset", key(false)));
+        } finally {
+            migrating.close();
+        }
+        assertTrue(source.calls.isEmpty());
+    }
+
+    @Test
+    public void pipelinedPartialWriteToMovedKeyIsRejected() {
+        RecordingRedis source = new RecordingRedis();
+        MigratingRedis migrating = migrating(source);
+        try {
+            migrating.proxy().pipelined(pipeline("hset", key(true)));
+            fail("partial write to a moved key must be rejected");
+        } catch (IllegalStateException expected) {
+            assertTrue(source.calls.isEmpty());
+        } finally {
+            migrating.close();
+        }
+    }
+
+    private MigratingRedis migrating(RecordingRedis source) {
+        return MigratingRedis.create(new PipelineRunner(targetShards).proxy(), pool(targetShards), source.proxy(),
+                pool(sourceShards), WINDOW_MILLIS);
+    }
+
+    /**
+     * 新旧环上归属是否变化符合要求的key
+     *
+     * @param moved
+     * @return
+     */
+    private String key(boolean moved) {
+        Sharded<Jedis, JedisShardInfo> target = ShardRouters.of(targetShards, false);
+        for (int i = 0; ; i++) {
+            String key = "user:" + i;
+            boolean keyMoved = target.getShardInfo(SafeEncoder.encode(key)).getPort() != sourceShards.get(0).getPort();
+            if (keyMoved == moved) {
+                return key;
+            }
+        }
+    }
+
+    private static InstrumentedShardedJedisPool pool(List<JedisShardInfo> shards) {
+        return new InstrumentedShardedJedisPool(new GenericObjectPoolConfig(), shards, 1000, false);
+    }
+
+    /**
+     * 只包含一个写命令的pipeline；没有真实连接，命令加入pipeline时的连接错误忽略
+     *
+     * @param command : del或hset
+     * @param key
+     * @return
+     */
+    private static BaseShardedJedisPipeline pipeline(final String command, final String key) {
+        return new BaseShardedJedisPipeline("MigratingRedisTest") {
+            @Override
+            public void execute() {
+                try {
+                    if ("del".equals(command)) {
+                        del(key);
+                    } else {
+                        hset(key, "field", "value");
+                    }
+                } catch (JedisException e) {
+                    // 没有连接
+                }
+            }
+        };
+    }
+
+    /**
+     * 新环：pipelined时执行pipeline
+     */
+    private static final class PipelineRunner implements InvocationHandler {
+
+        private final List<JedisShardInfo> shards;
+
+        PipelineRunner(List<JedisShardInfo> shards) {
+            this.shards = shards;
+        }
+
+        IRedis proxy() {
+            return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!"pipelined".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            BaseShardedJedisPipeline pipeline = (BaseShardedJedisPipeline) args[0];
+            pipeline.setShardedJedis(new ShardedJedis(shards));
+            pipeline.execute();
+            return new ArrayList<Object>();
+        }
+    }
+
+    /**
+     * 旧环：记录调用
+     */
+    private static final class RecordingRedis implements InvocationHandler {
+
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        IRedis proxy() {
+            return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            Object key = args[0] instanceof byte[] ? SafeEncoder.encode((byte[]) args[0]) : args[0];
+            calls.add(method.getName() + ":" + key);
+            return method.getReturnType() == Long.class ? 1L : null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.SafeEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * NIO连接在server不应答时的超时和关闭
+ */
+public class NioConnectionTest {
+
+    private static final long TIMEOUT_MILLIS = 200;
+
+    @Test
+    public void silentServerClosesConnectionAfterTimeout() throws Exception {
+        SilentServer server = new SilentServer();
+        NioEventLoop loop = new NioEventLoop("nio-test");
+        try {
+            NioConnection connection = new NioConnection(loop, "127.0.0.1", server.port(), TIMEOUT_MILLIS);
+            NioRequest request = ping();
+            connection.send(request);
+            long st = System.currentTimeMillis();
+            try {
+                // 调用方等得比超时更久：连接自己按超时失败，而不是等到调用方放弃
+                request.get(TIMEOUT_MILLIS * 20);
+                fail("silent server replied");
+            } catch (JedisConnectionException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+            }
+            long elapsed = System.currentTimeMillis() - st;
+            assertTrue("failed after " + elapsed + "ms", elapsed < TIMEOUT_MILLIS * 10);
+        } finally {
+            loop.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void abandonedRequestsAreFailedWithTheConnection() throws Exception {
+        SilentServer server = new SilentServer();
+        NioEventLoop loop = new NioEventLoop("nio-test");
+        try {
+            NioConnection connection = new NioConnection(loop, "127.0.0.1", server.port(), TIMEOUT_MILLIS);
+            NioRequest abandoned = ping();
+            connection.send(abandoned);
+            try {
+                abandoned.get(10);
+                fail("silent server replied");
+            } catch (JedisConnectionException expected) {
+                // 调用方先放弃
+            }
+            // 之后的请求不会永远排在放弃的请求后面
+            NioRequest next = ping();
+            connection.send(next);
+            try {
+                next.get(TIMEOUT_MILLIS * 20);
+                fail("silent server replied");
+            } catch (JedisConnectionException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+            }
+        } finally {
+            loop.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void closingLoopFailsWaitersAndClosesSockets() throws Exception {
+        SilentServer server = new SilentServer();
+        NioEventLoop loop = new NioEventLoop("nio-test");
+        try {
+            NioConnection connection = new NioConnection(loop, "127.0.0.1", server.port(), Long.MAX_VALUE);
+            NioRequest request = ping();
+            connection.send(request);
+            Socket accepted = server.awaitAccepted();
+            connection.close();
+            loop.close();
+            long st = System.currentTimeMillis();
+            try {
+                request.get(5000);
+                fail("silent server replied");
+            } catch (JedisConnectionException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+            }
+            assertTrue(System.currentTimeMillis() - st < 1000);
+            // server一侧读到EOF：socket已经关闭
+            accepted.setSoTimeout(1000);
+            InputStream in = accepted.getInputStream();
+            while (in.read() >= 0) {
+                // 跳过PING命令
+            }
+            NioRequest afterClose = ping();
+            connection.send(afterClose);
+            try {
+                afterClose.get(5000);
+                fail("closed connection sent a request");
+            } catch (JedisConnectionException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+            }
+        } finally {
+            loop.close();
+            server.close();
+        }
+    }
+
+    private static NioRequest ping() {
+        return new NioRequest(RespCodec.encode(SafeEncoder.encode("PING")));
+    }
+
+    /**
+     * 接受连接但从不应答的server
+     */
+    private static final class SilentServer implements Runnable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+
+        private final List<Socket> sockets = new ArrayList<Socket>();
+
+        SilentServer() throws IOException {
+            Thread thread = new Thread(this, "silent-redis");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    synchronized (sockets) {
+                        sockets.add(socket);
+                        sockets.notifyAll();
+                    }
+                }
+            } catch (IOException ignore) {
+                // 关闭
+            }
+        }
+
+        Socket awaitAccepted() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            synchronized (sockets) {
+                while (sockets.isEmpty() && System.currentTimeMillis() < deadline) {
+                    sockets.wait(100);
+                }
+                assertTrue("no connection accepted", !sockets.isEmpty());
+                return sockets.get(0);
+            }
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
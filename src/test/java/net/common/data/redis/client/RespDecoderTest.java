@@ -0,0 +1,148 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RESP编码和增量解析：完整应答、分片到达的应答和一次到达的多条应答
+ */
+public class RespDecoderTest {
+
+    @Test
+    public void decodesSimpleReplies() {
+        assertEquals("OK", decodeAll("+OK\r\n").get(0));
+        assertEquals(Long.valueOf(-42), decodeAll(":-42\r\n").get(0));
+        assertEquals("bar", SafeEncoder.encode((byte[]) decodeAll("$3\r\nbar\r\n").get(0)));
+        assertEquals(0, ((byte[]) decodeAll("$0\r\n\r\n").get(0)).length);
+        assertNull(decodeAll("$-1\r\n").get(0));
+        assertNull(decodeAll("*-1\r\n").get(0));
+        assertEquals(new ArrayList<Object>(), decodeAll("*0\r\n").get(0));
+    }
+
+    @Test
+    public void returnsErrorsInsteadOfThrowing() {
+        Object reply = decodeAll("-ERR wrong type\r\n").get(0);
+        assertTrue(reply instanceof JedisDataException);
+        assertEquals("ERR wrong type", ((JedisDataException) reply).getMessage());
+    }
+
+    @Test
+    public void decodesNestedArrays() {
+        List<?> reply = (List<?>) decodeAll("*3\r\n:1\r\n*2\r\n$1\r\na\r\n$-1\r\n+x\r\n").get(0);
+        assertEquals(3, reply.size());
+        assertEquals(Long.valueOf(1), reply.get(0));
+        List<?> inner = (List<?>) reply.get(1);
+        assertEquals("a", SafeEncoder.encode((byte[]) inner.get(0)));
+        assertNull(inner.get(1));
+        assertEquals("x", reply.get(2));
+    }
+
+    @Test
+    public void returnsIncompleteUntilReplyArrives() {
+        RespDecoder decoder = new RespDecoder();
+        ByteBuffer in = ByteBuffer.wrap(bytes("*2\r\n$5\r\nhel"));
+        assertSame(RespDecoder.INCOMPLETE, decoder.decode(in));
+        // 数组头和bulk头已经取走，只剩bulk内容
+        assertEquals(3, in.remaining());
+        assertEquals(7, decoder.pendingBulkBytes());
+
+        ByteBuffer rest = ByteBuffer.wrap(bytes("hello\r\n$2\r\nhi\r\n"));
+        List<?> reply = (List<?>) decoder.decode(rest);
+        assertEquals("hello", SafeEncoder.encode((byte[]) reply.get(0)));
+        assertEquals("hi", SafeEncoder.encode((byte[]) reply.get(1)));
+        assertEquals(0, rest.remaining());
+        assertEquals(0, decoder.pendingBulkBytes());
+    }
+
+    @Test
+    public void decodesRepliesFedOneByteAtATime() {
+        String wire = "+OK\r\n*2\r\n$3\r\nfoo\r\n*1\r\n:7\r\n$-1\r\n-ERR x\r\n";
+        List<Object> replies = feed(new RespDecoder(), bytes(wire), 1);
+        assertEquals(4, replies.size());
+        assertEquals("OK", replies.get(0));
+        List<?> array = (List<?>) replies.get(1);
+        assertEquals("foo", SafeEncoder.encode((byte[]) array.get(0)));
+        assertEquals(Arrays.asList((Object) Long.valueOf(7)), array.get(1));
+        assertNull(replies.get(2));
+        assertTrue(replies.get(3) instanceof JedisDataException);
+    }
+
+    @Test
+    public void decodesLargeArrayInFragments() {
+        StringBuilder wire = new StringBuilder("*1000\r\n");
+        for (int i = 0; i < 1000; i++) {
+            String item = "member-" + i;
+            wire.append('$').append(item.length()).append("\r\n").append(item).append("\r\n");
+        }
+        for (int fragment : new int[]{1, 3, 7, 64, 4096}) {
+            List<Object> replies = feed(new RespDecoder(), bytes(wire.toString()), fragment);
+            assertEquals(1, replies.size());
+            List<?> array = (List<?>) replies.get(0);
+            assertEquals(1000, array.size());
+            assertEquals("member-999", SafeEncoder.encode((byte[]) array.get(999)));
+        }
+    }
+
+    @Test
+    public void bulkContainingCrlfIsNotSplit() {
+        List<Object> replies = decodeAll("$6\r\na\r\nb\r\n\r\n:1\r\n");
+        assertEquals("a\r\nb\r\n", SafeEncoder.encode((byte[]) replies.get(0)));
+        assertEquals(Long.valueOf(1), replies.get(1));
+    }
+
+    @Test
+    public void resetDropsPartialState() {
+        RespDecoder decoder = new RespDecoder();
+        assertSame(RespDecoder.INCOMPLETE, decoder.decode(ByteBuffer.wrap(bytes("*2\r\n$3\r\n"))));
+        decoder.reset();
+        assertEquals(0, decoder.pendingBulkBytes());
+        assertEquals("OK", decoder.decode(ByteBuffer.wrap(bytes("+OK\r\n"))));
+    }
+
+    @Test
+    public void encodedCommandDecodesBackToArguments() {
+        byte[] command = RespCodec.encode(bytes("SET"), bytes("key"), new byte[0], bytes("value\r\n"));
+        assertEquals("*4\r\n$3\r\nSET\r\n$3\r\nkey\r\n$0\r\n\r\n$7\r\nvalue\r\n\r\n", SafeEncoder.encode(command));
+        List<?> args = (List<?>) new RespDecoder().decode(ByteBuffer.wrap(command));
+        assertEquals(4, args.size());
+        assertEquals("value\r\n", SafeEncoder.encode((byte[]) args.get(3)));
+    }
+
+    private static List<Object> decodeAll(String wire) {
+        return feed(new RespDecoder(), bytes(wire), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 模拟NIO连接的读buffer：每次追加fragment个字节，解析出所有完整的应答后compact
+     */
+    private static List<Object> feed(RespDecoder decoder, byte[] wire, int fragment) {
+        List<Object> replies = new ArrayList<Object>();
+        ByteBuffer buffer = ByteBuffer.allocate(wire.length);
+        for (int offset = 0; offset < wire.length; offset += fragment) {
+            buffer.put(wire, offset, Math.min(fragment, wire.length - offset));
+            buffer.flip();
+            Object reply;
+            while ((reply = decoder.decode(buffer)) != RespDecoder.INCOMPLETE) {
+                replies.add(reply);
+            }
+            buffer.compact();
+        }
+        assertEquals(0, buffer.position());
+        return replies;
+    }
+
+    private static byte[] bytes(String s) {
+        return SafeEncoder.encode(s);
+    }
+}
@@ -0,0 +1,73 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.util.SafeEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 每个线程的缓冲流在不同的socket之间复用，读写结果不受上一次调用影响
+ */
+public class RespStreamsTest {
+
+    @Test
+    public void streamsAreReusedAcrossSockets() throws IOException {
+        ServerSocket server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+        try {
+            Socket first = new Socket(server.getInetAddress(), server.getLocalPort());
+            Socket firstPeer = server.accept();
+            Socket second = new Socket(server.getInetAddress(), server.getLocalPort());
+            Socket secondPeer = server.accept();
+            try {
+                OutputStream out = RespStreams.bufferedOutput(first);
+                RespStreams.writeCommand(out, 3, SafeEncoder.encode("SET"), SafeEncoder.encode("k"));
+                RespStreams.writeBulkBody(out, ByteBuffer.wrap(SafeEncoder.encode("abc")));
+                assertEquals("*3\r\n$3\r\nSET\r\n$1\r\nk\r\n$3\r\nabc\r\n", read(firstPeer.getInputStream(), 29));
+                firstPeer.getOutputStream().write(SafeEncoder.encode("+OK\r\n"));
+                InputStream in = RespStreams.bufferedInput(first);
+                assertEquals("OK", RespStreams.readStatus(in));
+
+                assertSame(out, RespStreams.bufferedOutput(second));
+                secondPeer.getOutputStream().write(SafeEncoder.encode("$5\r\nhello\r\n"));
+                assertSame(in, RespStreams.bufferedInput(second));
+                ByteBufferPool pool = new ByteBufferPool();
+                ByteBuffer value = RespStreams.readBulk(in, pool);
+                assertEquals(5, value.remaining());
+                assertTrue(Arrays.equals(SafeEncoder.encode("hello"),
+                        Arrays.copyOfRange(value.array(), value.arrayOffset(), value.arrayOffset() + 5)));
+                pool.release(value);
+            } finally {
+                first.close();
+                firstPeer.close();
+                second.close();
+                secondPeer.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    private static String read(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return SafeEncoder.encode(Arrays.copyOf(bytes, read));
+    }
+}
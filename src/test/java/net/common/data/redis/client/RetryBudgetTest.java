@@ -0,0 +1,64 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重试预算的上限、按调用存入和按时间补充
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void startsWithBurstAndStopsWhenEmpty() {
+        // 每秒1次，最多积累10秒
+        RetryBudget budget = new RetryBudget(0, 1);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(budget.tryWithdraw());
+        }
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void callsDepositTheirRatio() {
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void depositsAreCappedAtOneToken() {
+        RetryBudget budget = new RetryBudget(1, 0);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    public void refillsOverTime() throws InterruptedException {
+        RetryBudget budget = new RetryBudget(0, 20);
+        while (budget.tryWithdraw()) {
+            // 取空
+        }
+        assertFalse(budget.tryWithdraw());
+        // 每秒20次：200毫秒至少补充1次
+        Thread.sleep(200);
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void zeroBudgetNeverRetries() {
+        RetryBudget budget = new RetryBudget(0, 0);
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertFalse(budget.tryWithdraw());
+    }
+}
@@ -0,0 +1,89 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import net.common.data.redis.RedisDeadline;
+import net.common.data.redis.RedisDeadlineExceededException;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 连接错误重试，截止时间已过时不再重试
+ */
+public class RetryingRedisTest {
+
+    @Test
+    public void connectionErrorIsRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = retrying(failingRedis(calls, new JedisConnectionException("Connection reset")));
+        assertFailsWith(redis, JedisConnectionException.class);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void deadlineExceededIsNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = retrying(failingRedis(calls, new RedisDeadlineExceededException("Redis deadline exceeded")));
+        assertFailsWith(redis, RedisDeadlineExceededException.class);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void connectionErrorAfterDeadlineIsNotRetried() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        IRedis redis = retrying(failingRedis(calls, new JedisConnectionException("Connection reset")));
+        RedisDeadline deadline = RedisDeadline.start(1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(10);
+            assertFailsWith(redis, JedisConnectionException.class);
+        } finally {
+            deadline.close();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    private static void assertFailsWith(IRedis redis, Class<? extends RuntimeException> type) {
+        try {
+            redis.get("k");
+            fail("get must fail");
+        } catch (RuntimeException e) {
+            assertEquals(type, e.getClass());
+        }
+    }
+
+    private static IRedis retrying(IRedis target) {
+        RedisServiceLoaderImpl.RedisConfig config = new RedisServiceLoaderImpl.RedisConfig();
+        config.setRetryCount(2);
+        config.setRetryBaseBackoffMillis(1);
+        config.setRetryMaxBackoffMillis(1);
+        config.setRetryBudgetRatio(1);
+        config.setRetryBudgetMinPerSecond(10);
+        return RetryingRedis.create(target, config);
+    }
+
+    /**
+     * 每次调用都抛出指定异常的IRedis
+     *
+     * @param calls : 调用次数
+     * @param error
+     * @return
+     */
+    private static IRedis failingRedis(final AtomicInteger calls, final RuntimeException error) {
+        return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.incrementAndGet();
+                        throw error;
+                    }
+                });
+    }
+}
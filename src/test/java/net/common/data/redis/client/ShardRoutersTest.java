@@ -0,0 +1,54 @@
+package net.common.data.redis.client;
+
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Sharded;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * hash tag的解析与Sharded.DEFAULT_KEY_TAG_PATTERN一致，按tag分片时String和byte[]的key结果一致
+ */
+public class ShardRoutersTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void keyTag() {
+        assertTag("user", "svc:{user}:1");
+        assertTag("a", "{a}:{b}");
+        assertTag("}x", "svc:{}x}");
+        assertTag("svc:{}", "svc:{}");
+        assertTag("svc:{user", "svc:{user");
+        assertTag("svc:user:1", "svc:user:1");
+    }
+
+    @Test
+    public void keysWithSameTagShareShard() {
+        List<JedisShardInfo> shards = new ArrayList<JedisShardInfo>();
+        for (int i = 0; i < 8; i++) {
+            shards.add(new JedisShardInfo("10.0.0." + i, 6379));
+        }
+        Sharded<Jedis, JedisShardInfo> router = ShardRouters.of(shards, true);
+        JedisShardInfo shard = router.getShardInfo("svc:{user}:1".getBytes(UTF_8));
+        for (int i = 2; i < 100; i++) {
+            assertSame(shard, router.getShardInfo(("svc:{user}:" + i).getBytes(UTF_8)));
+            assertSame(shard, router.getShardInfo("svc:{user}:" + i));
+        }
+        assertSame(shard, router.getShardInfo("user".getBytes(UTF_8)));
+    }
+
+    private static void assertTag(String expected, String key) {
+        byte[] tag = ShardRouters.keyTag(key.getBytes(UTF_8));
+        assertEquals(expected, new String(tag, UTF_8));
+        assertTrue(Arrays.equals(expected.getBytes(UTF_8), tag));
+    }
+}
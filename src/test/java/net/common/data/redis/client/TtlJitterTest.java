@@ -0,0 +1,123 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.RedisTtlJitter;
+import org.junit.Test;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 过期时间抖动的范围：只缩短、不小于1秒、取百分比和秒数中较大的范围
+ */
+public class TtlJitterTest {
+
+    private static final int ROUNDS = 2000;
+
+    @Test
+    public void percentSpreadStaysInRange() {
+        TtlJitter jitter = new TtlJitter(10, 0);
+        boolean shortened = false;
+        for (int i = 0; i < ROUNDS; i++) {
+            int ttl = jitter.apply(1000);
+            assertTrue("ttl " + ttl, ttl >= 900 && ttl <= 1000);
+            shortened |= ttl < 1000;
+        }
+        assertTrue(shortened);
+    }
+
+    @Test
+    public void largerOfPercentAndSecondsWins() {
+        TtlJitter jitter = new TtlJitter(10, 300);
+        for (int i = 0; i < ROUNDS; i++) {
+            int ttl = jitter.apply(1000);
+            assertTrue("ttl " + ttl, ttl >= 700 && ttl <= 1000);
+        }
+    }
+
+    @Test
+    public void keepsAtLeastOneSecond() {
+        TtlJitter jitter = new TtlJitter(100, 3600);
+        for (int i = 0; i < ROUNDS; i++) {
+            int ttl = jitter.apply(5);
+            assertTrue("ttl " + ttl, ttl >= 1 && ttl <= 5);
+        }
+        assertEquals(1, jitter.apply(1));
+    }
+
+    @Test
+    public void leavesNoExpireUntouched() {
+        TtlJitter jitter = new TtlJitter(50, 60);
+        assertEquals(0, jitter.apply(0));
+        assertEquals(-1, jitter.apply(-1));
+    }
+
+    @Test
+    public void threadOverrideReplacesConfiguredSpread() {
+        TtlJitter jitter = new TtlJitter(50, 0);
+        RedisTtlJitter none = RedisTtlJitter.none();
+        try {
+            for (int i = 0; i < ROUNDS; i++) {
+                assertEquals(1000, jitter.apply(1000));
+            }
+            RedisTtlJitter wide = RedisTtlJitter.override(0, 100);
+            try {
+                for (int i = 0; i < ROUNDS; i++) {
+                    int ttl = jitter.apply(1000);
+                    assertTrue("ttl " + ttl, ttl >= 900 && ttl <= 1000);
+                }
+            } finally {
+                wide.close();
+            }
+            assertEquals(1000, jitter.apply(1000));
+        } finally {
+            none.close();
+        }
+        assertNull(RedisTtlJitter.current());
+    }
+
+    @Test
+    public void pipelineJittersSetexAndExpire() {
+        final List<Integer> ttls = new ArrayList<Integer>();
+        BaseShardedJedisPipelineTest.FakeClient client = new BaseShardedJedisPipelineTest.FakeClient() {
+            @Override
+            public void setex(byte[] key, int seconds, byte[] value) {
+                ttls.add(seconds);
+            }
+
+            @Override
+            public void expire(byte[] key, int seconds) {
+                ttls.add(seconds);
+            }
+        };
+        BaseShardedJedisPipeline pipeline = new BaseShardedJedisPipeline("pipelineJittersSetexAndExpire") {
+            @Override
+            public void execute() {
+                for (int i = 0; i < ROUNDS; i++) {
+                    setex(SafeEncoder.encode("a" + i), 1000, SafeEncoder.encode("v"));
+                    expire(SafeEncoder.encode("a" + i), 1000);
+                }
+            }
+        };
+        pipeline.setShardedJedis(new BaseShardedJedisPipelineTest.FakeShardedJedis(client, client));
+        pipeline.setTtlJitter(new TtlJitter(10, 0));
+        pipeline.execute();
+        assertEquals(2 * ROUNDS, ttls.size());
+        boolean shortened = false;
+        for (int ttl : ttls) {
+            assertTrue("ttl " + ttl, ttl >= 900 && ttl <= 1000);
+            shortened |= ttl < 1000;
+        }
+        // 同一批写入的key不会在同一秒过期
+        assertTrue(shortened);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentOver100() {
+        new TtlJitter(101, 0);
+    }
+}
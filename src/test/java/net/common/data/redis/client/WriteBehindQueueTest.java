@@ -0,0 +1,149 @@
+package net.common.data.redis.client;
+
+import net.common.data.redis.IRedis;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.Test;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.SafeEncoder;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 合并写入、队列满的处理策略和失败重试
+ */
+public class WriteBehindQueueTest {
+
+    /**
+     * 刷新间隔足够长，批次攒不满时刷新线程一直等待，队列内容保持不变
+     */
+    private static final long IDLE_FLUSH_MILLIS = 60000;
+
+    @Test
+    public void laterWriteReplacesPendingValue() throws InterruptedException {
+        WriteBehindQueue queue = idleQueue(10, WriteBehindQueue.FullPolicy.BLOCK);
+        assertTrue(queue.offer(bytes("k"), bytes("v1"), 0));
+        assertTrue(queue.offer(bytes("k"), bytes("v2"), 0));
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(1L, queue.getCoalescedCount());
+        assertEquals("v2", SafeEncoder.encode(queue.peek(bytes("k"))));
+        queue.cancel(bytes("k"));
+        assertNull(queue.peek(bytes("k")));
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+    @Test
+    public void dropOldestEvictsFirstWrite() throws InterruptedException {
+        WriteBehindQueue queue = idleQueue(2, WriteBehindQueue.FullPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(bytes("a"), bytes("1"), 0));
+        assertTrue(queue.offer(bytes("b"), bytes("2"), 0));
+        assertTrue(queue.offer(bytes("c"), bytes("3"), 0));
+        assertEquals(2, queue.getQueueDepth());
+        assertEquals(1L, queue.getDroppedCount());
+        assertNull(queue.peek(bytes("a")));
+        assertEquals("3", SafeEncoder.encode(queue.peek(bytes("c"))));
+    }
+
+    @Test
+    public void callerRunsWhenFull() throws InterruptedException {
+        WriteBehindQueue queue = idleQueue(1, WriteBehindQueue.FullPolicy.CALLER_RUNS);
+        assertTrue(queue.offer(bytes("a"), bytes("1"), 0));
+        assertFalse(queue.offer(bytes("b"), bytes("2"), 0));
+        // 已经在队列中的key仍然合并，不需要空位
+        assertTrue(queue.offer(bytes("a"), bytes("3"), 0));
+        assertEquals(1L, queue.getCallerRunsCount());
+        assertNull(queue.peek(bytes("b")));
+    }
+
+    @Test
+    public void failedBatchIsRetried() throws InterruptedException {
+        FailingRedis redis = new FailingRedis();
+        WriteBehindQueue queue = new WriteBehindQueue(redis.proxy(), pool(), 10, 1, 0,
+                WriteBehindQueue.FullPolicy.BLOCK);
+        queue.offer(bytes("k"), bytes("v"), 0);
+        assertTrue(redis.entered.await(5, TimeUnit.SECONDS));
+        redis.release.countDown();
+        assertTrue(redis.awaitCalls(2));
+        queue.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void batchCancelledInFlightIsNotRequeued() throws InterruptedException {
+        FailingRedis redis = new FailingRedis();
+        WriteBehindQueue queue = new WriteBehindQueue(redis.proxy(), pool(), 10, 1, 0,
+                WriteBehindQueue.FullPolicy.BLOCK);
+        queue.offer(bytes("k"), bytes("old"), 0);
+        assertTrue(redis.entered.await(5, TimeUnit.SECONDS));
+        // 写入期间key被删除
+        queue.cancel(bytes("k"));
+        redis.release.countDown();
+        assertTrue(queue.shutdown(5, TimeUnit.SECONDS));
+        assertEquals(1, redis.calls.get());
+        assertNull(queue.peek(bytes("k")));
+        assertEquals(0L, queue.getFailedCount());
+    }
+
+    private static WriteBehindQueue idleQueue(int capacity, WriteBehindQueue.FullPolicy fullPolicy) {
+        return new WriteBehindQueue(new FailingRedis().proxy(), pool(), capacity, 100, IDLE_FLUSH_MILLIS,
+                fullPolicy);
+    }
+
+    private static InstrumentedShardedJedisPool pool() {
+        return new InstrumentedShardedJedisPool(new GenericObjectPoolConfig(),
+                Collections.singletonList(new JedisShardInfo("127.0.0.1", 6379)), 1000, false);
+    }
+
+    private static byte[] bytes(String str) {
+        return SafeEncoder.encode(str);
+    }
+
+    /**
+     * pipelined第一次调用等待release后失败，之后的调用直接成功
+     */
+    private static final class FailingRedis implements InvocationHandler {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        IRedis proxy() {
+            return (IRedis) Proxy.newProxyInstance(IRedis.class.getClassLoader(), new Class<?>[]{IRedis.class},
+                    this);
+        }
+
+        boolean awaitCalls(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (calls.get() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return calls.get() >= count;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws InterruptedException {
+            if (!"pipelined".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            if (calls.incrementAndGet() > 1) {
+                return new ArrayList<Object>();
+            }
+            entered.countDown();
+            release.await();
+            throw new JedisConnectionException("Connection reset");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.common.data.redis.monitor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按命令分阶段累加耗时
+ */
+public class CommandTimingsTest {
+
+    @Test
+    public void phasesAreAccumulatedPerCommand() {
+        CommandTimings timings = new CommandTimings();
+        timings.record("get", 1000, 20000, 3000);
+        timings.record("get", 5000, 10000, 1000);
+        timings.record("hgetAll", 0, 40000, 60000);
+
+        Map<String, CommandTimings.Snapshot> snapshot = timings.snapshot();
+        assertEquals(Arrays.asList("get", "hgetAll"), Arrays.asList(snapshot.keySet().toArray()));
+        CommandTimings.Snapshot get = snapshot.get("get");
+        assertEquals(2L, get.getCount());
+        assertEquals(6000L, get.getBorrowNanos());
+        assertEquals(30000L, get.getIoNanos());
+        assertEquals(4000L, get.getCodecNanos());
+        // 最大值是单次调用三段之和
+        assertEquals(24000L, get.getMaxNanos());
+        assertEquals(100000L, snapshot.get("hgetAll").getMaxNanos());
+    }
+
+    @Test
+    public void resetClearsCommands() {
+        CommandTimings timings = new CommandTimings();
+        timings.record("get", 1000, 1000, 1000);
+        timings.reset();
+        assertTrue(timings.snapshot().isEmpty());
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        final CommandTimings timings = new CommandTimings();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        timings.record("get", 1, 2, 3);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        CommandTimings.Snapshot get = timings.snapshot().get("get");
+        assertEquals(40000L, get.getCount());
+        assertEquals(80000L, get.getIoNanos());
+    }
+}
@@ -0,0 +1,71 @@
+package net.common.data.redis.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 耗时直方图的桶边界和百分位误差
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertEquals(0L, new LatencyHistogram().percentile(0.99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long micros = 0; micros < 8; micros++) {
+            assertEquals(micros, single(micros));
+        }
+    }
+
+    @Test
+    public void upperBoundIsWithinAQuarter() {
+        for (long micros = 1; micros < 1L << 36; micros = micros * 3 / 2 + 1) {
+            for (long value : new long[]{micros, micros + 1, (micros << 1) - 1}) {
+                long bound = single(value);
+                assertTrue(value + " -> " + bound, bound >= value);
+                assertTrue(value + " -> " + bound, bound <= value + value / 4);
+            }
+        }
+    }
+
+    @Test
+    public void bucketsMeetAtPowersOfTwo() {
+        for (int exponent = 3; exponent < 36; exponent++) {
+            long power = 1L << exponent;
+            // 2的幂开始新的区间，第一个桶宽为区间的1/4
+            assertEquals(power - 1, single(power - 1));
+            assertEquals(power + power / 4 - 1, single(power));
+        }
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        assertEquals(0L, single(-5));
+    }
+
+    @Test
+    public void percentilesFollowRank() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(1000L, histogram.getCount());
+        assertEquals(500500L, histogram.getTotalMicros());
+        long p50 = histogram.percentile(0.5);
+        assertTrue("p50 " + p50, p50 >= 500 && p50 <= 625);
+        long p99 = histogram.percentile(0.99);
+        assertTrue("p99 " + p99, p99 >= 990 && p99 <= 1237);
+        assertEquals(1L, histogram.percentile(0));
+    }
+
+    private static long single(long micros) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(micros);
+        return histogram.percentile(1.0);
+    }
+}
@@ -0,0 +1,54 @@
+package net.common.data.redis.monitor;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按shard统计调用次数、错误次数和耗时百分位
+ */
+public class ShardStatsTest {
+
+    @Test
+    public void percentilesSeparateSlowTail() {
+        ShardStats stats = new ShardStats();
+        for (int i = 0; i < 90; i++) {
+            stats.record("10.0.0.1:6379", TimeUnit.MICROSECONDS.toNanos(100), true);
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.record("10.0.0.1:6379", TimeUnit.MICROSECONDS.toNanos(10000), i >= 5);
+        }
+        ShardStats.Snapshot shard = stats.snapshot().get("10.0.0.1:6379");
+        assertEquals(100L, shard.getCount());
+        assertEquals(5L, shard.getErrors());
+        assertEquals(1090L, shard.getMeanMicros());
+        assertTrue("p50 " + shard.getP50Micros(), shard.getP50Micros() >= 100 && shard.getP50Micros() <= 125);
+        assertTrue("p90 " + shard.getP90Micros(), shard.getP90Micros() <= 125);
+        assertTrue("p99 " + shard.getP99Micros(), shard.getP99Micros() >= 10000 && shard.getP99Micros() <= 12500);
+    }
+
+    @Test
+    public void connectionsOfOneShardAreMerged() {
+        ShardStats stats = new ShardStats();
+        // 同一个shard的不同连接编号合并统计
+        stats.record("10.0.0.1:6379*1", 1000, true);
+        stats.record("10.0.0.1:6379*2", 1000, true);
+        stats.record("10.0.0.2:6379", 1000, true);
+        Map<String, ShardStats.Snapshot> snapshot = stats.snapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(2L, snapshot.get("10.0.0.1:6379").getCount());
+        assertEquals(1L, snapshot.get("10.0.0.2:6379").getCount());
+    }
+
+    @Test
+    public void resetClearsShards() {
+        ShardStats stats = new ShardStats();
+        stats.record("10.0.0.1:6379", 1000, false);
+        stats.reset();
+        assertTrue(stats.snapshot().isEmpty());
+    }
+}